@@ -27,9 +27,11 @@
 
 package org.a0z.mpd;
 
+import org.a0z.mpd.connection.BinaryResponseHandler;
 import org.a0z.mpd.connection.MPDConnection;
 import org.a0z.mpd.connection.MPDConnectionMonoSocket;
 import org.a0z.mpd.connection.MPDConnectionMultiSocket;
+import org.a0z.mpd.connection.ResponseFuture;
 import org.a0z.mpd.exception.MPDException;
 import org.a0z.mpd.item.Album;
 import org.a0z.mpd.item.Artist;
@@ -37,6 +39,7 @@ import org.a0z.mpd.item.Directory;
 import org.a0z.mpd.item.FilesystemTreeEntry;
 import org.a0z.mpd.item.Genre;
 import org.a0z.mpd.item.Item;
+import org.a0z.mpd.item.ItemSorter;
 import org.a0z.mpd.item.Music;
 import org.a0z.mpd.item.PlaylistFile;
 import org.a0z.mpd.item.Stream;
@@ -61,6 +64,12 @@ public class MPD {
 
     public static final String STREAMS_PLAYLIST = "[Radio Streams]";
 
+    /** The number of times a binary transfer chunk is requested before giving up. */
+    private static final int BINARY_CHUNK_ATTEMPTS = 3;
+
+    /** The number of fallback lookups for the first track of an album. */
+    private static final int FIRST_TRACK_FALLBACKS = 3;
+
     private static final String TAG = "MPD";
 
     protected final MPDPlaylist mPlaylist;
@@ -73,17 +82,35 @@ public class MPD {
 
     private final MPDStatus mStatus;
 
+    private final Sticker mStickerManager;
+
+    private final TrackPositionClock mTrackPositionClock;
+
     /**
      * Constructs a new MPD server controller without connection.
      */
     public MPD() {
+        this(new MPDConnectionMultiSocket(5000, 2), new MPDConnectionMonoSocket(0));
+    }
+
+    /**
+     * Constructs a new MPD server controller without connection, communicating over the
+     * connections given, for instance, {@link org.a0z.mpd.connection.MPDConnectionChannel}
+     * connections sharing one event loop.
+     *
+     * @param connection     The connection to send commands over.
+     * @param idleConnection The connection dedicated to the {@code idle} command.
+     */
+    public MPD(final MPDConnection connection, final MPDConnection idleConnection) {
         super();
-        mConnection = new MPDConnectionMultiSocket(5000, 2);
-        mIdleConnection = new MPDConnectionMonoSocket(0);
+        mConnection = connection;
+        mIdleConnection = idleConnection;
         mStatistics = new MPDStatistics();
 
         mPlaylist = new MPDPlaylist(mConnection);
         mStatus = new MPDStatus();
+        mStickerManager = new Sticker(mConnection);
+        mTrackPositionClock = new TrackPositionClock();
     }
 
     /**
@@ -410,10 +437,12 @@ public class MPD {
 
     protected void addAlbumPaths(final List<Album> albums) throws IOException, MPDException {
         if (albums != null && !albums.isEmpty()) {
-            for (final Album album : albums) {
-                final List<Music> songs = getFirstTrack(album);
+            final List<List<Music>> firstTracks = getFirstTracks(albums);
+
+            for (int i = 0; i < albums.size(); i++) {
+                final List<Music> songs = firstTracks.get(i);
                 if (!songs.isEmpty()) {
-                    album.setPath(songs.get(0).getPath());
+                    albums.get(i).setPath(songs.get(0).getPath());
                 }
             }
         }
@@ -524,6 +553,7 @@ public class MPD {
     public final synchronized void connect(final InetAddress server, final int port,
             final String password) throws IOException, MPDException {
         if (!isConnected()) {
+            mStickerManager.invalidate();
             mConnection.connect(server, port, password);
             mIdleConnection.connect(server, port, password);
         }
@@ -671,13 +701,39 @@ public class MPD {
 
     protected List<Music> genericSearch(final String searchCommand, final String[] args,
             final boolean sort) throws IOException, MPDException {
-        return Music.getMusicFromList(mConnection.sendCommand(searchCommand, args), sort);
+        return Music.getMusicFromList(mConnection, new MPDCommand(searchCommand, args), sort);
     }
 
     protected List<Music> genericSearch(final String searchCommand, final String type,
             final String strToFind) throws IOException, MPDException {
-        final List<String> response = mConnection.sendCommand(searchCommand, type, strToFind);
-        return Music.getMusicFromList(response, true);
+        final MPDCommand command = new MPDCommand(searchCommand, type, strToFind);
+
+        return Music.getMusicFromList(mConnection, command, true);
+    }
+
+    /**
+     * Retrieves the cover art of a song from the media server; the cover file of the song
+     * directory, using {@code albumart}, else the picture embedded in the song, using
+     * {@code readpicture}.
+     *
+     * @param uri The URI of the song.
+     * @return The cover art, as stored on the media server, or null if the song has none or the
+     * media server doesn't support either command.
+     * @throws IOException  Thrown upon a communication error with the server.
+     * @throws MPDException Thrown if an error occurs as a result of command execution.
+     */
+    public byte[] getAlbumArt(final String uri) throws IOException, MPDException {
+        byte[] albumArt = null;
+
+        if (mConnection.isCommandAvailable(MPDCommand.MPD_CMD_ALBUM_ART)) {
+            albumArt = readBinary(MPDCommand.MPD_CMD_ALBUM_ART, uri);
+        }
+
+        if (albumArt == null && mConnection.isCommandAvailable(MPDCommand.MPD_CMD_READ_PICTURE)) {
+            albumArt = readBinary(MPDCommand.MPD_CMD_READ_PICTURE, uri);
+        }
+
+        return albumArt;
     }
 
     public int getAlbumCount(final Artist artist, final boolean useAlbumArtistTag)
@@ -692,15 +748,35 @@ public class MPD {
 
     protected void getAlbumDetails(final List<Album> albums, final boolean findYear)
             throws IOException, MPDException {
-        final CommandQueue commandQueue = new CommandQueue(albums.size());
+        final List<MPDCommand> commands = new ArrayList<>(albums.size() * 2);
+        final List<String[]> args = new ArrayList<>(albums.size());
+
         for (final Album album : albums) {
-            commandQueue.add(getAlbumDetailsCommand(album));
+            commands.add(getAlbumDetailsCommand(album));
         }
-        final List<String[]> response = commandQueue.sendSeparated(mConnection);
 
-        if (response.size() == albums.size()) {
-            for (int i = 0; i < response.size(); i++) {
-                final String[] list = response.get(i);
+        /** The first track lookups go out in the same pipeline as the counts. */
+        if (findYear) {
+            for (final Album album : albums) {
+                final String[] albumArgs = getFirstTrackArgs(album);
+
+                args.add(albumArgs);
+                commands.add(new MPDCommand(MPDCommand.MPD_CMD_FIND, albumArgs));
+            }
+        }
+
+        final List<ResponseFuture> responses = mConnection.sendPipelined(commands);
+
+        if (responses.size() == commands.size()) {
+            List<List<Music>> firstTracks = null;
+
+            if (findYear) {
+                firstTracks = getFirstTracks(args,
+                        responses.subList(albums.size(), responses.size()));
+            }
+
+            for (int i = 0; i < albums.size(); i++) {
+                final List<String> list = responses.get(i).getResponse();
                 final Album a = albums.get(i);
                 for (final String[] pair : Tools.splitResponse(list)) {
                     if ("songs".equals(pair[KEY])) {
@@ -710,8 +786,8 @@ public class MPD {
                     }
                 }
 
-                if (findYear) {
-                    final List<Music> songs = getFirstTrack(a);
+                if (firstTracks != null) {
+                    final List<Music> songs = firstTracks.get(i);
                     if (null != songs && !songs.isEmpty()) {
                         a.setYear(songs.get(0).getDate());
                         a.setPath(songs.get(0).getPath());
@@ -763,7 +839,7 @@ public class MPD {
                     addAlbumPaths(albums);
                 }
 
-                Collections.sort(albums);
+                ItemSorter.sort(albums);
             }
         }
 
@@ -796,7 +872,7 @@ public class MPD {
             }
         }
 
-        Collections.sort(albums);
+        ItemSorter.sort(albums);
         return albums;
     }
 
@@ -820,7 +896,7 @@ public class MPD {
                 artists.add(new Artist(artist));
             }
         }
-        Collections.sort(artists);
+        ItemSorter.sort(artists);
         return artists;
     }
 
@@ -845,11 +921,28 @@ public class MPD {
                 artists.add(new Artist(artist));
             }
         }
-        Collections.sort(artists);
+        ItemSorter.sort(artists);
         return artists;
     }
 
     protected List<Music> getFirstTrack(final Album album) throws IOException, MPDException {
+        final String[] args = getFirstTrackArgs(album);
+        List<Music> songs = find(args);
+
+        for (int stage = 0; stage < FIRST_TRACK_FALLBACKS && songs.isEmpty(); stage++) {
+            songs = Music.getMusicFromList(mConnection,
+                    getFirstTrackFallbackCommand(args, stage), true);
+        }
+        return songs;
+    }
+
+    /**
+     * Generates the arguments for a {@code find} command for the track numbered "1" of an album.
+     *
+     * @param album The album to find the first track for.
+     * @return The {@code find} command arguments.
+     */
+    private static String[] getFirstTrackArgs(final Album album) {
         final Artist artist = album.getArtist();
         final String[] args = new String[6];
 
@@ -870,20 +963,112 @@ public class MPD {
         args[3] = album.getName();
         args[4] = "track";
         args[5] = "1";
-        List<Music> songs = find(args);
-        if (null == songs || songs.isEmpty()) {
-            args[5] = "01";
-            songs = find(args);
+
+        return args;
+    }
+
+    /**
+     * Generates a command to retrieve the first track of an album when the previous lookups
+     * found no track. The fallbacks, in order, find the track numbered "01", search the track
+     * numbered "1" and find all tracks of the album.
+     *
+     * @param args  The arguments used to find the track numbered "1" of the album.
+     * @param stage The fallback, from 0 to {@link #FIRST_TRACK_FALLBACKS} exclusive.
+     * @return The command for the fallback.
+     */
+    private static MPDCommand getFirstTrackFallbackCommand(final String[] args, final int stage) {
+        final MPDCommand command;
+
+        if (stage == 0) {
+            final String[] args2 = args.clone();
+
+            args2[5] = "01";
+            command = new MPDCommand(MPDCommand.MPD_CMD_FIND, args2);
+        } else if (stage == 1) {
+            command = new MPDCommand(MPDCommand.MPD_CMD_SEARCH, args);
+        } else {
+            command = new MPDCommand(MPDCommand.MPD_CMD_FIND, Arrays.copyOf(args, 4));
         }
-        if (null == songs || songs.isEmpty()) {
-            args[5] = "1";
-            songs = search(args);
+
+        return command;
+    }
+
+    /**
+     * Retrieves the first track of each album. The lookups for all albums are pipelined, only
+     * albums without a track numbered "1" need further round trips.
+     *
+     * @param albums The albums to retrieve the first track for.
+     * @return A list of tracks for each album, in the order of {@code albums}.
+     * @throws IOException  Thrown upon a communication error with the server.
+     * @throws MPDException Thrown if an error occurs as a result of command execution.
+     * @see #getFirstTrack(Album)
+     */
+    protected List<List<Music>> getFirstTracks(final List<Album> albums)
+            throws IOException, MPDException {
+        final List<String[]> args = new ArrayList<>(albums.size());
+        final List<MPDCommand> commands = new ArrayList<>(albums.size());
+
+        for (final Album album : albums) {
+            final String[] albumArgs = getFirstTrackArgs(album);
+
+            args.add(albumArgs);
+            commands.add(new MPDCommand(MPDCommand.MPD_CMD_FIND, albumArgs));
         }
-        if (null == songs || songs.isEmpty()) {
-            final String[] args2 = Arrays.copyOf(args, 4); // find all tracks
-            songs = find(args2);
+
+        return getFirstTracks(args, mConnection.sendPipelined(commands));
+    }
+
+    /**
+     * Retrieves the first track of each album from the responses to finding the track numbered
+     * "1". The albums without one go through each fallback together, in one pipeline per
+     * fallback, so this takes at most {@link #FIRST_TRACK_FALLBACKS} more round trips,
+     * whatever the number of albums.
+     *
+     * @param args      The arguments used to find the track numbered "1" of each album.
+     * @param responses The responses to finding the track numbered "1" of each album.
+     * @return A list of tracks for each album, in the order of {@code args}.
+     * @throws IOException  Thrown upon a communication error with the server.
+     * @throws MPDException Thrown if an error occurs as a result of command execution.
+     * @see #getFirstTrackFallbackCommand(String[], int)
+     */
+    private List<List<Music>> getFirstTracks(final List<String[]> args,
+            final List<ResponseFuture> responses) throws IOException, MPDException {
+        final List<List<Music>> firstTracks = new ArrayList<>(responses.size());
+        List<Integer> missing = new ArrayList<>();
+
+        for (int i = 0; i < responses.size(); i++) {
+            final List<Music> songs =
+                    Music.getMusicFromList(responses.get(i).getResponse(), true);
+
+            if (songs.isEmpty()) {
+                missing.add(Integer.valueOf(i));
+            }
+            firstTracks.add(songs);
         }
-        return songs;
+
+        for (int stage = 0; stage < FIRST_TRACK_FALLBACKS && !missing.isEmpty(); stage++) {
+            final List<MPDCommand> commands = new ArrayList<>(missing.size());
+            final List<Integer> stillMissing = new ArrayList<>();
+
+            for (final Integer index : missing) {
+                commands.add(getFirstTrackFallbackCommand(args.get(index.intValue()), stage));
+            }
+
+            final List<ResponseFuture> fallbackResponses = mConnection.sendPipelined(commands);
+            for (int i = 0; i < fallbackResponses.size(); i++) {
+                final List<Music> songs =
+                        Music.getMusicFromList(fallbackResponses.get(i).getResponse(), true);
+
+                if (songs.isEmpty()) {
+                    stillMissing.add(missing.get(i));
+                } else {
+                    firstTracks.set(missing.get(i).intValue(), songs);
+                }
+            }
+            missing = stillMissing;
+        }
+
+        return firstTracks;
     }
 
     public List<Genre> getGenres() throws IOException, MPDException {
@@ -897,7 +1082,7 @@ public class MPD {
             }
         }
         if (null != genres) {
-            Collections.sort(genres);
+            ItemSorter.sort(genres);
         }
         return genres;
     }
@@ -1006,7 +1191,7 @@ public class MPD {
             }
         }
         if (sort) {
-            Collections.sort(result);
+            ItemSorter.sort(result);
         }
 
         return result;
@@ -1031,8 +1216,8 @@ public class MPD {
     }
 
     public List<Music> getSongs(final Album album) throws IOException, MPDException {
-        final List<Music> songs = Music.getMusicFromList
-                (mConnection.sendCommand(getSongsCommand(album)), true);
+        final List<Music> songs =
+                Music.getMusicFromList(mConnection, getSongsCommand(album), true);
         if (album.hasAlbumArtist()) {
             // remove songs that don't have this album artist (mpd >=0.18 puts them in)
             final Artist artist = album.getArtist();
@@ -1051,7 +1236,7 @@ public class MPD {
             }
         }
         if (null != songs) {
-            Collections.sort(songs);
+            ItemSorter.sort(songs);
         }
         return songs;
     }
@@ -1083,8 +1268,25 @@ public class MPD {
         return mStatus;
     }
 
+    /**
+     * Gets the sticker manager of this server. The sticker manager is shared, so the stickers it
+     * caches are shared as well.
+     *
+     * @return The sticker manager.
+     */
     public Sticker getStickerManager() {
-        return new Sticker(mConnection);
+        return mStickerManager;
+    }
+
+    /**
+     * Gets the clock of the current track position, kept by the {@code MPDStatusMonitor} from the
+     * {@code player} changes of the server, to follow the position without polling the status.
+     *
+     * @return The current track position clock.
+     * @see MPDStatusMonitor
+     */
+    public TrackPositionClock getTrackPositionClock() {
+        return mTrackPositionClock;
     }
 
     /*
@@ -1148,9 +1350,10 @@ public class MPD {
      */
     public List<String> listAlbumArtists(final boolean sortInsensitive)
             throws IOException, MPDException {
-        final List<String> response = mConnection.sendCommand(MPDCommand.MPD_CMD_LIST_TAG,
+        final MPDCommand command = new MPDCommand(MPDCommand.MPD_CMD_LIST_TAG,
                 MPDCommand.MPD_TAG_ALBUM_ARTIST);
-        return Tools.parseResponse(response, "AlbumArtist", sortInsensitive);
+
+        return Tools.parseResponse(mConnection, command, "AlbumArtist", sortInsensitive);
     }
 
     public List<String> listAlbumArtists(final Genre genre) throws IOException, MPDException {
@@ -1166,11 +1369,11 @@ public class MPD {
      */
     public List<String> listAlbumArtists(final Genre genre, final boolean sortInsensitive)
             throws IOException, MPDException {
-        final List<String> response = mConnection.sendCommand(
+        final MPDCommand command = new MPDCommand(
                 MPDCommand.MPD_CMD_LIST_TAG, MPDCommand.MPD_TAG_ALBUM_ARTIST,
                 MPDCommand.MPD_TAG_GENRE, genre.getName());
 
-        return Tools.parseResponse(response, "AlbumArtist", sortInsensitive);
+        return Tools.parseResponse(mConnection, command, "AlbumArtist", sortInsensitive);
     }
 
     public List<String[]> listAlbumArtists(final List<Album> albums)
@@ -1232,18 +1435,9 @@ public class MPD {
      */
     public List<String> listAlbums(final String artist, final boolean useAlbumArtist)
             throws IOException, MPDException {
-        final List<String> response =
-                mConnection.sendCommand(listAlbumsCommand(artist, useAlbumArtist));
-        final List<String> result;
-
-        if (response.isEmpty()) {
-            result = Collections.emptyList();
-        } else {
-            result = Tools.parseResponse(response, "Album");
-            Collections.sort(result);
-        }
+        final MPDCommand command = listAlbumsCommand(artist, useAlbumArtist);
 
-        return result;
+        return Tools.parseResponse(mConnection, command, "Album", false);
     }
 
     /**
@@ -1322,7 +1516,7 @@ public class MPD {
             }
         }
 
-        Collections.sort(result);
+        ItemSorter.sort(result);
 
         return result;
     }
@@ -1337,8 +1531,9 @@ public class MPD {
      * @throws MPDException Thrown if an error occurs as a result of command execution.
      */
     public List<Music> listAllInfo() throws IOException, MPDException {
-        final List<String> allInfo = mConnection.sendCommand(MPDCommand.MPD_CMD_LISTALLINFO);
-        return Music.getMusicFromList(allInfo, false);
+        final MPDCommand command = new MPDCommand(MPDCommand.MPD_CMD_LISTALLINFO);
+
+        return Music.getMusicFromList(mConnection, command, false);
     }
 
     /**
@@ -1362,10 +1557,10 @@ public class MPD {
      */
     public List<String> listArtists(final boolean sortInsensitive)
             throws IOException, MPDException {
-        final List<String> response = mConnection.sendCommand(MPDCommand.MPD_CMD_LIST_TAG,
+        final MPDCommand command = new MPDCommand(MPDCommand.MPD_CMD_LIST_TAG,
                 MPDCommand.MPD_TAG_ARTIST);
 
-        return Tools.parseResponse(response, "Artist", sortInsensitive);
+        return Tools.parseResponse(mConnection, command, "Artist", sortInsensitive);
     }
 
     /**
@@ -1438,10 +1633,10 @@ public class MPD {
      */
     public List<String> listArtists(final String genre, final boolean sortInsensitive)
             throws IOException, MPDException {
-        final List<String> response = mConnection.sendCommand(MPDCommand.MPD_CMD_LIST_TAG,
+        final MPDCommand command = new MPDCommand(MPDCommand.MPD_CMD_LIST_TAG,
                 MPDCommand.MPD_TAG_ARTIST, MPDCommand.MPD_TAG_GENRE, genre);
 
-        return Tools.parseResponse(response, "Artist", sortInsensitive);
+        return Tools.parseResponse(mConnection, command, "Artist", sortInsensitive);
     }
 
     private List<String[]> listArtistsCommand(final Iterable<Album> albums,
@@ -1492,10 +1687,10 @@ public class MPD {
      * @throws MPDException Thrown if an error occurs as a result of command execution.
      */
     public List<String> listGenres(final boolean sortInsensitive) throws IOException, MPDException {
-        final List<String> response = mConnection.sendCommand(MPDCommand.MPD_CMD_LIST_TAG,
+        final MPDCommand command = new MPDCommand(MPDCommand.MPD_CMD_LIST_TAG,
                 MPDCommand.MPD_TAG_GENRE);
 
-        return Tools.parseResponse(response, "Genre", sortInsensitive);
+        return Tools.parseResponse(mConnection, command, "Genre", sortInsensitive);
     }
 
     public void movePlaylistSong(final String playlistName, final int from, final int to)
@@ -1544,6 +1739,71 @@ public class MPD {
         mConnection.sendCommand(MPDCommand.MPD_CMD_PREV);
     }
 
+    /**
+     * Reads a file from the media server with a binary transfer command, chunk by chunk, as the
+     * media server limits the size of each response. A chunk which fails to transfer is
+     * requested again from the same offset, rather than restarting the transfer.
+     *
+     * @param command The binary transfer command, {@code albumart} or {@code readpicture}.
+     * @param uri     The URI of the song.
+     * @return The file, or null if the media server has none for the song.
+     * @throws IOException  Thrown upon a communication error with the server.
+     * @throws MPDException Thrown if an error occurs as a result of command execution.
+     */
+    private byte[] readBinary(final String command, final String uri)
+            throws IOException, MPDException {
+        final int[] nonfatalErrors = {MPDException.ACK_ERROR_NO_EXIST};
+        byte[] data = null;
+        int offset = 0;
+        int failures = 0;
+        boolean isComplete = false;
+
+        while (!isComplete) {
+            final BinaryChunk chunk = new BinaryChunk();
+            IOException failure = null;
+
+            try {
+                mConnection.sendCommand(new MPDCommand(command, nonfatalErrors, uri,
+                        Integer.toString(offset)), chunk);
+
+                if (chunk.mData == null || chunk.mSize <= 0) {
+                    /** The media server has no such file for this song. */
+                    data = null;
+                    isComplete = true;
+                } else if (data != null && data.length != chunk.mSize) {
+                    /** The file changed during the transfer, start over. */
+                    failure = new IOException("File size changed during the binary transfer.");
+                    data = null;
+                    offset = 0;
+                } else if (chunk.mData.length == 0 || offset + chunk.mData.length > chunk.mSize) {
+                    throw new IOException("Invalid binary transfer chunk at offset " + offset);
+                } else {
+                    if (data == null) {
+                        data = new byte[chunk.mSize];
+                    }
+
+                    System.arraycopy(chunk.mData, 0, data, offset, chunk.mData.length);
+                    offset += chunk.mData.length;
+                    isComplete = offset == data.length;
+                    failures = 0;
+                }
+            } catch (final IOException e) {
+                failure = e;
+            }
+
+            if (failure != null) {
+                failures++;
+
+                if (failures >= BINARY_CHUNK_ATTEMPTS) {
+                    throw failure;
+                }
+                Log.warning(TAG, "Binary transfer failed at offset " + offset + ", resuming.");
+            }
+        }
+
+        return data;
+    }
+
     /**
      * Tells server to refresh database.
      *
@@ -1627,6 +1887,18 @@ public class MPD {
         return genericSearch(MPDCommand.MPD_CMD_SEARCH, args, true);
     }
 
+    /**
+     * Sends commands to the media server pipelined, without waiting for the response of one
+     * command before sending the next.
+     *
+     * @param commands The commands to send to the media server.
+     * @return A response handle for each command, in the order of {@code commands}.
+     * @see MPDConnection#sendPipelined(List)
+     */
+    public List<ResponseFuture> sendPipelined(final List<MPDCommand> commands) {
+        return mConnection.sendPipelined(commands);
+    }
+
     /**
      * Seeks current music to the position.
      *
@@ -1812,4 +2084,30 @@ public class MPD {
             mStatus.updateStatus(response);
         }
     }
+
+    /** Collects a chunk of a binary transfer, and the size of the entire file. */
+    private static final class BinaryChunk implements BinaryResponseHandler {
+
+        /** The data of the chunk, null if the response had none. */
+        private byte[] mData;
+
+        /** The size of the entire file, -1 if the response had none. */
+        private int mSize = -1;
+
+        @Override
+        public void onBinaryResponse(final byte[] data) {
+            mData = data;
+        }
+
+        @Override
+        public void onResponse(final String key, final String value) {
+            if ("size".equals(key)) {
+                try {
+                    mSize = Integer.parseInt(value);
+                } catch (final NumberFormatException e) {
+                    Log.error(TAG, "Invalid binary transfer size: " + value, e);
+                }
+            }
+        }
+    }
 }
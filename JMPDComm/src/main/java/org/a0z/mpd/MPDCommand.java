@@ -42,6 +42,9 @@ public class MPDCommand {
 
     public static final int MIN_VOLUME = 0;
 
+    /** Added in MPD protocol 0.21.0. */
+    public static final String MPD_CMD_ALBUM_ART = "albumart";
+
     public static final String MPD_CMD_CLEARERROR = "clearerror";
 
     public static final String MPD_CMD_CLOSE = "close";
@@ -67,6 +70,9 @@ public class MPDCommand {
 
     public static final String MPD_CMD_LISTALLINFO = "listallinfo";
 
+    /** Added in MPD protocol 0.19.0. */
+    public static final String MPD_CMD_LISTFILES = "listfiles";
+
     public static final String MPD_CMD_LISTPLAYLISTS = "listplaylists";
 
     public static final String MPD_CMD_LIST_TAG = "list";
@@ -77,6 +83,8 @@ public class MPDCommand {
 
     public static final String MPD_CMD_NEXT = "next";
 
+    public static final String MPD_CMD_NOIDLE = "noidle";
+
     public static final String MPD_CMD_OUTPUTDISABLE = "disableoutput";
 
     public static final String MPD_CMD_OUTPUTENABLE = "enableoutput";
@@ -108,6 +116,9 @@ public class MPDCommand {
 
     public static final String MPD_CMD_RANDOM = "random";
 
+    /** Added in MPD protocol 0.22.0. */
+    public static final String MPD_CMD_READ_PICTURE = "readpicture";
+
     public static final String MPD_CMD_REFRESH = "update";
 
     public static final String MPD_CMD_REPEAT = "repeat";
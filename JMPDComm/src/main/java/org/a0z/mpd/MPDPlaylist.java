@@ -28,6 +28,7 @@
 package org.a0z.mpd;
 
 import org.a0z.mpd.connection.MPDConnection;
+import org.a0z.mpd.connection.ResponseHandler;
 import org.a0z.mpd.exception.MPDException;
 import org.a0z.mpd.item.FilesystemTreeEntry;
 import org.a0z.mpd.item.Music;
@@ -35,6 +36,7 @@ import org.a0z.mpd.item.Music;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -46,10 +48,14 @@ public class MPDPlaylist {
 
     public static final String MPD_CMD_PLAYLIST_CHANGES = "plchanges";
 
+    public static final String MPD_CMD_PLAYLIST_CHANGES_POSITIONS = "plchangesposid";
+
     public static final String MPD_CMD_PLAYLIST_CLEAR = "clear";
 
     public static final String MPD_CMD_PLAYLIST_DELETE = "rm";
 
+    public static final String MPD_CMD_PLAYLIST_FIND = "playlistfind";
+
     public static final String MPD_CMD_PLAYLIST_LIST = "playlistid";
 
     public static final String MPD_CMD_PLAYLIST_LOAD = "load";
@@ -60,16 +66,27 @@ public class MPDPlaylist {
 
     public static final String MPD_CMD_PLAYLIST_REMOVE = "delete";
 
+    public static final String MPD_CMD_PLAYLIST_RANGE = "playlistinfo";
+
     public static final String MPD_CMD_PLAYLIST_REMOVE_ID = "deleteid";
 
     public static final String MPD_CMD_PLAYLIST_SAVE = "save";
 
+    public static final String MPD_CMD_PLAYLIST_SEARCH = "playlistsearch";
+
     public static final String MPD_CMD_PLAYLIST_SHUFFLE = "shuffle";
 
     public static final String MPD_CMD_PLAYLIST_SWAP = "swap";
 
     public static final String MPD_CMD_PLAYLIST_SWAP_ID = "swapid";
 
+    /**
+     * The playlist length from which only a window of the playlist is kept, see
+     * {@link #isWindowed()}. The whole playlist is kept again once it is less than half this
+     * length, so a playlist around this length does not flip between the two.
+     */
+    public static final int WINDOW_THRESHOLD = 4096;
+
     private static final boolean DEBUG = false;
 
     private static final String TAG = "MPDPlaylist";
@@ -78,6 +95,10 @@ public class MPDPlaylist {
 
     private final MusicList mList;
 
+    private final MusicWindow mWindow;
+
+    private volatile boolean mIsWindowed;
+
     private int mLastPlaylistVersion = -1;
 
     /**
@@ -87,6 +108,7 @@ public class MPDPlaylist {
         super();
 
         mList = new MusicList();
+        mWindow = new MusicWindow();
         mConnection = mpdConnection;
     }
 
@@ -188,15 +210,83 @@ public class MPDPlaylist {
         mConnection.sendCommand(clearCommand());
     }
 
+    /**
+     * Reads the {@code Music} of a range of positions from the media server, if it is not kept
+     * already. This does nothing unless the playlist is windowed, as every position is kept
+     * otherwise.
+     *
+     * @param start The first position of the range.
+     * @param end   The position following the last one of the range.
+     * @throws IOException  Thrown upon a communication error with the server.
+     * @throws MPDException Thrown if an error occurs as a result of command execution.
+     * @see #isWindowed()
+     */
+    public void fetchWindow(final int start, final int end) throws IOException, MPDException {
+        if (mIsWindowed) {
+            fetchWindowRange(start, end);
+        }
+    }
+
+    /**
+     * Reads the {@code Music} of the pages of a range of positions not kept in the window.
+     *
+     * @param start The first position of the range.
+     * @param end   The position following the last one of the range.
+     * @throws IOException  Thrown upon a communication error with the server.
+     * @throws MPDException Thrown if an error occurs as a result of command execution.
+     */
+    private void fetchWindowRange(final int start, final int end)
+            throws IOException, MPDException {
+        final int generation = mWindow.getGeneration();
+        final int size = mWindow.size();
+        final int limit = Math.min(end, size);
+        int pageIndex = Math.max(start, 0) / MusicWindow.PAGE_SIZE;
+        /** Reading more pages than are kept would drop the first ones read. */
+        final int lastPage = Math.min((limit - 1) / MusicWindow.PAGE_SIZE,
+                pageIndex + MusicWindow.MAX_PAGES - 1);
+
+        /** Read each run of missing pages with a single command. */
+        while (pageIndex * MusicWindow.PAGE_SIZE < limit && pageIndex <= lastPage) {
+            if (mWindow.isKept(pageIndex)) {
+                pageIndex++;
+            } else {
+                final int runStart = pageIndex;
+
+                while (pageIndex <= lastPage && !mWindow.isKept(pageIndex)) {
+                    pageIndex++;
+                }
+
+                final int rangeEnd = Math.min(pageIndex * MusicWindow.PAGE_SIZE, size);
+                final MPDCommand command = new MPDCommand(MPD_CMD_PLAYLIST_RANGE,
+                        runStart * MusicWindow.PAGE_SIZE + ":" + rangeEnd);
+
+                if (!mWindow.put(Music.getMusicFromList(mConnection, command, false),
+                        generation)) {
+                    break;
+                }
+            }
+        }
+    }
+
     /**
      * Retrieves music at position index in playlist. Operates on local copy of
      * playlist, may not reflect server's current playlist.
      *
      * @param index position.
-     * @return music at position index.
+     * @return music at position index, {@code null} if the playlist is windowed and the position
+     * is not kept.
+     * @see #fetchWindow(int, int)
      */
     public Music getByIndex(final int index) {
-        return mList.getByIndex(index);
+        final Music music;
+
+        if (mIsWindowed) {
+            music = mWindow.getByIndex(index);
+        } else {
+            music = mList.getByIndex(index);
+        }
+
+        return music;
     }
 
     /**
@@ -207,18 +297,65 @@ public class MPDPlaylist {
      * @throws MPDException Thrown if an error occurs as a result of command execution.
      */
     private Collection<Music> getFullPlaylist() throws IOException, MPDException {
-        final List<String> response = mConnection.sendCommand(MPD_CMD_PLAYLIST_LIST);
-        return Music.getMusicFromList(response, false);
+        final MPDCommand command = new MPDCommand(MPD_CMD_PLAYLIST_LIST);
+
+        return Music.getMusicFromList(mConnection, command, false);
     }
 
     /**
      * Retrieves all songs as an {@code List} of {@code Music}.
      *
-     * @return all songs as an {@code List} of {@code Music}.
+     * @return all songs as an {@code List} of {@code Music}, only the songs kept if the playlist
+     * is windowed.
      * @see Music
      */
     public List<Music> getMusicList() {
-        return mList.getMusic();
+        final List<Music> musicList;
+
+        if (mIsWindowed) {
+            musicList = mWindow.getMusic();
+        } else {
+            musicList = mList.getMusic();
+        }
+
+        return musicList;
+    }
+
+    /**
+     * Retrieves the songId at a position in playlist, whether the song at that position is kept
+     * or not. Operates on local copy of playlist, may not reflect server's current playlist.
+     *
+     * @param index position.
+     * @return The songId at the position, -1 if there is none.
+     */
+    public int getSongId(final int index) {
+        final int songId;
+
+        if (mIsWindowed) {
+            songId = mWindow.getSongId(index);
+        } else {
+            final Music music = mList.getByIndex(index);
+
+            if (music == null) {
+                songId = -1;
+            } else {
+                songId = music.getSongId();
+            }
+        }
+
+        return songId;
+    }
+
+    /**
+     * Checks whether only a window of the playlist is kept, as is done once it reaches
+     * {@link #WINDOW_THRESHOLD} length. The songIds of every position are kept then, but the
+     * {@code Music} is only kept for the positions around the current song and the ones last
+     * read with {@link #fetchWindow(int, int)}, in a bounded number of pages.
+     *
+     * @return True if the playlist is windowed, false if it is kept whole.
+     */
+    public boolean isWindowed() {
+        return mIsWindowed;
     }
 
     /**
@@ -281,9 +418,43 @@ public class MPDPlaylist {
         }
     }
 
+    /**
+     * Keeps the pages of the current and next song in the window once either of them changed,
+     * as the window is otherwise only refreshed upon playlist changes. This does nothing unless
+     * the playlist is windowed.
+     *
+     * @param mpdStatus A current {@code MPDStatus} object.
+     * @throws IOException  Thrown upon a communication error with the server.
+     * @throws MPDException Thrown if an error occurs as a result of command execution.
+     */
+    void onTrackChanged(final MPDStatus mpdStatus) throws IOException, MPDException {
+        synchronized (mList) {
+            if (mIsWindowed) {
+                pinWindow(mpdStatus);
+            }
+        }
+    }
+
+    /**
+     * Pins the pages of the current and next song in the window, reading them if they are not
+     * kept.
+     *
+     * @param mpdStatus A current {@code MPDStatus} object.
+     * @throws IOException  Thrown upon a communication error with the server.
+     * @throws MPDException Thrown if an error occurs as a result of command execution.
+     */
+    private void pinWindow(final MPDStatus mpdStatus) throws IOException, MPDException {
+        mWindow.pin(mpdStatus.getSongPos(), mpdStatus.getNextSongPos());
+        for (final int songPos : new int[]{mpdStatus.getSongPos(), mpdStatus.getNextSongPos()}) {
+            if (songPos >= 0) {
+                fetchWindowRange(songPos, songPos + 1);
+            }
+        }
+    }
+
     /**
      * Reloads the playlist content. This is the only place the {@link org.a0z.mpd.MusicList}
-     * should be modified.
+     * should be modified, or replaced by a {@link MusicWindow} for a very long playlist.
      *
      * @param mpdStatus A current {@code MPDStatus} object.
      * @throws IOException  Thrown upon a communication error with the server.
@@ -293,14 +464,30 @@ public class MPDPlaylist {
         /** Synchronize this block to make sure the playlist version stays coherent. */
         synchronized (mList) {
             final int newPlaylistVersion = mpdStatus.getPlaylistVersion();
+            final int playlistLength = mpdStatus.getPlaylistLength();
 
-            if (mLastPlaylistVersion == -1 || mList.size() == 0) {
+            if (mIsWindowed && playlistLength < WINDOW_THRESHOLD / 2) {
+                mList.replace(getFullPlaylist());
+                mIsWindowed = false;
+                mWindow.clear();
+            } else if (mIsWindowed || playlistLength >= WINDOW_THRESHOLD) {
+                if (!mIsWindowed) {
+                    mLastPlaylistVersion = -1;
+                }
+                refreshWindow(mpdStatus);
+
+                /** The window is filled before it is published. */
+                if (!mIsWindowed) {
+                    mIsWindowed = true;
+                    mList.replace(Collections.<Music>emptyList());
+                }
+            } else if (mLastPlaylistVersion == -1 || mList.size() == 0) {
                 mList.replace(getFullPlaylist());
             } else if (mLastPlaylistVersion != newPlaylistVersion) {
-                final List<String> response =
-                        mConnection.sendCommand(MPD_CMD_PLAYLIST_CHANGES,
-                                Integer.toString(mLastPlaylistVersion));
-                final Collection<Music> changes = Music.getMusicFromList(response, false);
+                final MPDCommand command = new MPDCommand(MPD_CMD_PLAYLIST_CHANGES,
+                        Integer.toString(mLastPlaylistVersion));
+                final Collection<Music> changes =
+                        Music.getMusicFromList(mConnection, command, false);
 
                 try {
                     mList.manipulate(changes, mpdStatus.getPlaylistLength());
@@ -314,6 +501,34 @@ public class MPDPlaylist {
         }
     }
 
+    /**
+     * Reloads the window content, the songIds from the {@code plchangesposid} command, then the
+     * pages around the current and next song.
+     *
+     * @param mpdStatus A current {@code MPDStatus} object.
+     * @throws IOException  Thrown upon a communication error with the server.
+     * @throws MPDException Thrown if an error occurs as a result of command execution.
+     */
+    private void refreshWindow(final MPDStatus mpdStatus) throws IOException, MPDException {
+        final int newPlaylistVersion = mpdStatus.getPlaylistVersion();
+        final int playlistLength = mpdStatus.getPlaylistLength();
+
+        if (mLastPlaylistVersion == -1) {
+            mWindow.clear();
+            updateWindow(0, playlistLength);
+        } else if (mLastPlaylistVersion != newPlaylistVersion) {
+            try {
+                updateWindow(mLastPlaylistVersion, playlistLength);
+            } catch (final IllegalStateException e) {
+                Log.error(TAG, "Partial window update failed, running full update.", e);
+                mWindow.clear();
+                updateWindow(0, playlistLength);
+            }
+        }
+
+        pinWindow(mpdStatus);
+    }
+
     /**
      * Removes album of given ID from playlist.
      *
@@ -329,18 +544,27 @@ public class MPDPlaylist {
         int num = 0;
         boolean usingAlbumArtist = true;
 
-        synchronized (mList) {
-            for (final Music song : mList) {
-                if (song.getSongId() == songId) {
-                    artist = song.getAlbumArtist();
-                    if (artist == null || artist.isEmpty()) {
-                        usingAlbumArtist = false;
-                        artist = song.getArtist();
-                    }
-                    album = song.getAlbum();
-                    break;
-                }
+        final Music song;
+        if (mIsWindowed) {
+            final MPDCommand command =
+                    new MPDCommand(MPD_CMD_PLAYLIST_LIST, Integer.toString(songId));
+            final List<Music> songs = Music.getMusicFromList(mConnection, command, false);
+
+            if (songs.isEmpty()) {
+                song = null;
+            } else {
+                song = songs.get(0);
             }
+        } else {
+            song = mList.getById(songId);
+        }
+        if (song != null) {
+            artist = song.getAlbumArtist();
+            if (artist == null || artist.isEmpty()) {
+                usingAlbumArtist = false;
+                artist = song.getArtist();
+            }
+            album = song.getAlbum();
         }
 
         if (artist != null && album != null) {
@@ -349,8 +573,23 @@ public class MPDPlaylist {
             }
             final CommandQueue commandQueue = new CommandQueue();
 
-            /** Don't allow the list to change before we've computed the CommandList. */
-            synchronized (mList) {
+            if (mIsWindowed) {
+                /** The window does not keep every song, let the media server find them. */
+                final String artistType;
+                if (usingAlbumArtist) {
+                    artistType = MPDCommand.MPD_TAG_ALBUM_ARTIST;
+                } else {
+                    artistType = MPDCommand.MPD_TAG_ARTIST;
+                }
+                final MPDCommand command = new MPDCommand(MPD_CMD_PLAYLIST_FIND,
+                        MPDCommand.MPD_TAG_ALBUM, album, artistType, artist);
+
+                for (final String songID : Tools.parseResponse(mConnection, command, "Id")) {
+                    commandQueue.add(MPD_CMD_PLAYLIST_REMOVE_ID, songID);
+                    num++;
+                }
+            } else {
+                /** This iterates over a snapshot, the list won't change under the CommandList. */
                 for (final Music track : mList) {
                     if (album.equals(track.getAlbum())) {
                         final boolean songIsAlbumArtist =
@@ -457,6 +696,20 @@ public class MPDPlaylist {
         mConnection.sendCommand(MPD_CMD_PLAYLIST_SHUFFLE);
     }
 
+    /**
+     * Searches the playlist on the media server, for songs with any tag containing a value.
+     *
+     * @param needle The value to search for, case insensitively.
+     * @return The songs found, with their position, in positional order.
+     * @throws IOException  Thrown upon a communication error with the server.
+     * @throws MPDException Thrown if an error occurs as a result of command execution.
+     */
+    public List<Music> search(final String needle) throws IOException, MPDException {
+        final MPDCommand command = new MPDCommand(MPD_CMD_PLAYLIST_SEARCH, "any", needle);
+
+        return Music.getMusicFromList(mConnection, command, false);
+    }
+
     /**
      * Retrieves playlist size. Operates on local copy of playlist, may not
      * reflect server's current playlist.
@@ -464,7 +717,15 @@ public class MPDPlaylist {
      * @return playlist size.
      */
     public int size() {
-        return mList.size();
+        final int size;
+
+        if (mIsWindowed) {
+            size = mWindow.size();
+        } else {
+            size = mList.size();
+        }
+
+        return size;
     }
 
     /**
@@ -501,13 +762,67 @@ public class MPDPlaylist {
      */
     public String toString() {
         final StringBuilder stringBuilder = new StringBuilder();
-        synchronized (mList) {
-            for (final Music music : mList) {
-                stringBuilder.append(music);
-                stringBuilder.append(MPDCommand.MPD_CMD_NEWLINE);
-            }
+        for (final Music music : getMusicList()) {
+            stringBuilder.append(music);
+            stringBuilder.append(MPDCommand.MPD_CMD_NEWLINE);
         }
         return stringBuilder.toString();
     }
 
+    /**
+     * Applies the songIds changed since a playlist version to the window.
+     *
+     * @param playlistVersion The playlist version to read the changes from, 0 for every position.
+     * @param playlistLength  The length of the resulting playlist.
+     * @throws IOException  Thrown upon a communication error with the server.
+     * @throws MPDException Thrown if an error occurs as a result of command execution.
+     */
+    private void updateWindow(final int playlistVersion, final int playlistLength)
+            throws IOException, MPDException {
+        final MPDCommand command = new MPDCommand(MPD_CMD_PLAYLIST_CHANGES_POSITIONS,
+                Integer.toString(playlistVersion));
+        final PositionsHandler handler = new PositionsHandler();
+
+        mConnection.sendCommand(command, handler);
+        mWindow.apply(handler.mPositions, handler.mSongIds, handler.mCount, playlistLength);
+    }
+
+    /**
+     * This class collects a streamed {@code plchangesposid} response in two primitive arrays,
+     * as it may hold an entry for each position of a very long playlist.
+     */
+    private static final class PositionsHandler implements ResponseHandler {
+
+        private int mCount;
+
+        private int[] mPositions = new int[16];
+
+        private int[] mSongIds = new int[16];
+
+        PositionsHandler() {
+            super();
+        }
+
+        @Override
+        public void onResponse(final String key, final String value) {
+            switch (key) {
+                case "cpos":
+                    if (mCount == mPositions.length) {
+                        mPositions = Arrays.copyOf(mPositions, mCount << 1);
+                        mSongIds = Arrays.copyOf(mSongIds, mCount << 1);
+                    }
+                    mPositions[mCount] = Integer.parseInt(value);
+                    mSongIds[mCount] = -1;
+                    mCount++;
+                    break;
+                case "Id":
+                    if (mCount > 0) {
+                        mSongIds[mCount - 1] = Integer.parseInt(value);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
 }
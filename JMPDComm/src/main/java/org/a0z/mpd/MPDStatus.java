@@ -28,7 +28,7 @@
 package org.a0z.mpd;
 
 import java.util.Collection;
-import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 import static org.a0z.mpd.Tools.KEY;
 import static org.a0z.mpd.Tools.VALUE;
@@ -116,6 +116,7 @@ public class MPDStatus {
 
     private long mTotalTime;
 
+    /** The {@link System#nanoTime()} this status was received at. */
     private long mUpdateTime;
 
     private boolean mUpdating;
@@ -138,6 +139,42 @@ public class MPDStatus {
         mVolume = 0;
     }
 
+    /**
+     * Copies a status, as a snapshot which is not updated with the status it was copied from.
+     *
+     * @param status The status to copy.
+     */
+    MPDStatus(final MPDStatus status) {
+        super();
+
+        mBitRate = status.mBitRate;
+        mBitsPerSample = status.mBitsPerSample;
+        mChannels = status.mChannels;
+        mConsume = status.mConsume;
+        mCrossFade = status.mCrossFade;
+        mElapsedTime = status.mElapsedTime;
+        mElapsedTimeHighResolution = status.mElapsedTimeHighResolution;
+        mError = status.mError;
+        mMixRampDB = status.mMixRampDB;
+        mMixRampDelay = status.mMixRampDelay;
+        mMixRampDisabled = status.mMixRampDisabled;
+        mNextSong = status.mNextSong;
+        mNextSongId = status.mNextSongId;
+        mPlaylistLength = status.mPlaylistLength;
+        mPlaylistVersion = status.mPlaylistVersion;
+        mRandom = status.mRandom;
+        mRepeat = status.mRepeat;
+        mSampleRate = status.mSampleRate;
+        mSingle = status.mSingle;
+        mSong = status.mSong;
+        mSongId = status.mSongId;
+        mState = status.mState;
+        mTotalTime = status.mTotalTime;
+        mUpdateTime = status.mUpdateTime;
+        mUpdating = status.mUpdating;
+        mVolume = status.mVolume;
+    }
+
     /**
      * Retrieves current track bitrate.
      *
@@ -185,7 +222,8 @@ public class MPDStatus {
 
         if (isState(STATE_PLAYING)) {
             /** We can't expect to always update right before this is called. */
-            final long sinceUpdated = (new Date().getTime() - mUpdateTime) / 1000;
+            final long sinceUpdated =
+                    TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - mUpdateTime);
 
             result = sinceUpdated + mElapsedTime;
         } else {
@@ -195,6 +233,15 @@ public class MPDStatus {
         return result;
     }
 
+    /**
+     * Retrieves the track elapsed time as received, for the {@link TrackPositionClock}.
+     *
+     * @return The elapsed time for the current track, in seconds, when this status was received.
+     */
+    long getElapsedTimeAtUpdate() {
+        return mElapsedTime;
+    }
+
     /**
      * Retrieves current track time with a higher resolution.
      *
@@ -293,6 +340,15 @@ public class MPDStatus {
         return mTotalTime;
     }
 
+    /**
+     * Retrieves the time this status was received at, for the {@link TrackPositionClock}.
+     *
+     * @return The {@link System#nanoTime()} this status was received at.
+     */
+    long getUpdateTime() {
+        return mUpdateTime;
+    }
+
     /**
      * Retrieves volume (0-100).
      *
@@ -430,6 +486,7 @@ public class MPDStatus {
      */
     public final void updateStatus(final Collection<String> response) {
         resetValues();
+        mUpdateTime = System.nanoTime();
 
         for (final String[] pair : Tools.splitResponse(response)) {
 
@@ -531,7 +588,6 @@ public class MPDStatus {
 
                     mElapsedTime = Long.parseLong(pair[VALUE].substring(0, timeIndex));
                     mTotalTime = Long.parseLong(pair[VALUE].substring(timeIndex + 1));
-                    mUpdateTime = new Date().getTime();
                     break;
                 case "volume":
                     mVolume = Integer.parseInt(pair[VALUE]);
@@ -28,6 +28,8 @@
 package org.a0z.mpd;
 
 import org.a0z.mpd.connection.MPDConnection;
+import org.a0z.mpd.event.StatusChangeEvent;
+import org.a0z.mpd.event.StatusChangeEventListener;
 import org.a0z.mpd.event.StatusChangeListener;
 import org.a0z.mpd.event.TrackPositionListener;
 import org.a0z.mpd.exception.MPDException;
@@ -38,7 +40,9 @@ import java.util.List;
 import java.util.Queue;
 
 /**
- * Monitors MPD Server and sends events on status changes.
+ * Monitors MPD Server and sends events on status changes. The changes seen in one idle cycle are
+ * sent as one {@link StatusChangeEvent}, which {@link StatusChangeListener}s and
+ * {@link TrackPositionListener}s get as a call per change.
  */
 public class MPDStatusMonitor extends Thread {
 
@@ -83,6 +87,8 @@ public class MPDStatusMonitor extends Thread {
 
     private final MPD mMPD;
 
+    private final Queue<StatusChangeEventListener> mStatusChangeEventListeners;
+
     private final Queue<StatusChangeListener> mStatusChangeListeners;
 
     private final String[] mSupportedSubsystems;
@@ -104,11 +110,21 @@ public class MPDStatusMonitor extends Thread {
         mMPD = mpd;
         mDelay = delay;
         mGiveup = false;
+        mStatusChangeEventListeners = new LinkedList<>();
         mStatusChangeListeners = new LinkedList<>();
         mTrackPositionListeners = new LinkedList<>();
         mSupportedSubsystems = supportedSubsystems.clone();
     }
 
+    /**
+     * Adds a {@code StatusChangeEventListener}.
+     *
+     * @param listener a {@code StatusChangeEventListener}.
+     */
+    public void addStatusChangeEventListener(final StatusChangeEventListener listener) {
+        mStatusChangeEventListeners.add(listener);
+    }
+
     /**
      * Adds a {@code StatusChangeListener}.
      *
@@ -127,6 +143,27 @@ public class MPDStatusMonitor extends Thread {
         mTrackPositionListeners.add(listener);
     }
 
+    /**
+     * Sends the changes of an idle cycle to the listeners.
+     *
+     * @param event The changes of the idle cycle.
+     */
+    private void dispatch(final StatusChangeEvent event) {
+        if (DEBUG) {
+            Log.debug(TAG, "Status changed: " + event);
+        }
+
+        for (final StatusChangeEventListener listener : mStatusChangeEventListeners) {
+            listener.statusChanged(event);
+        }
+        for (final StatusChangeListener listener : mStatusChangeListeners) {
+            event.dispatch(listener);
+        }
+        for (final TrackPositionListener listener : mTrackPositionListeners) {
+            event.dispatch(listener);
+        }
+    }
+
     /**
      * Gracefully terminate tread.
      */
@@ -144,10 +181,10 @@ public class MPDStatusMonitor extends Thread {
     @Override
     public void run() {
         // initialize value cache
+        int oldNextSong = -1;
         int oldSong = -1;
         int oldSongId = -1;
         int oldPlaylistVersion = -1;
-        long oldElapsedTime = -1L;
         int oldState = MPDStatus.STATE_UNKNOWN;
         int oldVolume = -1;
         boolean oldUpdating = false;
@@ -159,15 +196,24 @@ public class MPDStatusMonitor extends Thread {
         /** Objects to keep cached in {@link MPD} */
         final MPDStatus status = mMPD.getStatus();
         final MPDPlaylist playlist = mMPD.getPlaylist();
+        final TrackPositionClock positionClock = mMPD.getTrackPositionClock();
 
         while (!mGiveup) {
             Boolean connectionState = Boolean.valueOf(mMPD.isConnected());
             boolean connectionStateChanged = false;
+            final boolean wasConnectionLost = connectionLost;
+            boolean dbChanged = false;
+            /** The {@link StatusChangeEvent} changes of this idle cycle. */
+            int changed = 0;
+
+            /** The previous values, as they are updated along the way. */
+            final int previousPlaylistVersion = oldPlaylistVersion;
+            final int previousSong = oldSong;
+            final int previousState = oldState;
+            final int previousVolume = oldVolume;
 
             if (connectionLost || oldConnectionState != connectionState) {
-                for (final StatusChangeListener listener : mStatusChangeListeners) {
-                    listener.connectionStateChanged(connectionState.booleanValue(), connectionLost);
-                }
+                changed |= StatusChangeEvent.CHANGED_CONNECTION;
 
                 if (mMPD.isConnected()) {
                     try {
@@ -177,6 +223,8 @@ public class MPDStatusMonitor extends Thread {
                     } catch (final IOException | MPDException e) {
                         Log.error(TAG, "Failed to force a status update.", e);
                     }
+                } else {
+                    positionClock.reset();
                 }
 
                 connectionLost = false;
@@ -187,12 +235,14 @@ public class MPDStatusMonitor extends Thread {
             if (connectionState.equals(Boolean.TRUE)) {
                 // playlist
                 try {
-                    boolean dbChanged = false;
+                    boolean playerChanged = false;
                     boolean statusChanged = false;
                     boolean stickerChanged = false;
 
                     if (connectionStateChanged) {
-                        dbChanged = statusChanged = true;
+                        /** Sticker changes may have been missed while disconnected. */
+                        mMPD.getStickerManager().invalidate();
+                        dbChanged = playerChanged = statusChanged = true;
                     } else {
                         final List<String> changes = waitForChanges();
 
@@ -202,23 +252,25 @@ public class MPDStatusMonitor extends Thread {
                             switch (change.substring("changed: ".length())) {
                                 case "database":
                                     mMPD.updateStatistics();
+                                    mMPD.getStickerManager().invalidate();
                                     dbChanged = true;
                                     statusChanged = true;
                                     break;
+                                case "player":
+                                    playerChanged = true;
+                                    statusChanged = true;
+                                    break;
                                 case "playlist":
                                     statusChanged = true;
                                     break;
                                 case "sticker":
+                                    mMPD.getStickerManager().invalidate();
                                     stickerChanged = true;
                                     break;
                                 default:
                                     statusChanged = true;
                                     break;
                             }
-
-                            if (dbChanged && statusChanged) {
-                                break;
-                            }
                         }
                     }
 
@@ -228,9 +280,7 @@ public class MPDStatusMonitor extends Thread {
                                 || (oldPlaylistVersion != status.getPlaylistVersion() && status
                                 .getPlaylistVersion() != -1)) {
                             playlist.refresh(status);
-                            for (final StatusChangeListener listener : mStatusChangeListeners) {
-                                listener.playlistChanged(status, oldPlaylistVersion);
-                            }
+                            changed |= StatusChangeEvent.CHANGED_PLAYLIST;
                             oldPlaylistVersion = status.getPlaylistVersion();
                         }
 
@@ -240,59 +290,62 @@ public class MPDStatusMonitor extends Thread {
                          * would never iterate without manual user playlist queue intervention and
                          * trackChanged() would never be called.
                          */
-                        if (connectionStateChanged || oldSongId != status.getSongId()) {
-                            for (final StatusChangeListener listener : mStatusChangeListeners) {
-                                listener.trackChanged(status, oldSong);
-                            }
+                        final boolean isTrackChanged =
+                                connectionStateChanged || oldSongId != status.getSongId();
+
+                        /**
+                         * A windowed playlist is only refreshed upon playlist changes, its pages
+                         * of the current and next song have to follow the track before the
+                         * listeners ask for the song.
+                         */
+                        if (isTrackChanged || oldNextSong != status.getNextSongPos()) {
+                            playlist.onTrackChanged(status);
+                            oldNextSong = status.getNextSongPos();
+                        }
+
+                        if (isTrackChanged) {
+                            changed |= StatusChangeEvent.CHANGED_TRACK;
                             oldSong = status.getSongPos();
                             oldSongId = status.getSongId();
                         }
 
                         // time
-                        if (connectionStateChanged || oldElapsedTime != status.getElapsedTime()) {
-                            for (final TrackPositionListener listener : mTrackPositionListeners) {
-                                listener.trackPositionChanged(status);
-                            }
-                            oldElapsedTime = status.getElapsedTime();
+                        /**
+                         * The position only jumps on player changes, in between the clock keeps
+                         * it, so the listeners are only told of seeks, track and state changes.
+                         */
+                        if (playerChanged && positionClock.sync(status)
+                                || connectionStateChanged) {
+                            changed |= StatusChangeEvent.CHANGED_TRACK_POSITION;
                         }
 
                         // state
                         if (connectionStateChanged || !status.isState(oldState)) {
-                            for (final StatusChangeListener listener : mStatusChangeListeners) {
-                                listener.stateChanged(status, oldState);
-                            }
+                            changed |= StatusChangeEvent.CHANGED_STATE;
                             oldState = status.getState();
                         }
 
                         // volume
                         if (connectionStateChanged || oldVolume != status.getVolume()) {
-                            for (final StatusChangeListener listener : mStatusChangeListeners) {
-                                listener.volumeChanged(status, oldVolume);
-                            }
+                            changed |= StatusChangeEvent.CHANGED_VOLUME;
                             oldVolume = status.getVolume();
                         }
 
                         // repeat
                         if (connectionStateChanged || oldRepeat != status.isRepeat()) {
-                            for (final StatusChangeListener listener : mStatusChangeListeners) {
-                                listener.repeatChanged(status.isRepeat());
-                            }
+                            changed |= StatusChangeEvent.CHANGED_REPEAT;
                             oldRepeat = status.isRepeat();
                         }
 
-                        // volume
+                        // random
                         if (connectionStateChanged || oldRandom != status.isRandom()) {
-                            for (final StatusChangeListener listener : mStatusChangeListeners) {
-                                listener.randomChanged(status.isRandom());
-                            }
+                            changed |= StatusChangeEvent.CHANGED_RANDOM;
                             oldRandom = status.isRandom();
                         }
 
                         // update database
                         if (connectionStateChanged || oldUpdating != status.isUpdating()) {
-                            for (final StatusChangeListener listener : mStatusChangeListeners) {
-                                listener.libraryStateChanged(status.isUpdating(), dbChanged);
-                            }
+                            changed |= StatusChangeEvent.CHANGED_LIBRARY_STATE;
                             oldUpdating = status.isUpdating();
                         }
                     }
@@ -301,9 +354,7 @@ public class MPDStatusMonitor extends Thread {
                         if (DEBUG) {
                             Log.debug(TAG, "Sticker changed");
                         }
-                        for (final StatusChangeListener listener : mStatusChangeListeners) {
-                            listener.stickerChanged(status);
-                        }
+                        changed |= StatusChangeEvent.CHANGED_STICKER;
                     }
                 } catch (final IOException e) {
                     // connection lost
@@ -317,6 +368,12 @@ public class MPDStatusMonitor extends Thread {
                 }
             }
 
+            if (changed != 0) {
+                dispatch(new StatusChangeEvent(new MPDStatus(status), changed,
+                        oldConnectionState, wasConnectionLost, dbChanged, previousPlaylistVersion,
+                        previousSong, previousState, previousVolume));
+            }
+
             try {
                 synchronized (this) {
                     if (!mMPD.isConnected()) {
@@ -29,7 +29,7 @@ package org.a0z.mpd;
 
 import org.a0z.mpd.item.Music;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
@@ -40,73 +40,29 @@ import java.util.List;
  */
 
 /**
- * These lists store the internal structure store of the playlist. All modifications are
- * synchronized, iterating over the list will still require manual locking.
+ * These lists store the internal structure store of the playlist. The store is copy on write:
+ * every modification builds a new {@link Snapshot} and publishes it at once, so reading never
+ * requires locking, and a list retrieved from this object never changes.
  */
 final class MusicList implements Iterable<Music> {
 
     /** The debug flag, change to true for debugging log output. */
     private static final boolean DEBUG = false;
 
+    /** The songId stored for a position without {@code Music}. */
+    private static final int NO_SONG_ID = -1;
+
     /** The debug log identifier. */
     private static final String TAG = "MusicList";
 
-    /** The playlist store in positional order. */
-    private final List<Music> mList;
+    /** The lock held while modifying the store, readers never hold it. */
+    private final Object mLock = new Object();
 
-    /** A list of songIDs in songPos order. */
-    private final List<Integer> mSongID;
+    /** The current contents of the store. */
+    private volatile Snapshot mSnapshot = new Snapshot(new Music[0], new int[0]);
 
     MusicList() {
         super();
-
-        mList = Collections.synchronizedList(new ArrayList<Music>());
-        mSongID = Collections.synchronizedList(new ArrayList<Integer>());
-    }
-
-    /**
-     * Adds music to {@code MusicList}.
-     *
-     * @param music music to be added.
-     */
-    private void add(final Music music) {
-        synchronized (mList) {
-            final int songPos = music.getPos();
-
-            if (DEBUG) {
-                Log.debug(TAG, "listSize: " + mList.size() + " songPos: " + songPos);
-            }
-            if (mList.size() == songPos) {
-                if (DEBUG) {
-                    Log.debug(TAG, "Adding music to the end");
-                }
-                mList.add(music);
-                mSongID.add(music.getSongId());
-            } else {
-                if (DEBUG) {
-                    Log.debug(TAG,
-                            "Adding beyond the end, or setting within the current playlist.");
-                }
-                /**
-                 * Grow the list to the size of the songPos, THEN set it to the position necessary.
-                 * The while loop shouldn't be necessary at all, unless, the result response is out
-                 * of positional order.
-                 */
-                while (mList.size() <= songPos) {
-                    mList.add(null);
-                    mSongID.add(null);
-                }
-
-                if (songPos == -1) {
-                    throw new IllegalStateException("Media server protocol error: songPos not " +
-                            "included with the playlist changes included with the following " +
-                            "music. Path:" + music.getFullPath() + " Name: " + music.getName());
-                }
-
-                mList.set(songPos, music);
-                mSongID.set(songPos, music.getSongId());
-            }
-        }
     }
 
     /**
@@ -117,9 +73,15 @@ final class MusicList implements Iterable<Music> {
      * present on this {@code MusicList}.
      */
     Music getById(final int songId) {
-        final int songPos = Integer.valueOf(mSongID.indexOf(songId));
+        final Snapshot snapshot = mSnapshot;
+        final int songPos = snapshot.mPositions.get(songId);
+        Music result = null;
+
+        if (songPos != -1) {
+            result = snapshot.mMusic[songPos];
+        }
 
-        return mList.get(songPos);
+        return result;
     }
 
     /**
@@ -130,10 +92,11 @@ final class MusicList implements Iterable<Music> {
      * present on this {@code MusicList}.
      */
     Music getByIndex(final int index) {
+        final Music[] music = mSnapshot.mMusic;
         Music result = null;
 
-        if (index >= 0 && mList.size() > index) {
-            result = mList.get(index);
+        if (index >= 0 && music.length > index) {
+            result = music[index];
         }
 
         return result;
@@ -145,7 +108,7 @@ final class MusicList implements Iterable<Music> {
      * @return Retrieves a List containing all {@code Music} objects from this {@code MusicList}.
      */
     List<Music> getMusic() {
-        return Collections.unmodifiableList(mList);
+        return Collections.unmodifiableList(Arrays.asList(mSnapshot.mMusic));
     }
 
     /**
@@ -155,43 +118,73 @@ final class MusicList implements Iterable<Music> {
      */
     @Override
     public Iterator<Music> iterator() {
-        return mList.iterator();
+        return getMusic().iterator();
     }
 
     /**
-     * Modifies the list to reflect the changes coming in from the {@code playlist}. Lock to an
-     * object prior to running this method.
+     * Modifies the list to reflect the changes coming in from the {@code playlist}. The changes
+     * are only published if they are consistent with the size of the resulting list.
      *
      * @param musicList    The changes to make to the backing stores.
      * @param listCapacity The size of the resulting list.
      */
     void manipulate(final Iterable<Music> musicList, final int listCapacity) {
-        for (final Music music : musicList) {
+        synchronized (mLock) {
+            final Snapshot snapshot = mSnapshot;
+            int listSize = snapshot.mMusic.length;
+            Music[] music = Arrays.copyOf(snapshot.mMusic, Math.max(listSize, listCapacity));
+            int[] songIds = Arrays.copyOf(snapshot.mSongIds, music.length);
+
+            if (listSize < music.length) {
+                Arrays.fill(songIds, listSize, songIds.length, NO_SONG_ID);
+            }
+
+            for (final Music track : musicList) {
+                final int songPos = track.getPos();
+
+                if (songPos == -1) {
+                    throw new IllegalStateException("Media server protocol error: songPos not " +
+                            "included with the playlist changes included with the following " +
+                            "music. Path:" + track.getFullPath() + " Name: " + track.getName());
+                }
+
+                /**
+                 * Growing past the size of the resulting list shouldn't be necessary at all,
+                 * unless, the result response is out of positional order.
+                 */
+                if (songPos >= music.length) {
+                    final int oldLength = songIds.length;
+                    final int newLength = Math.max(songPos + 1, oldLength + (oldLength >> 1));
+
+                    music = Arrays.copyOf(music, newLength);
+                    songIds = Arrays.copyOf(songIds, newLength);
+                    Arrays.fill(songIds, oldLength, newLength, NO_SONG_ID);
+                }
+
+                if (DEBUG) {
+                    Log.debug(TAG, "listSize: " + listSize + " songPos: " + songPos);
+                }
+
+                music[songPos] = track;
+                songIds[songPos] = track.getSongId();
+                listSize = Math.max(listSize, songPos + 1);
+            }
+
             /**
-             * Do not remove from either list. it will be removed by range.
+             * Consistency checks and cleanups.
              */
-            add(music);
-        }
-
-        /**
-         * Consistency checks and cleanups.
-         */
-        synchronized (mList) {
-            final int listSize = mList.size();
-            final int songIDSize = mSongID.size();
             if (listSize < listCapacity) {
                 throw new IllegalStateException(
                         "List store: " + listSize + " and playlistLength: " + listCapacity +
                                 " size differs.");
             }
 
-            mList.subList(listCapacity, listSize).clear();
-            mSongID.subList(listCapacity, songIDSize).clear();
-
-            if (songIDSize != listSize) {
-                throw new IllegalStateException("List store: " + listSize +
-                        " and SongID: " + songIDSize + " size differs.");
+            if (music.length != listCapacity) {
+                music = Arrays.copyOf(music, listCapacity);
+                songIds = Arrays.copyOf(songIds, listCapacity);
             }
+
+            mSnapshot = new Snapshot(music, songIds);
         }
     }
 
@@ -201,15 +194,15 @@ final class MusicList implements Iterable<Music> {
      * @param collection The {@code Music} collection to replace the {@code MusicList} with.
      */
     void replace(final Collection<Music> collection) {
+        final Music[] music = collection.toArray(new Music[collection.size()]);
+        final int[] songIds = new int[music.length];
 
-        synchronized (mList) {
-            mList.clear();
-            mList.addAll(collection);
+        for (int i = 0; i < music.length; i++) {
+            songIds[i] = music[i].getSongId();
+        }
 
-            mSongID.clear();
-            for (final Music track : collection) {
-                mSongID.add(track.getSongId());
-            }
+        synchronized (mLock) {
+            mSnapshot = new Snapshot(music, songIds);
         }
     }
 
@@ -219,6 +212,111 @@ final class MusicList implements Iterable<Music> {
      * @return {@code MusicList} size.
      */
     int size() {
-        return mList.size();
+        return mSnapshot.mMusic.length;
+    }
+
+    /**
+     * An open addressing hash map from songId to position, without boxing. It is built once
+     * and never modified.
+     */
+    private static final class PositionMap {
+
+        /** The songIds, at the slots where their position is stored. */
+        private final int[] mKeys;
+
+        /** The slot mask, the number of slots is a power of two. */
+        private final int mMask;
+
+        /** The positions, -1 for an empty slot. */
+        private final int[] mPositions;
+
+        /**
+         * Maps each songId to its position. If a songId is found more than once, the first
+         * position is kept.
+         *
+         * @param songIds The songIds in positional order, {@link #NO_SONG_ID} for none.
+         */
+        PositionMap(final int[] songIds) {
+            super();
+
+            /** Keep the load factor at or below one half. */
+            final int slots = Integer.highestOneBit(Math.max(songIds.length, 1) * 2 - 1) << 1;
+
+            mKeys = new int[slots];
+            mMask = slots - 1;
+            mPositions = new int[slots];
+            Arrays.fill(mPositions, -1);
+
+            for (int songPos = 0; songPos < songIds.length; songPos++) {
+                final int songId = songIds[songPos];
+
+                if (songId != NO_SONG_ID) {
+                    int slot = slot(songId);
+
+                    while (mPositions[slot] != -1 && mKeys[slot] != songId) {
+                        slot = slot + 1 & mMask;
+                    }
+
+                    if (mPositions[slot] == -1) {
+                        mKeys[slot] = songId;
+                        mPositions[slot] = songPos;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Retrieves the position of a songId.
+         *
+         * @param songId The songId to find.
+         * @return The position of the songId, -1 if not found.
+         */
+        int get(final int songId) {
+            int slot = slot(songId);
+            int result = -1;
+
+            while (mPositions[slot] != -1) {
+                if (mKeys[slot] == songId) {
+                    result = mPositions[slot];
+                    break;
+                }
+                slot = slot + 1 & mMask;
+            }
+
+            return result;
+        }
+
+        /**
+         * Spreads the songIds, which are mostly sequential, over the slots.
+         *
+         * @param songId The songId to find the first slot of.
+         * @return The first slot to probe for the songId.
+         */
+        private int slot(final int songId) {
+            final int hash = songId * 0x9E3779B9;
+
+            return (hash ^ hash >>> 16) & mMask;
+        }
+    }
+
+    /** The contents of the store at one point in time, never modified once published. */
+    private static final class Snapshot {
+
+        /** The playlist store in positional order. */
+        private final Music[] mMusic;
+
+        /** The positions by songId. */
+        private final PositionMap mPositions;
+
+        /** The songIds in songPos order, {@link #NO_SONG_ID} for none. */
+        private final int[] mSongIds;
+
+        Snapshot(final Music[] music, final int[] songIds) {
+            super();
+
+            mMusic = music;
+            mSongIds = songIds;
+            mPositions = new PositionMap(songIds);
+        }
     }
 }
@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2004 Felipe Gustavo de Almeida
+ * Copyright (C) 2010-2014 The MPDroid Project
+ *
+ * All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice,this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.a0z.mpd;
+
+import org.a0z.mpd.item.Music;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The store of a playlist too long to be kept whole. Only the songIds are kept for every
+ * position, the {@code Music} is kept for a few pages of positions around the ones asked for,
+ * and the least recently used pages are dropped first, so the memory used stays bounded whatever
+ * the playlist length. The pages of the current and next song are never dropped for others.
+ *
+ * <p>Each change to the songIds starts a new generation, and pages read from the media server
+ * during an older generation are dropped rather than stored, as their positions may have
+ * moved.</p>
+ */
+final class MusicWindow {
+
+    /** The number of pages kept. */
+    static final int MAX_PAGES = 16;
+
+    /** The number of positions in a page. */
+    static final int PAGE_SIZE = 128;
+
+    /** The songId stored for a position without a known song. */
+    private static final int NO_SONG_ID = -1;
+
+    /** The pages of {@code Music}, by page index, in least recently used order. */
+    private final Map<Integer, Music[]> mPages =
+            new LinkedHashMap<Integer, Music[]>(MAX_PAGES, 0.75f, true) {
+                private static final long serialVersionUID = -4094613442932359516L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<Integer, Music[]> eldest) {
+                    if (size() > MAX_PAGES) {
+                        final Iterator<Integer> iterator = keySet().iterator();
+
+                        while (iterator.hasNext()) {
+                            final int pageIndex = iterator.next();
+
+                            if (pageIndex != mPinnedPages[0] && pageIndex != mPinnedPages[1]) {
+                                iterator.remove();
+                                break;
+                            }
+                        }
+                    }
+
+                    return false;
+                }
+            };
+
+    /** The pages of the current and next song, which are not dropped to keep others. */
+    private final int[] mPinnedPages = {-1, -1};
+
+    /** Incremented on each change to the songIds. */
+    private int mGeneration;
+
+    /** The number of positions. */
+    private int mSize;
+
+    /** The songIds in positional order, {@link #NO_SONG_ID} for none. */
+    private int[] mSongIds = new int[0];
+
+    MusicWindow() {
+        super();
+    }
+
+    /**
+     * Modifies the songIds to reflect the changes coming in from the {@code plchangesposid}
+     * command, then drops the pages holding a changed position and the pages past the end of a
+     * shorter playlist. The positions past the end in its last page are left there, unseen, as
+     * they are reported as changed once the playlist grows again.
+     *
+     * @param positions The changed positions.
+     * @param songIds   The songIds at the changed positions.
+     * @param count     The number of changes.
+     * @param length    The length of the resulting playlist.
+     * @throws IllegalStateException If the changes leave a position without a songId.
+     */
+    synchronized void apply(final int[] positions, final int[] songIds, final int count,
+            final int length) {
+        final int oldSize = mSize;
+
+        if (mSongIds.length < length) {
+            mSongIds = Arrays.copyOf(mSongIds, Math.max(length, mSongIds.length * 3 / 2));
+        }
+        if (oldSize < length) {
+            Arrays.fill(mSongIds, oldSize, length, NO_SONG_ID);
+        }
+        mSize = length;
+        mGeneration++;
+
+        if (length < oldSize) {
+            final Iterator<Integer> iterator = mPages.keySet().iterator();
+
+            while (iterator.hasNext()) {
+                if (iterator.next() * PAGE_SIZE >= length) {
+                    iterator.remove();
+                }
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (positions[i] < length) {
+                mSongIds[positions[i]] = songIds[i];
+                mPages.remove(positions[i] / PAGE_SIZE);
+            }
+        }
+
+        for (int songPos = oldSize; songPos < length; songPos++) {
+            if (mSongIds[songPos] == NO_SONG_ID) {
+                throw new IllegalStateException("Window store: position " + songPos +
+                        " of playlistLength: " + length + " was not included in the changes.");
+            }
+        }
+    }
+
+    /** Drops all positions and pages. */
+    synchronized void clear() {
+        mGeneration++;
+        mPages.clear();
+        mSize = 0;
+        mSongIds = new int[0];
+    }
+
+    /**
+     * Retrieves a {@code Music} object by its position on playlist.
+     *
+     * @param index position of the music to be retrieved.
+     * @return a Music with given position or {@code null} if its page is not kept.
+     */
+    synchronized Music getByIndex(final int index) {
+        Music result = null;
+
+        if (index >= 0 && index < mSize) {
+            final Music[] page = mPages.get(index / PAGE_SIZE);
+
+            if (page != null) {
+                result = page[index % PAGE_SIZE];
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Retrieves the generation of the songIds, to store the pages read from it.
+     *
+     * @return The current generation.
+     */
+    synchronized int getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Retrieves the {@code Music} of the pages kept, in positional order, up to the end of the
+     * playlist.
+     *
+     * @return The {@code Music} kept.
+     */
+    synchronized List<Music> getMusic() {
+        final Integer[] pageIndexes = mPages.keySet().toArray(new Integer[mPages.size()]);
+        final List<Music> result = new ArrayList<>(pageIndexes.length * PAGE_SIZE);
+
+        Arrays.sort(pageIndexes);
+        for (final Integer pageIndex : pageIndexes) {
+            final Music[] page = mPages.get(pageIndex);
+            final int end = Math.min(PAGE_SIZE, mSize - pageIndex * PAGE_SIZE);
+
+            for (int i = 0; i < end; i++) {
+                if (page[i] != null) {
+                    result.add(page[i]);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Retrieves a songId by its position on playlist.
+     *
+     * @param index position of the songId to be retrieved.
+     * @return The songId at the position, -1 if there is none.
+     */
+    synchronized int getSongId(final int index) {
+        int songId = NO_SONG_ID;
+
+        if (index >= 0 && index < mSize) {
+            songId = mSongIds[index];
+        }
+
+        return songId;
+    }
+
+    /**
+     * Checks whether a page is kept, without using it.
+     *
+     * @param pageIndex The page index, the position divided by {@link #PAGE_SIZE}.
+     * @return True if the page is kept, false otherwise.
+     */
+    synchronized boolean isKept(final int pageIndex) {
+        return mPages.containsKey(pageIndex);
+    }
+
+    /**
+     * Keeps the pages of the current and next song whatever the pages used since, as they are
+     * asked for without being shown.
+     *
+     * @param songPos     The position of the current song, -1 for none.
+     * @param nextSongPos The position of the next song, -1 for none.
+     */
+    synchronized void pin(final int songPos, final int nextSongPos) {
+        mPinnedPages[0] = songPos < 0 ? -1 : songPos / PAGE_SIZE;
+        mPinnedPages[1] = nextSongPos < 0 ? -1 : nextSongPos / PAGE_SIZE;
+    }
+
+    /**
+     * Stores the {@code Music} read from the media server, by page.
+     *
+     * @param musicList  The {@code Music}, which must include its position.
+     * @param generation The generation the {@code Music} was read during.
+     * @return True if the {@code Music} was stored, false if the songIds changed meanwhile.
+     */
+    synchronized boolean put(final Iterable<Music> musicList, final int generation) {
+        final boolean isCurrent = generation == mGeneration;
+
+        if (isCurrent) {
+            for (final Music music : musicList) {
+                final int songPos = music.getPos();
+
+                if (songPos >= 0 && songPos < mSize) {
+                    Music[] page = mPages.get(songPos / PAGE_SIZE);
+
+                    if (page == null) {
+                        page = new Music[PAGE_SIZE];
+                        mPages.put(songPos / PAGE_SIZE, page);
+                    }
+                    page[songPos % PAGE_SIZE] = music;
+                }
+            }
+        }
+
+        return isCurrent;
+    }
+
+    /**
+     * Retrieves the number of positions.
+     *
+     * @return The playlist length.
+     */
+    synchronized int size() {
+        return mSize;
+    }
+}
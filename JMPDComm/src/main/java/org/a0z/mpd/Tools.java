@@ -27,8 +27,12 @@
 
 package org.a0z.mpd;
 
+import org.a0z.mpd.connection.MPDConnection;
+import org.a0z.mpd.connection.ResponseHandler;
 import org.a0z.mpd.exception.InvalidResponseException;
+import org.a0z.mpd.exception.MPDException;
 
+import java.io.IOException;
 import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -207,6 +211,59 @@ public final class Tools {
         return result;
     }
 
+    /**
+     * Sends a command to the media server and parses the response, as it is read from the
+     * connection, for one entry type.
+     *
+     * @param connection The connection to send the {@code command} to.
+     * @param command    The command to send to the media server.
+     * @param type       The entry type in the response to add to the collection.
+     * @return A collection of entries of one type in a media server response.
+     * @throws IOException  Thrown upon a communication error with the server.
+     * @throws MPDException Thrown if an error occurs as a result of command execution.
+     */
+    public static List<String> parseResponse(final MPDConnection connection,
+            final MPDCommand command, final String type) throws IOException, MPDException {
+        final List<String> result = new ArrayList<>();
+
+        connection.sendCommand(command, new ResponseHandler() {
+            @Override
+            public void onResponse(final String key, final String value) {
+                if (key.equals(type)) {
+                    result.add(value);
+                }
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Sends a command to the media server and parses the response, as it is read from the
+     * connection, for one entry type, then sort the resulting list.
+     *
+     * @param connection      The connection to send the {@code command} to.
+     * @param command         The command to send to the media server.
+     * @param type            The entry type in the response to add to the collection.
+     * @param sortInsensitive Whether to sort insensitively.
+     * @return A sorted collection of entries of one type in a media server response.
+     * @throws IOException  Thrown upon a communication error with the server.
+     * @throws MPDException Thrown if an error occurs as a result of command execution.
+     */
+    public static List<String> parseResponse(final MPDConnection connection,
+            final MPDCommand command, final String type, final boolean sortInsensitive)
+            throws IOException, MPDException {
+        final List<String> result = parseResponse(connection, command, type);
+
+        if (sortInsensitive) {
+            Collections.sort(result, String.CASE_INSENSITIVE_ORDER);
+        } else {
+            Collections.sort(result);
+        }
+
+        return result;
+    }
+
     /**
      * Split the standard MPD protocol response into a three dimensional array consisting of a
      * two element String array key / value pairs.
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2004 Felipe Gustavo de Almeida
+ * Copyright (C) 2010-2014 The MPDroid Project
+ *
+ * All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice,this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.a0z.mpd;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the elapsed time of the current track without asking the server for it. The clock is
+ * synchronized from the status received on {@code player} idle changes and extrapolates in
+ * between from the time that status was received, as long as the server is playing.
+ */
+public final class TrackPositionClock {
+
+    /**
+     * A synchronized position further than this from the extrapolated one, in milliseconds, is a
+     * seek rather than the drift of the whole second elapsed time of older servers.
+     */
+    private static final long SEEK_THRESHOLD = 1500L;
+
+    /** The elapsed time at the synchronization, in milliseconds. */
+    private long mElapsedTime;
+
+    private boolean mIsRunning;
+
+    /** The {@link System#nanoTime()} of the status synchronized with. */
+    private long mSyncTime;
+
+    /** The total time of the current track, in milliseconds. */
+    private long mTotalTime;
+
+    TrackPositionClock() {
+        super();
+    }
+
+    /**
+     * Retrieves the elapsed time of the current track, in seconds.
+     *
+     * @return The elapsed time of the current track.
+     */
+    public long getElapsedTime() {
+        return TimeUnit.MILLISECONDS.toSeconds(getElapsedTimeMillis());
+    }
+
+    /**
+     * Retrieves the elapsed time of the current track, in milliseconds. The time does not exceed
+     * the track total time, if the track has one.
+     *
+     * @return The elapsed time of the current track.
+     */
+    public synchronized long getElapsedTimeMillis() {
+        long elapsedTime = mElapsedTime;
+
+        if (mIsRunning) {
+            elapsedTime += TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - mSyncTime);
+
+            if (mTotalTime > 0L && elapsedTime > mTotalTime) {
+                elapsedTime = mTotalTime;
+            }
+        }
+
+        return elapsedTime;
+    }
+
+    /**
+     * Retrieves the time until the elapsed time reaches its next second, to update a display of
+     * it no more often than it changes.
+     *
+     * @return The time until the next second, in milliseconds, or -1 if the clock is not running.
+     */
+    public long getMillisToNextSecond() {
+        final long millisToNextSecond;
+
+        if (isRunning()) {
+            millisToNextSecond = TimeUnit.SECONDS.toMillis(1L)
+                    - getElapsedTimeMillis() % TimeUnit.SECONDS.toMillis(1L);
+        } else {
+            millisToNextSecond = -1L;
+        }
+
+        return millisToNextSecond;
+    }
+
+    /**
+     * Retrieves the total time of the current track, in milliseconds.
+     *
+     * @return The total time of the current track, 0 if it has none, as with streams.
+     */
+    public synchronized long getTotalTimeMillis() {
+        return mTotalTime;
+    }
+
+    /**
+     * Checks whether the elapsed time is moving.
+     *
+     * @return True if the server is playing, false otherwise.
+     */
+    public synchronized boolean isRunning() {
+        return mIsRunning;
+    }
+
+    /** Stops the clock at the start of no track, once the server is disconnected. */
+    synchronized void reset() {
+        mElapsedTime = 0L;
+        mIsRunning = false;
+        mSyncTime = System.nanoTime();
+        mTotalTime = 0L;
+    }
+
+    /**
+     * Synchronizes the clock with a status.
+     *
+     * @param status The status, as received.
+     * @return True if the clock had to jump, as it does on a seek, a track change or once the
+     * server starts or stops playing, false if it only drifted.
+     */
+    synchronized boolean sync(final MPDStatus status) {
+        final long extrapolated = getElapsedTimeMillis();
+        final boolean wasRunning = mIsRunning;
+        final long totalTime = mTotalTime;
+
+        if (status.getElapsedTimeHighResolution() > 0.0f) {
+            mElapsedTime = (long) (status.getElapsedTimeHighResolution()
+                    * (float) TimeUnit.SECONDS.toMillis(1L));
+        } else {
+            mElapsedTime = TimeUnit.SECONDS.toMillis(status.getElapsedTimeAtUpdate());
+        }
+        mIsRunning = status.isState(MPDStatus.STATE_PLAYING);
+        mSyncTime = status.getUpdateTime();
+        mTotalTime = TimeUnit.SECONDS.toMillis(status.getTotalTime());
+
+        return wasRunning != mIsRunning || totalTime != mTotalTime
+                || Math.abs(getElapsedTimeMillis() - extrapolated) > SEEK_THRESHOLD;
+    }
+
+    @Override
+    public String toString() {
+        return "elapsedTime: " + mElapsedTime +
+                ", isRunning: " + mIsRunning +
+                ", syncTime: " + mSyncTime +
+                ", totalTime: " + mTotalTime;
+    }
+}
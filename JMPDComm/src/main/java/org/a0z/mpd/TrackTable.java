@@ -0,0 +1,636 @@
+/*
+ * Copyright (C) 2004 Felipe Gustavo de Almeida
+ * Copyright (C) 2010-2014 The MPDroid Project
+ *
+ * All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice,this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.a0z.mpd;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A table of the tracks of a library, held by column rather than as one {@code Music} per track,
+ * for operations over the whole library. The artist, album artist, album and genre of a track
+ * are held as ids into a sorted dictionary of the values of their column, its track, disc, date
+ * and time as primitives, so a scan of a column is a loop over one array. A tag given more than
+ * once, as a track may have several genres, keeps its first value in the column and the others
+ * as pairs of a row and a value id, next to the column.
+ *
+ * <p>A set of rows is a {@link BitSet} of row indexes, and {@code null} stands for all the rows.
+ * A table is immutable once built, and can be read from any thread. It can be written to a
+ * stream and read back, see {@link #write(DataOutput)} and {@link #read(DataInput)}.</p>
+ */
+public final class TrackTable {
+
+    /** The column of album names. */
+    public static final int ALBUM = 0;
+
+    /** The column of album artist names. */
+    public static final int ALBUM_ARTIST = 1;
+
+    /** The column of artist names. */
+    public static final int ARTIST = 2;
+
+    /** The column of genre names. */
+    public static final int GENRE = 3;
+
+    /** The id of a value not in the dictionary of a column. */
+    private static final int NO_ID = -1;
+
+    /** The number of tag columns. */
+    private static final int TAG_COLUMNS = 4;
+
+    private final long[] mDates;
+
+    /** The sorted values of each tag column, by id. */
+    private final String[][] mDictionaries;
+
+    private final int[] mDiscs;
+
+    /** The value ids of the values past the first of each tag column, by pair. */
+    private final int[][] mMoreIds;
+
+    /** The rows of the values past the first of each tag column, by pair, in row order. */
+    private final int[][] mMoreRows;
+
+    private final int mSize;
+
+    /** The value ids of each tag column, by row. */
+    private final int[][] mTagColumns;
+
+    private final long[] mTimes;
+
+    private final int[] mTracks;
+
+    private TrackTable(final Builder builder) {
+        super();
+
+        mSize = builder.mSize;
+        mDictionaries = new String[TAG_COLUMNS][];
+        mMoreIds = new int[TAG_COLUMNS][];
+        mMoreRows = new int[TAG_COLUMNS][];
+        mTagColumns = new int[TAG_COLUMNS][];
+
+        for (int tag = 0; tag < TAG_COLUMNS; tag++) {
+            final Map<String, Integer> ids = builder.mIds.get(tag);
+            final String[] dictionary = ids.keySet().toArray(new String[ids.size()]);
+            final int[] newIds = new int[dictionary.length];
+            final int[] column = Arrays.copyOf(builder.mTagColumns[tag], mSize);
+            final int[] moreIds = Arrays.copyOf(builder.mMoreIds[tag], builder.mMoreCounts[tag]);
+
+            Arrays.sort(dictionary);
+            for (int id = 0; id < dictionary.length; id++) {
+                newIds[ids.get(dictionary[id]).intValue()] = id;
+            }
+            for (int row = 0; row < mSize; row++) {
+                column[row] = newIds[column[row]];
+            }
+            for (int i = 0; i < moreIds.length; i++) {
+                moreIds[i] = newIds[moreIds[i]];
+            }
+
+            mDictionaries[tag] = dictionary;
+            mMoreIds[tag] = moreIds;
+            mMoreRows[tag] = Arrays.copyOf(builder.mMoreRows[tag], moreIds.length);
+            mTagColumns[tag] = column;
+        }
+
+        mDates = Arrays.copyOf(builder.mDates, mSize);
+        mDiscs = Arrays.copyOf(builder.mDiscs, mSize);
+        mTimes = Arrays.copyOf(builder.mTimes, mSize);
+        mTracks = Arrays.copyOf(builder.mTracks, mSize);
+    }
+
+    /**
+     * Reads a table as written by {@link #write(DataOutput)}.
+     *
+     * @param in The stream to read the table from.
+     * @throws IOException Thrown upon error reading the table, or if it is inconsistent.
+     */
+    private TrackTable(final DataInput in) throws IOException {
+        super();
+
+        mSize = readLength(in);
+        mDictionaries = new String[TAG_COLUMNS][];
+        mMoreIds = new int[TAG_COLUMNS][];
+        mMoreRows = new int[TAG_COLUMNS][];
+        mTagColumns = new int[TAG_COLUMNS][];
+
+        for (int tag = 0; tag < TAG_COLUMNS; tag++) {
+            final String[] dictionary = new String[readLength(in)];
+
+            for (int id = 0; id < dictionary.length; id++) {
+                dictionary[id] = in.readUTF();
+            }
+
+            mDictionaries[tag] = dictionary;
+            mTagColumns[tag] = readInts(in, mSize, dictionary.length);
+            mMoreIds[tag] = readInts(in, readLength(in), dictionary.length);
+            mMoreRows[tag] = readInts(in, mMoreIds[tag].length, mSize);
+        }
+
+        mDates = readLongs(in, mSize);
+        mDiscs = readInts(in, mSize, Integer.MAX_VALUE);
+        mTimes = readLongs(in, mSize);
+        mTracks = readInts(in, mSize, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads a table as written by {@link #write(DataOutput)}.
+     *
+     * @param in The stream to read the table from.
+     * @return The table read.
+     * @throws IOException Thrown upon error reading the table, or if it is inconsistent.
+     */
+    public static TrackTable read(final DataInput in) throws IOException {
+        return new TrackTable(in);
+    }
+
+    /**
+     * Reads an array of ints, each checked to be below a bound, so a corrupt table fails to
+     * read rather than failing its queries.
+     *
+     * @param in     The stream to read from.
+     * @param length The number of ints.
+     * @param bound  The bound of the ints, exclusive, ignored if {@link Integer#MAX_VALUE}.
+     * @return The ints read.
+     * @throws IOException Thrown upon error reading the ints, or if one is out of bounds.
+     */
+    private static int[] readInts(final DataInput in, final int length, final int bound)
+            throws IOException {
+        final int[] values = new int[length];
+
+        for (int i = 0; i < length; i++) {
+            values[i] = in.readInt();
+            if (bound != Integer.MAX_VALUE && (values[i] < 0 || values[i] >= bound)) {
+                throw new IOException("Track table value out of bounds: " + values[i]);
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Reads a length, checked not to be negative.
+     *
+     * @param in The stream to read from.
+     * @return The length read.
+     * @throws IOException Thrown upon error reading the length, or if it is negative.
+     */
+    private static int readLength(final DataInput in) throws IOException {
+        final int length = in.readInt();
+
+        if (length < 0) {
+            throw new IOException("Invalid track table length: " + length);
+        }
+
+        return length;
+    }
+
+    /**
+     * Reads an array of longs.
+     *
+     * @param in     The stream to read from.
+     * @param length The number of longs.
+     * @return The longs read.
+     * @throws IOException Thrown upon error reading the longs.
+     */
+    private static long[] readLongs(final DataInput in, final int length) throws IOException {
+        final long[] values = new long[length];
+
+        for (int i = 0; i < length; i++) {
+            values[i] = in.readLong();
+        }
+
+        return values;
+    }
+
+    /**
+     * Writes an array of ints.
+     *
+     * @param out    The stream to write to.
+     * @param values The ints to write.
+     * @throws IOException Thrown upon error writing the ints.
+     */
+    private static void writeInts(final DataOutput out, final int[] values) throws IOException {
+        for (final int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    /**
+     * Writes an array of longs.
+     *
+     * @param out    The stream to write to.
+     * @param values The longs to write.
+     * @throws IOException Thrown upon error writing the longs.
+     */
+    private static void writeLongs(final DataOutput out, final long[] values)
+            throws IOException {
+        for (final long value : values) {
+            out.writeLong(value);
+        }
+    }
+
+    /**
+     * Checks whether any of some rows has a value in a tag column.
+     *
+     * @param rows  The rows to check, null for all the rows.
+     * @param tag   The tag column, such as {@link #GENRE}.
+     * @param value The value to look for.
+     * @return True if a row has the value, false otherwise.
+     */
+    public boolean contains(final BitSet rows, final int tag, final String value) {
+        final int id = getId(tag, value);
+        final int[] column = mTagColumns[tag];
+        boolean contains = false;
+
+        if (id != NO_ID) {
+            if (rows == null) {
+                for (int row = 0; row < mSize && !contains; row++) {
+                    contains = column[row] == id;
+                }
+            } else {
+                for (int row = rows.nextSetBit(0); row >= 0 && !contains;
+                        row = rows.nextSetBit(row + 1)) {
+                    contains = column[row] == id;
+                }
+            }
+
+            final int[] moreIds = mMoreIds[tag];
+            final int[] moreRows = mMoreRows[tag];
+
+            for (int i = 0; i < moreIds.length && !contains; i++) {
+                contains = moreIds[i] == id && (rows == null || rows.get(moreRows[i]));
+            }
+        }
+
+        return contains;
+    }
+
+    /**
+     * Counts the distinct values of a tag column over rows.
+     *
+     * @param tag  The tag column, such as {@link #ALBUM}.
+     * @param rows The rows to count the values of, null for all the rows.
+     * @return The number of distinct values.
+     */
+    public int countDistinct(final int tag, final BitSet rows) {
+        final BitSet ids = getIds(tag, rows);
+
+        return ids.cardinality();
+    }
+
+    /**
+     * Selects, among some rows, the rows with a value in a tag column.
+     *
+     * @param rows  The rows to select from, null for all the rows.
+     * @param tag   The tag column, such as {@link #ARTIST}.
+     * @param value The value to select, an empty string for rows without the tag.
+     * @return The selected rows, empty if none has the value.
+     */
+    public BitSet filter(final BitSet rows, final int tag, final String value) {
+        final int id = getId(tag, value);
+        final int[] column = mTagColumns[tag];
+        final BitSet selected = new BitSet(mSize);
+
+        if (id != NO_ID) {
+            if (rows == null) {
+                for (int row = 0; row < mSize; row++) {
+                    if (column[row] == id) {
+                        selected.set(row);
+                    }
+                }
+            } else {
+                for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+                    if (column[row] == id) {
+                        selected.set(row);
+                    }
+                }
+            }
+
+            final int[] moreIds = mMoreIds[tag];
+            final int[] moreRows = mMoreRows[tag];
+
+            for (int i = 0; i < moreIds.length; i++) {
+                if (moreIds[i] == id && (rows == null || rows.get(moreRows[i]))) {
+                    selected.set(moreRows[i]);
+                }
+            }
+        }
+
+        return selected;
+    }
+
+    public long getDate(final int row) {
+        return mDates[row];
+    }
+
+    public int getDisc(final int row) {
+        return mDiscs[row];
+    }
+
+    /**
+     * Looks a value up in the dictionary of a tag column.
+     *
+     * @param tag   The tag column.
+     * @param value The value to look up.
+     * @return The id of the value, {@link #NO_ID} if no row has it.
+     */
+    private int getId(final int tag, final String value) {
+        int id = NO_ID;
+
+        if (value != null) {
+            id = Arrays.binarySearch(mDictionaries[tag], value);
+            if (id < 0) {
+                id = NO_ID;
+            }
+        }
+
+        return id;
+    }
+
+    /**
+     * Marks the ids of the values of a tag column over rows.
+     *
+     * @param tag  The tag column.
+     * @param rows The rows to mark the values of, null for all the rows.
+     * @return The ids of the values found.
+     */
+    private BitSet getIds(final int tag, final BitSet rows) {
+        final int[] column = mTagColumns[tag];
+        final BitSet ids = new BitSet(mDictionaries[tag].length);
+
+        if (rows == null) {
+            for (int row = 0; row < mSize; row++) {
+                ids.set(column[row]);
+            }
+        } else {
+            for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+                ids.set(column[row]);
+            }
+        }
+
+        final int[] moreIds = mMoreIds[tag];
+        final int[] moreRows = mMoreRows[tag];
+
+        for (int i = 0; i < moreIds.length; i++) {
+            if (rows == null || rows.get(moreRows[i])) {
+                ids.set(moreIds[i]);
+            }
+        }
+
+        return ids;
+    }
+
+    public long getTime(final int row) {
+        return mTimes[row];
+    }
+
+    public int getTrack(final int row) {
+        return mTracks[row];
+    }
+
+    /**
+     * Retrieves the value of a row in a tag column.
+     *
+     * @param tag The tag column, such as {@link #ALBUM}.
+     * @param row The row.
+     * @return The first value, an empty string if the track has no such tag.
+     */
+    public String getValue(final int tag, final int row) {
+        return mDictionaries[tag][mTagColumns[tag][row]];
+    }
+
+    /**
+     * Groups rows by their value in a tag column.
+     *
+     * @param tag  The tag column, such as {@link #ALBUM}.
+     * @param rows The rows to group, null for all the rows.
+     * @return The distinct values of the rows, in their natural order.
+     */
+    public List<String> groupBy(final int tag, final BitSet rows) {
+        final String[] dictionary = mDictionaries[tag];
+        final BitSet ids = getIds(tag, rows);
+        final List<String> values = new ArrayList<>(ids.cardinality());
+
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            values.add(dictionary[id]);
+        }
+
+        return values;
+    }
+
+    /**
+     * Retrieves the number of rows of the table.
+     *
+     * @return The number of tracks.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public String toString() {
+        return mSize + " tracks, " +
+                mDictionaries[ARTIST].length + " artists, " +
+                mDictionaries[ALBUM_ARTIST].length + " album artists, " +
+                mDictionaries[ALBUM].length + " albums, " +
+                mDictionaries[GENRE].length + " genres";
+    }
+
+    /**
+     * Writes this table, to be read back by {@link #read(DataInput)}.
+     *
+     * @param out The stream to write the table to.
+     * @throws IOException Thrown upon error writing the table.
+     */
+    public void write(final DataOutput out) throws IOException {
+        out.writeInt(mSize);
+
+        for (int tag = 0; tag < TAG_COLUMNS; tag++) {
+            out.writeInt(mDictionaries[tag].length);
+            for (final String value : mDictionaries[tag]) {
+                out.writeUTF(value);
+            }
+
+            writeInts(out, mTagColumns[tag]);
+            out.writeInt(mMoreIds[tag].length);
+            writeInts(out, mMoreIds[tag]);
+            writeInts(out, mMoreRows[tag]);
+        }
+
+        writeLongs(out, mDates);
+        writeInts(out, mDiscs);
+        writeLongs(out, mTimes);
+        writeInts(out, mTracks);
+    }
+
+    /** Builds a table a track at a time. */
+    public static final class Builder {
+
+        /** The number of rows the columns are first sized for. */
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private long[] mDates = new long[INITIAL_CAPACITY];
+
+        private int[] mDiscs = new int[INITIAL_CAPACITY];
+
+        /** The ids of the values of each tag column, in the order they were added. */
+        private final List<Map<String, Integer>> mIds = new ArrayList<>(TAG_COLUMNS);
+
+        /** The number of values past the first of each tag column. */
+        private final int[] mMoreCounts = new int[TAG_COLUMNS];
+
+        private final int[][] mMoreIds = new int[TAG_COLUMNS][0];
+
+        private final int[][] mMoreRows = new int[TAG_COLUMNS][0];
+
+        private int mSize;
+
+        private final int[][] mTagColumns = new int[TAG_COLUMNS][INITIAL_CAPACITY];
+
+        private long[] mTimes = new long[INITIAL_CAPACITY];
+
+        private int[] mTracks = new int[INITIAL_CAPACITY];
+
+        public Builder() {
+            super();
+
+            for (int tag = 0; tag < TAG_COLUMNS; tag++) {
+                mIds.add(new HashMap<String, Integer>());
+            }
+        }
+
+        /**
+         * Adds a track to the table. A null tag value is added as an empty string.
+         *
+         * @param album       The album name of the track.
+         * @param artist      The artist name of the track.
+         * @param albumArtist The album artist name of the track.
+         * @param genre       The genre name of the track, the first if it has several, see
+         *                    {@link #addValue(int, String)}.
+         * @param track       The track number.
+         * @param disc        The disc number.
+         * @param date        The date of the track.
+         * @param time        The length of the track, in seconds.
+         * @return This builder.
+         */
+        public Builder add(final String album, final String artist, final String albumArtist,
+                final String genre, final int track, final int disc, final long date,
+                final long time) {
+            if (mSize == mTracks.length) {
+                final int capacity = mSize << 1;
+
+                for (int tag = 0; tag < TAG_COLUMNS; tag++) {
+                    mTagColumns[tag] = Arrays.copyOf(mTagColumns[tag], capacity);
+                }
+                mDates = Arrays.copyOf(mDates, capacity);
+                mDiscs = Arrays.copyOf(mDiscs, capacity);
+                mTimes = Arrays.copyOf(mTimes, capacity);
+                mTracks = Arrays.copyOf(mTracks, capacity);
+            }
+
+            mTagColumns[ALBUM][mSize] = getId(ALBUM, album);
+            mTagColumns[ALBUM_ARTIST][mSize] = getId(ALBUM_ARTIST, albumArtist);
+            mTagColumns[ARTIST][mSize] = getId(ARTIST, artist);
+            mTagColumns[GENRE][mSize] = getId(GENRE, genre);
+            mDates[mSize] = date;
+            mDiscs[mSize] = disc;
+            mTimes[mSize] = time;
+            mTracks[mSize] = track;
+            mSize++;
+
+            return this;
+        }
+
+        /**
+         * Adds another value of a tag column to the last track added, for a tag the track has
+         * more than once.
+         *
+         * @param tag   The tag column, such as {@link #GENRE}.
+         * @param value The value.
+         * @return This builder.
+         */
+        public Builder addValue(final int tag, final String value) {
+            if (mSize == 0) {
+                throw new IllegalStateException("No track to add a value to.");
+            }
+
+            final int count = mMoreCounts[tag];
+
+            if (count == mMoreIds[tag].length) {
+                final int capacity = Math.max(count << 1, INITIAL_CAPACITY);
+
+                mMoreIds[tag] = Arrays.copyOf(mMoreIds[tag], capacity);
+                mMoreRows[tag] = Arrays.copyOf(mMoreRows[tag], capacity);
+            }
+
+            mMoreIds[tag][count] = getId(tag, value);
+            mMoreRows[tag][count] = mSize - 1;
+            mMoreCounts[tag] = count + 1;
+
+            return this;
+        }
+
+        public TrackTable build() {
+            return new TrackTable(this);
+        }
+
+        /**
+         * Retrieves the id of a value of a tag column, adding the value if it is new.
+         *
+         * @param tag   The tag column.
+         * @param value The value.
+         * @return The id of the value, in the order values were added.
+         */
+        private int getId(final int tag, final String value) {
+            final Map<String, Integer> ids = mIds.get(tag);
+            final String key;
+            Integer id;
+
+            if (value == null) {
+                key = "";
+            } else {
+                key = value;
+            }
+
+            id = ids.get(key);
+            if (id == null) {
+                id = Integer.valueOf(ids.size());
+                ids.put(key, id);
+            }
+
+            return id.intValue();
+        }
+    }
+}
@@ -0,0 +1,445 @@
+/*
+ * Copyright (C) 2004 Felipe Gustavo de Almeida
+ * Copyright (C) 2010-2014 The MPDroid Project
+ *
+ * All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice,this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.a0z.mpd.connection;
+
+import org.a0z.mpd.Log;
+import org.a0z.mpd.MPDCommand;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class keeps a pool of authenticated connections to the media server, so the connection
+ * and {@code password} handshake is not repeated for every command. Connections are borrowed
+ * for the duration of a command, validated with a {@code ping} if they have been idle for a
+ * while, and closed once they have been idle for longer than the idle timeout.
+ */
+public final class ConnectionPool {
+
+    private static final String TAG = "ConnectionPool";
+
+    /** Idle connections older than this, in milliseconds, are validated prior to reuse. */
+    private static final long VALIDATION_INTERVAL = 5000L;
+
+    /** The maximum time, in milliseconds, to wait for a connection to become available. */
+    private final long mBorrowTimeout;
+
+    /** The idle connections, the most recently used first. */
+    private final Deque<Entry> mIdle = new ArrayDeque<>();
+
+    /** The time, in milliseconds, after which an idle connection is closed. */
+    private final long mIdleTimeout;
+
+    /** The maximum number of connections to allow at one time. */
+    private final int mMaxSize;
+
+    /** The number of idle connections to keep, regardless of the idle timeout. */
+    private final int mMinIdle;
+
+    /** A permit for each connection which may be borrowed. */
+    private final Semaphore mPermits;
+
+    private long mBorrowCount;
+
+    private long mConnectCount;
+
+    private long mEvictionCount;
+
+    /** Incremented when the pool is cleared, to discard connections borrowed prior. */
+    private int mGeneration;
+
+    private long mMaxWaitTime;
+
+    private long mTimeoutCount;
+
+    private long mTotalWaitTime;
+
+    /**
+     * The constructor method. This does not open any connection, connections are established
+     * by the borrower as needed.
+     *
+     * @param minIdle       The number of idle connections to keep, regardless of the idle
+     *                      timeout.
+     * @param maxSize       The maximum number of connections to allow at one time.
+     * @param idleTimeout   The time, in milliseconds, after which an idle connection is closed.
+     * @param borrowTimeout The maximum time, in milliseconds, to wait for a connection.
+     */
+    ConnectionPool(final int minIdle, final int maxSize, final long idleTimeout,
+            final long borrowTimeout) {
+        super();
+
+        if (maxSize < 1 || minIdle < 0 || minIdle > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size, minimum idle: " + minIdle +
+                    " maximum: " + maxSize);
+        }
+
+        mMinIdle = minIdle;
+        mMaxSize = maxSize;
+        mIdleTimeout = idleTimeout;
+        mBorrowTimeout = borrowTimeout;
+        mPermits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Closes a connection, ignoring any error.
+     *
+     * @param entry The connection to close.
+     */
+    private static void close(final Entry entry) {
+        final Socket socket = entry.getSocket();
+
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (final IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Checks a connection with a {@code ping} to the media server.
+     *
+     * @param entry The connection to check.
+     * @return True if the media server responded, false otherwise.
+     */
+    private static boolean isValid(final Entry entry) {
+        boolean isValid = false;
+        final ResponseReader in = entry.getResponseReader();
+        final OutputStreamWriter out = entry.getOutputStream();
+
+        if (in != null && out != null) {
+            try {
+                out.write(new MPDCommand(MPDCommand.MPD_CMD_PING).toString());
+                out.flush();
+                isValid = in.nextLine() && in.lineStartsWith(MPDConnection.MPD_RESPONSE_OK);
+            } catch (final IOException e) {
+                Log.debug(TAG, "Idle connection failed validation.", e);
+            }
+        }
+
+        return isValid;
+    }
+
+    /**
+     * Borrows a connection from this pool, waiting for one to become available if the maximum
+     * number of connections are in use. The returned connection may not yet be connected, in
+     * which case it is up to the borrower to connect it.
+     *
+     * @return A connection which must be passed to {@link #release(Entry)} after use.
+     * @throws IOException Thrown if no connection became available before the borrow timeout.
+     */
+    Entry borrow() throws IOException {
+        final long start = System.currentTimeMillis();
+        final boolean isAcquired;
+
+        try {
+            isAcquired = mPermits.tryAcquire(mBorrowTimeout, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+            throw new IOException("Interrupted while waiting for a connection.", e);
+        }
+
+        final long waitTime = System.currentTimeMillis() - start;
+        synchronized (this) {
+            mTotalWaitTime += waitTime;
+            if (waitTime > mMaxWaitTime) {
+                mMaxWaitTime = waitTime;
+            }
+
+            if (!isAcquired) {
+                mTimeoutCount++;
+            }
+        }
+
+        if (!isAcquired) {
+            throw new IOException("Timed out after " + waitTime + "ms waiting for one of " +
+                    mMaxSize + " connections.");
+        }
+
+        Entry entry = null;
+        try {
+            while (entry == null) {
+                final Entry idle;
+                final int generation;
+
+                synchronized (this) {
+                    evictExpired();
+                    idle = mIdle.pollFirst();
+                    generation = mGeneration;
+                    mBorrowCount++;
+                }
+
+                if (idle == null) {
+                    entry = new Entry(generation);
+                } else if (System.currentTimeMillis() - idle.mLastUsed < VALIDATION_INTERVAL ||
+                        isValid(idle)) {
+                    entry = idle;
+                } else {
+                    close(idle);
+                    synchronized (this) {
+                        mBorrowCount--;
+                        mEvictionCount++;
+                    }
+                }
+            }
+        } finally {
+            if (entry == null) {
+                mPermits.release();
+            }
+        }
+
+        entry.mHoldCount = 1;
+        entry.mIsReusable = true;
+        return entry;
+    }
+
+    /** Closes all idle connections, connections currently borrowed are closed upon release. */
+    void clear() {
+        synchronized (this) {
+            mGeneration++;
+            for (final Entry entry : mIdle) {
+                close(entry);
+            }
+            mIdle.clear();
+        }
+    }
+
+    /**
+     * Closes the connections which have been idle for longer than the idle timeout, keeping the
+     * minimum number of idle connections.
+     */
+    private void evictExpired() {
+        final long now = System.currentTimeMillis();
+        final Iterator<Entry> iterator = mIdle.descendingIterator();
+
+        while (mIdle.size() > mMinIdle && iterator.hasNext()) {
+            final Entry entry = iterator.next();
+
+            if (now - entry.mLastUsed < mIdleTimeout) {
+                break;
+            }
+
+            iterator.remove();
+            close(entry);
+            mEvictionCount++;
+        }
+    }
+
+    /**
+     * The number of connections currently borrowed.
+     *
+     * @return The number of connections currently borrowed.
+     */
+    public int getActiveCount() {
+        return mMaxSize - mPermits.availablePermits();
+    }
+
+    /**
+     * The number of times a connection has been borrowed from this pool.
+     *
+     * @return The number of times a connection has been borrowed from this pool.
+     */
+    public synchronized long getBorrowCount() {
+        return mBorrowCount;
+    }
+
+    /**
+     * The number of connections established to the media server, including reconnections.
+     *
+     * @return The number of connections established to the media server.
+     */
+    public synchronized long getConnectCount() {
+        return mConnectCount;
+    }
+
+    /**
+     * The number of idle connections closed for exceeding the idle timeout or failing
+     * validation.
+     *
+     * @return The number of idle connections closed by this pool.
+     */
+    public synchronized long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    /**
+     * The number of connections currently idle in this pool.
+     *
+     * @return The number of connections currently idle in this pool.
+     */
+    public synchronized int getIdleCount() {
+        return mIdle.size();
+    }
+
+    /**
+     * The longest time, in milliseconds, a borrower had to wait for a connection.
+     *
+     * @return The longest time a borrower had to wait for a connection.
+     */
+    public synchronized long getMaxWaitTime() {
+        return mMaxWaitTime;
+    }
+
+    /**
+     * The number of times a borrower gave up waiting for a connection.
+     *
+     * @return The number of times a borrower gave up waiting for a connection.
+     */
+    public synchronized long getTimeoutCount() {
+        return mTimeoutCount;
+    }
+
+    /**
+     * The total time, in milliseconds, borrowers had to wait for a connection.
+     *
+     * @return The total time borrowers had to wait for a connection.
+     */
+    public synchronized long getTotalWaitTime() {
+        return mTotalWaitTime;
+    }
+
+    /** Called by the borrower upon establishing a connection to the media server. */
+    synchronized void onConnect() {
+        mConnectCount++;
+    }
+
+    /**
+     * Returns a borrowed connection to this pool. The connection is closed rather than kept if
+     * it is no longer connected, not reusable, or the pool was cleared since it was borrowed.
+     *
+     * @param entry The connection returned from {@link #borrow()}.
+     */
+    void release(final Entry entry) {
+        final Socket socket = entry.getSocket();
+        final boolean isConnected = socket != null && socket.isConnected() && !socket.isClosed();
+
+        synchronized (this) {
+            if (isConnected && entry.mIsReusable && entry.mGeneration == mGeneration) {
+                entry.mLastUsed = System.currentTimeMillis();
+                mIdle.addFirst(entry);
+            } else {
+                close(entry);
+            }
+
+            evictExpired();
+        }
+
+        mPermits.release();
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPool{" +
+                "active=" + getActiveCount() +
+                ", idle=" + getIdleCount() +
+                ", borrowCount=" + getBorrowCount() +
+                ", connectCount=" + getConnectCount() +
+                ", evictionCount=" + getEvictionCount() +
+                ", timeoutCount=" + getTimeoutCount() +
+                ", totalWaitTime=" + getTotalWaitTime() +
+                ", maxWaitTime=" + getMaxWaitTime() +
+                '}';
+    }
+
+    /** A connection to the media server, with the streams used to communicate over it. */
+    static final class Entry {
+
+        /** The pool generation this connection was borrowed in. */
+        private final int mGeneration;
+
+        /** The number of nested acquisitions of this connection by the borrowing thread. */
+        private int mHoldCount;
+
+        /** False if any holder left the connection in an unknown state. */
+        private boolean mIsReusable;
+
+        /** The time, in milliseconds, this connection was last returned to the pool. */
+        private long mLastUsed;
+
+        private OutputStreamWriter mOutputStream;
+
+        private ResponseReader mResponseReader;
+
+        private Socket mSocket;
+
+        Entry(final int generation) {
+            super();
+
+            mGeneration = generation;
+        }
+
+        OutputStreamWriter getOutputStream() {
+            return mOutputStream;
+        }
+
+        ResponseReader getResponseReader() {
+            return mResponseReader;
+        }
+
+        Socket getSocket() {
+            return mSocket;
+        }
+
+        /** Acquires this connection again by the thread already holding it. */
+        void hold() {
+            mHoldCount++;
+        }
+
+        /**
+         * Releases one acquisition of this connection.
+         *
+         * @param isReusable False if the connection was left in an unknown state.
+         * @return True if this connection is no longer held and must be returned to the pool.
+         */
+        boolean unhold(final boolean isReusable) {
+            if (!isReusable) {
+                mIsReusable = false;
+            }
+
+            mHoldCount--;
+            return mHoldCount == 0;
+        }
+
+        void setOutputStream(final OutputStreamWriter outputStream) {
+            mOutputStream = outputStream;
+        }
+
+        void setResponseReader(final ResponseReader responseReader) {
+            mResponseReader = responseReader;
+        }
+
+        void setSocket(final Socket socket) {
+            mSocket = socket;
+        }
+    }
+}
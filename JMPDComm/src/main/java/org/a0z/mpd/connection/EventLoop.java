@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2004 Felipe Gustavo de Almeida
+ * Copyright (C) 2010-2014 The MPDroid Project
+ *
+ * All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice,this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.a0z.mpd.connection;
+
+import org.a0z.mpd.Log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+
+/**
+ * This class runs a single thread multiplexing the I/O of any number of
+ * {@link MPDConnectionChannel} connections, to any number of media servers, with a
+ * {@code Selector}.
+ */
+public final class EventLoop implements Closeable {
+
+    private static final String TAG = "EventLoop";
+
+    /** The lock guarding the task queue and the closed state. */
+    private final Object mLock = new Object();
+
+    private final Selector mSelector;
+
+    /** Tasks to run on the event loop thread, guarded by {@code mLock}. */
+    private final Queue<Runnable> mTasks = new ArrayDeque<>();
+
+    private final Thread mThread;
+
+    private boolean mIsClosed = false;
+
+    /**
+     * The constructor method, this starts the event loop thread.
+     *
+     * @throws IOException Thrown if the {@code Selector} could not be opened.
+     */
+    public EventLoop() throws IOException {
+        super();
+
+        mSelector = Selector.open();
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, TAG);
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    /**
+     * Stops the event loop thread, failing all commands pending on its connections.
+     */
+    @Override
+    public void close() {
+        synchronized (mLock) {
+            mIsClosed = true;
+        }
+        mSelector.wakeup();
+    }
+
+    /**
+     * Queues a task to run on the event loop thread.
+     *
+     * @param task The task to run.
+     * @return True if the task was queued, false if this event loop has been closed.
+     */
+    boolean execute(final Runnable task) {
+        final boolean isQueued;
+
+        synchronized (mLock) {
+            if (mIsClosed) {
+                isQueued = false;
+            } else {
+                mTasks.add(task);
+                isQueued = true;
+            }
+        }
+
+        if (isQueued) {
+            mSelector.wakeup();
+        }
+
+        return isQueued;
+    }
+
+    /**
+     * Checks if the current thread is the event loop thread.
+     *
+     * @return True if called from the event loop thread, false otherwise.
+     */
+    boolean inEventLoop() {
+        return Thread.currentThread() == mThread;
+    }
+
+    /**
+     * Checks if this event loop has been closed.
+     *
+     * @return True if this event loop has been closed, false otherwise.
+     */
+    public boolean isClosed() {
+        synchronized (mLock) {
+            return mIsClosed;
+        }
+    }
+
+    /** The event loop, dispatching the selected channels and queued tasks until closed. */
+    private void loop() {
+        boolean isClosed = false;
+
+        while (!isClosed) {
+            try {
+                mSelector.select();
+
+                final Iterator<SelectionKey> iterator = mSelector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    final SelectionKey key = iterator.next();
+                    iterator.remove();
+
+                    if (key.isValid()) {
+                        ((MPDConnectionChannel) key.attachment()).onSelected(key);
+                    }
+                }
+            } catch (final IOException e) {
+                Log.error(TAG, "Event loop selection failure.", e);
+            }
+
+            isClosed = runTasks();
+        }
+
+        /** Runs the tasks queued prior to closing, then fails everything still pending. */
+        runTasks();
+        for (final SelectionKey key : mSelector.keys()) {
+            ((MPDConnectionChannel) key.attachment())
+                    .onClosed(new IOException("Event loop closed."));
+        }
+
+        try {
+            mSelector.close();
+        } catch (final IOException e) {
+            Log.error(TAG, "Failed to close the event loop selector.", e);
+        }
+    }
+
+    /**
+     * Registers a channel with the {@code Selector} of this event loop. This must be called
+     * from the event loop thread.
+     *
+     * @param channel    The channel to register.
+     * @param ops        The interest set of the channel.
+     * @param connection The connection to dispatch the channel I/O to.
+     * @return The key representing the registration.
+     * @throws ClosedChannelException Thrown if the channel is closed.
+     */
+    SelectionKey register(final SelectableChannel channel, final int ops,
+            final MPDConnectionChannel connection) throws ClosedChannelException {
+        return channel.register(mSelector, ops, connection);
+    }
+
+    /**
+     * Runs the tasks queued from other threads.
+     *
+     * @return True if this event loop has been closed, false otherwise.
+     */
+    private boolean runTasks() {
+        Runnable task = pollTask();
+
+        while (task != null) {
+            try {
+                task.run();
+            } catch (final RuntimeException e) {
+                Log.error(TAG, "Event loop task failure.", e);
+            }
+
+            task = pollTask();
+        }
+
+        return isClosed();
+    }
+
+    /**
+     * Retrieves the next task queued from other threads.
+     *
+     * @return The next task to run, null if none.
+     */
+    private Runnable pollTask() {
+        synchronized (mLock) {
+            return mTasks.poll();
+        }
+    }
+}
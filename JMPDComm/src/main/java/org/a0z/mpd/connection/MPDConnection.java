@@ -27,31 +27,17 @@
 
 package org.a0z.mpd.connection;
 
-import org.a0z.mpd.Log;
 import org.a0z.mpd.MPDCommand;
-import org.a0z.mpd.MPDStatusMonitor;
 import org.a0z.mpd.Tools;
 import org.a0z.mpd.exception.MPDException;
 import org.a0z.mpd.subsystem.Reflection;
 
-import java.io.BufferedReader;
-import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.Socket;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Class representing a connection to MPD Server.
@@ -60,35 +46,22 @@ public abstract class MPDConnection {
 
     static final String MPD_RESPONSE_OK = "OK";
 
-    private static final int CONNECTION_TIMEOUT = 10000;
-
-    /** The debug flag to enable or disable debug logging output. */
-    private static final boolean DEBUG = false;
-
-    /** Default buffer size for the socket. */
-    private static final int DEFAULT_BUFFER_SIZE = 1024;
+    static final int CONNECTION_TIMEOUT = 10000;
 
     /** Maximum number of times to attempt command processing. */
-    private static final int MAX_REQUEST_RETRY = 3;
+    static final int MAX_REQUEST_RETRY = 3;
 
-    private static final String MPD_RESPONSE_ERR = "ACK";
+    static final String MPD_RESPONSE_ERR = "ACK";
 
-    private static final String POOL_THREAD_NAME_PREFIX = "pool";
+    /** The key of the line giving the length of the binary data which follows it. */
+    static final String MPD_RESPONSE_BINARY = "binary";
 
     /** A set containing all available commands, populated on connection. */
     private final Collection<String> mAvailableCommands = new HashSet<>();
 
-    /** The {@code ExecutorService} used to process commands. */
-    private final ThreadPoolExecutor mExecutor;
-
-    /** The lock for this connection. */
-    private final Object mLock = new Object();
-
     /** The command communication timeout. */
     private final int mReadWriteTimeout;
 
-    private final String mTag;
-
     /** If set to true, this will cancel any processing commands at next opportunity. */
     private boolean mCancelled = false;
 
@@ -108,22 +81,12 @@ public abstract class MPDConnection {
      * The constructor method. This method does not connect to the server.
      *
      * @param readWriteTimeout The read write timeout for this connection.
-     * @param maxConnections   Maximum number of sockets to allow running at one time.
      * @see #connect(java.net.InetAddress, int, String)
      */
-    MPDConnection(final int readWriteTimeout, final int maxConnections) {
+    MPDConnection(final int readWriteTimeout) {
         super();
 
         mReadWriteTimeout = readWriteTimeout;
-        mExecutor = new ThreadPoolExecutor(1, maxConnections, (long) mReadWriteTimeout,
-                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
-        mExecutor.prestartCoreThread();
-        if (maxConnections > 1) {
-            mTag = "MPDConnectionMultiSocket";
-            mExecutor.allowCoreThreadTimeOut(true);
-        } else {
-            mTag = "MPDConnectionMonoSocket";
-        }
     }
 
     /**
@@ -139,13 +102,14 @@ public abstract class MPDConnection {
     public final void connect(final InetAddress host, final int port, final String password)
             throws IOException, MPDException {
         innerDisconnect();
+        closeConnections();
 
         mCancelled = false;
         mPassword = password;
         mSocketAddress = new InetSocketAddress(host, port);
 
         final MPDCommand mpdCommand = new MPDCommand(Reflection.CMD_ACTION_COMMANDS);
-        final CommandResult commandResult = processCommand(mpdCommand);
+        final CommandResult commandResult = processCommand(mpdCommand, null);
 
         synchronized (mAvailableCommands) {
             final Collection<String> response = Tools.
@@ -170,6 +134,21 @@ public abstract class MPDConnection {
     public void disconnect() throws IOException {
         mCancelled = true;
         innerDisconnect();
+        closeConnections();
+    }
+
+    /**
+     * Acquires the connection to process a command with for the current thread. This may be
+     * called again by the thread already holding a connection, every call must be matched by a
+     * call to {@link #releaseConnection(boolean)}.
+     *
+     * @throws IOException Thrown if no connection could be acquired.
+     */
+    void acquireConnection() throws IOException {
+    }
+
+    /** Closes any connection not currently in use. */
+    void closeConnections() {
     }
 
     /**
@@ -196,8 +175,6 @@ public abstract class MPDConnection {
         return mSocketAddress.getPort();
     }
 
-    protected abstract InputStreamReader getInputStream();
-
     /**
      * The current MPD protocol version.
      */
@@ -205,23 +182,40 @@ public abstract class MPDConnection {
         return mMPDVersion.clone();
     }
 
-    protected abstract OutputStreamWriter getOutputStream();
+    /**
+     * The MPD protocol password to pass upon connection.
+     *
+     * @return The current media server password, null if none.
+     */
+    String getPassword() {
+        return mPassword;
+    }
 
-    protected abstract Socket getSocket();
+    /**
+     * The command communication timeout.
+     *
+     * @return The command communication timeout, in milliseconds, 0 if none.
+     */
+    int getReadWriteTimeout() {
+        return mReadWriteTimeout;
+    }
 
     /**
-     * A low level disconnect method for the socket(s).
+     * The host/port pair used to connect to the media server.
      *
-     * @throws IOException Thrown if there is a problem closing the socket.
+     * @return The host/port pair used to connect to the media server, null if not yet set.
      */
-    private void innerDisconnect() throws IOException {
+    InetSocketAddress getSocketAddress() {
+        return mSocketAddress;
+    }
+
+    /**
+     * A low level disconnect method for the connection(s).
+     *
+     * @throws IOException Thrown if there is a problem closing the connection.
+     */
+    void innerDisconnect() throws IOException {
         mIsConnected = false;
-        synchronized (mLock) {
-            if (getSocket() != null) {
-                getSocket().close();
-                setSocket(null);
-            }
-        }
     }
 
     /**
@@ -234,6 +228,15 @@ public abstract class MPDConnection {
         return mAvailableCommands.contains(command);
     }
 
+    /**
+     * Checks whether this connection has been disconnected by the user.
+     *
+     * @return True if processing commands are to be cancelled, false otherwise.
+     */
+    boolean isCancelled() {
+        return mCancelled;
+    }
+
     /**
      * A user facing connection inquiry method.
      *
@@ -265,51 +268,17 @@ public abstract class MPDConnection {
     }
 
     /**
-     * Processes the command by setting up the command processor executor.
+     * Processes the command.
      *
      * @param command The command to be processed.
+     * @param handler The handler to stream the response to, if null, the response will be
+     *                buffered into the {@code CommandResult}.
      * @return The response to the processed command.
      * @throws IOException  Thrown upon a communication error with the server.
      * @throws MPDException Thrown if an error occurs as a result of command execution.
      */
-    private CommandResult processCommand(final MPDCommand command)
-            throws IOException, MPDException {
-        final CommandResult result;
-
-        // Bypass thread pool queue if the thread already comes from the pool to avoid deadlock.
-        if (Thread.currentThread().getName().startsWith(POOL_THREAD_NAME_PREFIX)) {
-            result = new CommandProcessor(command).call();
-        } else {
-            try {
-                result = mExecutor.submit(new CommandProcessor(command)).get();
-                // Spam the log with the largest pool size
-                //Log.debug(mTag, "Largest pool size: " + mExecutor.getLargestPoolSize());
-            } catch (final ExecutionException | InterruptedException e) {
-                throw new IOException(e);
-            }
-        }
-
-        if (result.getResult() == null) {
-            if (result.isIOExceptionLast() == null) {
-                /**
-                 * This should not occur, and this exception should extend RuntimeException,
-                 * BUT a RuntimeException would most likely not help the situation.
-                 */
-                throw new IOException(
-                        "No result, no exception. This is a bug. Please report." + '\n' +
-                                "Cancelled: " + mCancelled + '\n' +
-                                "Command: " + command + '\n' +
-                                "Connected: " + mIsConnected + '\n' +
-                                "Connection result: " + result.getConnectionResult() + '\n');
-            } else if (result.isIOExceptionLast().equals(Boolean.TRUE)) {
-                throw result.getIOException();
-            } else if (result.isIOExceptionLast().equals(Boolean.FALSE)) {
-                throw result.getMPDException();
-            }
-        }
-
-        return result;
-    }
+    abstract CommandResult processCommand(MPDCommand command, ResponseHandler handler)
+            throws IOException, MPDException;
 
     /**
      * Communicates with the server by sending a command and receiving the response.
@@ -320,9 +289,40 @@ public abstract class MPDConnection {
      * @throws MPDException Thrown if an error occurs as a result of command execution.
      */
     public List<String> sendCommand(final MPDCommand command) throws IOException, MPDException {
-        return processCommand(command).getResult();
+        return processCommand(command, null).getResult();
     }
 
+    /**
+     * Communicates with the server by sending a command and streaming the response, key/value
+     * pair by key/value pair, to the {@code handler} as it is read from the connection. This
+     * avoids buffering large responses, though, unlike the other {@code sendCommand()} methods,
+     * the command will not be retried once any of the response has been handled.
+     *
+     * @param command The command to be sent to the server.
+     * @param handler The handler to receive the response from the server.
+     * @throws IOException  Thrown upon a communication error with the server.
+     * @throws MPDException Thrown if an error occurs as a result of command execution.
+     */
+    public void sendCommand(final MPDCommand command, final ResponseHandler handler)
+            throws IOException, MPDException {
+        if (handler == null) {
+            throw new IllegalArgumentException("Response handler cannot be null.");
+        }
+
+        processCommand(command, handler);
+    }
+
+    /**
+     * Sends the commands to the server back to back, without waiting for each response, then
+     * reads the responses in the order the commands were sent. Unlike a {@code CommandQueue},
+     * each command receives its own response, or its own error, and the responses are completed
+     * as soon as they're read, so many small requests share the communication latency.
+     *
+     * @param commands The commands to be sent to the server.
+     * @return A response handle for each command, in the order of {@code commands}.
+     */
+    public abstract List<ResponseFuture> sendPipelined(List<MPDCommand> commands);
+
     /**
      * Communicates with the server by sending a command and receiving the response.
      *
@@ -354,276 +354,21 @@ public abstract class MPDConnection {
         return sendCommand(new MPDCommand(command, nonfatalErrors, args));
     }
 
-    protected abstract void setInputStream(InputStreamReader inputStream);
-
-    protected abstract void setOutputStream(OutputStreamWriter outputStream);
-
-    protected abstract void setSocket(Socket socket);
-
-    /** This class communicates with the server by sending the command and processing the result. */
-    private class CommandProcessor implements Callable<CommandResult> {
-
-        /** The command to be processed. */
-        private final MPDCommand mCommand;
-
-        CommandProcessor(final MPDCommand mpdCommand) {
-            super();
-
-            mCommand = mpdCommand;
-        }
-
-        /**
-         * This is the default class method.
-         *
-         * @return A {@code CommandResult} from the processed command.
-         */
-        @Override
-        public final CommandResult call() {
-            int retryCount = 0;
-            final CommandResult result = new CommandResult();
-            boolean isCommandSent = false;
-            final String baseCommand = mCommand.getCommand();
-
-            while (result.getResult() == null && retryCount < MAX_REQUEST_RETRY && !mCancelled) {
-                try {
-                    if (getSocket() == null || !getSocket().isConnected() ||
-                            getSocket().isClosed()) {
-                        result.setConnectionResult(innerConnect());
-                    }
-
-                    write();
-                    isCommandSent = true;
-                    result.setResult(read());
-                } catch (final EOFException ex0) {
-                    handleFailure(result, ex0);
-
-                    // Do not fail when the IDLE response has not been read (to improve connection
-                    // failure robustness). Just send the "changed playlist" result to force the MPD
-                    // status to be refreshed.
-                    if (MPDCommand.MPD_CMD_IDLE.equals(baseCommand)) {
-                        result.setResult(Collections.singletonList(
-                                "changed: " + MPDStatusMonitor.IDLE_PLAYLIST));
-                    }
-                } catch (final IOException e) {
-                    handleFailure(result, e);
-                } catch (final MPDException ex1) {
-                    // Avoid getting in an infinite loop if an error occurred in the password cmd
-                    if (ex1.mErrorCode == MPDException.ACK_ERROR_PASSWORD ||
-                            ex1.mErrorCode == MPDException.ACK_ERROR_PERMISSION) {
-                        result.setException(ex1);
-                    } else {
-                        handleFailure(result, ex1);
-                    }
-                }
-
-                /** On successful send of non-retryable command, break out. */
-                if (!MPDCommand.isRetryable(baseCommand) && isCommandSent) {
-                    break;
-                }
-
-                retryCount++;
-            }
-
-            if (!mCancelled) {
-                if (result.getResult() == null) {
-                    logError(result, baseCommand, retryCount);
-                } else {
-                    mIsConnected = true;
-                }
-            }
-            return result;
-        }
-
-        /**
-         * Used after a server error, sleeps for a small time then tries to reconnect.
-         *
-         * @param result The {@code CommandResult} which stores the connection failure.
-         * @param e      The exception to set.
-         */
-        private void handleFailure(final CommandResult result, final IOException e) {
-            if (isFailureHandled(result)) {
-                result.setException(e);
-            }
-        }
-
-        /**
-         * Used after a server error, sleeps for a small time then tries to reconnect.
-         *
-         * @param result The {@code CommandResult} which stores the connection failure.
-         * @param e      The exception to set.
-         */
-        private void handleFailure(final CommandResult result, final MPDException e) {
-            if (isFailureHandled(result)) {
-                result.setException(e);
-            }
-        }
-
-        /**
-         * This is the low level media server connection method.
-         *
-         * @return The initial response from the connection.
-         * @throws IOException  Thrown upon a communication error with the server.
-         * @throws MPDException Thrown if an error occurs as a result of command execution.
-         */
-        private String innerConnect() throws IOException, MPDException {
-            final String line;
-
-            // Always release existing socket if any before creating a new one
-            if (getSocket() != null) {
-                try {
-                    innerDisconnect();
-                } catch (final IOException ignored) {
-                }
-            }
-
-            setSocket(new Socket());
-            getSocket().setSoTimeout(mReadWriteTimeout);
-            getSocket().connect(mSocketAddress, CONNECTION_TIMEOUT);
-            setInputStream(new InputStreamReader(getSocket().getInputStream(), "UTF-8"));
-            final BufferedReader in = new BufferedReader(getInputStream(), DEFAULT_BUFFER_SIZE);
-            setOutputStream(new OutputStreamWriter(getSocket().getOutputStream(), "UTF-8"));
-            line = in.readLine();
-
-            if (line == null) {
-                throw new IOException("No response from server.");
-            }
-
-            /** Protocol says OK will begin the session, otherwise assume IO error. */
-            if (!line.startsWith(MPD_RESPONSE_OK)) {
-                throw new IOException("Bogus response from server.");
-            }
-
-            if (mPassword != null) {
-                sendCommand(MPDCommand.MPD_CMD_PASSWORD, mPassword);
-            }
-
-            return line;
-        }
-
-        /**
-         * Used after a server error, sleeps for a small time then tries to reconnect.
-         *
-         * @param result The {@code CommandResult} which stores the connection failure.
-         */
-        private boolean isFailureHandled(final CommandResult result) {
-            boolean failureHandled = false;
-            mIsConnected = false;
-
-            try {
-                Thread.sleep(500L);
-            } catch (final InterruptedException ignored) {
-            }
-
-            try {
-                innerConnect();
-                failureHandled = true;
-            } catch (final MPDException me) {
-                result.setException(me);
-            } catch (final IOException ie) {
-                result.setException(ie);
-            }
-
-            return failureHandled;
-        }
-
-        /**
-         * This method is a place to specify if a ACK is not actually an error message we don't
-         * consider to be a fatal error.
-         *
-         * @param message The message to check.
-         * @return True if the message indicates a non-fatal error, false otherwise.
-         */
-        private boolean isNonfatalACK(final String message) {
-            final boolean isNonfatalACK;
-            final int errorCode = MPDException.getAckErrorCode(message);
-
-            if (mCommand.isErrorNonfatal(errorCode)) {
-                isNonfatalACK = true;
-                if (DEBUG) {
-                    Log.debug(mTag, "Non-fatal ACK emitted, exception suppressed: " + message);
-                }
-            } else {
-                isNonfatalACK = false;
-            }
-
-            return isNonfatalACK;
-        }
-
-        private void logError(final CommandResult result, final String baseCommand,
-                final int retryCount) {
-            final StringBuilder stringBuilder = new StringBuilder(50);
-
-            stringBuilder.append("Command ");
-            stringBuilder.append(baseCommand);
-            stringBuilder.append(" failed after ");
-            stringBuilder.append(retryCount + 1);
-
-            if (retryCount == 0) {
-                stringBuilder.append(" attempt.");
-            } else {
-                stringBuilder.append(" attempts.");
-            }
-
-            if (result.isIOExceptionLast() == null) {
-                Log.error(mTag, stringBuilder.toString());
-            } else if (result.isIOExceptionLast().equals(Boolean.TRUE)) {
-                Log.error(mTag, stringBuilder.toString(), result.getIOException());
-            } else if (result.isIOExceptionLast().equals(Boolean.FALSE)) {
-                Log.error(mTag, stringBuilder.toString(), result.getMPDException());
-            }
-        }
-
-        /**
-         * Read the server response after a {@code write()} to the server.
-         *
-         * @return A String list of responses.
-         * @throws IOException  Thrown if there was a problem reading from from the media
-         *                      server.
-         * @throws MPDException Thrown if there was a server side error with the command that
-         *                      was sent.
-         */
-        private List<String> read() throws MPDException, IOException {
-            final List<String> result = new ArrayList<>();
-            final BufferedReader in = new BufferedReader(getInputStream(), DEFAULT_BUFFER_SIZE);
-
-            boolean serverDataRead = false;
-            for (String line = in.readLine(); line != null; line = in.readLine()) {
-                serverDataRead = true;
-
-                if (line.startsWith(MPD_RESPONSE_OK)) {
-                    break;
-                }
-
-                if (line.startsWith(MPD_RESPONSE_ERR)) {
-                    if (isNonfatalACK(line)) {
-                        break;
-                    }
-
-                    throw new MPDException(line);
-                }
-                result.add(line);
-            }
-
-            if (!serverDataRead) {
-                // Close socket if there is no response...
-                // Something is wrong (e.g. MPD shutdown..)
-                throw new EOFException("Connection lost");
-            }
-            return result;
-        }
+    /**
+     * Releases the connection acquired by {@link #acquireConnection()} for the current thread.
+     *
+     * @param isReusable False if the connection was left in an unknown state, for instance, with
+     *                   part of a response left unread.
+     */
+    void releaseConnection(final boolean isReusable) {
+    }
 
-        /**
-         * Sends the command to the server.
-         *
-         * @throws IOException Thrown upon error transferring command to media server.
-         */
-        private void write() throws IOException {
-            final String cmdString = mCommand.toString();
-
-            // Uncomment for extreme command debugging
-            //Log.debug(mTag, "Sending MPDCommand : " + cmdString);
-            getOutputStream().write(cmdString);
-            getOutputStream().flush();
-        }
+    /**
+     * Sets the user facing connection status.
+     *
+     * @param isConnected The user facing connection status.
+     */
+    void setConnected(final boolean isConnected) {
+        mIsConnected = isConnected;
     }
 }
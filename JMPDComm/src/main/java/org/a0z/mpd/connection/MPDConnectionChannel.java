@@ -0,0 +1,1035 @@
+/*
+ * Copyright (C) 2004 Felipe Gustavo de Almeida
+ * Copyright (C) 2010-2014 The MPDroid Project
+ *
+ * All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice,this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.a0z.mpd.connection;
+
+import org.a0z.mpd.Log;
+import org.a0z.mpd.MPDCommand;
+import org.a0z.mpd.exception.MPDException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Class representing a connection to MPD Server over a non-blocking {@code SocketChannel}. The
+ * I/O of any number of these connections is multiplexed on a single {@link EventLoop} thread,
+ * commands are written back to back and responses are matched to commands in the order they
+ * were sent. Threads calling {@code sendCommand()} wait for their response, but no thread is
+ * dedicated to a connection, including an {@code idle} subscription, see
+ * {@link #subscribeIdle(IdleListener, String...)}. A {@link ResponseHandler} is called from the
+ * thread which sent the command, never from the event loop thread, the response is handed to it
+ * as it is read, and reading is paused while too much of it is left unhandled.
+ */
+public class MPDConnectionChannel extends MPDConnection {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The number of response lines left unhandled by a {@link ResponseHandler} at which reading
+     * the channel is paused, until the handler catches up.
+     */
+    private static final int MAX_PENDING = 1024;
+
+    private static final String NOIDLE = MPDCommand.MPD_CMD_NOIDLE + MPDCommand.MPD_CMD_NEWLINE;
+
+    private static final String TAG = "MPDConnectionChannel";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final EventLoop mEventLoop;
+
+    /** The binary data being read, null while reading response lines. */
+    private byte[] mBinary;
+
+    /** The length of the binary data read so far. */
+    private int mBinaryLength;
+
+    /** The buffer the channel is read into. */
+    private final ByteBuffer mReadBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    /**
+     * The {@code System.nanoTime()} data was last read from the channel, or handed to a
+     * {@link ResponseHandler}, at.
+     */
+    private volatile long mLastActivityTime;
+
+    /** The requests sent, awaiting their response, in the order they were sent. */
+    private final Queue<Request> mRequests = new ArrayDeque<>();
+
+    /** The commands waiting to be written to the channel. */
+    private final Queue<ByteBuffer> mWriteQueue = new ArrayDeque<>();
+
+    /**
+     * The following fields are only accessed from the event loop thread.
+     */
+    private SocketChannel mChannel;
+
+    /** The first response from the media server after connection, null until received. */
+    private String mConnectionResult;
+
+    /** The command sent for the {@code idle} subscription. */
+    private MPDCommand mIdleCommand;
+
+    /** The listener of the {@code idle} subscription, null if not subscribed. */
+    private IdleListener mIdleListener;
+
+    /** The {@code idle} request awaiting a response, null if none. */
+    private Request mIdleRequest;
+
+    /** Set once binary data has been read, until the newline terminating it is read. */
+    private boolean mIsBinaryRead;
+
+    /** Set once {@code noidle} has been sent to interrupt the {@code idle} request. */
+    private boolean mIsNoIdleSent;
+
+    private SelectionKey mKey;
+
+    /** The request reading the channel has been paused for, null if not paused. */
+    private Request mPausingRequest;
+
+    /** The response line being read. */
+    private byte[] mLine = new byte[BUFFER_SIZE];
+
+    private int mLineLength;
+
+    /**
+     * The constructor method. This method does not connect to the server.
+     *
+     * @param eventLoop        The event loop to multiplex the I/O of this connection on.
+     * @param readWriteTimeout The time, in milliseconds, to wait for a response without any
+     *                         data read, 0 to wait indefinitely.
+     */
+    public MPDConnectionChannel(final EventLoop eventLoop, final int readWriteTimeout) {
+        super(readWriteTimeout);
+
+        mEventLoop = eventLoop;
+    }
+
+    /**
+     * Appends data to the response line being read.
+     *
+     * @param buffer The buffer to append from.
+     * @param offset The offset of the data in the {@code buffer}.
+     * @param length The length of the data.
+     */
+    private void appendLine(final byte[] buffer, final int offset, final int length) {
+        if (mLineLength + length > mLine.length) {
+            final byte[] line = new byte[Math.max(mLine.length << 1, mLineLength + length)];
+
+            System.arraycopy(mLine, 0, line, 0, mLineLength);
+            mLine = line;
+        }
+
+        System.arraycopy(buffer, offset, mLine, mLineLength, length);
+        mLineLength += length;
+    }
+
+    /**
+     * Abandons the request being waited for, once the waiting thread has been interrupted. The
+     * request keeps its place in the queue, so the following responses are still matched, and
+     * its response is dropped as it is read. Reading is resumed if it was paused for the request.
+     *
+     * @param request The request to abandon.
+     */
+    private void abandon(final Request request) {
+        mEventLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                request.mIsAbandoned = true;
+                if (request.mPending != null) {
+                    request.mPending.clear();
+                }
+
+                if (mPausingRequest == request) {
+                    mPausingRequest = null;
+                    updateInterest();
+                }
+            }
+        });
+    }
+
+    /**
+     * Waits for the response to a request, passing it to the handler of the request, if any, as
+     * it is read. The read/write timeout is an inactivity timeout, the wait is extended each
+     * time data is read from the channel, or handled, so a long response, or a response queued
+     * behind other long responses, does not time out while it is still being received. Once it
+     * times out, the media server is deemed unresponsive and the channel is closed, whereas an
+     * interrupted wait only abandons the request.
+     *
+     * @param request The request to wait for.
+     * @return The response to the request.
+     * @throws IOException  Thrown upon a communication error with the server.
+     * @throws MPDException Thrown if an error occurs as a result of command execution.
+     */
+    private List<String> await(final Request request) throws IOException, MPDException {
+        final long timeout = TimeUnit.MILLISECONDS.toNanos((long) getReadWriteTimeout());
+        final long start = System.nanoTime();
+        boolean isTimedOut = false;
+
+        try {
+            while (!request.isDone() && !isTimedOut) {
+                if (timeout > 0L) {
+                    final long lastActivity = mLastActivityTime;
+                    final long remaining;
+
+                    /** Compared by difference, {@code System.nanoTime()} may overflow. */
+                    if (lastActivity - start > 0L) {
+                        remaining = lastActivity + timeout - System.nanoTime();
+                    } else {
+                        remaining = start + timeout - System.nanoTime();
+                    }
+
+                    if (remaining > 0L) {
+                        request.await(remaining);
+                    } else {
+                        isTimedOut = true;
+                    }
+                } else {
+                    request.await(Long.MAX_VALUE);
+                }
+            }
+        } catch (final InterruptedException e) {
+            abandon(request);
+            throw new IOException(e);
+        }
+
+        if (isTimedOut) {
+            final IOException exception = new SocketTimeoutException(
+                    "Timed out waiting for response to: " +
+                            request.mFuture.getCommand().getCommand());
+
+            mEventLoop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    closeChannel(exception);
+                }
+            });
+            throw exception;
+        }
+
+        return request.getResponse();
+    }
+
+    /**
+     * Closes the channel, failing all requests awaiting a response and ending any {@code idle}
+     * subscription. This must be called from the event loop thread.
+     *
+     * @param exception The exception to fail the requests with.
+     */
+    private void closeChannel(final IOException exception) {
+        if (mKey != null) {
+            mKey.cancel();
+            mKey = null;
+        }
+
+        if (mChannel != null) {
+            try {
+                mChannel.close();
+            } catch (final IOException e) {
+                Log.debug(TAG, "Failed to close the channel.", e);
+            }
+            mChannel = null;
+        }
+
+        mBinary = null;
+        mConnectionResult = null;
+        mIdleRequest = null;
+        mIsBinaryRead = false;
+        mIsNoIdleSent = false;
+        mLineLength = 0;
+        mPausingRequest = null;
+        mReadBuffer.clear();
+        mWriteQueue.clear();
+        setConnected(false);
+
+        Request request = mRequests.poll();
+        while (request != null) {
+            request.fail(exception);
+            request = mRequests.poll();
+        }
+
+        if (mIdleListener != null) {
+            final IdleListener listener = mIdleListener;
+
+            mIdleListener = null;
+            try {
+                listener.onConnectionLost(exception);
+            } catch (final RuntimeException e) {
+                Log.error(TAG, "Idle listener failure.", e);
+            }
+        }
+    }
+
+    @Override
+    void closeConnections() {
+        mEventLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                closeChannel(new IOException("Connection closed."));
+            }
+        });
+    }
+
+    /**
+     * Completes the request at the head of the queue with the response read.
+     *
+     * @param exception The error response, null if none.
+     */
+    private void complete(final MPDException exception) {
+        final Request request = mRequests.poll();
+
+        request.mConnectionResult = mConnectionResult;
+        if (exception == null) {
+            request.complete();
+            setConnected(true);
+        } else {
+            request.fail(exception);
+        }
+
+        if (request == mIdleRequest) {
+            mIdleRequest = null;
+            mIsNoIdleSent = false;
+
+            if (mIdleListener != null && !request.mLines.isEmpty()) {
+                try {
+                    mIdleListener.onChanged(request.mLines);
+                } catch (final RuntimeException e) {
+                    Log.error(TAG, "Idle listener failure.", e);
+                }
+            }
+        }
+
+        if (mRequests.isEmpty() && mIdleListener != null && mChannel != null) {
+            sendIdle();
+        }
+    }
+
+    /**
+     * Writes a request to the channel, interrupting the {@code idle} request, if any, so the
+     * media server will process it. This must be called from the event loop thread.
+     *
+     * @param request The request to send.
+     */
+    private void enqueue(final Request request) {
+        if (mIdleRequest != null && !mIsNoIdleSent) {
+            write(NOIDLE);
+            mIsNoIdleSent = true;
+        }
+
+        write(request.mFuture.getCommand().toString());
+        mRequests.add(request);
+    }
+
+    /**
+     * Writes as much of the queued commands as the channel will accept. The queued commands
+     * are written at once, so commands queued together are not split across small packets.
+     *
+     * @throws IOException Thrown upon error transferring commands to media server.
+     */
+    private void flush() throws IOException {
+        if (!mWriteQueue.isEmpty()) {
+            mChannel.write(mWriteQueue.toArray(new ByteBuffer[mWriteQueue.size()]));
+
+            while (!mWriteQueue.isEmpty() && !mWriteQueue.peek().hasRemaining()) {
+                mWriteQueue.poll();
+            }
+        }
+
+        updateInterest();
+    }
+
+    /**
+     * Called from the event loop thread when the event loop has been closed.
+     *
+     * @param exception The exception to fail the pending requests with.
+     */
+    void onClosed(final IOException exception) {
+        closeChannel(exception);
+    }
+
+    /** Passes the binary data read to the request at the head of the queue. */
+    private void onBinary() {
+        mRequests.peek().addBinary(mBinary);
+        mBinary = null;
+        mIsBinaryRead = true;
+    }
+
+    /**
+     * Processes a response line read from the channel.
+     *
+     * @throws IOException Thrown if the response can't be matched to a request.
+     */
+    private void onLine() throws IOException {
+        int length = mLineLength;
+
+        if (length > 0 && mLine[length - 1] == '\r') {
+            length--;
+        }
+
+        final String line = new String(mLine, 0, length, UTF_8);
+        mLineLength = 0;
+
+        if (mIsBinaryRead) {
+            /** This is the newline terminating the binary data. */
+            mIsBinaryRead = false;
+
+            if (!line.isEmpty()) {
+                throw new IOException("Binary response data is not terminated by a newline.");
+            }
+        } else if (mConnectionResult == null) {
+            /** Protocol says OK will begin the session, otherwise assume IO error. */
+            if (!line.startsWith(MPD_RESPONSE_OK)) {
+                throw new IOException("Bogus response from server.");
+            }
+
+            mConnectionResult = line;
+        } else {
+            final Request request = mRequests.peek();
+
+            if (request == null) {
+                throw new IOException("Unexpected response from server: " + line);
+            }
+
+            if (line.startsWith(MPD_RESPONSE_OK)) {
+                complete(null);
+            } else if (line.startsWith(MPD_RESPONSE_ERR)) {
+                final MPDCommand command = request.mFuture.getCommand();
+
+                if (command.isErrorNonfatal(MPDException.getAckErrorCode(line))) {
+                    complete(null);
+                } else {
+                    complete(new MPDException(line));
+                }
+            } else {
+                request.add(line);
+
+                if (line.startsWith(MPD_RESPONSE_BINARY + ':')) {
+                    startBinary(line);
+                }
+            }
+        }
+    }
+
+    /**
+     * Called from the event loop thread when the channel is ready for I/O.
+     *
+     * @param key The selection key of the channel.
+     */
+    void onSelected(final SelectionKey key) {
+        try {
+            if (key.isConnectable()) {
+                mChannel.finishConnect();
+                updateInterest();
+            }
+
+            if (key.isValid() && key.isWritable()) {
+                flush();
+            }
+
+            if (key.isValid() && key.isReadable()) {
+                read();
+            }
+        } catch (final IOException e) {
+            closeChannel(e);
+        }
+    }
+
+    /**
+     * Opens the channel to the media server, queueing the password command if required. This
+     * must be called from the event loop thread.
+     *
+     * @throws IOException Thrown if the channel could not be opened.
+     */
+    private void open() throws IOException {
+        final InetSocketAddress address = getSocketAddress();
+
+        if (address == null) {
+            throw new IOException("Connection endpoint not yet established.");
+        }
+
+        mChannel = SocketChannel.open();
+        mChannel.configureBlocking(false);
+        /**
+         * A {@code noidle} is written while the {@code idle} command is still unacknowledged,
+         * don't let it wait on a delayed acknowledgement.
+         */
+        mChannel.socket().setTcpNoDelay(true);
+        if (mChannel.connect(address)) {
+            mKey = mEventLoop.register(mChannel, SelectionKey.OP_READ, this);
+        } else {
+            mKey = mEventLoop.register(mChannel, SelectionKey.OP_CONNECT, this);
+        }
+
+        if (getPassword() != null) {
+            enqueue(new Request(new ResponseFuture(
+                    new MPDCommand(MPDCommand.MPD_CMD_PASSWORD, getPassword())), null));
+        }
+    }
+
+    @Override
+    CommandResult processCommand(final MPDCommand command, final ResponseHandler handler)
+            throws IOException, MPDException {
+        if (mEventLoop.inEventLoop()) {
+            throw new IllegalStateException("Cannot wait for a response on the event loop.");
+        }
+
+        final CommandResult result = new CommandResult();
+        int retryCount = 0;
+
+        while (result.getResult() == null) {
+            if (isCancelled()) {
+                throw new IOException("Command " + command.getCommand() + " cancelled.");
+            }
+
+            final Request request = new Request(new ResponseFuture(command), handler);
+
+            submit(Collections.singletonList(request));
+            try {
+                result.setResult(await(request));
+                result.setConnectionResult(request.mConnectionResult);
+            } catch (final IOException e) {
+                retryCount++;
+
+                /** The handler has already received part of the response, it can't be resent. */
+                if (request.mIsResponseHandled || retryCount >= MAX_REQUEST_RETRY ||
+                        !MPDCommand.isRetryable(command.getCommand()) ||
+                        mEventLoop.isClosed()) {
+                    Log.error(TAG, "Command " + command.getCommand() + " failed after " +
+                            retryCount + " attempt(s).", e);
+                    throw e;
+                }
+
+                try {
+                    Thread.sleep(500L);
+                } catch (final InterruptedException ie) {
+                    throw new IOException(ie);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads the available data from the channel, processing each complete response line.
+     *
+     * @throws IOException Thrown upon a communication error with the server.
+     */
+    private void read() throws IOException {
+        if (mChannel.read(mReadBuffer) == -1) {
+            throw new EOFException("Connection lost");
+        }
+
+        mLastActivityTime = System.nanoTime();
+        final byte[] buffer = mReadBuffer.array();
+        final int limit = mReadBuffer.position();
+        int start = 0;
+        int i = 0;
+
+        while (i < limit && mChannel != null) {
+            if (mBinary == null) {
+                if (buffer[i] == MPDCommand.MPD_CMD_NEWLINE) {
+                    appendLine(buffer, start, i - start);
+                    start = i + 1;
+                    onLine();
+                }
+                i++;
+            } else {
+                final int length = Math.min(limit - i, mBinary.length - mBinaryLength);
+
+                System.arraycopy(buffer, i, mBinary, mBinaryLength, length);
+                mBinaryLength += length;
+                i += length;
+                start = i;
+
+                if (mBinaryLength == mBinary.length) {
+                    onBinary();
+                }
+            }
+        }
+
+        if (mChannel != null) {
+            appendLine(buffer, start, limit - start);
+            mReadBuffer.clear();
+        }
+    }
+
+    /**
+     * Resumes reading the channel, once the handler of the request it was paused for has caught
+     * up.
+     *
+     * @param request The request reading the channel was paused for.
+     */
+    private void resumeRead(final Request request) {
+        mEventLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (mPausingRequest == request) {
+                    mPausingRequest = null;
+                    updateInterest();
+                }
+            }
+        });
+    }
+
+    /**
+     * Sends commands to the server back to back, without waiting for each response. Unlike the
+     * {@code Socket} based connections, commands are not resent upon connection failure.
+     *
+     * @param commands The commands to be sent to the server.
+     * @return A response handle for each command, in the order of {@code commands}.
+     */
+    @Override
+    public List<ResponseFuture> sendPipelined(final List<MPDCommand> commands) {
+        final List<ResponseFuture> responses = new ArrayList<>(commands.size());
+        final List<Request> requests = new ArrayList<>(commands.size());
+
+        for (final MPDCommand command : commands) {
+            final ResponseFuture response = new ResponseFuture(command);
+
+            responses.add(response);
+            requests.add(new Request(response, null));
+        }
+
+        if (!requests.isEmpty()) {
+            submit(requests);
+        }
+
+        return responses;
+    }
+
+    /** Sends the {@code idle} command of the subscription. */
+    private void sendIdle() {
+        final Request request = new Request(new ResponseFuture(mIdleCommand), null);
+
+        enqueue(request);
+        mIdleRequest = request;
+    }
+
+    /**
+     * Sends requests to the media server from the event loop thread, connecting first if
+     * required.
+     *
+     * @param requests The requests to send.
+     */
+    private void submit(final List<Request> requests) {
+        final boolean isQueued = mEventLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (mChannel == null) {
+                        open();
+                    }
+                } catch (final IOException e) {
+                    closeChannel(e);
+                    for (final Request request : requests) {
+                        request.fail(e);
+                    }
+                    return;
+                }
+
+                for (final Request request : requests) {
+                    enqueue(request);
+                }
+            }
+        });
+
+        if (!isQueued) {
+            final IOException exception = new IOException("Event loop closed.");
+
+            for (final Request request : requests) {
+                request.fail(exception);
+            }
+        }
+    }
+
+    /**
+     * Starts reading the binary data announced by a {@code binary} response line.
+     *
+     * @param line The {@code binary} response line, holding the length of the data.
+     * @throws IOException Thrown if the length of the data is invalid.
+     */
+    private void startBinary(final String line) throws IOException {
+        int length;
+
+        try {
+            length = Integer.parseInt(line.substring(MPD_RESPONSE_BINARY.length() + 1).trim());
+        } catch (final NumberFormatException ignored) {
+            length = -1;
+        }
+
+        if (length < 0) {
+            throw new IOException("Invalid binary response length: " + line);
+        }
+
+        mBinary = new byte[length];
+        mBinaryLength = 0;
+
+        if (length == 0) {
+            onBinary();
+        }
+    }
+
+    /**
+     * Subscribes to changes on the media server. The {@code idle} command is kept pending on
+     * this connection whenever no other command is, so changes are received without any thread
+     * waiting for them. Other commands sent on this connection interrupt, then resume, the
+     * subscription. The subscription ends when the connection is lost or closed.
+     *
+     * @param listener   The listener to receive the changes, called from the event loop thread.
+     * @param subsystems The subsystems to subscribe to, all if none.
+     */
+    public void subscribeIdle(final IdleListener listener, final String... subsystems) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Idle listener cannot be null.");
+        }
+
+        final MPDCommand command = new MPDCommand(MPDCommand.MPD_CMD_IDLE, subsystems);
+        final boolean isQueued = mEventLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                mIdleListener = listener;
+                mIdleCommand = command;
+
+                try {
+                    if (mChannel == null) {
+                        open();
+                    }
+
+                    if (mIdleRequest == null && mRequests.isEmpty()) {
+                        sendIdle();
+                    }
+                } catch (final IOException e) {
+                    closeChannel(e);
+                }
+            }
+        });
+
+        if (!isQueued) {
+            listener.onConnectionLost(new IOException("Event loop closed."));
+        }
+    }
+
+    /** Ends the {@code idle} subscription, if any. */
+    public void unsubscribeIdle() {
+        mEventLoop.execute(new Runnable() {
+            @Override
+            public void run() {
+                mIdleListener = null;
+
+                if (mIdleRequest != null && !mIsNoIdleSent) {
+                    write(NOIDLE);
+                    mIsNoIdleSent = true;
+                }
+            }
+        });
+    }
+
+    /** Updates the I/O the channel is to be selected for, once connected. */
+    private void updateInterest() {
+        if (mKey != null && mKey.isValid() && mChannel.isConnected()) {
+            int interestOps = 0;
+
+            if (mPausingRequest == null) {
+                interestOps |= SelectionKey.OP_READ;
+            }
+
+            if (!mWriteQueue.isEmpty()) {
+                interestOps |= SelectionKey.OP_WRITE;
+            }
+
+            mKey.interestOps(interestOps);
+        }
+    }
+
+    /**
+     * Queues data to be written to the channel.
+     *
+     * @param data The data to write.
+     */
+    private void write(final String data) {
+        mWriteQueue.add(ByteBuffer.wrap(data.getBytes(UTF_8)));
+        updateInterest();
+    }
+
+    /** A command sent to the media server, and its response. */
+    private final class Request {
+
+        /** Queued after the last of the response handed to the handler. */
+        private final Object mEnd = new Object();
+
+        /** The response to complete. */
+        private final ResponseFuture mFuture;
+
+        /** The handler to stream the response to, null if the response is to be buffered. */
+        private final ResponseHandler mHandler;
+
+        /** Set once reading the channel has been paused for the handler to catch up. */
+        private final AtomicBoolean mIsPaused = new AtomicBoolean();
+
+        /** The buffered response. */
+        private final List<String> mLines;
+
+        /**
+         * The response lines, and binary data, read from the channel, and not yet passed to the
+         * handler, null if the response is to be buffered.
+         */
+        private final BlockingQueue<Object> mPending;
+
+        /** The connection result at the time the response was read. */
+        private String mConnectionResult;
+
+        /**
+         * Set from the event loop thread once the waiting thread has been interrupted, the
+         * response is then dropped as it is read.
+         */
+        private boolean mIsAbandoned;
+
+        /**
+         * The following fields are only accessed from the thread waiting for the response.
+         */
+
+        /** Set if the handler failed, the rest of the response is then ignored. */
+        private IOException mFailure;
+
+        /** Set once the whole response has been passed to the handler. */
+        private boolean mIsEnded;
+
+        /** Set once any of the response has been passed to the handler. */
+        private boolean mIsResponseHandled;
+
+        Request(final ResponseFuture future, final ResponseHandler handler) {
+            super();
+
+            mFuture = future;
+            mHandler = handler;
+
+            if (handler == null) {
+                mLines = new ArrayList<>();
+                mPending = null;
+            } else {
+                mLines = Collections.emptyList();
+                mPending = new LinkedBlockingQueue<>();
+            }
+        }
+
+        /**
+         * Adds a response line, or queues it for the handler. This is called from the event
+         * loop thread.
+         *
+         * @param line The response line.
+         */
+        void add(final String line) {
+            if (mHandler == null && !mIsAbandoned) {
+                mLines.add(line);
+            } else if (!mIsAbandoned) {
+                queue(line);
+            }
+        }
+
+        /**
+         * Queues binary data for the handler, if it takes binary data. Buffered responses have
+         * no room for binary data, it is dropped. This is called from the event loop thread.
+         *
+         * @param data The binary data.
+         */
+        void addBinary(final byte[] data) {
+            if (!mIsAbandoned && mHandler instanceof BinaryResponseHandler) {
+                queue(data);
+            }
+        }
+
+        /**
+         * Waits, up to the timeout given, for the response, passing it to the handler, if any,
+         * as it is received.
+         *
+         * @param timeout The maximum time to wait, in nanoseconds.
+         * @throws InterruptedException Thrown if the current thread was interrupted while
+         *                              waiting.
+         */
+        void await(final long timeout) throws InterruptedException {
+            if (mHandler == null) {
+                mFuture.await(timeout, TimeUnit.NANOSECONDS);
+            } else {
+                Object item = mPending.poll(timeout, TimeUnit.NANOSECONDS);
+
+                if (item != null) {
+                    mLastActivityTime = System.nanoTime();
+                }
+
+                while (item != null) {
+                    if (item == mEnd) {
+                        mIsEnded = true;
+                    } else if (mFailure == null) {
+                        handle(item);
+                    }
+
+                    item = mPending.poll();
+                }
+
+                /** Caught up, resume reading, unless the event loop thread found out first. */
+                if (mIsPaused.compareAndSet(true, false)) {
+                    resumeRead(this);
+                }
+            }
+        }
+
+        /** Completes the response with the lines read. */
+        void complete() {
+            mFuture.setResult(mLines);
+            end();
+        }
+
+        /** Queues the end of the response for the handler, if any. */
+        private void end() {
+            if (mPending != null) {
+                mPending.add(mEnd);
+            }
+        }
+
+        /**
+         * Completes the response with an exception.
+         *
+         * @param exception The exception to complete the response with.
+         */
+        void fail(final IOException exception) {
+            mFuture.setException(exception);
+            end();
+        }
+
+        /**
+         * Completes the response with an exception.
+         *
+         * @param exception The exception to complete the response with.
+         */
+        void fail(final MPDException exception) {
+            mFuture.setException(exception);
+            end();
+        }
+
+        /**
+         * Retrieves the response, once done.
+         *
+         * @return The response, the lines are empty if the response was passed to the handler.
+         * @throws IOException  Thrown upon a communication error with the server, or if the
+         *                      handler failed.
+         * @throws MPDException Thrown if an error occurs as a result of command execution.
+         */
+        List<String> getResponse() throws IOException, MPDException {
+            if (mFailure != null) {
+                throw mFailure;
+            }
+
+            return mFuture.getResponse();
+        }
+
+        /**
+         * Passes a response line, or binary data, to the handler.
+         *
+         * @param item The response line, or binary data.
+         */
+        private void handle(final Object item) {
+            mIsResponseHandled = true;
+
+            try {
+                if (item instanceof byte[]) {
+                    ((BinaryResponseHandler) mHandler).onBinaryResponse((byte[]) item);
+                } else {
+                    final String line = (String) item;
+                    final int delimiter = line.indexOf(':');
+                    int valueStart = delimiter + 1;
+
+                    if (delimiter == -1) {
+                        mFailure = new IOException(
+                                "Failed to parse server response key for line: " + line);
+                    } else {
+                        if (valueStart < line.length() && line.charAt(valueStart) == ' ') {
+                            valueStart++;
+                        }
+
+                        mHandler.onResponse(line.substring(0, delimiter),
+                                line.substring(valueStart));
+                    }
+                }
+            } catch (final RuntimeException e) {
+                mFailure = new IOException("Failed to handle the response.", e);
+            }
+        }
+
+        /**
+         * Checks if the response has been completed, and passed to the handler, if any.
+         *
+         * @return True if the response is done, false otherwise.
+         */
+        boolean isDone() {
+            final boolean isDone;
+
+            if (mHandler == null) {
+                isDone = mFuture.isDone();
+            } else {
+                isDone = mIsEnded;
+            }
+
+            return isDone;
+        }
+
+        /**
+         * Queues part of the response for the handler, pausing reading the channel if too much
+         * of it is left unhandled. This is called from the event loop thread.
+         *
+         * @param item The response line, or binary data.
+         */
+        private void queue(final Object item) {
+            mPending.add(item);
+
+            if (mPending.size() >= MAX_PENDING && !mIsPaused.get()) {
+                mIsPaused.set(true);
+
+                /** The waiting thread may have caught up meanwhile, then it won't resume. */
+                if (!mPending.isEmpty() || !mIsPaused.compareAndSet(true, false)) {
+                    mPausingRequest = this;
+                    updateInterest();
+                }
+            }
+        }
+    }
+}
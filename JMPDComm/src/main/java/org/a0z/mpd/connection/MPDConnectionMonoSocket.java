@@ -27,19 +27,18 @@
 
 package org.a0z.mpd.connection;
 
-import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.net.Socket;
 
 /**
  * Class representing a connection to MPD Server.
  */
-public class MPDConnectionMonoSocket extends MPDConnection {
-
-    private InputStreamReader mInputStream;
+public class MPDConnectionMonoSocket extends MPDConnectionSocket {
 
     private OutputStreamWriter mOutputStream;
 
+    private ResponseReader mResponseReader;
+
     private Socket mSocket;
 
     public MPDConnectionMonoSocket(final int readWriteTimeout) {
@@ -47,13 +46,13 @@ public class MPDConnectionMonoSocket extends MPDConnection {
     }
 
     @Override
-    public InputStreamReader getInputStream() {
-        return mInputStream;
+    public OutputStreamWriter getOutputStream() {
+        return mOutputStream;
     }
 
     @Override
-    public OutputStreamWriter getOutputStream() {
-        return mOutputStream;
+    ResponseReader getResponseReader() {
+        return mResponseReader;
     }
 
     @Override
@@ -62,13 +61,13 @@ public class MPDConnectionMonoSocket extends MPDConnection {
     }
 
     @Override
-    public void setInputStream(final InputStreamReader inputStream) {
-        mInputStream = inputStream;
+    public void setOutputStream(final OutputStreamWriter outputStream) {
+        mOutputStream = outputStream;
     }
 
     @Override
-    public void setOutputStream(final OutputStreamWriter outputStream) {
-        mOutputStream = outputStream;
+    void setResponseReader(final ResponseReader responseReader) {
+        mResponseReader = responseReader;
     }
 
     @Override
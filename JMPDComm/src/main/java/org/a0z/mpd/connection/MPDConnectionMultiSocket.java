@@ -27,52 +27,157 @@
 
 package org.a0z.mpd.connection;
 
-import java.io.InputStreamReader;
+import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.net.Socket;
 
 /**
- * Class representing a connection to MPD Server.
+ * Class representing a connection to MPD Server, processing commands concurrently over a pool of
+ * connections.
  */
-public class MPDConnectionMultiSocket extends MPDConnection {
+public class MPDConnectionMultiSocket extends MPDConnectionSocket {
 
-    private static final ThreadLocal<InputStreamReader> INPUT_STREAM = new ThreadLocal<>();
+    /** The default maximum time, in milliseconds, to wait for a pooled connection. */
+    private static final long BORROW_TIMEOUT = 30000L;
 
-    private static final ThreadLocal<OutputStreamWriter> OUTPUT_STREAM = new ThreadLocal<>();
+    /**
+     * The default time, in milliseconds, after which an idle connection is closed. This is kept
+     * below the default MPD {@code connection_timeout} of 60 seconds.
+     */
+    private static final long IDLE_TIMEOUT = 50000L;
 
-    private static final ThreadLocal<Socket> SOCKET = new ThreadLocal<>();
+    /** The default number of idle connections to keep. */
+    private static final int MIN_IDLE = 1;
+
+    /** The connection currently borrowed by each thread. */
+    private final ThreadLocal<ConnectionPool.Entry> mConnection = new ThreadLocal<>();
+
+    private final ConnectionPool mPool;
 
     public MPDConnectionMultiSocket(final int readWriteTimeout, final int maxConnection) {
+        this(readWriteTimeout, MIN_IDLE, maxConnection, IDLE_TIMEOUT, BORROW_TIMEOUT);
+    }
+
+    /**
+     * The constructor method. This method does not connect to the server.
+     *
+     * @param readWriteTimeout The read write timeout for this connection.
+     * @param minIdle          The number of idle connections to keep, regardless of the idle
+     *                         timeout.
+     * @param maxConnection    Maximum number of sockets to allow running at one time.
+     * @param idleTimeout      The time, in milliseconds, after which an idle connection is
+     *                         closed.
+     * @param borrowTimeout    The maximum time, in milliseconds, to wait for a connection.
+     */
+    public MPDConnectionMultiSocket(final int readWriteTimeout, final int minIdle,
+            final int maxConnection, final long idleTimeout, final long borrowTimeout) {
         super(readWriteTimeout, maxConnection);
+
+        mPool = new ConnectionPool(minIdle, maxConnection, idleTimeout, borrowTimeout);
     }
 
     @Override
-    public InputStreamReader getInputStream() {
-        return INPUT_STREAM.get();
+    void acquireConnection() throws IOException {
+        final ConnectionPool.Entry entry = mConnection.get();
+
+        if (entry == null) {
+            mConnection.set(mPool.borrow());
+        } else {
+            entry.hold();
+        }
+    }
+
+    @Override
+    void closeConnections() {
+        mPool.clear();
+    }
+
+    /**
+     * Retrieves the connection borrowed by the current thread.
+     *
+     * @return The connection borrowed by the current thread.
+     */
+    private ConnectionPool.Entry getAcquired() {
+        final ConnectionPool.Entry entry = mConnection.get();
+
+        if (entry == null) {
+            throw new IllegalStateException("No connection acquired by this thread.");
+        }
+
+        return entry;
+    }
+
+    /**
+     * The pool of connections used by this connection, useful to monitor its usage.
+     *
+     * @return The connection pool.
+     */
+    public ConnectionPool getConnectionPool() {
+        return mPool;
     }
 
     @Override
     public OutputStreamWriter getOutputStream() {
-        return OUTPUT_STREAM.get();
+        final ConnectionPool.Entry entry = mConnection.get();
+        OutputStreamWriter outputStream = null;
+
+        if (entry != null) {
+            outputStream = entry.getOutputStream();
+        }
+
+        return outputStream;
+    }
+
+    @Override
+    ResponseReader getResponseReader() {
+        final ConnectionPool.Entry entry = mConnection.get();
+        ResponseReader responseReader = null;
+
+        if (entry != null) {
+            responseReader = entry.getResponseReader();
+        }
+
+        return responseReader;
     }
 
     @Override
     protected Socket getSocket() {
-        return SOCKET.get();
+        final ConnectionPool.Entry entry = mConnection.get();
+        Socket socket = null;
+
+        if (entry != null) {
+            socket = entry.getSocket();
+        }
+
+        return socket;
     }
 
     @Override
-    public void setInputStream(final InputStreamReader inputStream) {
-        INPUT_STREAM.set(inputStream);
+    void releaseConnection(final boolean isReusable) {
+        final ConnectionPool.Entry entry = mConnection.get();
+
+        if (entry != null && entry.unhold(isReusable)) {
+            mConnection.remove();
+            mPool.release(entry);
+        }
     }
 
     @Override
     public void setOutputStream(final OutputStreamWriter outputStream) {
-        OUTPUT_STREAM.set(outputStream);
+        getAcquired().setOutputStream(outputStream);
+    }
+
+    @Override
+    void setResponseReader(final ResponseReader responseReader) {
+        getAcquired().setResponseReader(responseReader);
     }
 
     @Override
     protected void setSocket(final Socket socket) {
-        SOCKET.set(socket);
+        if (socket != null) {
+            mPool.onConnect();
+        }
+
+        getAcquired().setSocket(socket);
     }
 }
@@ -0,0 +1,707 @@
+/*
+ * Copyright (C) 2004 Felipe Gustavo de Almeida
+ * Copyright (C) 2010-2014 The MPDroid Project
+ *
+ * All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice,this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.a0z.mpd.connection;
+
+import org.a0z.mpd.Log;
+import org.a0z.mpd.MPDCommand;
+import org.a0z.mpd.MPDStatusMonitor;
+import org.a0z.mpd.exception.MPDException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class representing a connection to MPD Server over blocking {@code Socket}(s), processing
+ * commands on a thread pool.
+ */
+public abstract class MPDConnectionSocket extends MPDConnection {
+
+    /** The debug flag to enable or disable debug logging output. */
+    private static final boolean DEBUG = false;
+
+    private static final String POOL_THREAD_NAME_PREFIX = "pool";
+
+    /** The {@code ExecutorService} used to process commands. */
+    private final ThreadPoolExecutor mExecutor;
+
+    /** The lock for this connection. */
+    private final Object mLock = new Object();
+
+    private final String mTag;
+
+    /**
+     * The constructor method. This method does not connect to the server.
+     *
+     * @param readWriteTimeout The read write timeout for this connection.
+     * @param maxConnections   Maximum number of sockets to allow running at one time.
+     * @see #connect(java.net.InetAddress, int, String)
+     */
+    MPDConnectionSocket(final int readWriteTimeout, final int maxConnections) {
+        super(readWriteTimeout);
+
+        /**
+         * The queue is unbounded, so the executor never grows beyond its core size, allow as many
+         * threads as connections. Idle threads may time out, their connections do not.
+         */
+        mExecutor = new ThreadPoolExecutor(maxConnections, maxConnections,
+                (long) readWriteTimeout, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        mExecutor.prestartCoreThread();
+        if (maxConnections > 1) {
+            mTag = "MPDConnectionMultiSocket";
+            mExecutor.allowCoreThreadTimeOut(true);
+        } else {
+            mTag = "MPDConnectionMonoSocket";
+        }
+    }
+
+    protected abstract OutputStreamWriter getOutputStream();
+
+    abstract ResponseReader getResponseReader();
+
+    protected abstract Socket getSocket();
+
+    /**
+     * This is the low level media server connection method.
+     *
+     * @return The initial response from the connection.
+     * @throws IOException  Thrown upon a communication error with the server.
+     * @throws MPDException Thrown if an error occurs as a result of command execution.
+     */
+    private String innerConnect() throws IOException, MPDException {
+        final String line;
+
+        // Always release existing socket if any before creating a new one
+        if (getSocket() != null) {
+            try {
+                innerDisconnect();
+            } catch (final IOException ignored) {
+            }
+        }
+
+        setSocket(new Socket());
+        getSocket().setSoTimeout(getReadWriteTimeout());
+        getSocket().connect(getSocketAddress(), CONNECTION_TIMEOUT);
+        setResponseReader(new ResponseReader(getSocket().getInputStream()));
+        setOutputStream(new OutputStreamWriter(getSocket().getOutputStream(), "UTF-8"));
+
+        if (!getResponseReader().nextLine()) {
+            throw new IOException("No response from server.");
+        }
+
+        line = getResponseReader().getLine();
+
+        /** Protocol says OK will begin the session, otherwise assume IO error. */
+        if (!line.startsWith(MPD_RESPONSE_OK)) {
+            throw new IOException("Bogus response from server.");
+        }
+
+        if (getPassword() != null) {
+            sendCommand(MPDCommand.MPD_CMD_PASSWORD, getPassword());
+        }
+
+        return line;
+    }
+
+    /**
+     * A low level disconnect method for the socket(s).
+     *
+     * @throws IOException Thrown if there is a problem closing the socket.
+     */
+    @Override
+    void innerDisconnect() throws IOException {
+        super.innerDisconnect();
+        synchronized (mLock) {
+            if (getSocket() != null) {
+                getSocket().close();
+                setSocket(null);
+            }
+        }
+    }
+
+    /**
+     * Processes the command by setting up the command processor executor.
+     *
+     * @param command The command to be processed.
+     * @param handler The handler to stream the response to, if null, the response will be
+     *                buffered into the {@code CommandResult}.
+     * @return The response to the processed command.
+     * @throws IOException  Thrown upon a communication error with the server.
+     * @throws MPDException Thrown if an error occurs as a result of command execution.
+     */
+    @Override
+    CommandResult processCommand(final MPDCommand command,
+            final ResponseHandler handler) throws IOException, MPDException {
+        final CommandResult result;
+
+        // Bypass thread pool queue if the thread already comes from the pool to avoid deadlock.
+        if (Thread.currentThread().getName().startsWith(POOL_THREAD_NAME_PREFIX)) {
+            result = new CommandProcessor(command, handler).call();
+        } else {
+            try {
+                result = mExecutor.submit(new CommandProcessor(command, handler)).get();
+                // Spam the log with the largest pool size
+                //Log.debug(mTag, "Largest pool size: " + mExecutor.getLargestPoolSize());
+            } catch (final ExecutionException | InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+
+        if (result.getResult() == null) {
+            if (result.isIOExceptionLast() == null) {
+                /**
+                 * This should not occur, and this exception should extend RuntimeException,
+                 * BUT a RuntimeException would most likely not help the situation.
+                 */
+                throw new IOException(
+                        "No result, no exception. This is a bug. Please report." + '\n' +
+                                "Cancelled: " + isCancelled() + '\n' +
+                                "Command: " + command + '\n' +
+                                "Connected: " + isConnected() + '\n' +
+                                "Connection result: " + result.getConnectionResult() + '\n');
+            } else if (result.isIOExceptionLast().equals(Boolean.TRUE)) {
+                throw result.getIOException();
+            } else if (result.isIOExceptionLast().equals(Boolean.FALSE)) {
+                throw result.getMPDException();
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public List<ResponseFuture> sendPipelined(final List<MPDCommand> commands) {
+        final List<ResponseFuture> responses = new ArrayList<>(commands.size());
+
+        for (final MPDCommand command : commands) {
+            responses.add(new ResponseFuture(command));
+        }
+
+        if (!responses.isEmpty()) {
+            final PipelineProcessor processor = new PipelineProcessor(responses);
+
+            // Bypass thread pool queue if the thread already comes from the pool to avoid deadlock.
+            if (Thread.currentThread().getName().startsWith(POOL_THREAD_NAME_PREFIX)) {
+                processor.run();
+            } else {
+                mExecutor.execute(processor);
+            }
+        }
+
+        return responses;
+    }
+
+    protected abstract void setOutputStream(OutputStreamWriter outputStream);
+
+    abstract void setResponseReader(ResponseReader responseReader);
+
+    protected abstract void setSocket(Socket socket);
+
+    /** This class communicates with the server by sending the command and processing the result. */
+    private class CommandProcessor implements Callable<CommandResult> {
+
+        /** The command to be processed. */
+        private final MPDCommand mCommand;
+
+        /** The handler to stream the response to, null if the response is to be buffered. */
+        private final ResponseHandler mHandler;
+
+        /** Set once any of the response has been passed to the handler. */
+        private boolean mIsResponseHandled = false;
+
+        CommandProcessor(final MPDCommand mpdCommand, final ResponseHandler handler) {
+            super();
+
+            mCommand = mpdCommand;
+            mHandler = handler;
+        }
+
+        /**
+         * This is the default class method.
+         *
+         * @return A {@code CommandResult} from the processed command.
+         */
+        @Override
+        public final CommandResult call() {
+            CommandResult result;
+            boolean isReusable = false;
+
+            try {
+                acquireConnection();
+
+                try {
+                    result = process();
+                    isReusable = true;
+                } finally {
+                    releaseConnection(isReusable);
+                }
+            } catch (final IOException e) {
+                result = new CommandResult();
+                result.setException(e);
+                logError(result, mCommand.getCommand(), 0);
+            }
+
+            return result;
+        }
+
+        /**
+         * Processes the command with the connection acquired by the current thread.
+         *
+         * @return A {@code CommandResult} from the processed command.
+         */
+        private CommandResult process() {
+            int retryCount = 0;
+            final CommandResult result = new CommandResult();
+            boolean isCommandSent = false;
+            final String baseCommand = mCommand.getCommand();
+
+            while (result.getResult() == null && retryCount < MAX_REQUEST_RETRY && !isCancelled()) {
+                try {
+                    if (getSocket() == null || !getSocket().isConnected() ||
+                            getSocket().isClosed()) {
+                        result.setConnectionResult(innerConnect());
+                    }
+
+                    write();
+                    isCommandSent = true;
+                    result.setResult(read());
+                } catch (final EOFException ex0) {
+                    handleFailure(result, ex0);
+
+                    // Do not fail when the IDLE response has not been read (to improve connection
+                    // failure robustness). Just send the "changed playlist" result to force the MPD
+                    // status to be refreshed.
+                    if (MPDCommand.MPD_CMD_IDLE.equals(baseCommand)) {
+                        result.setResult(Collections.singletonList(
+                                "changed: " + MPDStatusMonitor.IDLE_PLAYLIST));
+                    }
+                } catch (final IOException e) {
+                    handleFailure(result, e);
+                } catch (final MPDException ex1) {
+                    // Avoid getting in an infinite loop if an error occurred in the password cmd
+                    if (ex1.mErrorCode == MPDException.ACK_ERROR_PASSWORD ||
+                            ex1.mErrorCode == MPDException.ACK_ERROR_PERMISSION) {
+                        result.setException(ex1);
+                    } else {
+                        handleFailure(result, ex1);
+                    }
+                }
+
+                /** On successful send of non-retryable command, break out. */
+                if (!MPDCommand.isRetryable(baseCommand) && isCommandSent) {
+                    break;
+                }
+
+                /** The handler has already received part of the response, it can't be resent. */
+                if (mIsResponseHandled) {
+                    break;
+                }
+
+                retryCount++;
+            }
+
+            if (!isCancelled()) {
+                if (result.getResult() == null) {
+                    logError(result, baseCommand, retryCount);
+                } else {
+                    setConnected(true);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Used after a server error, sleeps for a small time then tries to reconnect.
+         *
+         * @param result The {@code CommandResult} which stores the connection failure.
+         * @param e      The exception to set.
+         */
+        private void handleFailure(final CommandResult result, final IOException e) {
+            if (isFailureHandled(result)) {
+                result.setException(e);
+            }
+        }
+
+        /**
+         * Used after a server error, sleeps for a small time then tries to reconnect.
+         *
+         * @param result The {@code CommandResult} which stores the connection failure.
+         * @param e      The exception to set.
+         */
+        private void handleFailure(final CommandResult result, final MPDException e) {
+            if (isFailureHandled(result)) {
+                result.setException(e);
+            }
+        }
+
+        /**
+         * Used after a server error, sleeps for a small time then tries to reconnect.
+         *
+         * @param result The {@code CommandResult} which stores the connection failure.
+         */
+        private boolean isFailureHandled(final CommandResult result) {
+            boolean failureHandled = false;
+            setConnected(false);
+
+            try {
+                Thread.sleep(500L);
+            } catch (final InterruptedException ignored) {
+            }
+
+            try {
+                innerConnect();
+                failureHandled = true;
+            } catch (final MPDException me) {
+                result.setException(me);
+            } catch (final IOException ie) {
+                result.setException(ie);
+            }
+
+            return failureHandled;
+        }
+
+        /**
+         * This method is a place to specify if a ACK is not actually an error message we don't
+         * consider to be a fatal error.
+         *
+         * @param message The message to check.
+         * @return True if the message indicates a non-fatal error, false otherwise.
+         */
+        private boolean isNonfatalACK(final String message) {
+            final boolean isNonfatalACK;
+            final int errorCode = MPDException.getAckErrorCode(message);
+
+            if (mCommand.isErrorNonfatal(errorCode)) {
+                isNonfatalACK = true;
+                if (DEBUG) {
+                    Log.debug(mTag, "Non-fatal ACK emitted, exception suppressed: " + message);
+                }
+            } else {
+                isNonfatalACK = false;
+            }
+
+            return isNonfatalACK;
+        }
+
+        private void logError(final CommandResult result, final String baseCommand,
+                final int retryCount) {
+            final StringBuilder stringBuilder = new StringBuilder(50);
+
+            stringBuilder.append("Command ");
+            stringBuilder.append(baseCommand);
+            stringBuilder.append(" failed after ");
+            stringBuilder.append(retryCount + 1);
+
+            if (retryCount == 0) {
+                stringBuilder.append(" attempt.");
+            } else {
+                stringBuilder.append(" attempts.");
+            }
+
+            if (result.isIOExceptionLast() == null) {
+                Log.error(mTag, stringBuilder.toString());
+            } else if (result.isIOExceptionLast().equals(Boolean.TRUE)) {
+                Log.error(mTag, stringBuilder.toString(), result.getIOException());
+            } else if (result.isIOExceptionLast().equals(Boolean.FALSE)) {
+                Log.error(mTag, stringBuilder.toString(), result.getMPDException());
+            }
+        }
+
+        /**
+         * Read the server response after a {@code write()} to the server.
+         *
+         * @return A String list of responses, this list will be empty if the response was
+         * passed to the {@code ResponseHandler}.
+         * @throws IOException  Thrown if there was a problem reading from from the media
+         *                      server.
+         * @throws MPDException Thrown if there was a server side error with the command that
+         *                      was sent.
+         */
+        private List<String> read() throws MPDException, IOException {
+            final List<String> result;
+            final ResponseReader in = getResponseReader();
+
+            if (mHandler == null) {
+                result = new ArrayList<>();
+            } else {
+                result = Collections.emptyList();
+            }
+
+            boolean serverDataRead = false;
+            while (in.nextLine()) {
+                serverDataRead = true;
+
+                if (in.lineStartsWith(MPD_RESPONSE_OK)) {
+                    break;
+                }
+
+                if (in.lineStartsWith(MPD_RESPONSE_ERR)) {
+                    final String line = in.getLine();
+
+                    if (isNonfatalACK(line)) {
+                        break;
+                    }
+
+                    throw new MPDException(line);
+                }
+
+                final boolean isBinary = in.lineStartsWith(MPD_RESPONSE_BINARY + ':');
+                int binaryLength = 0;
+                if (isBinary) {
+                    try {
+                        binaryLength = Integer.parseInt(in.getValue());
+                    } catch (final NumberFormatException ignored) {
+                        binaryLength = -1;
+                    }
+
+                    if (binaryLength < 0) {
+                        throw new IOException("Invalid binary response length: " + in.getLine());
+                    }
+                }
+
+                if (mHandler == null) {
+                    result.add(in.getLine());
+                } else {
+                    mIsResponseHandled = true;
+                    mHandler.onResponse(in.getKey(), in.getValue());
+                }
+
+                /** A buffered response has no room for the binary data, it is read and dropped. */
+                if (isBinary) {
+                    final byte[] binary = in.readBinary(binaryLength);
+
+                    if (mHandler instanceof BinaryResponseHandler) {
+                        ((BinaryResponseHandler) mHandler).onBinaryResponse(binary);
+                    }
+                }
+            }
+
+            if (!serverDataRead) {
+                // Close socket if there is no response...
+                // Something is wrong (e.g. MPD shutdown..)
+                throw new EOFException("Connection lost");
+            }
+            return result;
+        }
+
+        /**
+         * Sends the command to the server.
+         *
+         * @throws IOException Thrown upon error transferring command to media server.
+         */
+        private void write() throws IOException {
+            final String cmdString = mCommand.toString();
+
+            // Uncomment for extreme command debugging
+            //Log.debug(mTag, "Sending MPDCommand : " + cmdString);
+            getOutputStream().write(cmdString);
+            getOutputStream().flush();
+        }
+    }
+
+    /**
+     * This class communicates with the server by sending a list of commands without waiting for
+     * their responses, then reading the responses in the order the commands were sent.
+     */
+    private class PipelineProcessor implements Runnable {
+
+        /** The responses to complete, in the order their commands are to be sent. */
+        private final List<ResponseFuture> mResponses;
+
+        PipelineProcessor(final List<ResponseFuture> responses) {
+            super();
+
+            mResponses = responses;
+        }
+
+        /**
+         * Completes all responses not yet completed with an exception.
+         *
+         * @param completed The number of responses already completed.
+         * @param exception The exception to complete the remaining responses with.
+         */
+        private void failRemaining(final int completed, final MPDException exception) {
+            for (int i = completed; i < mResponses.size(); i++) {
+                mResponses.get(i).setException(exception);
+            }
+        }
+
+        /**
+         * Completes all responses not yet completed with an exception.
+         *
+         * @param completed The number of responses already completed.
+         * @param exception The exception to complete the remaining responses with.
+         */
+        private void failRemaining(final int completed, final IOException exception) {
+            for (int i = completed; i < mResponses.size(); i++) {
+                mResponses.get(i).setException(exception);
+            }
+        }
+
+        /**
+         * Checks if the commands which have not yet been completed can be resent.
+         *
+         * @param completed The number of responses already completed.
+         * @return True if all remaining commands are retryable, false otherwise.
+         */
+        private boolean isRetryable(final int completed) {
+            boolean isRetryable = true;
+
+            for (int i = completed; i < mResponses.size(); i++) {
+                if (!MPDCommand.isRetryable(mResponses.get(i).getCommand().getCommand())) {
+                    isRetryable = false;
+                    break;
+                }
+            }
+
+            return isRetryable;
+        }
+
+        @Override
+        public void run() {
+            boolean isAcquired = false;
+            boolean isReusable = false;
+
+            try {
+                acquireConnection();
+                isAcquired = true;
+                process();
+                isReusable = true;
+            } catch (final IOException e) {
+                Log.error(mTag, "Failed to acquire a connection for the command pipeline.", e);
+                failRemaining(0, e);
+            } finally {
+                if (isAcquired) {
+                    releaseConnection(isReusable);
+                }
+            }
+        }
+
+        /** Sends the commands and reads their responses with the connection acquired. */
+        private void process() {
+            final int size = mResponses.size();
+            int completed = 0;
+            int retryCount = 0;
+            IOException lastException = null;
+
+            while (completed < size && retryCount < MAX_REQUEST_RETRY && !isCancelled()) {
+                try {
+                    if (getSocket() == null || !getSocket().isConnected() ||
+                            getSocket().isClosed()) {
+                        innerConnect();
+                    }
+
+                    write(completed);
+
+                    for (; completed < size; completed++) {
+                        final ResponseFuture response = mResponses.get(completed);
+                        final CommandProcessor processor =
+                                new CommandProcessor(response.getCommand(), null);
+
+                        try {
+                            response.setResult(processor.read());
+                        } catch (final MPDException e) {
+                            /** The ACK completes this response only, continue to the next. */
+                            response.setException(e);
+                        }
+                    }
+
+                    setConnected(true);
+                } catch (final IOException e) {
+                    lastException = e;
+                    setConnected(false);
+
+                    if (!isRetryable(completed)) {
+                        /** Responses may be left unread, don't leave the connection in use. */
+                        try {
+                            innerDisconnect();
+                        } catch (final IOException ignored) {
+                        }
+                        break;
+                    }
+
+                    try {
+                        Thread.sleep(500L);
+                        innerConnect();
+                    } catch (final InterruptedException ignored) {
+                    } catch (final IOException ie) {
+                        lastException = ie;
+                    } catch (final MPDException me) {
+                        failRemaining(completed, me);
+                        completed = size;
+                    }
+                } catch (final MPDException e) {
+                    /** Only the connection password can fail outside of a response. */
+                    failRemaining(completed, e);
+                    completed = size;
+                }
+
+                retryCount++;
+            }
+
+            if (completed < size) {
+                if (lastException == null) {
+                    lastException = new IOException("Command pipeline cancelled.");
+                }
+
+                if (!isCancelled()) {
+                    Log.error(mTag, "Command pipeline failed after " + retryCount +
+                            " attempts.", lastException);
+                }
+                failRemaining(completed, lastException);
+            }
+        }
+
+        /**
+         * Sends the commands, which have not yet been completed, to the server at once.
+         *
+         * @param completed The number of responses already completed.
+         * @throws IOException Thrown upon error transferring commands to media server.
+         */
+        private void write(final int completed) throws IOException {
+            final StringBuilder commands = new StringBuilder();
+
+            for (int i = completed; i < mResponses.size(); i++) {
+                commands.append(mResponses.get(i).getCommand());
+            }
+
+            getOutputStream().write(commands.toString());
+            getOutputStream().flush();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2004 Felipe Gustavo de Almeida
+ * Copyright (C) 2010-2014 The MPDroid Project
+ *
+ * All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice,this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.a0z.mpd.connection;
+
+import org.a0z.mpd.MPDCommand;
+import org.a0z.mpd.exception.MPDException;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * This class is a handle to the pending response of a pipelined command. It is completed by the
+ * connection as soon as the response to its command has been read, regardless of the responses
+ * to any commands sent after it.
+ *
+ * @see MPDConnection#sendPipelined(List)
+ */
+public final class ResponseFuture implements Future<List<String>> {
+
+    /** The command this is the response to. */
+    private final MPDCommand mCommand;
+
+    /** Released once this response has been completed. */
+    private final CountDownLatch mLatch = new CountDownLatch(1);
+
+    private IOException mIOException;
+
+    private MPDException mMPDException;
+
+    private List<String> mResult;
+
+    ResponseFuture(final MPDCommand command) {
+        super();
+
+        mCommand = command;
+    }
+
+    /**
+     * Pipelined commands cannot be cancelled once they have been queued.
+     *
+     * @param mayInterruptIfRunning Unused.
+     * @return Always false.
+     */
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    /**
+     * Waits, up to the timeout given, for the response.
+     *
+     * @param timeout The maximum time to wait.
+     * @param unit    The time unit of the {@code timeout} argument.
+     * @return True if the response has been completed, false if the wait timed out.
+     * @throws InterruptedException Thrown if the current thread was interrupted while waiting.
+     */
+    boolean await(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return mLatch.await(timeout, unit);
+    }
+
+    /**
+     * Waits for the response, and returns it.
+     *
+     * @return The response to the command.
+     * @throws ExecutionException   Thrown if the command failed, the cause will either be a
+     *                              {@code IOException} or a {@code MPDException}.
+     * @throws InterruptedException Thrown if the current thread was interrupted while waiting.
+     */
+    @Override
+    public List<String> get() throws InterruptedException, ExecutionException {
+        mLatch.await();
+
+        return getResult();
+    }
+
+    /**
+     * Waits, up to the timeout given, for the response, and returns it.
+     *
+     * @param timeout The maximum time to wait.
+     * @param unit    The time unit of the {@code timeout} argument.
+     * @return The response to the command.
+     * @throws ExecutionException   Thrown if the command failed, the cause will either be a
+     *                              {@code IOException} or a {@code MPDException}.
+     * @throws InterruptedException Thrown if the current thread was interrupted while waiting.
+     * @throws TimeoutException     Thrown if the wait timed out.
+     */
+    @Override
+    public List<String> get(final long timeout, final TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (!mLatch.await(timeout, unit)) {
+            throw new TimeoutException("Timed out waiting for response to: " +
+                    mCommand.getCommand());
+        }
+
+        return getResult();
+    }
+
+    /**
+     * Retrieves the command this is the response to.
+     *
+     * @return The command this is the response to.
+     */
+    public MPDCommand getCommand() {
+        return mCommand;
+    }
+
+    /**
+     * Waits for the response, and returns it, like the {@code sendCommand()} methods of the
+     * connection would.
+     *
+     * @return The response to the command.
+     * @throws IOException  Thrown upon a communication error with the server.
+     * @throws MPDException Thrown if an error occurs as a result of command execution.
+     */
+    public List<String> getResponse() throws IOException, MPDException {
+        try {
+            mLatch.await();
+        } catch (final InterruptedException e) {
+            throw new IOException(e);
+        }
+
+        if (mIOException != null) {
+            throw mIOException;
+        }
+
+        if (mMPDException != null) {
+            throw mMPDException;
+        }
+
+        return mResult;
+    }
+
+    private List<String> getResult() throws ExecutionException {
+        if (mIOException != null) {
+            throw new ExecutionException(mIOException);
+        }
+
+        if (mMPDException != null) {
+            throw new ExecutionException(mMPDException);
+        }
+
+        return mResult;
+    }
+
+    /**
+     * Pipelined commands cannot be cancelled once they have been queued.
+     *
+     * @return Always false.
+     */
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return mLatch.getCount() == 0L;
+    }
+
+    final void setException(final IOException exception) {
+        mIOException = exception;
+        mLatch.countDown();
+    }
+
+    final void setException(final MPDException exception) {
+        mMPDException = exception;
+        mLatch.countDown();
+    }
+
+    final void setResult(final List<String> result) {
+        mResult = Collections.unmodifiableList(result);
+        mLatch.countDown();
+    }
+}
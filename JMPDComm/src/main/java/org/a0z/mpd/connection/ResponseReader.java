@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2004 Felipe Gustavo de Almeida
+ * Copyright (C) 2010-2014 The MPDroid Project
+ *
+ * All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice,this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.a0z.mpd.connection;
+
+import org.a0z.mpd.exception.InvalidResponseException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * This class reads media server responses, line by line, from a socket input stream into a
+ * single reused byte buffer. Keys are decoded through a small cache, as the media server repeats
+ * the same few keys for every entry of a response. The binary data following a {@code binary}
+ * line is read with {@link #readBinary(int)}.
+ */
+final class ResponseReader {
+
+    /** The default size of the byte buffer, it will grow for lines longer than this. */
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /** The number of slots in the key cache, must be a power of two. */
+    private static final int KEY_CACHE_SIZE = 64;
+
+    /** The MPD protocol key delimiter. */
+    private static final byte KEY_DELIMITER = (byte) ':';
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** The stream to read the media server response from. */
+    private final InputStream mInputStream;
+
+    /** The key cache, indexed by the hash of the key bytes. */
+    private final String[] mKeyCache = new String[KEY_CACHE_SIZE];
+
+    /** The reused byte buffer. */
+    private byte[] mBuffer = new byte[DEFAULT_BUFFER_SIZE];
+
+    /** The index of the key delimiter in the current line, -1 if not yet searched. */
+    private int mDelimiter;
+
+    /** The end index of valid data in the buffer. */
+    private int mLimit;
+
+    /** The end index, exclusive, of the current line. */
+    private int mLineEnd;
+
+    /** The start index of the current line. */
+    private int mLineStart;
+
+    /** The start index of unread data in the buffer. */
+    private int mPosition;
+
+    ResponseReader(final InputStream inputStream) {
+        super();
+
+        mInputStream = inputStream;
+    }
+
+    /**
+     * Checks if the bytes of the current line are equal to the characters of the {@code string}.
+     * This is only valid for ASCII strings.
+     *
+     * @param string The ASCII string to compare.
+     * @param start  The start index in the buffer to compare from.
+     * @param length The number of bytes to compare.
+     * @return True if the line range is equal to the {@code string}, false otherwise.
+     */
+    private boolean equals(final String string, final int start, final int length) {
+        boolean isEqual = string.length() == length;
+
+        for (int i = 0; isEqual && i < length; i++) {
+            isEqual = string.charAt(i) == (char) mBuffer[start + i];
+        }
+
+        return isEqual;
+    }
+
+    /**
+     * Finds the key delimiter of the current line.
+     *
+     * @return The index of the key delimiter in the buffer.
+     * @throws InvalidResponseException Thrown if the current line is not a key/value pair.
+     */
+    private int getDelimiter() {
+        if (mDelimiter == -1) {
+            for (int i = mLineStart; i < mLineEnd; i++) {
+                if (mBuffer[i] == KEY_DELIMITER) {
+                    mDelimiter = i;
+                    break;
+                }
+            }
+
+            if (mDelimiter == -1) {
+                throw new InvalidResponseException(
+                        "Failed to parse server response key for line: " + getLine());
+            }
+        }
+
+        return mDelimiter;
+    }
+
+    /**
+     * Retrieves the key of the current line.
+     *
+     * @return The key of the current line.
+     * @throws InvalidResponseException Thrown if the current line is not a key/value pair.
+     */
+    String getKey() {
+        final int delimiter = getDelimiter();
+        final int length = delimiter - mLineStart;
+        boolean isCacheable = true;
+        int hash = 0;
+
+        for (int i = mLineStart; i < delimiter; i++) {
+            final byte current = mBuffer[i];
+
+            /** Only cache ASCII keys, they're the only ones compared byte for char. */
+            if (current < 0) {
+                isCacheable = false;
+                break;
+            }
+            hash = 31 * hash + current;
+        }
+
+        final String key;
+        if (isCacheable) {
+            final int slot = hash & (KEY_CACHE_SIZE - 1);
+            final String cached = mKeyCache[slot];
+
+            if (cached != null && equals(cached, mLineStart, length)) {
+                key = cached;
+            } else {
+                key = new String(mBuffer, mLineStart, length, UTF_8);
+                mKeyCache[slot] = key;
+            }
+        } else {
+            key = new String(mBuffer, mLineStart, length, UTF_8);
+        }
+
+        return key;
+    }
+
+    /**
+     * Retrieves the entire current line.
+     *
+     * @return The current line.
+     */
+    String getLine() {
+        return new String(mBuffer, mLineStart, mLineEnd - mLineStart, UTF_8);
+    }
+
+    /**
+     * Retrieves the value of the current line.
+     *
+     * @return The value of the current line.
+     * @throws InvalidResponseException Thrown if the current line is not a key/value pair.
+     */
+    String getValue() {
+        /** Skip ': ' */
+        final int valueStart = Math.min(getDelimiter() + 2, mLineEnd);
+
+        return new String(mBuffer, valueStart, mLineEnd - valueStart, UTF_8);
+    }
+
+    /**
+     * Checks whether the current line begins with the {@code prefix}.
+     *
+     * @param prefix The ASCII prefix to check for.
+     * @return True if the current line begins with {@code prefix}, false otherwise.
+     */
+    boolean lineStartsWith(final String prefix) {
+        final int length = prefix.length();
+
+        return mLineEnd - mLineStart >= length && equals(prefix, mLineStart, length);
+    }
+
+    /**
+     * Reads the next line from the input stream into the buffer.
+     *
+     * @return True if a line was read, false if the end of the stream was reached.
+     * @throws IOException Thrown upon a communication error with the server.
+     */
+    boolean nextLine() throws IOException {
+        int scan = mPosition;
+        boolean isLineRead = false;
+
+        while (!isLineRead) {
+            while (scan < mLimit && mBuffer[scan] != (byte) '\n') {
+                scan++;
+            }
+
+            if (scan < mLimit) {
+                setLine(scan, scan + 1);
+                isLineRead = true;
+            } else {
+                /** Move the partial line to the start of the buffer, grow if it's already there. */
+                if (mPosition > 0) {
+                    System.arraycopy(mBuffer, mPosition, mBuffer, 0, mLimit - mPosition);
+                    scan -= mPosition;
+                    mLimit -= mPosition;
+                    mPosition = 0;
+                } else if (mLimit == mBuffer.length) {
+                    final byte[] buffer = new byte[mBuffer.length << 1];
+
+                    System.arraycopy(mBuffer, 0, buffer, 0, mLimit);
+                    mBuffer = buffer;
+                }
+
+                final int read = mInputStream.read(mBuffer, mLimit, mBuffer.length - mLimit);
+
+                if (read == -1) {
+                    /** Like BufferedReader, an unterminated last line is still a line. */
+                    if (mLimit > mPosition) {
+                        setLine(mLimit, mLimit);
+                        isLineRead = true;
+                    } else {
+                        break;
+                    }
+                } else {
+                    mLimit += read;
+                }
+            }
+        }
+
+        return isLineRead;
+    }
+
+    /**
+     * Reads the binary data following the current line, and the newline terminating it.
+     *
+     * @param length The length of the binary data, as given by the {@code binary} line.
+     * @return The binary data.
+     * @throws IOException Thrown upon a communication error with the server, or if the binary
+     *                     data is not terminated by a newline.
+     */
+    byte[] readBinary(final int length) throws IOException {
+        final byte[] binary = new byte[length];
+        int read = Math.min(length, mLimit - mPosition);
+
+        /** Part of the data may already be buffered, read the rest straight into the result. */
+        System.arraycopy(mBuffer, mPosition, binary, 0, read);
+        mPosition += read;
+
+        while (read < length) {
+            final int count = mInputStream.read(binary, read, length - read);
+
+            if (count == -1) {
+                throw new EOFException("Connection lost");
+            }
+            read += count;
+        }
+
+        if (!nextLine() || mLineEnd != mLineStart) {
+            throw new IOException("Binary response data is not terminated by a newline.");
+        }
+
+        return binary;
+    }
+
+    /**
+     * Sets the current line bounds, and moves the read position past the line.
+     *
+     * @param lineEnd      The end of the line, exclusive.
+     * @param nextPosition The start of the next line.
+     */
+    private void setLine(final int lineEnd, final int nextPosition) {
+        mLineStart = mPosition;
+        mLineEnd = lineEnd;
+
+        if (mLineEnd > mLineStart && mBuffer[mLineEnd - 1] == (byte) '\r') {
+            mLineEnd--;
+        }
+
+        mDelimiter = -1;
+        mPosition = nextPosition;
+    }
+}
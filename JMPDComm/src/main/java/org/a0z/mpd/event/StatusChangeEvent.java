@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2004 Felipe Gustavo de Almeida
+ * Copyright (C) 2010-2014 The MPDroid Project
+ *
+ * All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice,this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.a0z.mpd.event;
+
+import org.a0z.mpd.MPDStatus;
+
+/**
+ * The changes of the media server status seen in one idle cycle of the status monitor, along
+ * with a snapshot of the status which is not updated afterwards, so the event can be handed to
+ * another thread and merged with the events which follow it.
+ *
+ * <p>The changes are a bitmask of the {@code CHANGED} fields. The previous values of a change
+ * are the ones before the first event of a merge.</p>
+ */
+public final class StatusChangeEvent {
+
+    /** The media server connection was established or lost. */
+    public static final int CHANGED_CONNECTION = 1;
+
+    /** The database update started or finished. */
+    public static final int CHANGED_LIBRARY_STATE = 1 << 1;
+
+    /** The playlist queue was modified. */
+    public static final int CHANGED_PLAYLIST = 1 << 2;
+
+    /** The random option was switched. */
+    public static final int CHANGED_RANDOM = 1 << 3;
+
+    /** The repeat option was switched. */
+    public static final int CHANGED_REPEAT = 1 << 4;
+
+    /** The player state changed between playing, paused and stopped. */
+    public static final int CHANGED_STATE = 1 << 5;
+
+    /** A sticker was modified. */
+    public static final int CHANGED_STICKER = 1 << 6;
+
+    /** The current track changed. */
+    public static final int CHANGED_TRACK = 1 << 7;
+
+    /** The elapsed time of the current track changed. */
+    public static final int CHANGED_TRACK_POSITION = 1 << 8;
+
+    /** The volume changed. */
+    public static final int CHANGED_VOLUME = 1 << 9;
+
+    private final int mChanges;
+
+    private final boolean mIsConnected;
+
+    private final boolean mIsConnectionLost;
+
+    private final boolean mIsDatabaseChanged;
+
+    private final int mOldPlaylistVersion;
+
+    private final int mOldState;
+
+    private final int mOldTrack;
+
+    private final int mOldVolume;
+
+    private final MPDStatus mStatus;
+
+    /**
+     * Sole constructor.
+     *
+     * @param status             The status snapshot after the changes.
+     * @param changes            The bitmask of the {@code CHANGED} fields.
+     * @param isConnected        True if the media server is connected.
+     * @param isConnectionLost   True if the connection was lost, rather than closed.
+     * @param isDatabaseChanged  True if the database changed with the library state change.
+     * @param oldPlaylistVersion The playlist version before the changes.
+     * @param oldTrack           The track position before the changes.
+     * @param oldState           The player state before the changes.
+     * @param oldVolume          The volume before the changes.
+     */
+    public StatusChangeEvent(final MPDStatus status, final int changes, final boolean isConnected,
+            final boolean isConnectionLost, final boolean isDatabaseChanged,
+            final int oldPlaylistVersion, final int oldTrack, final int oldState,
+            final int oldVolume) {
+        super();
+
+        mStatus = status;
+        mChanges = changes;
+        mIsConnected = isConnected;
+        mIsConnectionLost = isConnectionLost;
+        mIsDatabaseChanged = isDatabaseChanged;
+        mOldPlaylistVersion = oldPlaylistVersion;
+        mOldTrack = oldTrack;
+        mOldState = oldState;
+        mOldVolume = oldVolume;
+    }
+
+    /**
+     * Calls the {@link StatusChangeListener} methods of the changes, in the order the status
+     * monitor has always called them.
+     *
+     * @param listener The listener to call.
+     */
+    public void dispatch(final StatusChangeListener listener) {
+        if (hasChanged(CHANGED_CONNECTION)) {
+            listener.connectionStateChanged(mIsConnected, mIsConnectionLost);
+        }
+        if (hasChanged(CHANGED_PLAYLIST)) {
+            listener.playlistChanged(mStatus, mOldPlaylistVersion);
+        }
+        if (hasChanged(CHANGED_TRACK)) {
+            listener.trackChanged(mStatus, mOldTrack);
+        }
+        if (hasChanged(CHANGED_STATE)) {
+            listener.stateChanged(mStatus, mOldState);
+        }
+        if (hasChanged(CHANGED_VOLUME)) {
+            listener.volumeChanged(mStatus, mOldVolume);
+        }
+        if (hasChanged(CHANGED_REPEAT)) {
+            listener.repeatChanged(mStatus.isRepeat());
+        }
+        if (hasChanged(CHANGED_RANDOM)) {
+            listener.randomChanged(mStatus.isRandom());
+        }
+        if (hasChanged(CHANGED_LIBRARY_STATE)) {
+            listener.libraryStateChanged(mStatus.isUpdating(), mIsDatabaseChanged);
+        }
+        if (hasChanged(CHANGED_STICKER)) {
+            listener.stickerChanged(mStatus);
+        }
+    }
+
+    /**
+     * Calls the {@link TrackPositionListener} if the track position changed.
+     *
+     * @param listener The listener to call.
+     */
+    public void dispatch(final TrackPositionListener listener) {
+        if (hasChanged(CHANGED_TRACK_POSITION)) {
+            listener.trackPositionChanged(mStatus);
+        }
+    }
+
+    public int getChanges() {
+        return mChanges;
+    }
+
+    public int getOldPlaylistVersion() {
+        return mOldPlaylistVersion;
+    }
+
+    public int getOldState() {
+        return mOldState;
+    }
+
+    public int getOldTrack() {
+        return mOldTrack;
+    }
+
+    public int getOldVolume() {
+        return mOldVolume;
+    }
+
+    public MPDStatus getStatus() {
+        return mStatus;
+    }
+
+    /**
+     * Checks if any of the given changes happened.
+     *
+     * @param changes A bitmask of the {@code CHANGED} fields.
+     * @return True if at least one of the changes happened, false otherwise.
+     */
+    public boolean hasChanged(final int changes) {
+        return (mChanges & changes) != 0;
+    }
+
+    public boolean isConnected() {
+        return mIsConnected;
+    }
+
+    public boolean isConnectionLost() {
+        return mIsConnectionLost;
+    }
+
+    public boolean isDatabaseChanged() {
+        return mIsDatabaseChanged;
+    }
+
+    /**
+     * Merges this event with the one following it, to deliver both as one.
+     *
+     * @param next The event following this one.
+     * @return The event with the changes of both, the status of the following one and the
+     * previous values of the first one which saw each change.
+     */
+    public StatusChangeEvent merge(final StatusChangeEvent next) {
+        return new StatusChangeEvent(next.mStatus, mChanges | next.mChanges, next.mIsConnected,
+                mIsConnectionLost || next.mIsConnectionLost,
+                mIsDatabaseChanged || next.mIsDatabaseChanged,
+                hasChanged(CHANGED_PLAYLIST) ? mOldPlaylistVersion : next.mOldPlaylistVersion,
+                hasChanged(CHANGED_TRACK) ? mOldTrack : next.mOldTrack,
+                hasChanged(CHANGED_STATE) ? mOldState : next.mOldState,
+                hasChanged(CHANGED_VOLUME) ? mOldVolume : next.mOldVolume);
+    }
+
+    @Override
+    public String toString() {
+        return "StatusChangeEvent{changes=" + Integer.toBinaryString(mChanges) +
+                ", connected=" + mIsConnected +
+                ", connectionLost=" + mIsConnectionLost +
+                ", databaseChanged=" + mIsDatabaseChanged +
+                ", oldPlaylistVersion=" + mOldPlaylistVersion +
+                ", oldTrack=" + mOldTrack +
+                ", oldState=" + mOldState +
+                ", oldVolume=" + mOldVolume +
+                ", status=" + mStatus + '}';
+    }
+}
@@ -151,7 +151,7 @@ public abstract class AbstractAlbum extends Item {
             final long songCount, final long duration,
             final long year, final String path) {
         super();
-        mName = name;
+        mName = TagPool.intern(name);
         mSongCount = songCount;
         mDuration = duration;
         mYear = year;
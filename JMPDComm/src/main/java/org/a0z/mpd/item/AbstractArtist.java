@@ -45,9 +45,9 @@ abstract class AbstractArtist extends Item {
 
     AbstractArtist(final String name) {
         super();
-        mName = name;
+        mName = TagPool.intern(name);
         if (null != name && name.toLowerCase(Locale.getDefault()).startsWith("the ")) {
-            mSort = name.substring(4);
+            mSort = TagPool.intern(name.substring(4));
         } else {
             mSort = null;
         }
@@ -56,8 +56,8 @@ abstract class AbstractArtist extends Item {
     AbstractArtist(final String name, final String sort) {
         super();
 
-        mName = name;
-        mSort = sort;
+        mName = TagPool.intern(name);
+        mSort = TagPool.intern(sort);
     }
 
     /**
@@ -41,7 +41,7 @@ abstract class AbstractGenre extends Item {
 
     AbstractGenre(final String name) {
         super();
-        mName = name;
+        mName = TagPool.intern(name);
     }
 
     /**
@@ -28,16 +28,21 @@
 package org.a0z.mpd.item;
 
 import org.a0z.mpd.Log;
+import org.a0z.mpd.MPDCommand;
 import org.a0z.mpd.Tools;
+import org.a0z.mpd.connection.MPDConnection;
+import org.a0z.mpd.connection.ResponseHandler;
+import org.a0z.mpd.exception.MPDException;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import static org.a0z.mpd.Tools.KEY;
 import static org.a0z.mpd.Tools.VALUE;
@@ -88,14 +93,6 @@ public abstract class AbstractMusic extends Item implements FilesystemTreeEntry
                 }
             };
 
-    /**
-     * The date response has it's own delimiter.
-     */
-    private static final Pattern DATE_DELIMITER = Pattern.compile("\\D+");
-
-    /** The maximum number of key/value pairs for a music item response. */
-    private static final int MUSIC_ATTRIBUTES = 30;
-
     private static final String TAG = "Music";
 
     private static final int UNDEFINED_INT = -1;
@@ -178,131 +175,6 @@ public abstract class AbstractMusic extends Item implements FilesystemTreeEntry
         mName = name;
     }
 
-    static Music build(final Collection<String> response) {
-        String album = null;
-        String artist = null;
-        String albumArtist = null;
-        String composer = null;
-        String fullPath = null;
-        int disc = UNDEFINED_INT;
-        long date = -1L;
-        String genre = null;
-        long time = -1L;
-        String title = null;
-        int totalTracks = UNDEFINED_INT;
-        int track = UNDEFINED_INT;
-        int songId = UNDEFINED_INT;
-        int songPos = UNDEFINED_INT;
-        String name = null;
-
-        for (final String[] pair : Tools.splitResponse(response)) {
-
-            switch (pair[KEY]) {
-                case "file":
-                    fullPath = pair[VALUE];
-                    if (!fullPath.isEmpty() && fullPath.contains("://")) {
-                        final int pos = fullPath.indexOf('#');
-                        if (pos > 1) {
-                            name = fullPath.substring(pos + 1, fullPath.length());
-                            fullPath = fullPath.substring(0, pos);
-                        }
-                    }
-                    break;
-                case "Album":
-                    album = pair[VALUE];
-                    break;
-                case "AlbumArtist":
-                    albumArtist = pair[VALUE];
-                    break;
-                case "Artist":
-                    artist = pair[VALUE];
-                    break;
-                case "Composer":
-                    composer = pair[VALUE];
-                    break;
-                case "Date":
-                    try {
-                        final Matcher matcher = DATE_DELIMITER.matcher(pair[VALUE]);
-                        date = Long.parseLong(matcher.replaceAll(""));
-                    } catch (final NumberFormatException e) {
-                        Log.warning(TAG, "Not a valid date.", e);
-                    }
-                    break;
-                case "Disc":
-                    final int discIndex = pair[VALUE].indexOf('/');
-
-                    try {
-                        if (discIndex == -1) {
-                            disc = Integer.parseInt(pair[VALUE]);
-                        } else {
-                            disc = Integer.parseInt(pair[VALUE].substring(0, discIndex));
-                        }
-                    } catch (final NumberFormatException e) {
-                        Log.warning(TAG, "Not a valid disc number.", e);
-                    }
-                    break;
-                case "Genre":
-                    genre = pair[VALUE];
-                    break;
-                case "Id":
-                    try {
-                        songId = Integer.parseInt(pair[VALUE]);
-                    } catch (final NumberFormatException e) {
-                        Log.error(TAG, "Not a valid song ID.", e);
-                    }
-                    break;
-                case "Name":
-                    /**
-                     * name may already be assigned to the stream name in file conditional
-                     */
-                    if (name == null) {
-                        name = pair[VALUE];
-                    }
-                    break;
-                case "Pos":
-                    try {
-                        songPos = Integer.parseInt(pair[VALUE]);
-                    } catch (final NumberFormatException e) {
-                        Log.error(TAG, "Not a valid song position.", e);
-                    }
-                    break;
-                case "Time":
-                    try {
-                        time = Long.parseLong(pair[VALUE]);
-                    } catch (final NumberFormatException e) {
-                        Log.error(TAG, "Not a valid time number.", e);
-                    }
-                    break;
-                case "Title":
-                    title = pair[VALUE];
-                    break;
-                case "Track":
-                    final int trackIndex = pair[VALUE].indexOf('/');
-
-                    try {
-                        if (trackIndex == -1) {
-                            track = Integer.parseInt(pair[VALUE]);
-                        } else {
-                            track = Integer.parseInt(pair[VALUE].substring(0, trackIndex));
-                            totalTracks = Integer.parseInt(pair[VALUE].substring(trackIndex + 1));
-                        }
-                    } catch (final NumberFormatException e) {
-                        Log.warning(TAG, "Not a valid track number.", e);
-                    }
-                    break;
-                default:
-                    /**
-                     * Ignore everything else, there are a lot of
-                     * uninteresting blocks the server might send.
-                     */
-                    break;
-            }
-        }
-
-        return new Music(album, artist, albumArtist, composer, fullPath, disc, date, genre,
-                time, title, totalTracks, track, songId, songPos, name);
-    }
-
     /**
      * This method extends Integer.compare() by adding a undefined integer comparison.
      *
@@ -352,33 +224,42 @@ public abstract class AbstractMusic extends Item implements FilesystemTreeEntry
 
     public static List<Music> getMusicFromList(final Collection<String> response,
             final boolean sort) {
-        final Collection<String> lineCache = new ArrayList<>(MUSIC_ATTRIBUTES);
-        final int size = response.size();
-        final List<Music> result;
-
-        /** This list can be pretty sizable, it's good to give a low estimate of it's size. */
-        if (size > MUSIC_ATTRIBUTES) {
-            result = new ArrayList<>(size / MUSIC_ATTRIBUTES);
-        } else {
-            result = new ArrayList<>(0);
-        }
+        final MusicListHandler handler = new MusicListHandler();
 
         for (final String line : response) {
-            if (line.startsWith("file: ")) {
-                if (!lineCache.isEmpty()) {
-                    result.add(build(lineCache));
-                    lineCache.clear();
-                }
-            }
-            lineCache.add(line);
+            final String[] pair = Tools.splitResponse(line);
+
+            handler.onResponse(pair[KEY], pair[VALUE]);
         }
 
-        if (!lineCache.isEmpty()) {
-            result.add(build(lineCache));
+        final List<Music> result = handler.getMusic();
+        if (sort) {
+            ItemSorter.sort(result);
         }
 
+        return result;
+    }
+
+    /**
+     * Sends a command to the media server, building a {@code Music} list from the response as it
+     * is read from the connection, rather than from a buffered response.
+     *
+     * @param connection The connection to send the {@code command} to.
+     * @param command    The command to send, the response must be a list of music entries.
+     * @param sort       Whether to sort the resulting list.
+     * @return A list of {@code Music} objects built from the media server response.
+     * @throws IOException  Thrown upon a communication error with the server.
+     * @throws MPDException Thrown if an error occurs as a result of command execution.
+     */
+    public static List<Music> getMusicFromList(final MPDConnection connection,
+            final MPDCommand command, final boolean sort) throws IOException, MPDException {
+        final MusicListHandler handler = new MusicListHandler();
+
+        connection.sendCommand(command, handler);
+
+        final List<Music> result = handler.getMusic();
         if (sort) {
-            Collections.sort(result);
+            ItemSorter.sort(result);
         }
 
         return result;
@@ -388,6 +269,76 @@ public abstract class AbstractMusic extends Item implements FilesystemTreeEntry
         return null == s || s.isEmpty();
     }
 
+    /**
+     * Parses a date response value, ignoring its delimiters, so {@code 2014-05-03} parses as
+     * 20140503.
+     *
+     * @param value The date response value.
+     * @return The digits of the date as a number, -1 if it has no digit or too many.
+     */
+    private static long parseDate(final String value) {
+        final long limit = Long.MAX_VALUE / 10L;
+        boolean isValid = false;
+        long date = 0L;
+
+        for (int i = 0; i < value.length() && date >= 0L; i++) {
+            final int digit = Character.digit(value.charAt(i), 10);
+
+            if (digit != -1) {
+                if (date > limit || date == limit && digit > (int) (Long.MAX_VALUE % 10L)) {
+                    date = -1L;
+                } else {
+                    date = date * 10L + (long) digit;
+                    isValid = true;
+                }
+            }
+        }
+
+        return isValid ? date : -1L;
+    }
+
+    /**
+     * Parses a number from part of a response value, such as the track of {@code 3/12}, without
+     * a substring.
+     *
+     * @param value The response value.
+     * @param start The position of the first character of the number.
+     * @param end   The position following the last character of the number.
+     * @return The number, {@code UNDEFINED_INT} if the part is empty, out of range or not a
+     * number.
+     */
+    private static int parseNumber(final String value, final int start, final int end) {
+        final int maxDigits = 10;
+        int position = start;
+        boolean isNegative = false;
+        long number = 0L;
+        int result = UNDEFINED_INT;
+
+        if (position < end && (value.charAt(position) == '-' || value.charAt(position) == '+')) {
+            isNegative = value.charAt(position) == '-';
+            position++;
+        }
+
+        /** Up to ten digits, the number can't overflow a long before the range check. */
+        boolean isValid = position < end && end - position <= maxDigits;
+        for (; isValid && position < end; position++) {
+            final int digit = Character.digit(value.charAt(position), 10);
+
+            isValid = digit != -1;
+            number = number * 10L + (long) digit;
+        }
+
+        if (isNegative) {
+            number = -number;
+        }
+
+        if (isValid && number >= (long) Integer.MIN_VALUE && number <= (long) Integer.MAX_VALUE) {
+            result = (int) number;
+        }
+
+        return result;
+    }
+
     /**
      * This method takes seconds and converts it into HH:MM:SS
      *
@@ -790,4 +741,373 @@ public abstract class AbstractMusic extends Item implements FilesystemTreeEntry
     public String mainText() {
         return getTitle();
     }
+
+    /**
+     * This class accumulates media server response key/value pairs for one music entry, and
+     * builds a {@code Music} object from them.
+     */
+    static final class MusicBuilder {
+
+        private String mAlbum;
+
+        private String mAlbumArtist;
+
+        private String mArtist;
+
+        private String mComposer;
+
+        private long mDate;
+
+        private int mDisc;
+
+        private String mFullPath;
+
+        private String mGenre;
+
+        private String mName;
+
+        /** The number of key/value pairs added since the last reset. */
+        private int mPairCount;
+
+        private int mSongId;
+
+        private int mSongPos;
+
+        private long mTime;
+
+        private String mTitle;
+
+        private int mTotalTracks;
+
+        private int mTrack;
+
+        MusicBuilder() {
+            super();
+
+            reset();
+        }
+
+        /**
+         * Adds a media server response key/value pair to the music entry being built.
+         *
+         * @param key   The response key.
+         * @param value The response value.
+         */
+        void add(final String key, final String value) {
+            mPairCount++;
+
+            switch (key) {
+                case "file":
+                    mFullPath = value;
+                    if (!mFullPath.isEmpty() && mFullPath.contains("://")) {
+                        final int pos = mFullPath.indexOf('#');
+                        if (pos > 1) {
+                            mName = mFullPath.substring(pos + 1, mFullPath.length());
+                            mFullPath = mFullPath.substring(0, pos);
+                        }
+                    }
+                    break;
+                case "Album":
+                    mAlbum = TagPool.intern(value);
+                    break;
+                case "AlbumArtist":
+                    mAlbumArtist = TagPool.intern(value);
+                    break;
+                case "Artist":
+                    mArtist = TagPool.intern(value);
+                    break;
+                case "Composer":
+                    mComposer = TagPool.intern(value);
+                    break;
+                case "Date":
+                    final long date = parseDate(value);
+
+                    if (date == -1L) {
+                        Log.warning(TAG, "Not a valid date: " + value);
+                    } else {
+                        mDate = date;
+                    }
+                    break;
+                case "Disc":
+                    final int discIndex = value.indexOf('/');
+                    final int disc =
+                            parseNumber(value, 0, discIndex == -1 ? value.length() : discIndex);
+
+                    if (disc == UNDEFINED_INT) {
+                        Log.warning(TAG, "Not a valid disc number: " + value);
+                    } else {
+                        mDisc = disc;
+                    }
+                    break;
+                case "Genre":
+                    mGenre = TagPool.intern(value);
+                    break;
+                case "Id":
+                    try {
+                        mSongId = Integer.parseInt(value);
+                    } catch (final NumberFormatException e) {
+                        Log.error(TAG, "Not a valid song ID.", e);
+                    }
+                    break;
+                case "Name":
+                    /**
+                     * name may already be assigned to the stream name in file conditional
+                     */
+                    if (mName == null) {
+                        mName = value;
+                    }
+                    break;
+                case "Pos":
+                    try {
+                        mSongPos = Integer.parseInt(value);
+                    } catch (final NumberFormatException e) {
+                        Log.error(TAG, "Not a valid song position.", e);
+                    }
+                    break;
+                case "Time":
+                    try {
+                        mTime = Long.parseLong(value);
+                    } catch (final NumberFormatException e) {
+                        Log.error(TAG, "Not a valid time number.", e);
+                    }
+                    break;
+                case "Title":
+                    mTitle = value;
+                    break;
+                case "Track":
+                    final int trackIndex = value.indexOf('/');
+                    final int track =
+                            parseNumber(value, 0, trackIndex == -1 ? value.length() : trackIndex);
+                    int totalTracks = UNDEFINED_INT;
+
+                    if (track != UNDEFINED_INT) {
+                        mTrack = track;
+
+                        if (trackIndex != -1) {
+                            totalTracks = parseNumber(value, trackIndex + 1, value.length());
+                        }
+                        if (totalTracks != UNDEFINED_INT) {
+                            mTotalTracks = totalTracks;
+                        }
+                    }
+
+                    if (track == UNDEFINED_INT ||
+                            trackIndex != -1 && totalTracks == UNDEFINED_INT) {
+                        Log.warning(TAG, "Not a valid track number: " + value);
+                    }
+                    break;
+                default:
+                    /**
+                     * Ignore everything else, there are a lot of
+                     * uninteresting blocks the server might send.
+                     */
+                    break;
+            }
+        }
+
+        /**
+         * Builds a {@code Music} object from the key/value pairs added since the last reset.
+         *
+         * @return A new {@code Music} object.
+         */
+        Music build() {
+            return new Music(mAlbum, mArtist, mAlbumArtist, mComposer, mFullPath, mDisc, mDate,
+                    mGenre, mTime, mTitle, mTotalTracks, mTrack, mSongId, mSongPos, mName);
+        }
+
+        /**
+         * Checks if any key/value pair was added since the last reset.
+         *
+         * @return True if no key/value pair was added since the last reset, false otherwise.
+         */
+        boolean isEmpty() {
+            return mPairCount == 0;
+        }
+
+        /** Resets this builder to start building a new music entry. */
+        void reset() {
+            mAlbum = null;
+            mArtist = null;
+            mAlbumArtist = null;
+            mComposer = null;
+            mFullPath = null;
+            mDisc = UNDEFINED_INT;
+            mDate = -1L;
+            mGenre = null;
+            mTime = -1L;
+            mTitle = null;
+            mTotalTracks = UNDEFINED_INT;
+            mTrack = UNDEFINED_INT;
+            mSongId = UNDEFINED_INT;
+            mSongPos = UNDEFINED_INT;
+            mName = null;
+            mPairCount = 0;
+        }
+    }
+
+    /**
+     * This class builds a {@code Music} list from a streamed media server response, a new music
+     * entry begins with every {@code file} key. With more than one processor, the response is
+     * gathered in chunks of music entries, each built on the {@link ItemExecutor} while the
+     * following chunks are still being read.
+     */
+    private static final class MusicListHandler implements ResponseHandler {
+
+        /** The number of music entries of a chunk built on its own thread. */
+        private static final int CHUNK_SIZE = 1024;
+
+        private final MusicBuilder mBuilder = new MusicBuilder();
+
+        /** The number of music entries of the chunk being gathered. */
+        private int mChunkEntries;
+
+        /** The keys and values of the chunk being gathered, alternating, null if not chunked. */
+        private List<String> mChunkPairs;
+
+        /** The chunks gathered, in response order. */
+        private final List<FutureTask<List<Music>>> mChunks = new ArrayList<>();
+
+        private final List<Music> mMusic = new ArrayList<>();
+
+        MusicListHandler() {
+            super();
+
+            if (ItemExecutor.PARALLELISM > 1) {
+                mChunkPairs = new ArrayList<>();
+            }
+        }
+
+        /**
+         * Builds the music entries of a chunk.
+         *
+         * @param pairs The keys and values of the chunk, alternating.
+         * @return The music entries of the chunk.
+         */
+        private static List<Music> build(final List<String> pairs) {
+            final MusicBuilder builder = new MusicBuilder();
+            final List<Music> music = new ArrayList<>(CHUNK_SIZE);
+
+            for (int i = 0; i < pairs.size(); i += 2) {
+                final String key = pairs.get(i);
+
+                if ("file".equals(key) && !builder.isEmpty()) {
+                    music.add(builder.build());
+                    builder.reset();
+                }
+
+                builder.add(key, pairs.get(i + 1));
+            }
+
+            if (!builder.isEmpty()) {
+                music.add(builder.build());
+            }
+
+            return music;
+        }
+
+        /**
+         * Waits for a chunk to be built. The chunk takes a bounded time to build, an interrupt
+         * is kept for the caller rather than dropping the chunk.
+         *
+         * @param chunk The chunk.
+         * @return The music entries of the chunk.
+         */
+        private static List<Music> getChunk(final FutureTask<List<Music>> chunk) {
+            boolean isInterrupted = false;
+            List<Music> music = null;
+
+            while (music == null) {
+                try {
+                    music = chunk.get();
+                } catch (final ExecutionException e) {
+                    final Throwable cause = e.getCause();
+
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new IllegalStateException(cause);
+                } catch (final InterruptedException ignored) {
+                    isInterrupted = true;
+                }
+            }
+
+            if (isInterrupted) {
+                Thread.currentThread().interrupt();
+            }
+
+            return music;
+        }
+
+        /**
+         * Hands the chunk gathered to the executor, which builds it on this thread if all of its
+         * threads are busy.
+         */
+        private void buildChunk() {
+            final List<String> pairs = mChunkPairs;
+            final FutureTask<List<Music>> chunk = new FutureTask<>(new Callable<List<Music>>() {
+                @Override
+                public List<Music> call() {
+                    return build(pairs);
+                }
+            });
+
+            mChunks.add(chunk);
+            ItemExecutor.execute(chunk);
+
+            mChunkPairs = new ArrayList<>(pairs.size());
+            mChunkEntries = 0;
+        }
+
+        /**
+         * Retrieves the music list, including the last music entry of the response.
+         *
+         * @return The music list built from the response.
+         */
+        List<Music> getMusic() {
+            if (!mBuilder.isEmpty()) {
+                mMusic.add(mBuilder.build());
+                mBuilder.reset();
+            }
+
+            if (mChunkPairs != null) {
+                /** The last chunk is built here, while waiting for the others. */
+                final List<Music> lastChunk = build(mChunkPairs);
+
+                for (final FutureTask<List<Music>> chunk : mChunks) {
+                    mMusic.addAll(getChunk(chunk));
+                }
+                mMusic.addAll(lastChunk);
+
+                mChunks.clear();
+                mChunkPairs.clear();
+                mChunkEntries = 0;
+            }
+
+            return mMusic;
+        }
+
+        @Override
+        public void onResponse(final String key, final String value) {
+            final boolean isFile = "file".equals(key);
+
+            if (mChunkPairs == null) {
+                if (isFile && !mBuilder.isEmpty()) {
+                    mMusic.add(mBuilder.build());
+                    mBuilder.reset();
+                }
+
+                mBuilder.add(key, value);
+            } else {
+                if (isFile) {
+                    if (mChunkEntries == CHUNK_SIZE) {
+                        buildChunk();
+                    }
+                    mChunkEntries++;
+                }
+
+                mChunkPairs.add(key);
+                mChunkPairs.add(value);
+            }
+        }
+    }
 }
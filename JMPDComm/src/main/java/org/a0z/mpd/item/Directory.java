@@ -28,22 +28,17 @@
 package org.a0z.mpd.item;
 
 import org.a0z.mpd.MPDCommand;
-import org.a0z.mpd.Tools;
 import org.a0z.mpd.connection.MPDConnection;
+import org.a0z.mpd.connection.ResponseHandler;
 import org.a0z.mpd.exception.MPDException;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.TreeSet;
 
-import static org.a0z.mpd.Tools.KEY;
-import static org.a0z.mpd.Tools.VALUE;
-
 /**
  * A class representing a MPD protocol directory.
  *
@@ -345,67 +340,87 @@ public final class Directory extends Item implements FilesystemTreeEntry {
      * @throws MPDException Thrown if an error occurs as a result of command execution.
      */
     public void refresh(final MPDConnection connection) throws IOException, MPDException {
-        final int cacheSize = 40; /** Approximate max number of lines per file entry. */
-        final List<String> response =
-                connection.sendCommand(MPDCommand.MPD_CMD_LSDIR, getFullPath());
-        final Collection<String> lineCache = new ArrayList<>(cacheSize);
+        final RefreshHandler handler = new RefreshHandler(mDirectoryEntries.size(),
+                mFileEntries.size(), mPlaylistEntries.size());
+
+        connection.sendCommand(new MPDCommand(MPDCommand.MPD_CMD_LSDIR, getFullPath()), handler);
+        handler.flushFileEntry();
+
+        synchronized (mDirectoryEntries) {
+            mDirectoryEntries.clear();
+            mDirectoryEntries.putAll(handler.mDirectoryEntries);
+        }
+
+        synchronized (mFileEntries) {
+            mFileEntries.clear();
+            mFileEntries.putAll(handler.mFileEntries);
+        }
+
+        synchronized (mPlaylistEntries) {
+            mPlaylistEntries.clear();
+            mPlaylistEntries.putAll(handler.mPlaylistEntries);
+        }
+    }
+
+    /**
+     * This class sorts a streamed directory listing into directory, file and playlist entries.
+     * Any response lines following a file entry, up to the next entry, describe that file.
+     */
+    private static final class RefreshHandler implements ResponseHandler {
+
+        private final Map<String, Directory> mDirectoryEntries;
+
+        private final Map<String, Music> mFileEntries;
+
+        private final AbstractMusic.MusicBuilder mMusicBuilder =
+                new AbstractMusic.MusicBuilder();
 
-        final Map<String, Directory> directoryEntries = new HashMap<>(mDirectoryEntries.size());
-        final Map<String, Music> fileEntries = new HashMap<>(mFileEntries.size());
-        final Map<String, PlaylistFile> playlistEntries = new HashMap<>(mPlaylistEntries.size());
+        private final Map<String, PlaylistFile> mPlaylistEntries;
 
-        // Read the response backwards so it is easier to parse
-        for (int i = response.size() - 1; i >= 0; i--) {
+        RefreshHandler(final int directoryCount, final int fileCount, final int playlistCount) {
+            super();
 
-            // If we hit anything we know is an item, consume the line cache
-            final String line = response.get(i);
-            final String[] pair = Tools.splitResponse(line);
+            mDirectoryEntries = new HashMap<>(directoryCount);
+            mFileEntries = new HashMap<>(fileCount);
+            mPlaylistEntries = new HashMap<>(playlistCount);
+        }
+
+        /** Adds the file entry currently being built, if any, to the file entries. */
+        void flushFileEntry() {
+            if (!mMusicBuilder.isEmpty()) {
+                final Music music = mMusicBuilder.build();
+
+                mFileEntries.put(music.getFilename(), music);
+                mMusicBuilder.reset();
+            }
+        }
 
-            switch (pair[KEY]) {
+        @Override
+        public void onResponse(final String key, final String value) {
+            switch (key) {
                 case "directory":
-                    final Directory dir = ROOT.makeChildDirectory(pair[VALUE]);
+                    flushFileEntry();
 
-                    directoryEntries.put(dir.mFilename, dir);
-                    lineCache.clear();
+                    final Directory dir = ROOT.makeChildDirectory(value);
+                    mDirectoryEntries.put(dir.mFilename, dir);
                     break;
                 case "file":
-                    // Music requires this line to be cached too.
-                    // It could be done every time but it would be a waste to add and
-                    // clear immediately when we're parsing a playlist or a directory
-                    lineCache.add(line);
-
-                    final Music music = Music.build(lineCache);
-                    fileEntries.put(music.getFilename(), music);
-
-                    lineCache.clear();
+                    flushFileEntry();
+                    mMusicBuilder.add(key, value);
                     break;
                 case "playlist":
-                    final PlaylistFile playlistFile = new PlaylistFile(pair[VALUE]);
-
-                    playlistEntries.put(playlistFile.getName(), playlistFile);
+                    flushFileEntry();
 
-                    lineCache.clear();
+                    final PlaylistFile playlistFile = new PlaylistFile(value);
+                    mPlaylistEntries.put(playlistFile.getName(), playlistFile);
                     break;
                 default:
-                    // We're in something unsupported or in an item description, cache the lines
-                    lineCache.add(line);
+                    /** Only file entries are described by the lines following them. */
+                    if (!mMusicBuilder.isEmpty()) {
+                        mMusicBuilder.add(key, value);
+                    }
                     break;
             }
         }
-
-        synchronized (mDirectoryEntries) {
-            mDirectoryEntries.clear();
-            mDirectoryEntries.putAll(directoryEntries);
-        }
-
-        synchronized (mFileEntries) {
-            mFileEntries.clear();
-            mFileEntries.putAll(fileEntries);
-        }
-
-        synchronized (mPlaylistEntries) {
-            mPlaylistEntries.clear();
-            mPlaylistEntries.putAll(playlistEntries);
-        }
     }
 }
@@ -27,8 +27,8 @@
 
 package org.a0z.mpd.item;
 
+import java.text.CollationKey;
 import java.text.Collator;
-import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.MissingResourceException;
@@ -36,6 +36,12 @@ import java.util.ResourceBundle;
 
 public abstract class Item implements Comparable<Item> {
 
+    /** The collator of each thread, a {@code Collator} is costly to create and not thread safe. */
+    private static final ThreadLocal<Collation> COLLATIONS = new ThreadLocal<>();
+
+    /** The key of {@link #sortText()}, computed on the first comparison. */
+    private SortKey mSortKey;
+
     /*
      * Merge item lists, for example received by album artist and artist
      * requests. Sorted lists required!
@@ -62,7 +68,7 @@ public abstract class Item implements Comparable<Item> {
             }
         }
         artists.addAll(albumArtists);
-        Collections.sort(artists);
+        ItemSorter.sort(artists);
         return artists;
     }
 
@@ -77,20 +83,20 @@ public abstract class Item implements Comparable<Item> {
     @Override
     public int compareTo(final Item another) {
         final int comparisonResult;
-        final String sorted = sortText();
-        final String anotherSorted = another.sortText();
+        final CollationKey sorted = getSortKey();
+        final CollationKey anotherSorted = another.getSortKey();
 
         // sort "" behind everything else
-        if (sorted == null || sorted.isEmpty()) {
-            if (anotherSorted == null || anotherSorted.isEmpty()) {
+        if (sorted == null) {
+            if (anotherSorted == null) {
                 comparisonResult = 0;
             } else {
                 comparisonResult = 1;
             }
-        } else if (anotherSorted == null || anotherSorted.isEmpty()) {
+        } else if (anotherSorted == null) {
             comparisonResult = -1;
         } else {
-            comparisonResult = Collator.getInstance().compare(sorted, anotherSorted);
+            comparisonResult = sorted.compareTo(anotherSorted);
         }
 
         return comparisonResult;
@@ -109,6 +115,31 @@ public abstract class Item implements Comparable<Item> {
 
     public abstract String getName();
 
+    /**
+     * Retrieves the collation key of {@link #sortText()}, in the default locale. The key is
+     * computed once, rather than collating the sort text again on each comparison.
+     *
+     * @return The collation key, null if the sort text is empty.
+     */
+    final CollationKey getSortKey() {
+        final Locale locale = Locale.getDefault();
+        SortKey sortKey = mSortKey;
+
+        if (sortKey == null || !sortKey.mLocale.equals(locale)) {
+            Collation collation = COLLATIONS.get();
+
+            if (collation == null || !collation.mLocale.equals(locale)) {
+                collation = new Collation(locale);
+                COLLATIONS.set(collation);
+            }
+
+            sortKey = new SortKey(locale, collation.mCollator, sortText());
+            mSortKey = sortKey;
+        }
+
+        return sortKey.mCollationKey;
+    }
+
     public boolean isUnknown() {
         final String name = getName();
 
@@ -159,4 +190,37 @@ public abstract class Item implements Comparable<Item> {
         return mainText();
     }
 
+    /** A {@code Collator} for the locale it was created for. */
+    private static final class Collation {
+
+        private final Collator mCollator;
+
+        private final Locale mLocale;
+
+        Collation(final Locale locale) {
+            super();
+
+            mCollator = Collator.getInstance(locale);
+            mLocale = locale;
+        }
+    }
+
+    /** A collation key, immutable so it can be shared by the threads sorting its item. */
+    private static final class SortKey {
+
+        private final CollationKey mCollationKey;
+
+        private final Locale mLocale;
+
+        SortKey(final Locale locale, final Collator collator, final String sortText) {
+            super();
+
+            if (sortText == null || sortText.isEmpty()) {
+                mCollationKey = null;
+            } else {
+                mCollationKey = collator.getCollationKey(sortText);
+            }
+            mLocale = locale;
+        }
+    }
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2004 Felipe Gustavo de Almeida
+ * Copyright (C) 2010-2014 The MPDroid Project
+ *
+ * All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice,this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.a0z.mpd.item;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Sorts lists of items in their natural order, as {@link Collections#sort(List)} does. The
+ * collation keys items are compared with are cached on them, and a long list is split in parts
+ * which are sorted on the {@link ItemExecutor}, computing the collation keys of their items in
+ * parallel, then merged.
+ */
+public final class ItemSorter {
+
+    /** The smallest number of items sorted by each thread. */
+    private static final int PART_SIZE = 4096;
+
+    private ItemSorter() {
+        super();
+    }
+
+    /**
+     * Merges two sorted runs of the source array into the destination array, taking the left
+     * item of equal ones first to keep the sort stable.
+     *
+     * @param source      The array holding the runs.
+     * @param destination The array to merge the runs into, at the same positions.
+     * @param start       The first position of the left run.
+     * @param middle      The first position of the right run.
+     * @param end         The position following the right run.
+     */
+    private static void merge(final Item[] source, final Item[] destination, final int start,
+            final int middle, final int end) {
+        int left = start;
+        int right = middle;
+
+        for (int i = start; i < end; i++) {
+            if (right >= end || left < middle && source[left].compareTo(source[right]) <= 0) {
+                destination[i] = source[left];
+                left++;
+            } else {
+                destination[i] = source[right];
+                right++;
+            }
+        }
+    }
+
+    /**
+     * Sorts the list in parts, all but the first one on the executor, then merges them.
+     *
+     * @param array The items to sort.
+     * @param parts The number of parts.
+     * @return The sorted items, or null if the thread was interrupted.
+     */
+    private static Item[] parallelSort(final Item[] array, final int parts) {
+        final int[] bounds = new int[parts + 1];
+        final FutureTask<?>[] tasks = new FutureTask<?>[parts - 1];
+        Item[] result = array;
+
+        for (int i = 0; i <= parts; i++) {
+            bounds[i] = (int) ((long) array.length * (long) i / (long) parts);
+        }
+
+        for (int i = 1; i < parts; i++) {
+            final int start = bounds[i];
+            final int end = bounds[i + 1];
+
+            tasks[i - 1] = new FutureTask<>(new Runnable() {
+                @Override
+                public void run() {
+                    Arrays.sort(array, start, end);
+                }
+            }, null);
+            ItemExecutor.execute(tasks[i - 1]);
+        }
+        Arrays.sort(array, bounds[0], bounds[1]);
+
+        try {
+            for (final FutureTask<?> task : tasks) {
+                task.get();
+            }
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (final InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+            result = null;
+        }
+
+        if (result != null) {
+            Item[] destination = new Item[array.length];
+
+            /** Merge neighbouring parts until only one is left. */
+            for (int width = 1; width < parts; width <<= 1) {
+                for (int i = 0; i < parts; i += width << 1) {
+                    final int middle = Math.min(i + width, parts);
+                    final int end = Math.min(i + (width << 1), parts);
+
+                    merge(result, destination, bounds[i], bounds[middle], bounds[end]);
+                }
+
+                final Item[] merged = destination;
+                destination = result;
+                result = merged;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Sorts a list of items in their natural order. The sort is stable, and long lists are
+     * sorted using as many threads as there are processors.
+     *
+     * @param list The list to sort.
+     * @param <T>  The type of the items.
+     * @see Item#compareTo(Item)
+     */
+    public static <T extends Item> void sort(final List<T> list) {
+        final int parts = Math.min(ItemExecutor.PARALLELISM, list.size() / PART_SIZE);
+        Item[] sorted = null;
+
+        if (parts > 1) {
+            sorted = parallelSort(list.toArray(new Item[list.size()]), parts);
+        }
+
+        if (sorted == null) {
+            Collections.sort(list);
+        } else {
+            final ListIterator<T> iterator = list.listIterator();
+
+            for (final Item item : sorted) {
+                /** The items were read from this list. */
+                @SuppressWarnings("unchecked")
+                final T listItem = (T) item;
+
+                iterator.next();
+                iterator.set(listItem);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2004 Felipe Gustavo de Almeida
+ * Copyright (C) 2010-2014 The MPDroid Project
+ *
+ * All Rights Reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice,this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR OR CONTRIBUTORS BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF
+ * THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.a0z.mpd.item;
+
+/**
+ * A pool of tag values, such as artist, album and genre names, so a name read many times from
+ * the media server is held once rather than once per track. The pool is a fixed size table: a
+ * value takes one of two slots picked by its hash, replacing the value of the second slot if
+ * both are taken, so the pool never grows and a value is shared as long as it stays in it.
+ * Values are interned from any thread without locking, a race only loses the sharing of a value.
+ */
+public final class TagPool {
+
+    /** The number of bits of a slot index. */
+    private static final int POOL_BITS = 15;
+
+    /** The number of slots in the pool. */
+    private static final int POOL_SIZE = 1 << POOL_BITS;
+
+    private static final String[] POOL = new String[POOL_SIZE];
+
+    private TagPool() {
+        super();
+    }
+
+    /**
+     * Retrieves the pooled instance of a tag value, pooling this one if there is none.
+     *
+     * @param value The tag value.
+     * @return An instance equal to the value, null if the value is null.
+     */
+    public static String intern(final String value) {
+        String result = value;
+
+        if (value != null) {
+            final int hash = value.hashCode();
+            final int first = hash & (POOL_SIZE - 1);
+            /** The top bits of the hash spread by the golden ratio. */
+            final int second = (hash * 0x9E3779B9) >>> (Integer.SIZE - POOL_BITS);
+            final String firstValue = POOL[first];
+            final String secondValue = POOL[second];
+
+            if (value.equals(firstValue)) {
+                result = firstValue;
+            } else if (value.equals(secondValue)) {
+                result = secondValue;
+            } else if (firstValue == null) {
+                POOL[first] = value;
+            } else {
+                POOL[second] = value;
+            }
+        }
+
+        return result;
+    }
+}
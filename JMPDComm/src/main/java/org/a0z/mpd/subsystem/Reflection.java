@@ -27,12 +27,12 @@
 
 package org.a0z.mpd.subsystem;
 
+import org.a0z.mpd.MPDCommand;
 import org.a0z.mpd.connection.MPDConnection;
 import org.a0z.mpd.exception.MPDException;
 
 import java.io.IOException;
 import java.util.Collection;
-import java.util.List;
 
 import static org.a0z.mpd.Tools.parseResponse;
 
@@ -205,9 +205,7 @@ public class Reflection {
      */
     private Collection<String> getList(final String command, final String element)
             throws IOException, MPDException {
-        final List<String> response = mConnection.sendCommand(command);
-
-        return parseResponse(response, element);
+        return parseResponse(mConnection, new MPDCommand(command), element);
     }
 
     /**
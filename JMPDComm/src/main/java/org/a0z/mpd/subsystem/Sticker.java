@@ -50,6 +50,10 @@ import static org.a0z.mpd.Tools.VALUE;
  * A class to manage the <A HREF="http://www.musicpd.org/doc/protocol/stickers.html">sticker</A>
  * subsystem of the <A HREF="http://www.musicpd.org/doc/protocol">MPD protocol</A>. This will query
  * the sticker database on the connected media server.
+ * <BR><BR>
+ * Ratings are cached: the ratings of all tracks are retrieved with a single {@code sticker find}
+ * upon the first rating lookup, then served locally until {@link #invalidate()} is called, as
+ * {@link org.a0z.mpd.MPDStatusMonitor} does when the sticker database changes.
  */
 public class Sticker {
 
@@ -144,6 +148,15 @@ public class Sticker {
     /** The connection to the server. */
     private final MPDConnection mConnection;
 
+    /**
+     * Incremented each time the ratings are invalidated or updated, for ratings retrieved
+     * meanwhile not to be cached.
+     */
+    private int mGeneration;
+
+    /** The rating sticker values by full path, null until retrieved or once invalidated. */
+    private Map<String, String> mRatings;
+
     /**
      * The constructor to get a sticker manager.
      *
@@ -206,6 +219,10 @@ public class Sticker {
         if (isAvailable()) {
             mConnection.sendCommand(CMD_ACTION_DELETE, CMD_STICKER_TYPE_SONG, entry.getFullPath(),
                     sticker);
+
+            if (sticker == null || RATING_STICKER.equals(sticker)) {
+                updateRating(entry.getFullPath(), null);
+            }
         } else {
             Log.debug(TAG, STICKERS_NOT_AVAILABLE);
         }
@@ -277,7 +294,9 @@ public class Sticker {
 
         String foundSticker = null;
 
-        if (isAvailable()) {
+        if (isAvailable() && RATING_STICKER.equals(name)) {
+            foundSticker = getCachedRating(entry.getFullPath());
+        } else if (isAvailable()) {
             /** Do not throw exception when attempting to retrieve a non-existant sticker. */
             final int[] nonfatalErrors = {MPDException.ACK_ERROR_NO_EXIST};
             final List<String> response = mConnection.sendCommand(CMD_ACTION_GET, nonfatalErrors,
@@ -302,6 +321,76 @@ public class Sticker {
         return foundSticker;
     }
 
+    /**
+     * Retrieves a sticker value for every track which has this sticker, with a single
+     * {@code sticker find} from the root of the database.
+     *
+     * @param name The name of the sticker to retrieve.
+     * @return A map of sticker values by the full path of their track.
+     * @throws IOException  Thrown upon a communication error with the server.
+     * @throws MPDException Thrown if an error occurs as a result of command execution.
+     */
+    private Map<String, String> getAll(final String name) throws IOException, MPDException {
+        final List<String> response = mConnection.sendCommand(CMD_ACTION_FIND,
+                CMD_STICKER_TYPE_SONG, "", name);
+        final Map<String, String> stickers = new HashMap<>(response.size() / 2);
+        String fullPath = null;
+
+        for (final String[] sticker : Tools.splitResponse(response)) {
+            if (CMD_RESPONSE_FILE.equals(sticker[KEY])) {
+                fullPath = sticker[VALUE];
+            } else if (CMD_RESPONSE_STICKER.equals(sticker[KEY]) && fullPath != null) {
+                final int delimiterIndex = sticker[VALUE].indexOf('=');
+
+                stickers.put(fullPath, sticker[VALUE].substring(delimiterIndex + 1));
+            }
+        }
+
+        return stickers;
+    }
+
+    /**
+     * Retrieves a rating from the cache, retrieving all ratings first if they are not cached.
+     * The ratings are retrieved without holding the lock, and only cached if they were not
+     * invalidated or updated meanwhile.
+     *
+     * @param fullPath The full path of the entry to retrieve the rating for.
+     * @return The rating sticker value, null if the entry has no rating.
+     * @throws IOException  Thrown upon a communication error with the server.
+     * @throws MPDException Thrown if an error occurs as a result of command execution.
+     */
+    private String getCachedRating(final String fullPath) throws IOException, MPDException {
+        Map<String, String> ratings = null;
+        String rating = null;
+        int generation = 0;
+
+        synchronized (this) {
+            if (mRatings == null) {
+                generation = mGeneration;
+            } else {
+                ratings = mRatings;
+                rating = mRatings.get(fullPath);
+            }
+        }
+
+        if (ratings == null) {
+            ratings = getAll(RATING_STICKER);
+            rating = ratings.get(fullPath);
+
+            synchronized (this) {
+                if (generation == mGeneration) {
+                    mRatings = ratings;
+
+                    if (DEBUG) {
+                        Log.debug(TAG, "Cached " + ratings.size() + " ratings.");
+                    }
+                }
+            }
+        }
+
+        return rating;
+    }
+
     /**
      * This returns a map of FullPath (from Music.getFullPath()) and Music.
      *
@@ -352,6 +441,15 @@ public class Sticker {
         return resultRating;
     }
 
+    /**
+     * Drops the cached ratings, they will be retrieved again upon the next rating lookup. This
+     * must be called when the sticker database of the media server changes.
+     */
+    public synchronized void invalidate() {
+        mGeneration++;
+        mRatings = null;
+    }
+
     /**
      * Checks to see if stickers are available on the current media server.
      *
@@ -423,6 +521,10 @@ public class Sticker {
         if (isAvailable()) {
             mConnection.sendCommand(CMD_ACTION_SET, CMD_STICKER_TYPE_SONG, entry.getFullPath(),
                     sticker, value);
+
+            if (RATING_STICKER.equals(sticker)) {
+                updateRating(entry.getFullPath(), value);
+            }
         } else {
             Log.debug(TAG, STICKERS_NOT_AVAILABLE);
         }
@@ -444,4 +546,22 @@ public class Sticker {
 
         set(entry, RATING_STICKER, Integer.toString(boundedRating));
     }
+
+    /**
+     * Updates a cached rating after it was changed by this client, so it is served right away
+     * rather than after the cache was invalidated and retrieved again.
+     *
+     * @param fullPath The full path of the rated entry.
+     * @param value    The rating sticker value, null if the rating was deleted.
+     */
+    private synchronized void updateRating(final String fullPath, final String value) {
+        mGeneration++;
+        if (mRatings != null) {
+            if (value == null) {
+                mRatings.remove(fullPath);
+            } else {
+                mRatings.put(fullPath, value);
+            }
+        }
+    }
 }
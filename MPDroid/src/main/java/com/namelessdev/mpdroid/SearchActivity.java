@@ -18,6 +18,8 @@ package com.namelessdev.mpdroid;
 
 import com.namelessdev.mpdroid.MPDroidActivities.MPDroidActivity;
 import com.namelessdev.mpdroid.adapters.SeparatedListAdapter;
+import com.namelessdev.mpdroid.helpers.CachedMPD;
+import com.namelessdev.mpdroid.helpers.LibrarySearchIndex;
 import com.namelessdev.mpdroid.helpers.MPDAsyncHelper.AsyncExecListener;
 import com.namelessdev.mpdroid.library.SimpleLibraryActivity;
 import com.namelessdev.mpdroid.tools.Tools;
@@ -54,7 +56,9 @@ import android.widget.ListView;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 
 public class SearchActivity extends MPDroidActivity implements OnMenuItemClickListener,
@@ -186,88 +190,36 @@ public class SearchActivity extends MPDroidActivity implements OnMenuItemClickLi
 
     protected void asyncUpdate() {
         final String finalSearch = mSearchKeywords.toLowerCase();
+        final LibrarySearchIndex searchIndex =
+                ((CachedMPD) mApp.oMPDAsyncHelper.oMPD).getSearchIndex();
+        final boolean isUpdated;
 
-        List<Music> arrayMusic = null;
-
-        try {
-            arrayMusic = mApp.oMPDAsyncHelper.oMPD.search("any", finalSearch);
-        } catch (final IOException | MPDException e) {
-            Log.e(TAG, "MPD search failure.", e);
-
-        }
-
-        if (arrayMusic == null) {
-            return;
+        if (searchIndex == null) {
+            isUpdated = searchServer(finalSearch);
+        } else {
+            mArtistResults.clear();
+            mAlbumResults.clear();
+            mSongResults.clear();
+
+            mArtistResults.addAll(searchIndex.searchArtists(finalSearch));
+            mAlbumResults.addAll(searchIndex.searchAlbums(finalSearch));
+            mSongResults.addAll(searchIndex.searchSongs(finalSearch));
+            isUpdated = true;
         }
 
-        mArtistResults.clear();
-        mAlbumResults.clear();
-        mSongResults.clear();
-
-        String tmpValue;
-        boolean valueFound;
-        for (final Music music : arrayMusic) {
-            if (music.getTitle() != null && music.getTitle().toLowerCase().contains(finalSearch)) {
-                mSongResults.add(music);
-            }
-            valueFound = false;
-            Artist artist = music.getAlbumArtistAsArtist();
-            if (artist == null || artist.isUnknown()) {
-                artist = music.getArtistAsArtist();
-            }
-            if (artist != null) {
-                final String name = artist.getName();
-                if (name != null) {
-                    tmpValue = name.toLowerCase();
-                    if (tmpValue.contains(finalSearch)) {
-                        for (final Artist artistItem : mArtistResults) {
-                            final String artistItemName = artistItem.getName();
-                            if (artistItemName != null &&
-                                    artistItemName.equalsIgnoreCase(tmpValue)) {
-                                valueFound = true;
-                            }
-                        }
-                        if (!valueFound) {
-                            mArtistResults.add(artist);
-                        }
-                    }
-                }
-            }
-
-            valueFound = false;
-            final Album album = music.getAlbumAsAlbum();
-            if (album != null) {
-                final String albumName = album.getName();
-                if (albumName != null) {
-                    tmpValue = albumName.toLowerCase();
-                    if (tmpValue.contains(finalSearch)) {
-                        for (final Album albumItem : mAlbumResults) {
-                            final String albumItemName = albumItem.getName();
-                            if (albumItemName.equalsIgnoreCase(tmpValue)) {
-                                valueFound = true;
-                            }
-                        }
-                        if (!valueFound) {
-                            mAlbumResults.add(album);
-                        }
-                    }
+        if (isUpdated) {
+            runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    mTabArtists.setText(
+                            getString(R.string.artists) + " (" + mArtistResults.size() + ')');
+                    mTabAlbums.setText(
+                            getString(R.string.albums) + " (" + mAlbumResults.size() + ')');
+                    mTabSongs.setText(
+                            getString(R.string.songs) + " (" + mSongResults.size() + ')');
                 }
-            }
+            });
         }
-
-        Collections.sort(mArtistResults);
-        Collections.sort(mAlbumResults);
-        Collections.sort(mSongResults, Music.COMPARE_WITHOUT_TRACK_NUMBER);
-
-        runOnUiThread(new Runnable() {
-            @Override
-            public void run() {
-                mTabArtists.setText(
-                        getString(R.string.artists) + " (" + mArtistResults.size() + ')');
-                mTabAlbums.setText(getString(R.string.albums) + " (" + mAlbumResults.size() + ')');
-                mTabSongs.setText(getString(R.string.songs) + " (" + mSongResults.size() + ')');
-            }
-        });
     }
 
     @Override
@@ -520,6 +472,68 @@ public class SearchActivity extends MPDroidActivity implements OnMenuItemClickLi
     public void onTabUnselected(final ActionBar.Tab tab, final FragmentTransaction ft) {
     }
 
+    /**
+     * Searches the media server, for when the library search index is not up to date.
+     *
+     * @param finalSearch The search keywords, in lower case.
+     * @return True if the results were updated, false if the search failed.
+     */
+    private boolean searchServer(final String finalSearch) {
+        List<Music> arrayMusic = null;
+
+        try {
+            arrayMusic = mApp.oMPDAsyncHelper.oMPD.search("any", finalSearch);
+        } catch (final IOException | MPDException e) {
+            Log.e(TAG, "MPD search failure.", e);
+        }
+
+        if (arrayMusic != null) {
+            final Collection<String> albumNames = new HashSet<>();
+            final Collection<String> artistNames = new HashSet<>();
+
+            mArtistResults.clear();
+            mAlbumResults.clear();
+            mSongResults.clear();
+
+            for (final Music music : arrayMusic) {
+                if (music.getTitle() != null &&
+                        music.getTitle().toLowerCase().contains(finalSearch)) {
+                    mSongResults.add(music);
+                }
+                Artist artist = music.getAlbumArtistAsArtist();
+                if (artist == null || artist.isUnknown()) {
+                    artist = music.getArtistAsArtist();
+                }
+                if (artist != null) {
+                    final String name = artist.getName();
+                    if (name != null) {
+                        final String tmpValue = name.toLowerCase();
+                        if (tmpValue.contains(finalSearch) && artistNames.add(tmpValue)) {
+                            mArtistResults.add(artist);
+                        }
+                    }
+                }
+
+                final Album album = music.getAlbumAsAlbum();
+                if (album != null) {
+                    final String albumName = album.getName();
+                    if (albumName != null) {
+                        final String tmpValue = albumName.toLowerCase();
+                        if (tmpValue.contains(finalSearch) && albumNames.add(tmpValue)) {
+                            mAlbumResults.add(album);
+                        }
+                    }
+                }
+            }
+
+            Collections.sort(mArtistResults);
+            Collections.sort(mAlbumResults);
+            Collections.sort(mSongResults, Music.COMPARE_WITHOUT_TRACK_NUMBER);
+        }
+
+        return arrayMusic != null;
+    }
+
     private void setContextForObject(final Object object) {
         if (object instanceof Music) {
             mAddString = R.string.addSong;
@@ -34,8 +34,6 @@ import java.util.List;
 
 public class ArrayIndexerAdapter extends ArrayAdapter implements SectionIndexer {
 
-    private static final Comparator<String> LOCALE_COMPARATOR = new LocaleComparator();
-
     private final HashMap<String, Integer> mAlphaIndexer;
 
     private final String[] mSections;
@@ -134,7 +132,7 @@ public class ArrayIndexerAdapter extends ArrayAdapter implements SectionIndexer
          */
         final ArrayList<String> keyList = new ArrayList<>(mAlphaIndexer.keySet());
         // list can be sorted
-        Collections.sort(keyList, LOCALE_COMPARATOR);
+        Collections.sort(keyList, new LocaleComparator());
 
         // add "Unknown" at the end after sorting
         if (unknownPos >= 0) {
@@ -154,9 +152,12 @@ public class ArrayIndexerAdapter extends ArrayAdapter implements SectionIndexer
     @SuppressWarnings("ComparatorNotSerializable")
     private static class LocaleComparator implements Comparator<String> {
 
+        /** Created once for each sort, rather than for each comparison. */
+        private final Collator mCollator = Collator.getInstance();
+
         @Override
         public int compare(final String lhs, final String rhs) {
-            return Collator.getInstance().compare(lhs, rhs);
+            return mCollator.compare(lhs, rhs);
         }
     }
 }
\ No newline at end of file
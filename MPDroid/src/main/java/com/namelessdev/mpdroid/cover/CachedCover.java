@@ -16,95 +16,85 @@
 
 package com.namelessdev.mpdroid.cover;
 
-import com.namelessdev.mpdroid.MPDApplication;
 import com.namelessdev.mpdroid.helpers.AlbumInfo;
+import com.namelessdev.mpdroid.helpers.CoverInfo;
 import com.namelessdev.mpdroid.helpers.CoverManager;
 
 import android.graphics.Bitmap;
 import android.os.Environment;
 import android.util.Log;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 
-import static com.namelessdev.mpdroid.helpers.CoverManager.getCoverFileName;
-
+/**
+ * The disk cache of the covers found by the other retrievers, backed by the {@link CoverStore}.
+ * Each cover is saved as a full size rendition and a thumbnail; the requests for list rows and
+ * grid tiles are served the thumbnail, so they never have a full size cover to decode.
+ */
 public class CachedCover implements ICoverRetriever {
 
-    private static final String FOLDER_SUFFIX = "/covers/";
+    private static final int FULL_QUALITY = 95;
 
     private static final String TAG = "CachedCover";
 
-    private final MPDApplication mApp = MPDApplication.getInstance();
+    private static final int THUMBNAIL_QUALITY = 85;
 
-    public void clear() {
-        delete(null);
-    }
+    /**
+     * Gets the rendition which serves a cover request: the thumbnail if the request is for a
+     * cover no larger than the thumbnail, the full size cover otherwise.
+     *
+     * @param albumInfo The cover request.
+     * @return The rendition, to tell apart the cached covers of an album.
+     */
+    public static int getRendition(final AlbumInfo albumInfo) {
+        int rendition = CoverStore.RENDITION_FULL;
 
-    public void delete(final AlbumInfo albumInfo) {
-        final File[] files = getAllCachedCoverFiles();
-
-        if (files != null) {
-            for (final File file : files) {
-                // No need to take care of subfolders, there won't be any.
-                // (Or at least any that MPDroid cares about)
-                if (albumInfo != null && getCoverFileName(albumInfo).equals(file.getName())) {
-                    Log.d(TAG, "Deleting cover : " + file.getName());
-                }
-                if (albumInfo == null || getCoverFileName(albumInfo).equals(file.getName())) {
-                    file.delete();
-                }
+        if (albumInfo instanceof CoverInfo) {
+            final CoverInfo coverInfo = (CoverInfo) albumInfo;
+            int maxSize = coverInfo.getCoverMaxSize();
+
+            if (coverInfo.getCachedCoverMaxSize() != CoverInfo.MAX_SIZE) {
+                maxSize = coverInfo.getCachedCoverMaxSize();
+            }
+
+            if (maxSize > 0 && maxSize <= CoverStore.THUMBNAIL_SIZE) {
+                rendition = CoverStore.RENDITION_THUMBNAIL;
             }
         }
+
+        return rendition;
     }
 
-    public String getAbsoluteCoverFolderPath() {
-        final File cacheDir = mApp.getExternalCacheDir();
-        if (cacheDir == null) {
-            return null;
+    private static byte[] compress(final Bitmap cover, final int quality) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] coverBytes;
+
+        if (cover.compress(Bitmap.CompressFormat.JPEG, quality, out)) {
+            coverBytes = out.toByteArray();
+        } else {
+            coverBytes = null;
         }
-        return cacheDir.getAbsolutePath() + FOLDER_SUFFIX;
+
+        return coverBytes;
     }
 
-    public String getAbsolutePathForSong(final AlbumInfo albumInfo) {
-        final File cacheDir = mApp.getExternalCacheDir();
-        if (cacheDir == null) {
-            return null;
-        }
-        return getAbsoluteCoverFolderPath() + getCoverFileName(albumInfo);
+    public void clear() {
+        CoverStore.getInstance().clear();
+    }
+
+    public void delete(final AlbumInfo albumInfo) {
+        CoverStore.getInstance().delete(albumInfo.getKey());
     }
 
     /**
-     * Just as the name says, gets a list of all cached cover files.
+     * The total size of the cached covers, as recorded in the cache index.
      *
-     * @return A array of cached cover files.
+     * @return The cache usage, in bytes.
      */
-    private File[] getAllCachedCoverFiles() {
-        final String cacheFolderPath = getAbsoluteCoverFolderPath();
-        File[] result = null;
-
-        if (cacheFolderPath != null) {
-            final File cacheFolder = new File(cacheFolderPath);
-            if (cacheFolder.exists()) {
-                result = cacheFolder.listFiles();
-            }
-        }
-
-        return result;
-    }
-
     public long getCacheUsage() {
-        long size = 0L;
-        final File[] files = getAllCachedCoverFiles();
-
-        if (files != null) {
-            for (final File file : files) {
-                size += file.length();
-            }
-        }
-
-        return size;
+        return CoverStore.getInstance().getUsage();
     }
 
     @Override
@@ -113,10 +103,11 @@ public class CachedCover implements ICoverRetriever {
         // If there is no external storage available, don't bother
         if (Environment.MEDIA_MOUNTED_READ_ONLY.equals(storageState)
                 || Environment.MEDIA_MOUNTED.equals(storageState)) {
-            final String url = getAbsolutePathForSong(albumInfo);
-            if (new File(url).exists()) {
+            final File coverFile = CoverStore.getInstance()
+                    .getCoverFile(albumInfo.getKey(), getRendition(albumInfo));
+            if (coverFile != null) {
                 return new String[]{
-                        url
+                        coverFile.getAbsolutePath()
                 };
             }
         }
@@ -133,29 +124,44 @@ public class CachedCover implements ICoverRetriever {
         return true;
     }
 
+    /**
+     * Saves a cover, along with its thumbnail if the cover is larger than a thumbnail.
+     *
+     * @param albumInfo The album of the cover.
+     * @param cover     The cover at the size it was downloaded.
+     */
     public void save(final AlbumInfo albumInfo, final Bitmap cover) {
         if (!Environment.MEDIA_MOUNTED.equals(Environment.getExternalStorageState())) {
             // External storage is not there or read only, don't do anything
             Log.e(TAG, "No writable external storage, not saving cover to cache");
             return;
         }
-        FileOutputStream out = null;
+
+        final int width = cover.getWidth();
+        final int height = cover.getHeight();
+        final int largestSide = Math.max(width, height);
+        final byte[][] renditions = new byte[CoverStore.RENDITION_COUNT][];
+
+        renditions[CoverStore.RENDITION_FULL] = compress(cover, FULL_QUALITY);
+        if (largestSide > CoverStore.THUMBNAIL_SIZE) {
+            final Bitmap thumbnail = Bitmap.createScaledBitmap(cover,
+                    Math.max(1, width * CoverStore.THUMBNAIL_SIZE / largestSide),
+                    Math.max(1, height * CoverStore.THUMBNAIL_SIZE / largestSide), true);
+
+            renditions[CoverStore.RENDITION_THUMBNAIL] = compress(thumbnail, THUMBNAIL_QUALITY);
+            if (thumbnail != cover) {
+                thumbnail.recycle();
+            }
+        }
+
         try {
-            new File(getAbsoluteCoverFolderPath()).mkdirs();
-            out = new FileOutputStream(getAbsolutePathForSong(albumInfo));
-            cover.compress(Bitmap.CompressFormat.JPEG, 95, out);
-        } catch (final Exception e) {
+            if (renditions[CoverStore.RENDITION_FULL] != null) {
+                CoverStore.getInstance().save(albumInfo.getKey(), renditions);
+            }
+        } catch (final IOException e) {
             if (CoverManager.DEBUG) {
                 Log.e(TAG, "Cache cover write failure.", e);
             }
-        } finally {
-            if (out != null) {
-                try {
-                    out.close();
-                } catch (final IOException e) {
-                    Log.e(TAG, "Cannot close cover stream.", e);
-                }
-            }
         }
     }
 
@@ -0,0 +1,609 @@
+/*
+ * Copyright (C) 2010-2014 The MPDroid Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.namelessdev.mpdroid.cover;
+
+import com.namelessdev.mpdroid.helpers.CoverManager;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The on-disk store behind the {@link CachedCover}. Covers are kept by the hash of their
+ * content, so albums sharing the same art share the same file, and each album has one file per
+ * rendition. An index of the albums and files, in least recently used order, is kept in a file
+ * next to the covers, so the cache usage is known without listing the folder, and the least
+ * recently used covers are evicted in the background once the store grows over its budget.
+ */
+final class CoverStore {
+
+    /** The size in bytes above which the least recently used covers are evicted. */
+    static final long BUDGET = 64L * 1024L * 1024L;
+
+    /** The cover at the size it was downloaded, for the now playing screen and notification. */
+    static final int RENDITION_FULL = 0;
+
+    /** The cover scaled down to {@link #THUMBNAIL_SIZE}, for the list rows and grid tiles. */
+    static final int RENDITION_THUMBNAIL = 1;
+
+    static final int RENDITION_COUNT = 2;
+
+    /** The largest side, in pixels, of the thumbnail rendition. */
+    static final int THUMBNAIL_SIZE = 400;
+
+    /** The share of the budget the evictor brings the store down to, in percent. */
+    private static final int EVICTION_PERCENT = 90;
+
+    private static final String FILES_FOLDER = "files";
+
+    private static final String FILE_SUFFIX = ".jpg";
+
+    /** The delay, in milliseconds, before changes are written to the index file. */
+    private static final long FLUSH_DELAY = 5000L;
+
+    private static final String INDEX_FILE_NAME = "index.bin";
+
+    private static final int INDEX_VERSION = 1;
+
+    private static final String TAG = "CoverStore";
+
+    private static CoverStore sInstance = null;
+
+    /** The hashes of the renditions of each album, by album key; a missing rendition is null. */
+    private final Map<String, String[]> mAlbums = new HashMap<>();
+
+    private final ScheduledExecutorService mExecutor = new ScheduledThreadPoolExecutor(1);
+
+    /** The stored files by hash, least recently used first. */
+    private final Map<String, StoredFile> mFiles = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final String mFolder;
+
+    private boolean mIsEvictionScheduled;
+
+    private boolean mIsFlushScheduled;
+
+    private boolean mIsLoaded;
+
+    /** The total size of the stored files, in bytes. */
+    private long mUsage;
+
+    private CoverStore(final String folder) {
+        super();
+
+        mFolder = folder;
+    }
+
+    static synchronized CoverStore getInstance() {
+        final String folder = CoverManager.getCoverFolder();
+
+        if (sInstance == null || folder != null && !folder.equals(sInstance.mFolder)) {
+            sInstance = new CoverStore(folder);
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * Hashes the content of a cover.
+     *
+     * @param coverBytes The compressed cover.
+     * @return The hexadecimal MD5 hash of the cover.
+     */
+    private static String getContentHash(final byte[] coverBytes) {
+        final MessageDigest hashEngine;
+
+        try {
+            hashEngine = MessageDigest.getInstance("MD5");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available.", e);
+        }
+
+        final byte[] digest = hashEngine.digest(coverBytes);
+        final StringBuilder hash = new StringBuilder(digest.length * 2);
+
+        for (final byte value : digest) {
+            hash.append(Character.forDigit((value >> 4) & 0xF, 16));
+            hash.append(Character.forDigit(value & 0xF, 16));
+        }
+
+        return hash.toString();
+    }
+
+    private static byte[] readFile(final File file) throws IOException {
+        final byte[] content = new byte[(int) file.length()];
+        InputStream in = null;
+
+        try {
+            in = new FileInputStream(file);
+            int offset = 0;
+            while (offset < content.length) {
+                final int read = in.read(content, offset, content.length - offset);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of " + file);
+                }
+                offset += read;
+            }
+        } finally {
+            if (in != null) {
+                in.close();
+            }
+        }
+
+        return content;
+    }
+
+    /**
+     * Adds a file to the store, unless a file with the same content is already there.
+     *
+     * @param coverBytes The compressed cover.
+     * @return The hash of the cover.
+     * @throws IOException Thrown upon write failure.
+     */
+    private String add(final byte[] coverBytes) throws IOException {
+        final String hash = getContentHash(coverBytes);
+
+        if (!mFiles.containsKey(hash)) {
+            final File file = getFile(hash);
+            final File tempFile = new File(file.getPath() + ".tmp");
+            OutputStream out = null;
+
+            file.getParentFile().mkdirs();
+            try {
+                out = new FileOutputStream(tempFile);
+                out.write(coverBytes);
+            } finally {
+                if (out != null) {
+                    out.close();
+                }
+            }
+
+            if (!tempFile.renameTo(file)) {
+                tempFile.delete();
+                throw new IOException("Cannot rename " + tempFile + " to " + file);
+            }
+
+            mFiles.put(hash, new StoredFile((long) coverBytes.length));
+            mUsage += (long) coverBytes.length;
+        }
+
+        return hash;
+    }
+
+    /**
+     * Removes all covers, including the ones left from before the store, and the index.
+     */
+    synchronized void clear() {
+        final File[] files;
+        final File[] legacyFiles;
+
+        if (mFolder == null) {
+            files = null;
+            legacyFiles = null;
+        } else {
+            files = new File(mFolder + FILES_FOLDER).listFiles();
+            legacyFiles = new File(mFolder).listFiles();
+        }
+
+        if (files != null) {
+            for (final File file : files) {
+                file.delete();
+            }
+        }
+
+        if (legacyFiles != null) {
+            for (final File file : legacyFiles) {
+                if (file.isFile()) {
+                    file.delete();
+                }
+            }
+        }
+
+        mAlbums.clear();
+        mFiles.clear();
+        mUsage = 0L;
+        mIsLoaded = true;
+    }
+
+    /**
+     * Removes the covers of an album, the files themselves are deleted unless another album
+     * shares them.
+     *
+     * @param albumKey The album key.
+     */
+    synchronized void delete(final String albumKey) {
+        load();
+
+        final String[] hashes = mAlbums.remove(albumKey);
+
+        if (hashes != null) {
+            if (CoverManager.DEBUG) {
+                Log.d(TAG, "Deleting cover : " + albumKey);
+            }
+            release(hashes);
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Removes the least recently used files until the store is back under its budget, along
+     * with the album renditions pointing to them.
+     */
+    private synchronized void evict() {
+        final long target = BUDGET * (long) EVICTION_PERCENT / 100L;
+        final Iterator<Map.Entry<String, StoredFile>> iterator = mFiles.entrySet().iterator();
+        final Collection<String> evicted = new HashSet<>();
+
+        mIsEvictionScheduled = false;
+        while (mUsage > target && iterator.hasNext()) {
+            final Map.Entry<String, StoredFile> entry = iterator.next();
+
+            iterator.remove();
+            getFile(entry.getKey()).delete();
+            mUsage -= entry.getValue().mSize;
+            evicted.add(entry.getKey());
+        }
+
+        if (!evicted.isEmpty()) {
+            final Iterator<String[]> albums = mAlbums.values().iterator();
+
+            while (albums.hasNext()) {
+                final String[] hashes = albums.next();
+                boolean isEmpty = true;
+
+                for (int i = 0; i < hashes.length; i++) {
+                    if (evicted.contains(hashes[i])) {
+                        hashes[i] = null;
+                    } else if (hashes[i] != null) {
+                        isEmpty = false;
+                    }
+                }
+
+                if (isEmpty) {
+                    albums.remove();
+                }
+            }
+
+            if (CoverManager.DEBUG) {
+                Log.d(TAG, "Evicted " + evicted.size() + " covers, " + mUsage + " bytes left.");
+            }
+            scheduleFlush();
+        }
+    }
+
+    private File getFile(final String hash) {
+        return new File(mFolder + FILES_FOLDER, hash + FILE_SUFFIX);
+    }
+
+    /**
+     * Gets the file of a rendition of an album cover, falling back to the full rendition if the
+     * thumbnail is missing; this marks the file as recently used.
+     *
+     * @param albumKey  The album key.
+     * @param rendition The rendition, {@link #RENDITION_FULL} or
+     *                  {@link #RENDITION_THUMBNAIL}.
+     * @return The cover file, or null if the album has no cover in the store.
+     */
+    synchronized File getCoverFile(final String albumKey, final int rendition) {
+        load();
+
+        final String[] hashes = mAlbums.get(albumKey);
+        File coverFile = null;
+
+        if (hashes != null) {
+            String hash = hashes[rendition];
+
+            if (hash == null && rendition == RENDITION_THUMBNAIL) {
+                hash = hashes[RENDITION_FULL];
+            }
+
+            if (hash != null && mFiles.get(hash) != null) {
+                coverFile = getFile(hash);
+
+                /** The file went away behind our back, forget the album. */
+                if (!coverFile.exists()) {
+                    coverFile = null;
+                    mAlbums.remove(albumKey);
+                    release(hashes);
+                }
+                scheduleFlush();
+            }
+        }
+
+        return coverFile;
+    }
+
+    /**
+     * The total size of the stored covers, as recorded in the index.
+     *
+     * @return The cache usage, in bytes.
+     */
+    synchronized long getUsage() {
+        load();
+
+        return mUsage;
+    }
+
+    /**
+     * Imports the covers stored by album key in the cover folder, from before the store.
+     */
+    private void importLegacyFiles() {
+        final File[] legacyFiles = new File(mFolder).listFiles();
+
+        if (legacyFiles != null) {
+            for (final File legacyFile : legacyFiles) {
+                final String name = legacyFile.getName();
+
+                if (legacyFile.isFile() && name.endsWith(FILE_SUFFIX)) {
+                    try {
+                        final String hash = add(readFile(legacyFile));
+                        final String[] hashes = new String[RENDITION_COUNT];
+
+                        hashes[RENDITION_FULL] = hash;
+                        mFiles.get(hash).mReferences++;
+                        mAlbums.put(name.substring(0, name.length() - FILE_SUFFIX.length()),
+                                hashes);
+                    } catch (final IOException e) {
+                        Log.e(TAG, "Failed to import legacy cover " + legacyFile, e);
+                    }
+                    legacyFile.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the index file, the first time the store is used.
+     */
+    private void load() {
+        if (!mIsLoaded && mFolder != null) {
+            final File indexFile = new File(mFolder, INDEX_FILE_NAME);
+
+            mIsLoaded = true;
+            if (indexFile.exists()) {
+                try {
+                    readIndex(indexFile);
+                } catch (final IOException e) {
+                    Log.e(TAG, "Failed to read the cover index, starting over.", e);
+                    clear();
+                }
+            } else {
+                importLegacyFiles();
+            }
+            if (mUsage > BUDGET) {
+                scheduleEviction();
+            }
+            scheduleFlush();
+        }
+    }
+
+    private void readIndex(final File indexFile) throws IOException {
+        DataInputStream in = null;
+
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+
+            if (in.readInt() != INDEX_VERSION) {
+                throw new IOException("Unknown cover index version.");
+            }
+
+            final int fileCount = in.readInt();
+            for (int i = 0; i < fileCount; i++) {
+                final String hash = in.readUTF();
+                final long size = in.readLong();
+
+                mFiles.put(hash, new StoredFile(size));
+                mUsage += size;
+            }
+
+            final int albumCount = in.readInt();
+            for (int i = 0; i < albumCount; i++) {
+                final String albumKey = in.readUTF();
+                final String[] hashes = new String[RENDITION_COUNT];
+
+                for (int rendition = 0; rendition < RENDITION_COUNT; rendition++) {
+                    final String hash = in.readUTF();
+                    final StoredFile storedFile = mFiles.get(hash);
+
+                    if (storedFile != null) {
+                        hashes[rendition] = hash;
+                        storedFile.mReferences++;
+                    }
+                }
+                mAlbums.put(albumKey, hashes);
+            }
+        } finally {
+            if (in != null) {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Drops a reference to the files of an album, the files no album refers to anymore are
+     * deleted.
+     *
+     * @param hashes The hashes of the album renditions.
+     */
+    private void release(final String[] hashes) {
+        for (final String hash : hashes) {
+            final StoredFile storedFile;
+
+            if (hash == null) {
+                storedFile = null;
+            } else {
+                storedFile = mFiles.get(hash);
+            }
+
+            if (storedFile != null) {
+                storedFile.mReferences--;
+                if (storedFile.mReferences <= 0) {
+                    mFiles.remove(hash);
+                    getFile(hash).delete();
+                    mUsage -= storedFile.mSize;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores the renditions of an album cover, replacing the previous ones.
+     *
+     * @param albumKey   The album key.
+     * @param renditions The compressed renditions, by rendition; a null rendition is left
+     *                   out.
+     * @throws IOException Thrown upon write failure.
+     */
+    synchronized void save(final String albumKey, final byte[][] renditions) throws IOException {
+        if (mFolder == null) {
+            throw new IOException("No cover folder.");
+        }
+        load();
+
+        final String[] hashes = new String[RENDITION_COUNT];
+
+        for (int rendition = 0; rendition < RENDITION_COUNT; rendition++) {
+            if (renditions[rendition] != null) {
+                hashes[rendition] = add(renditions[rendition]);
+                mFiles.get(hashes[rendition]).mReferences++;
+            }
+        }
+
+        final String[] previousHashes = mAlbums.put(albumKey, hashes);
+        if (previousHashes != null) {
+            release(previousHashes);
+        }
+
+        if (mUsage > BUDGET) {
+            scheduleEviction();
+        }
+        scheduleFlush();
+    }
+
+    private void scheduleEviction() {
+        if (!mIsEvictionScheduled) {
+            mIsEvictionScheduled = true;
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    evict();
+                }
+            });
+        }
+    }
+
+    /**
+     * Writes the index file a little later, so a burst of changes is written once.
+     */
+    private void scheduleFlush() {
+        if (!mIsFlushScheduled) {
+            mIsFlushScheduled = true;
+            mExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    writeIndex();
+                }
+            }, FLUSH_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes the index to a temporary file, renamed over the index once complete.
+     */
+    private synchronized void writeIndex() {
+        if (mFolder == null) {
+            return;
+        }
+
+        final File indexFile = new File(mFolder, INDEX_FILE_NAME);
+        final File tempFile = new File(mFolder, INDEX_FILE_NAME + ".tmp");
+        DataOutputStream out = null;
+
+        mIsFlushScheduled = false;
+        try {
+            indexFile.getParentFile().mkdirs();
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeInt(INDEX_VERSION);
+
+            out.writeInt(mFiles.size());
+            for (final Map.Entry<String, StoredFile> entry : mFiles.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().mSize);
+            }
+
+            out.writeInt(mAlbums.size());
+            for (final Map.Entry<String, String[]> entry : mAlbums.entrySet()) {
+                out.writeUTF(entry.getKey());
+                for (final String hash : entry.getValue()) {
+                    out.writeUTF(hash == null ? "" : hash);
+                }
+            }
+
+            out.close();
+            out = null;
+            if (!tempFile.renameTo(indexFile)) {
+                Log.e(TAG, "Cannot rename " + tempFile + " to " + indexFile);
+            }
+        } catch (final IOException e) {
+            Log.e(TAG, "Failed to write the cover index.", e);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (final IOException e) {
+                    Log.e(TAG, "Cannot close the cover index stream.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * A file of the store, with the number of album renditions pointing to it.
+     */
+    private static final class StoredFile {
+
+        private final long mSize;
+
+        private int mReferences;
+
+        private StoredFile(final long size) {
+            super();
+
+            mSize = size;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2010-2014 The MPDroid Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.namelessdev.mpdroid.cover;
+
+import com.namelessdev.mpdroid.MPDApplication;
+import com.namelessdev.mpdroid.helpers.AlbumInfo;
+
+import org.a0z.mpd.MPD;
+import org.a0z.mpd.MPDCommand;
+import org.a0z.mpd.exception.MPDException;
+
+import android.util.Log;
+
+import java.io.IOException;
+
+import static android.text.TextUtils.isEmpty;
+
+/**
+ * Retrieves covers from the media server itself, with the {@code albumart} and
+ * {@code readpicture} commands, over the media server connection. The cover URLs of this
+ * retriever are the song URIs, prefixed with {@link #URL_PREFIX}, which are read with
+ * {@link #getCoverBytes(String)}.
+ */
+public class MPDCover implements ICoverRetriever {
+
+    public static final String RETRIEVER_NAME = "MPD Server";
+
+    public static final String URL_PREFIX = "mpd://";
+
+    private static final String TAG = "MPDCover";
+
+    private final MPDApplication mApp = MPDApplication.getInstance();
+
+    /**
+     * Reads a cover from the media server.
+     *
+     * @param url The cover URL, as returned by {@link #getCoverUrl(AlbumInfo)}.
+     * @return The cover, or null if the media server has no cover for the song.
+     */
+    public byte[] getCoverBytes(final String url) {
+        final MPD mpd = mApp.oMPDAsyncHelper.oMPD;
+        byte[] coverBytes = null;
+
+        try {
+            coverBytes = mpd.getAlbumArt(url.substring(URL_PREFIX.length()));
+        } catch (final IOException | MPDException e) {
+            Log.w(TAG, "Failed to read the cover from the media server.", e);
+        }
+
+        return coverBytes;
+    }
+
+    @Override
+    public String[] getCoverUrl(final AlbumInfo albumInfo) throws Exception {
+        final MPD mpd = mApp.oMPDAsyncHelper.oMPD;
+        final String[] coverUrls;
+
+        if (isEmpty(albumInfo.getPath()) || !mpd.isConnected() ||
+                !mpd.isCommandAvailable(MPDCommand.MPD_CMD_ALBUM_ART) &&
+                        !mpd.isCommandAvailable(MPDCommand.MPD_CMD_READ_PICTURE)) {
+            coverUrls = new String[0];
+        } else {
+            /**
+             * The media server looks for the cover file in the directory of the URI, so the
+             * directory will do when the album has no song to look for an embedded picture in.
+             */
+            String uri = albumInfo.getPath() + '/';
+            if (albumInfo.getFilename() != null) {
+                uri += albumInfo.getFilename();
+            }
+
+            coverUrls = new String[]{
+                    URL_PREFIX + uri
+            };
+        }
+
+        return coverUrls;
+    }
+
+    @Override
+    public String getName() {
+        return RETRIEVER_NAME;
+    }
+
+    @Override
+    public boolean isCoverLocal() {
+        return false;
+    }
+}
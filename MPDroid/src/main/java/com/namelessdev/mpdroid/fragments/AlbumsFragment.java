@@ -21,6 +21,7 @@ import com.namelessdev.mpdroid.adapters.ArrayIndexerAdapter;
 import com.namelessdev.mpdroid.helpers.AlbumInfo;
 import com.namelessdev.mpdroid.helpers.CoverAsyncHelper;
 import com.namelessdev.mpdroid.helpers.CoverManager;
+import com.namelessdev.mpdroid.helpers.CoverPrefetcher;
 import com.namelessdev.mpdroid.library.ILibraryFragmentActivity;
 import com.namelessdev.mpdroid.library.SimpleLibraryActivity;
 import com.namelessdev.mpdroid.tools.Tools;
@@ -71,6 +72,8 @@ public class AlbumsFragment extends BrowseFragment {
 
     protected ProgressBar mCoverArtProgress;
 
+    private CoverPrefetcher mCoverPrefetcher = null;
+
     protected Genre mGenre = null;
 
     protected boolean mIsCountDisplayed;
@@ -231,6 +234,15 @@ public class AlbumsFragment extends BrowseFragment {
 
     }
 
+    @Override
+    public void onDestroyView() {
+        if (mCoverPrefetcher != null) {
+            mCoverPrefetcher.cancel();
+            mCoverPrefetcher = null;
+        }
+        super.onDestroyView();
+    }
+
     @Override
     public void onItemClick(final AdapterView<?> parent, final View view, final int position,
             final long id) {
@@ -286,6 +298,23 @@ public class AlbumsFragment extends BrowseFragment {
         super.onSaveInstanceState(outState);
     }
 
+    @Override
+    public void onViewCreated(final View view, final Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+
+        mCoverPrefetcher = new CoverPrefetcher();
+        mList.setOnScrollListener(mCoverPrefetcher);
+    }
+
+    @Override
+    public void updateFromItems() {
+        /** The prefetches in progress are for the positions of the previous items. */
+        if (mCoverPrefetcher != null) {
+            mCoverPrefetcher.cancel();
+        }
+        super.updateFromItems();
+    }
+
     private void updateNowPlayingSmallFragment(final AlbumInfo albumInfo) {
         final NowPlayingSmallFragment nowPlayingSmallFragment;
         if (getActivity() != null) {
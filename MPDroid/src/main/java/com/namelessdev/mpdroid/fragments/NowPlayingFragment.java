@@ -29,6 +29,7 @@ import com.namelessdev.mpdroid.library.SimpleLibraryActivity;
 import org.a0z.mpd.MPDCommand;
 import org.a0z.mpd.MPDStatus;
 import org.a0z.mpd.Tools;
+import org.a0z.mpd.TrackPositionClock;
 import org.a0z.mpd.event.StatusChangeListener;
 import org.a0z.mpd.event.TrackPositionListener;
 import org.a0z.mpd.exception.MPDException;
@@ -48,7 +49,6 @@ import android.support.annotation.IdRes;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentActivity;
 import android.support.v4.widget.PopupMenuCompat;
-import android.text.format.DateUtils;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.Menu;
@@ -68,7 +68,6 @@ import android.widget.SeekBar;
 import android.widget.TextView;
 
 import java.io.IOException;
-import java.util.Date;
 import java.util.Timer;
 import java.util.TimerTask;
 
@@ -129,7 +128,7 @@ public class NowPlayingFragment extends Fragment implements StatusChangeListener
 
     private View.OnTouchListener mPopupMenuTouchListener = null;
 
-    private Timer mPosTimer = null;
+    private TrackProgressTicker mTrackProgressTicker = null;
 
     private ImageButton mRepeatButton = null;
 
@@ -835,6 +834,7 @@ public class NowPlayingFragment extends Fragment implements StatusChangeListener
             case CoverManager.PREFERENCE_CACHE:
             case CoverManager.PREFERENCE_LASTFM:
             case CoverManager.PREFERENCE_LOCALSERVER:
+            case CoverManager.PREFERENCE_PARALLEL_FETCH:
                 CoverAsyncHelper.setCoverRetrieversFromPreferences();
                 break;
             case "enableStopButton":
@@ -875,7 +875,7 @@ public class NowPlayingFragment extends Fragment implements StatusChangeListener
         mApp.updateTrackInfo.removeCallback(this);
         mApp.oMPDAsyncHelper.removeStatusChangeListener(this);
         mApp.oMPDAsyncHelper.removeTrackPositionListener(this);
-        stopPosTimer();
+        stopTrackProgressTicker();
         mApp.unsetActivity(this);
     }
 
@@ -958,11 +958,10 @@ public class NowPlayingFragment extends Fragment implements StatusChangeListener
         }
     }
 
-    private void startPosTimer(final long start, final long total) {
-        stopPosTimer();
-        mPosTimer = new Timer();
-        final TimerTask posTimerTask = new PosTimerTask(start, total);
-        mPosTimer.scheduleAtFixedRate(posTimerTask, 0L, DateUtils.SECOND_IN_MILLIS);
+    private void startTrackProgressTicker(final long total) {
+        stopTrackProgressTicker();
+        mTrackProgressTicker = new TrackProgressTicker(total);
+        mHandler.post(mTrackProgressTicker);
     }
 
     @Override
@@ -982,16 +981,16 @@ public class NowPlayingFragment extends Fragment implements StatusChangeListener
         }
     }
 
-    private void stopPosTimer() {
-        if (null != mPosTimer) {
-            mPosTimer.cancel();
-            mPosTimer = null;
+    private void stopTrackProgressTicker() {
+        if (null != mTrackProgressTicker) {
+            mHandler.removeCallbacks(mTrackProgressTicker);
+            mTrackProgressTicker = null;
         }
     }
 
     /**
      * Toggle the track progress bar. This should be called only when the track changes, for
-     * position changes, startPosTimer() is sufficient.
+     * position changes, startTrackProgressTicker() is sufficient.
      *
      * @param status A current {@code MPDStatus} object.
      */
@@ -1002,17 +1001,15 @@ public class NowPlayingFragment extends Fragment implements StatusChangeListener
             mSongRating.setVisibility(View.GONE);
             mTrackTime.setVisibility(View.INVISIBLE);
             mTrackTotalTime.setVisibility(View.INVISIBLE);
-            stopPosTimer();
+            stopTrackProgressTicker();
             mTrackSeekBar.setProgress(0);
             mTrackSeekBar.setEnabled(false);
         } else {
-            final long elapsedTime = status.getElapsedTime();
-
             if (status.isState(MPDStatus.STATE_PLAYING)) {
-                startPosTimer(elapsedTime, totalTime);
+                startTrackProgressTicker(totalTime);
             } else {
-                stopPosTimer();
-                updateTrackProgress(elapsedTime, totalTime);
+                stopTrackProgressTicker();
+                updateTrackProgress(status.getElapsedTime(), totalTime);
             }
 
             mTrackSeekBar.setMax((int) totalTime);
@@ -1163,14 +1160,8 @@ public class NowPlayingFragment extends Fragment implements StatusChangeListener
         }
 
         mTrackSeekBar.setProgress((int) elapsedTime);
-
-        mHandler.post(new Runnable() {
-            @Override
-            public void run() {
-                mTrackTime.setText(Music.timeToString(elapsedTime));
-                mTrackTotalTime.setText(Music.timeToString(totalTrackTime));
-            }
-        });
+        mTrackTime.setText(Music.timeToString(elapsedTime));
+        mTrackTotalTime.setText(Music.timeToString(totalTrackTime));
     }
 
     @Override
@@ -1205,37 +1196,6 @@ public class NowPlayingFragment extends Fragment implements StatusChangeListener
         }
     }
 
-    /**
-     * This class runs a timer to keep the time elapsed since last track elapsed time updated for
-     * the purpose of keeping the track progress up to date without continual server polling.
-     */
-    private class PosTimerTask extends TimerTask {
-
-        private final long mTimerStartTime;
-
-        private long mElapsedTime = 0L;
-
-        private long mStartTrackTime = 0L;
-
-        private long mTotalTrackTime = 0L;
-
-        private PosTimerTask(final long start, final long total) {
-            super();
-            mStartTrackTime = start;
-            mTotalTrackTime = total;
-            mTimerStartTime = new Date().getTime();
-        }
-
-        @Override
-        public void run() {
-            final long elapsedSinceTimerStart = new Date().getTime() - mTimerStartTime;
-
-            mElapsedTime = mStartTrackTime + elapsedSinceTimerStart / DateUtils.SECOND_IN_MILLIS;
-
-            updateTrackProgress(mElapsedTime, mTotalTrackTime);
-        }
-    }
-
     private class RatingChangedHandler implements RatingBar.OnRatingBarChangeListener {
 
         @Override
@@ -1253,4 +1213,31 @@ public class NowPlayingFragment extends Fragment implements StatusChangeListener
             }
         }
     }
+
+    /**
+     * This class updates the track progress each time the elapsed seconds change, from the track
+     * position clock kept from the server player changes, so the progress stays up to date
+     * without server polling.
+     */
+    private class TrackProgressTicker implements Runnable {
+
+        private final long mTotalTrackTime;
+
+        private TrackProgressTicker(final long total) {
+            super();
+            mTotalTrackTime = total;
+        }
+
+        @Override
+        public void run() {
+            final TrackPositionClock clock = mApp.oMPDAsyncHelper.oMPD.getTrackPositionClock();
+            final long millisToNextSecond = clock.getMillisToNextSecond();
+
+            updateTrackProgress(clock.getElapsedTime(), mTotalTrackTime);
+
+            if (millisToNextSecond >= 0L) {
+                mHandler.postDelayed(this, millisToNextSecond);
+            }
+        }
+    }
 }
@@ -51,6 +51,7 @@ import android.support.annotation.LayoutRes;
 import android.support.v4.app.FragmentActivity;
 import android.support.v4.app.ListFragment;
 import android.util.Log;
+import android.util.LruCache;
 import android.util.SparseBooleanArray;
 import android.view.ActionMode;
 import android.view.LayoutInflater;
@@ -95,6 +96,12 @@ public class QueueFragment extends ListFragment implements StatusChangeListener,
 
     private static final String TAG = "QueueFragment";
 
+    /** The number of rows kept by the adapter of a windowed play queue. */
+    private static final int WINDOW_CACHE_SIZE = 256;
+
+    /** The number of positions read on each side of a row missing from a windowed play queue. */
+    private static final int WINDOW_FETCH_MARGIN = 64;
+
     protected final MPDApplication mApp = MPDApplication.getInstance();
 
     protected final boolean mLightTheme = mApp.isLightThemeSelected();
@@ -112,8 +119,7 @@ public class QueueFragment extends ListFragment implements StatusChangeListener,
         @Override
         public void drop(final int from, final int to) {
             if (from != to && mFilter == null) {
-                final AbstractPlaylistMusic itemFrom = mSongList.get(from);
-                final int songID = itemFrom.getSongId();
+                final int songID = getListSongId(from);
 
                 QueueControl.run(QueueControl.MOVE, songID, to);
             }
@@ -146,15 +152,34 @@ public class QueueFragment extends ListFragment implements StatusChangeListener,
 
     protected SearchView mSearchView;
 
+    /** The songs shown, null if the play queue is windowed and not filtered. */
     protected ArrayList<AbstractPlaylistMusic> mSongList;
 
     @Override
     public void connectionStateChanged(final boolean connected, final boolean connectionLost) {
     }
 
+    /**
+     * Retrieves the songId shown at a list position, whether the play queue is windowed or not.
+     *
+     * @param position The list position.
+     * @return The songId shown at the position.
+     */
+    protected int getListSongId(final int position) {
+        final int songId;
+
+        if (mSongList == null) {
+            songId = mApp.oMPDAsyncHelper.oMPD.getPlaylist().getSongId(position);
+        } else {
+            songId = mSongList.get(position).getSongId();
+        }
+
+        return songId;
+    }
+
     protected AbstractPlaylistMusic getPlaylistItemSong(final int songID) {
         AbstractPlaylistMusic song = null;
-        for (final AbstractPlaylistMusic music : mSongList) {
+        for (final AbstractPlaylistMusic music : getShownSongs()) {
             if (music.getSongId() == songID) {
                 song = music;
                 break;
@@ -163,7 +188,116 @@ public class QueueFragment extends ListFragment implements StatusChangeListener,
         return song;
     }
 
-    protected boolean isFiltered(final String item) {
+    /**
+     * Binds a play queue row.
+     *
+     * @param music       The song shown by the row, null if the play queue is windowed and the
+     *                    song is not read yet.
+     * @param convertView The row view to reuse, if any.
+     * @return The row view.
+     */
+    private View getQueueItemView(final AbstractPlaylistMusic music, final View convertView) {
+        final PlayQueueViewHolder viewHolder;
+        final View view;
+
+        if (convertView == null) {
+            view = LayoutInflater.from(mActivity).inflate(
+                    R.layout.playlist_queue_item, mRootView);
+            viewHolder = new PlayQueueViewHolder();
+            viewHolder.mArtist = (TextView) view.findViewById(android.R.id.text2);
+            viewHolder.mTitle = (TextView) view.findViewById(android.R.id.text1);
+            viewHolder.mPlay = (ImageView) view.findViewById(R.id.picture);
+            viewHolder.mAlbumCover = (ImageView) view.findViewById(R.id.cover);
+            viewHolder.mCoverHelper = new CoverAsyncHelper();
+            int height = viewHolder.mAlbumCover.getHeight();
+            // If the list is not displayed yet, the height is 0.
+            // This is a problem, so set a fallback one.
+            final int fallbackHeight = 128;
+            if (height == 0) {
+                height = fallbackHeight;
+            }
+            viewHolder.mCoverHelper.setCoverMaxSize(height);
+            final CoverDownloadListener acd = new AlbumCoverDownloadListener(
+                    viewHolder.mAlbumCover);
+            final AlbumCoverDownloadListener oldAcd
+                    = (AlbumCoverDownloadListener) viewHolder.mAlbumCover
+                    .getTag(R.id.AlbumCoverDownloadListener);
+            if (oldAcd != null) {
+                oldAcd.detach();
+            }
+            viewHolder.mAlbumCover.setTag(R.id.AlbumCoverDownloadListener, acd);
+            viewHolder.mAlbumCover.setTag(R.id.CoverAsyncHelper, viewHolder.mCoverHelper);
+            viewHolder.mCoverHelper.addCoverDownloadListener(acd);
+            viewHolder.mMenuButton = view.findViewById(R.id.menu);
+            viewHolder.mMenuButton.setOnClickListener(mItemMenuButtonListener);
+            view.setTag(viewHolder);
+        } else {
+            viewHolder = (PlayQueueViewHolder) convertView.getTag();
+            view = convertView;
+        }
+
+        if (music == null) {
+            viewHolder.mArtist.setText(null);
+            viewHolder.mTitle.setText(R.string.loading);
+            viewHolder.mMenuButton.setVisibility(View.INVISIBLE);
+            viewHolder.mPlay.setImageResource(0);
+            viewHolder.mCoverHelper.cancel();
+            /** No album key is empty, the next album bound will download its cover. */
+            viewHolder.mAlbumCover.setTag("");
+            viewHolder.mAlbumCover.setImageResource(
+                    AlbumCoverDownloadListener.getNoCoverResource());
+        } else {
+            viewHolder.mArtist.setText(music.getPlaylistSubLine());
+            viewHolder.mTitle.setText(music.getPlayListMainLine());
+            viewHolder.mMenuButton.setTag(music.getSongId());
+            viewHolder.mMenuButton.setVisibility(View.VISIBLE);
+            viewHolder.mPlay.setImageResource(music.getCurrentSongIconRefID());
+
+            final AlbumInfo albumInfo = new AlbumInfo(music);
+
+            if (music.isForceCoverRefresh() || viewHolder.mAlbumCover.getTag() == null
+                    || !viewHolder.mAlbumCover.getTag().equals(albumInfo.getKey())) {
+                if (!music.isForceCoverRefresh()) {
+                    final int noCoverResource = AlbumCoverDownloadListener.getNoCoverResource();
+                    viewHolder.mAlbumCover.setImageResource(noCoverResource);
+                }
+                music.setForceCoverRefresh(false);
+                viewHolder.mCoverHelper.downloadCover(albumInfo, false);
+            }
+        }
+
+        return view;
+    }
+
+    /**
+     * Retrieves the songs which can be acted upon, only the ones on screen if the play queue is
+     * windowed and not filtered.
+     *
+     * @return The songs which can be acted upon.
+     */
+    private List<AbstractPlaylistMusic> getShownSongs() {
+        final List<AbstractPlaylistMusic> songs;
+
+        if (mSongList == null) {
+            final ListAdapter adapter = mList.getAdapter();
+            final int last = mList.getLastVisiblePosition();
+
+            songs = new ArrayList<>();
+            for (int i = mList.getFirstVisiblePosition(); i <= last; i++) {
+                final AbstractPlaylistMusic music = (AbstractPlaylistMusic) adapter.getItem(i);
+
+                if (music != null) {
+                    songs.add(music);
+                }
+            }
+        } else {
+            songs = mSongList;
+        }
+
+        return songs;
+    }
+
+    protected boolean isFiltered(final String filter, final String item) {
         final String processedItem;
 
         if (item == null) {
@@ -172,7 +306,7 @@ public class QueueFragment extends ListFragment implements StatusChangeListener,
             processedItem = item.toLowerCase(Locale.getDefault());
         }
 
-        return processedItem.contains(mFilter);
+        return processedItem.contains(filter);
     }
 
     @Override
@@ -253,7 +387,6 @@ public class QueueFragment extends ListFragment implements StatusChangeListener,
 
                 final SparseBooleanArray checkedItems = mList.getCheckedItemPositions();
                 final int count = mList.getCount();
-                final ListAdapter adapter = mList.getAdapter();
                 final int itemId = item.getItemId();
                 int j = 0;
                 int[] positions = null;
@@ -263,7 +396,7 @@ public class QueueFragment extends ListFragment implements StatusChangeListener,
                     positions = new int[mList.getCheckedItemCount()];
                     for (int i = 0; i < count && j < positions.length; i++) {
                         if (checkedItems.get(i)) {
-                            positions[j] = ((Music) adapter.getItem(i)).getSongId();
+                            positions[j] = getListSongId(i);
                             j++;
                         }
                     }
@@ -271,7 +404,7 @@ public class QueueFragment extends ListFragment implements StatusChangeListener,
                     positions = new int[mList.getCount() - mList.getCheckedItemCount()];
                     for (int i = 0; i < count && j < positions.length; i++) {
                         if (!checkedItems.get(i)) {
-                            positions[j] = ((Music) adapter.getItem(i)).getSongId();
+                            positions[j] = getListSongId(i);
                             j++;
                         }
                     }
@@ -330,7 +463,7 @@ public class QueueFragment extends ListFragment implements StatusChangeListener,
     public void onListItemClick(final ListView l, final View v, final int position, final long id) {
         super.onListItemClick(l, v, position, id);
 
-        final int song = ((Music) l.getAdapter().getItem(position)).getSongId();
+        final int song = getListSongId(position);
 
         QueueControl.run(QueueControl.SKIP_TO_ID, song);
     }
@@ -415,7 +548,9 @@ public class QueueFragment extends ListFragment implements StatusChangeListener,
 
         if (item.getItemId() == R.id.PLM_Clear) {
             QueueControl.run(QueueControl.CLEAR);
-            mSongList.clear();
+            if (mSongList != null) {
+                mSongList.clear();
+            }
             if (isAdded()) {
                 Tools.notifyUser(R.string.playlistCleared);
             }
@@ -521,7 +656,7 @@ public class QueueFragment extends ListFragment implements StatusChangeListener,
             final AbstractPlaylistMusic playlistMusic =
                     (AbstractPlaylistMusic) mList.getAdapter().getItem(i);
             for (final AbstractPlaylistMusic song : playlistSongs) {
-                if (playlistMusic.getSongId() == song.getSongId()) {
+                if (playlistMusic != null && playlistMusic.getSongId() == song.getSongId()) {
                     final View view = mList.getChildAt(i - start);
                     mList.getAdapter().getView(i, view, mList);
                 }
@@ -600,7 +735,15 @@ public class QueueFragment extends ListFragment implements StatusChangeListener,
 
     @Override
     public void trackChanged(final MPDStatus mpdStatus, final int oldTrack) {
-        if (mSongList != null) {
+        if (mSongList == null) {
+            /** The rows of a windowed play queue mark the running track as they are bound. */
+            final ListAdapter adapter = getListAdapter();
+
+            mLastPlayingID = mpdStatus.getSongId();
+            if (adapter != null) {
+                ((BaseAdapter) adapter).notifyDataSetChanged();
+            }
+        } else {
             // Mark running track...
             for (final AbstractPlaylistMusic song : mSongList) {
                 final int newPlay;
@@ -633,62 +776,49 @@ public class QueueFragment extends ListFragment implements StatusChangeListener,
     void update(final boolean forcePlayingIDRefresh) {
         // Save the scroll bar position to restore it after update
         final MPDPlaylist playlist = mApp.oMPDAsyncHelper.oMPD.getPlaylist();
-        final List<Music> musics = playlist.getMusicList();
-        final ArrayList<AbstractPlaylistMusic> newSongList = new ArrayList<>(musics.size());
+        final String filter = mFilter;
 
         if (mLastPlayingID == -1 || forcePlayingIDRefresh) {
             mLastPlayingID = mApp.oMPDAsyncHelper.oMPD.getStatus().getSongId();
         }
 
-        // The position in the song list of the currently played song
-        int listPlayingID = -1;
-
-        // Copy list to avoid concurrent exception
-        for (final Music music : new ArrayList<>(musics)) {
-            if (music == null) {
-                continue;
-            }
-
-            final AbstractPlaylistMusic item;
-            if (music.isStream()) {
-                item = new PlaylistStream(music);
-            } else {
-                item = new PlaylistSong(music);
-            }
-
-            if (mFilter != null) {
-                if (!(isFiltered(item.getAlbumArtist()) || isFiltered(item.getAlbum()) ||
-                        isFiltered(item.getTitle()))) {
-                    continue;
-                }
-            }
+        if (playlist.isWindowed() && filter == null) {
+            /** Lie a little, as below. The rows are read as they are shown. */
+            updateScrollbar(null, mApp.oMPDAsyncHelper.oMPD.getStatus().getSongPos() - 1);
+        } else if (playlist.isWindowed()) {
+            /**
+             * A windowed play queue is filtered by the media server, away from the calling
+             * thread, which may be the UI thread.
+             */
+            mApp.oMPDAsyncHelper.execAsync(new Runnable() {
+                @Override
+                public void run() {
+                    /** A search for a filter typed over since is left to the later one. */
+                    if (filter.equals(mFilter)) {
+                        List<Music> musics;
+
+                        try {
+                            musics = playlist.search(filter);
+                        } catch (final IOException | MPDException e) {
+                            Log.e(TAG, "Failed to search the play queue.", e);
+                            musics = Collections.emptyList();
+                        }
 
-            if (item.getSongId() == mLastPlayingID) {
-                if (mLightTheme) {
-                    item.setCurrentSongIconRefID(R.drawable.ic_media_play_light);
-                } else {
-                    item.setCurrentSongIconRefID(R.drawable.ic_media_play);
+                        updateSongList(musics, filter);
+                    }
                 }
-
-                /**
-                 * Lie a little. Scroll to the previous song than the one playing.
-                 * That way it shows that there are other songs before it.
-                 */
-                listPlayingID = newSongList.size() - 1;
-            } else {
-                item.setCurrentSongIconRefID(0);
-            }
-            newSongList.add(item);
+            });
+        } else {
+            updateSongList(playlist.getMusicList(), filter);
         }
-
-        updateScrollbar(newSongList, listPlayingID);
     }
 
     public void updateCover(final AlbumInfo albumInfo) {
 
-        final List<AbstractPlaylistMusic> musicsToBeUpdated = new ArrayList<>(mSongList.size());
+        final List<AbstractPlaylistMusic> shownSongs = getShownSongs();
+        final List<AbstractPlaylistMusic> musicsToBeUpdated = new ArrayList<>(shownSongs.size());
 
-        for (final AbstractPlaylistMusic playlistMusic : mSongList) {
+        for (final AbstractPlaylistMusic playlistMusic : shownSongs) {
             final AlbumInfo abstractAlbumInfo = new AlbumInfo(playlistMusic);
 
             if (abstractAlbumInfo.equals(albumInfo)) {
@@ -703,7 +833,8 @@ public class QueueFragment extends ListFragment implements StatusChangeListener,
     /**
      * Updates the scrollbar.
      *
-     * @param newSongList   The updated list of songs for the playlist.
+     * @param newSongList   The updated list of songs for the playlist, null to show a windowed
+     *                      play queue.
      * @param listPlayingID The current playing playlist id.
      */
     protected void updateScrollbar(final ArrayList newSongList, final int listPlayingID) {
@@ -730,9 +861,15 @@ public class QueueFragment extends ListFragment implements StatusChangeListener,
                 final int firstVisibleElementIndex = mList.getFirstVisiblePosition();
                 final View firstVisibleItem = mList.getChildAt(0);
                 final int firstVisiblePosition;
-                final ArrayAdapter songs = new QueueAdapter(mActivity, R.layout.playlist_queue_item,
-                        newSongList
-                );
+                final BaseAdapter songs;
+
+                if (newSongList == null) {
+                    songs = new QueueWindowAdapter(mApp.oMPDAsyncHelper.oMPD.getPlaylist());
+                } else {
+                    songs = new QueueAdapter(mActivity, R.layout.playlist_queue_item,
+                            newSongList
+                    );
+                }
 
                 if (firstVisibleItem != null) {
                     firstVisiblePosition = firstVisibleItem.getTop();
@@ -751,7 +888,7 @@ public class QueueFragment extends ListFragment implements StatusChangeListener,
                  *
                  * This is so stupid I don't even .... argh.
                  */
-                if (newSongList.size() >= MIN_SONGS_BEFORE_FASTSCROLL) {
+                if (songs.getCount() >= MIN_SONGS_BEFORE_FASTSCROLL) {
                     refreshFastScrollStyle(View.SCROLLBARS_INSIDE_INSET, true);
                 } else {
                     refreshFastScrollStyle(View.SCROLLBARS_INSIDE_OVERLAY, false);
@@ -779,6 +916,60 @@ public class QueueFragment extends ListFragment implements StatusChangeListener,
         });
     }
 
+    /**
+     * Shows the songs of the play queue which pass the filter.
+     *
+     * @param musics The songs of the play queue, or those found for the filter.
+     * @param filter The filter, null for none.
+     */
+    private void updateSongList(final List<Music> musics, final String filter) {
+        final ArrayList<AbstractPlaylistMusic> newSongList = new ArrayList<>(musics.size());
+
+        // The position in the song list of the currently played song
+        int listPlayingID = -1;
+
+        // Copy list to avoid concurrent exception
+        for (final Music music : new ArrayList<>(musics)) {
+            if (music == null) {
+                continue;
+            }
+
+            final AbstractPlaylistMusic item;
+            if (music.isStream()) {
+                item = new PlaylistStream(music);
+            } else {
+                item = new PlaylistSong(music);
+            }
+
+            if (filter != null) {
+                if (!(isFiltered(filter, item.getAlbumArtist()) ||
+                        isFiltered(filter, item.getAlbum()) ||
+                        isFiltered(filter, item.getTitle()))) {
+                    continue;
+                }
+            }
+
+            if (item.getSongId() == mLastPlayingID) {
+                if (mLightTheme) {
+                    item.setCurrentSongIconRefID(R.drawable.ic_media_play_light);
+                } else {
+                    item.setCurrentSongIconRefID(R.drawable.ic_media_play);
+                }
+
+                /**
+                 * Lie a little. Scroll to the previous song than the one playing.
+                 * That way it shows that there are other songs before it.
+                 */
+                listPlayingID = newSongList.size() - 1;
+            } else {
+                item.setCurrentSongIconRefID(0);
+            }
+            newSongList.add(item);
+        }
+
+        updateScrollbar(newSongList, listPlayingID);
+    }
+
     @Override
     public void volumeChanged(final MPDStatus mpdStatus, final int oldVolume) {
     }
@@ -792,64 +983,122 @@ public class QueueFragment extends ListFragment implements StatusChangeListener,
 
         @Override
         public View getView(final int position, final View convertView, final ViewGroup parent) {
-            final PlayQueueViewHolder viewHolder;
-            final View view;
-
-            if (convertView == null) {
-                view = LayoutInflater.from(getContext()).inflate(
-                        R.layout.playlist_queue_item, mRootView);
-                viewHolder = new PlayQueueViewHolder();
-                viewHolder.mArtist = (TextView) view.findViewById(android.R.id.text2);
-                viewHolder.mTitle = (TextView) view.findViewById(android.R.id.text1);
-                viewHolder.mPlay = (ImageView) view.findViewById(R.id.picture);
-                viewHolder.mAlbumCover = (ImageView) view.findViewById(R.id.cover);
-                viewHolder.mCoverHelper = new CoverAsyncHelper();
-                int height = viewHolder.mAlbumCover.getHeight();
-                // If the list is not displayed yet, the height is 0.
-                // This is a problem, so set a fallback one.
-                final int fallbackHeight = 128;
-                if (height == 0) {
-                    height = fallbackHeight;
-                }
-                viewHolder.mCoverHelper.setCoverMaxSize(height);
-                final CoverDownloadListener acd = new AlbumCoverDownloadListener(
-                        viewHolder.mAlbumCover);
-                final AlbumCoverDownloadListener oldAcd
-                        = (AlbumCoverDownloadListener) viewHolder.mAlbumCover
-                        .getTag(R.id.AlbumCoverDownloadListener);
-                if (oldAcd != null) {
-                    oldAcd.detach();
-                }
-                viewHolder.mAlbumCover.setTag(R.id.AlbumCoverDownloadListener, acd);
-                viewHolder.mAlbumCover.setTag(R.id.CoverAsyncHelper, viewHolder.mCoverHelper);
-                viewHolder.mCoverHelper.addCoverDownloadListener(acd);
-                viewHolder.mMenuButton = view.findViewById(R.id.menu);
-                viewHolder.mMenuButton.setOnClickListener(mItemMenuButtonListener);
-                view.setTag(viewHolder);
-            } else {
-                viewHolder = (PlayQueueViewHolder) convertView.getTag();
-                view = convertView;
+            return getQueueItemView(getItem(position), convertView);
+        }
+    }
+
+    /**
+     * The adapter of a windowed play queue, which reads the rows from the media server as they
+     * are shown, rather than holding every row of a very long play queue.
+     */
+    private class QueueWindowAdapter extends BaseAdapter {
+
+        /** The play queue length, as of the last {@link #notifyDataSetChanged()}. */
+        private int mCount;
+
+        private boolean mIsFetching;
+
+        private final LruCache<Integer, AbstractPlaylistMusic> mItems =
+                new LruCache<>(WINDOW_CACHE_SIZE);
+
+        private final MPDPlaylist mPlaylist;
+
+        QueueWindowAdapter(final MPDPlaylist playlist) {
+            super();
+
+            mPlaylist = playlist;
+            mCount = playlist.size();
+        }
+
+        /**
+         * Reads the rows around a position from the media server, unless rows are being read
+         * already, and shows them once read.
+         *
+         * @param position The position of a row not read.
+         */
+        private void fetchWindow(final int position) {
+            if (!mIsFetching) {
+                mIsFetching = true;
+                mApp.oMPDAsyncHelper.execAsync(new Runnable() {
+                    @Override
+                    public void run() {
+                        boolean isFetched = false;
+
+                        try {
+                            mPlaylist.fetchWindow(position - WINDOW_FETCH_MARGIN,
+                                    position + WINDOW_FETCH_MARGIN);
+                            isFetched = true;
+                        } catch (final IOException | MPDException e) {
+                            Log.e(TAG, "Failed to read the play queue rows.", e);
+                        }
+
+                        final boolean wasFetched = isFetched;
+                        mActivity.runOnUiThread(new Runnable() {
+                            @Override
+                            public void run() {
+                                mIsFetching = false;
+                                /** Rows which failed are read again once the queue changes. */
+                                if (wasFetched) {
+                                    notifyDataSetChanged();
+                                }
+                            }
+                        });
+                    }
+                });
             }
+        }
 
-            final AbstractPlaylistMusic music = getItem(position);
+        @Override
+        public int getCount() {
+            return mCount;
+        }
 
-            viewHolder.mArtist.setText(music.getPlaylistSubLine());
-            viewHolder.mTitle.setText(music.getPlayListMainLine());
-            viewHolder.mMenuButton.setTag(music.getSongId());
-            viewHolder.mPlay.setImageResource(music.getCurrentSongIconRefID());
+        @Override
+        public AbstractPlaylistMusic getItem(final int position) {
+            AbstractPlaylistMusic item = mItems.get(position);
 
-            final AlbumInfo albumInfo = new AlbumInfo(music);
+            if (item == null) {
+                final Music music = mPlaylist.getByIndex(position);
 
-            if (music.isForceCoverRefresh() || viewHolder.mAlbumCover.getTag() == null
-                    || !viewHolder.mAlbumCover.getTag().equals(albumInfo.getKey())) {
-                if (!music.isForceCoverRefresh()) {
-                    final int noCoverResource = AlbumCoverDownloadListener.getNoCoverResource();
-                    viewHolder.mAlbumCover.setImageResource(noCoverResource);
+                if (music == null) {
+                    fetchWindow(position);
+                } else {
+                    if (music.isStream()) {
+                        item = new PlaylistStream(music);
+                    } else {
+                        item = new PlaylistSong(music);
+                    }
+                    mItems.put(position, item);
                 }
-                music.setForceCoverRefresh(false);
-                viewHolder.mCoverHelper.downloadCover(albumInfo, false);
             }
-            return view;
+
+            if (item != null) {
+                if (item.getSongId() != mLastPlayingID) {
+                    item.setCurrentSongIconRefID(0);
+                } else if (mLightTheme) {
+                    item.setCurrentSongIconRefID(R.drawable.ic_media_play_light);
+                } else {
+                    item.setCurrentSongIconRefID(R.drawable.ic_media_play);
+                }
+            }
+
+            return item;
+        }
+
+        @Override
+        public long getItemId(final int position) {
+            return (long) position;
+        }
+
+        @Override
+        public View getView(final int position, final View convertView, final ViewGroup parent) {
+            return getQueueItemView(getItem(position), convertView);
+        }
+
+        @Override
+        public void notifyDataSetChanged() {
+            mCount = mPlaylist.size();
+            super.notifyDataSetChanged();
         }
     }
 }
@@ -20,70 +20,168 @@ import com.namelessdev.mpdroid.MPDApplication;
 import com.namelessdev.mpdroid.R;
 import com.namelessdev.mpdroid.tools.Tools;
 
+import org.a0z.mpd.MPDCommand;
+import org.a0z.mpd.TrackTable;
+import org.a0z.mpd.connection.ResponseFuture;
 import org.a0z.mpd.exception.MPDException;
 import org.a0z.mpd.item.Music;
+import org.a0z.mpd.item.TagPool;
 
 import android.util.Log;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.InputStream;
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
+/*
+ * The album cache is kept per media server directory. Each directory records its Last-Modified
+ * time, its subdirectories and its tracks. Upon a database update, only directories which
+ * changed are listed again, the album indexes are updated by the difference and the changed
+ * directories are appended to a journal, rather than listing and saving the whole database.
+ */
 public class AlbumCache {
 
     static final boolean GZIP = false;
 
+    /** The maximum number of directory listings to pipeline at once. */
+    private static final int BATCH_SIZE = 100;
+
+    /** The file format identifier, followed by the version. */
+    private static final int MAGIC = 0x4D504441;
+
+    private static final byte RECORD_DIRECTORY = 1;
+
+    private static final byte RECORD_REMOVE = 2;
+
+    private static final byte RECORD_UPDATE = 3;
+
+    private static final String[] NO_GENRES = new String[0];
+
+    /** The search index file format identifier, followed by the version. */
+    private static final int SEARCH_INDEX_MAGIC = 0x4D504453;
+
     private static final String TAG = "AlbumCache";
 
+    /** The track table file format identifier, followed by the version. */
+    private static final int TRACK_TABLE_MAGIC = 0x4D504454;
+
+    private static final int VERSION = 6;
+
     protected static AlbumCache sInstance = null;
 
-    protected Map<String, AlbumDetails> mAlbumDetails; // "artist///album" ->
+    // "artist///album" ->, null until the directories are loaded if served by mIndex
+    protected Map<String, AlbumDetails> mAlbumDetails;
+
+    // copy of mAlbumDetails, or mIndex, handed to readers, replaced once a refresh is done
+    protected volatile AlbumDetailsSnapshot mAlbumDetailsSnapshot;
 
-    // list of albumname, artist, albumartist including ""
+    // list of albumname, artist, albumartist including "", null until the directories are
+    // loaded if served by mIndex
     protected Set<List<String>> mAlbumSet;
 
+    // copy of mAlbumSet handed to readers, replaced once a refresh is done, null until first
+    // used if served by mIndex
+    protected Set<List<String>> mAlbumSetSnapshot;
+
+    // mAlbumSet indexed by album, artist and albumartist, null until first used
+    protected AlbumSetIndex mAlbumSetIndex;
+
+    // number of tracks for each entry of mAlbumSet
+    protected Map<List<String>, Integer> mAlbumTrackCounts;
+
+    // directory path -> directory entry, the root directory is "", null until the journal is
+    // loaded by a refresh
+    protected Map<String, DirectoryEntry> mDirectories;
+
     protected boolean mEnabled = true;
 
     protected File mFilesDir;
 
+    /** The album index mapped upon load, serving queries until the directories are loaded. */
+    protected AlbumIndex mIndex;
+
+    /** The journal, open while a refresh is appending to it. */
+    protected DataOutputStream mJournal;
+
+    /**
+     * The length of the journal up to its last complete record, the journal is cut back to it
+     * before records are appended.
+     */
+    protected long mJournalLength;
+
+    /** The number of records in the journal, used to decide when to compact it. */
+    protected int mJournalRecords;
+
     protected Date mLastUpdate = null;
 
     protected CachedMPD mMPD;
 
     protected int mPort;
 
+    /** The search index of the directories, null until first used or once they change. */
+    protected LibrarySearchIndex mSearchIndex;
+
     protected String mServer;
 
+    /**
+     * The track table of the library, read from the track table file or built from the
+     * directories upon the first use after a change.
+     */
+    protected TrackTable mTrackTable;
+
     // albums that have an albumartist get an empty artist:
     protected Set<List<String>> mUniqueAlbumSet;
 
     protected AlbumCache(final CachedMPD mpd) {
         super();
         Log.d(TAG, "Starting ...");
+        clear();
         setMPD(mpd);
     }
     // details
 
+    /**
+     * Adds the subdirectories of the files listing of a directory which its database listing
+     * left out to its pruned subdirectories.
+     *
+     * @param entry          The directory entry.
+     * @param subdirectories The subdirectories listed, with their Last-Modified time.
+     * @param listing        The database listing of the directory.
+     */
+    private static void addPruned(final DirectoryEntry entry,
+            final Map<String, String> subdirectories, final Listing listing) {
+        for (final Map.Entry<String, String> subdirectory : subdirectories.entrySet()) {
+            if (!listing.mSubdirectories.containsKey(subdirectory.getKey())) {
+                entry.mPrunedSubdirectories.put(subdirectory.getKey(), subdirectory.getValue());
+            }
+        }
+    }
+
     public static String albumCode(final String artist, final String album,
             final boolean isAlbumArtist) {
         return (artist != null ? artist : "") + "//" +
@@ -91,6 +189,17 @@ public class AlbumCache {
                 "//" + (album != null ? album : "");
     }
 
+    private static String albumCode(final TrackEntry track) {
+        final boolean isAlbumArtist = !track.mAlbumArtist.isEmpty();
+
+        return albumCode(isAlbumArtist ? track.mAlbumArtist : track.mArtist, track.mAlbum,
+                isAlbumArtist);
+    }
+
+    static String childPath(final String parent, final String name) {
+        return parent.isEmpty() ? name : parent + '/' + name;
+    }
+
     public static AlbumCache getInstance(final CachedMPD mpd) {
         if (sInstance == null) {
             sInstance = new AlbumCache(mpd);
@@ -113,26 +222,410 @@ public class AlbumCache {
         return result;
     }
 
+    private static String nullToEmpty(final String value) {
+        return value == null ? "" : value;
+    }
+
+    /**
+     * Parses a {@code listfiles} response.
+     *
+     * @param parent   The path of the directory listed.
+     * @param response The response to the {@code listfiles} command.
+     * @return The directory listing, files without tags.
+     */
+    private static Listing parseFiles(final String parent, final List<String> response) {
+        final Listing listing = new Listing();
+        String directory = null;
+        TrackEntry file = null;
+
+        for (final String line : response) {
+            final int delimiter = line.indexOf(':');
+
+            if (delimiter == -1) {
+                continue;
+            }
+
+            final String key = line.substring(0, delimiter);
+            final String value = line.substring(Math.min(delimiter + 2, line.length()));
+
+            switch (key) {
+                case "directory":
+                    directory = childPath(parent, value);
+                    file = null;
+                    listing.mSubdirectories.put(directory, "");
+                    break;
+                case "file":
+                    directory = null;
+                    file = new TrackEntry();
+                    file.mFilename = value;
+                    listing.mTracks.add(file);
+                    break;
+                case "Last-Modified":
+                    if (directory != null) {
+                        listing.mSubdirectories.put(directory, value);
+                    } else if (file != null) {
+                        file.mLastModified = value;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        return listing;
+    }
+
+    /**
+     * Parses every genre of a file entry, as a file may have several {@code Genre} tags and
+     * {@code Music} keeps only one.
+     *
+     * @param fileLines The lines of the file entry.
+     * @return The genres of the file, in the order of the tags.
+     */
+    private static String[] parseGenres(final Iterable<String> fileLines) {
+        final String prefix = "Genre: ";
+        final List<String> genres = new ArrayList<>(1);
+        final String[] result;
+
+        for (final String line : fileLines) {
+            if (line.startsWith(prefix)) {
+                genres.add(TagPool.intern(line.substring(prefix.length())));
+            }
+        }
+
+        if (genres.isEmpty()) {
+            result = NO_GENRES;
+        } else {
+            result = genres.toArray(new String[genres.size()]);
+        }
+
+        return result;
+    }
+
+    /**
+     * Parses a {@code lsinfo} response.
+     *
+     * @param response The response to the {@code lsinfo} command.
+     * @return The directory listing, with the tags of the files.
+     */
+    private static Listing parseInfo(final List<String> response) {
+        final Listing listing = new Listing();
+        final List<String> fileLines = new ArrayList<>();
+        String directory = null;
+        String lastModified = "";
+
+        for (final String line : response) {
+            final int delimiter = line.indexOf(':');
+
+            if (delimiter == -1) {
+                continue;
+            }
+
+            final String key = line.substring(0, delimiter);
+            final String value = line.substring(Math.min(delimiter + 2, line.length()));
+
+            switch (key) {
+                case "directory":
+                case "file":
+                case "playlist":
+                    parseTrack(listing, fileLines, lastModified);
+                    fileLines.clear();
+                    lastModified = "";
+                    directory = null;
+
+                    if ("directory".equals(key)) {
+                        directory = value;
+                        listing.mSubdirectories.put(directory, "");
+                    } else if ("file".equals(key)) {
+                        fileLines.add(line);
+                    }
+                    break;
+                case "Last-Modified":
+                    if (directory != null) {
+                        listing.mSubdirectories.put(directory, value);
+                    } else {
+                        lastModified = value;
+                    }
+                    break;
+                default:
+                    if (!fileLines.isEmpty()) {
+                        fileLines.add(line);
+                    }
+                    break;
+            }
+        }
+
+        parseTrack(listing, fileLines, lastModified);
+        return listing;
+    }
+
+    /**
+     * Adds the track described by the lines of a file entry to a listing.
+     *
+     * @param listing      The listing to add the track to.
+     * @param fileLines    The lines of the file entry, empty if none.
+     * @param lastModified The Last-Modified time of the file.
+     */
+    private static void parseTrack(final Listing listing, final List<String> fileLines,
+            final String lastModified) {
+        if (!fileLines.isEmpty()) {
+            for (final Music music : Music.getMusicFromList(fileLines, false)) {
+                final TrackEntry track = new TrackEntry();
+
+                track.mFilename = music.getFilename();
+                track.mLastModified = lastModified;
+                track.mAlbum = nullToEmpty(music.getAlbum());
+                track.mArtist = nullToEmpty(music.getArtist());
+                track.mAlbumArtist = nullToEmpty(music.getAlbumArtist());
+                track.mGenres = parseGenres(fileLines);
+                track.mTitle = nullToEmpty(music.getTitle());
+                track.mTime = music.getTime();
+                track.mDate = music.getDate();
+                track.mTrack = music.getTrack();
+                track.mDisc = music.getDisc();
+                listing.mTracks.add(track);
+            }
+        }
+    }
+
+    /**
+     * Adds a track to the album indexes.
+     *
+     * @param path  The path of the directory of the track.
+     * @param track The track to add.
+     */
+    private void addTrack(final String path, final TrackEntry track) {
+        final List<String> albumInfo =
+                Arrays.asList(track.mAlbum, track.mArtist, track.mAlbumArtist);
+        final Integer count = mAlbumTrackCounts.get(albumInfo);
+
+        if (count == null) {
+            mAlbumTrackCounts.put(albumInfo, Integer.valueOf(1));
+            mAlbumSet.add(albumInfo);
+        } else {
+            mAlbumTrackCounts.put(albumInfo, Integer.valueOf(count.intValue() + 1));
+        }
+
+        final String thisAlbum = albumCode(track);
+        AlbumDetails details = mAlbumDetails.get(thisAlbum);
+        if (details == null) {
+            details = new AlbumDetails();
+            mAlbumDetails.put(thisAlbum, details);
+        }
+        if (details.mPath == null) {
+            details.mPath = path;
+        }
+        details.mNumTracks += 1;
+        details.mTotalTime += track.mTime;
+        if (details.mDate == 0) {
+            details.mDate = track.mDate;
+        }
+    }
+
+    /**
+     * Replaces the tracks and subdirectories of a directory with a new listing, updating the
+     * album indexes by the difference and journaling the directory.
+     *
+     * @param path         The path of the directory.
+     * @param lastModified The Last-Modified time of the directory.
+     * @param listing      The new listing of the directory.
+     * @param files        The {@code listfiles} listing which found the directory modified,
+     *                     null if it was listed for its Last-Modified time.
+     * @param dirtyAlbums  Collects the albums whose path or date must be found again.
+     */
+    private void applyListing(final String path, final String lastModified,
+            final Listing listing, final Listing files, final Set<String> dirtyAlbums)
+            throws IOException {
+        final DirectoryEntry old = mDirectories.get(path);
+        final DirectoryEntry entry = new DirectoryEntry();
+
+        entry.mLastModified = lastModified;
+        entry.mPrunedSubdirectories = new HashMap<>();
+        entry.mSubdirectories = new ArrayList<>(listing.mSubdirectories.keySet());
+        entry.mTracks = listing.mTracks;
+
+        /**
+         * The media server leaves the subdirectories without songs out of its database, they are
+         * kept with their Last-Modified time so the files listing does not find them new again.
+         */
+        if (files != null) {
+            addPruned(entry, files.mSubdirectories, listing);
+        } else if (old != null) {
+            addPruned(entry, old.mPrunedSubdirectories, listing);
+        }
+
+        if (old != null) {
+            for (final TrackEntry track : old.mTracks) {
+                removeTrack(path, track, dirtyAlbums);
+            }
+
+            for (final String subdirectory : old.mSubdirectories) {
+                if (!listing.mSubdirectories.containsKey(subdirectory)) {
+                    removeDirectory(subdirectory, dirtyAlbums);
+                }
+            }
+        }
+
+        for (final TrackEntry track : entry.mTracks) {
+            addTrack(path, track);
+        }
+
+        mDirectories.put(path, entry);
+        writeDirectory(mJournal, path, entry);
+        mJournalRecords++;
+    }
+
+    /**
+     * Builds the track table of the library from the directories.
+     *
+     * @return The track table.
+     */
+    private TrackTable buildTrackTable() {
+        final TrackTable.Builder builder = new TrackTable.Builder();
+
+        for (final DirectoryEntry entry : mDirectories.values()) {
+            for (final TrackEntry track : entry.mTracks) {
+                final String[] genres = track.mGenres;
+                final String genre = genres.length == 0 ? "" : genres[0];
+
+                builder.add(track.mAlbum, track.mArtist, track.mAlbumArtist, genre,
+                        track.mTrack, track.mDisc, track.mDate, track.mTime);
+                for (int i = 1; i < genres.length; i++) {
+                    builder.addValue(TrackTable.GENRE, genres[i]);
+                }
+            }
+        }
+
+        return builder.build();
+    }
+
     public String cacheInfo() {
         return "AlbumCache: " +
-                mAlbumSet.size() + " album/artist combinations, " +
-                mUniqueAlbumSet.size() + " unique album/artist combinations, " +
+                getAlbumSet().size() + " album/artist combinations, " +
+                getUniqueAlbumSet().size() + " unique album/artist combinations, " +
+                (mDirectories == null ? "not loaded" : mDirectories.size()) + " directories, " +
                 "Date: " + mLastUpdate;
     }
 
+    /** Empties the cache. */
+    protected void clear() {
+        mAlbumDetails = new HashMap<>();
+        mAlbumDetailsSnapshot =
+                new AlbumDetailsSnapshot(Collections.<String, AlbumDetails>emptyMap(), null);
+        mAlbumSet = new HashSet<>();
+        mAlbumSetSnapshot = Collections.emptySet();
+        mAlbumSetIndex = null;
+        mAlbumTrackCounts = new HashMap<>();
+        mDirectories = new HashMap<>();
+        mUniqueAlbumSet = new HashSet<>();
+        mIndex = null;
+        mJournalLength = 0L;
+        mJournalRecords = 0;
+        mLastUpdate = null;
+        mSearchIndex = null;
+        mTrackTable = null;
+    }
+
+    /**
+     * Rewrites the journal as a snapshot of the current directories, if it grew larger than
+     * twice the number of directories.
+     */
+    protected synchronized void compact() {
+        if (mJournalRecords > mDirectories.size() * 2) {
+            final File file = getFile();
+            final File tempFile = new File(file.getAbsolutePath() + ".tmp");
+            boolean error = false;
+
+            Log.d(TAG, "Compacting " + file);
+            try {
+                final DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(tempFile)));
+
+                try {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    for (final Map.Entry<String, DirectoryEntry> entry :
+                            mDirectories.entrySet()) {
+                        writeDirectory(out, entry.getKey(), entry.getValue());
+                    }
+                    if (mLastUpdate != null) {
+                        out.writeByte(RECORD_UPDATE);
+                        out.writeLong(mLastUpdate.getTime());
+                    }
+                } finally {
+                    out.close();
+                }
+            } catch (final IOException e) {
+                error = true;
+                Log.e(TAG, "Failed to compact.", e);
+            }
+
+            if (!error && tempFile.renameTo(file)) {
+                mJournalLength = file.length();
+                mJournalRecords = mDirectories.size() + 1;
+            } else {
+                tempFile.delete();
+            }
+        }
+    }
+
     protected synchronized void deleteFile() {
-        final File file = new File(mFilesDir, getFilename());
+        final File file = getFile();
+        final File indexFile = getIndexFile();
+        final File searchIndexFile = getSearchIndexFile();
+        final File trackTableFile = getTrackTableFile();
         Log.d(TAG, "Deleting " + file);
         if (file.exists()) {
             file.delete();
         }
+        if (indexFile.exists()) {
+            indexFile.delete();
+        }
+        if (searchIndexFile.exists()) {
+            searchIndexFile.delete();
+        }
+        if (trackTableFile.exists()) {
+            trackTableFile.delete();
+        }
+    }
+
+    /**
+     * Finds the path and date of albums again, after tracks were removed from them.
+     *
+     * @param dirtyAlbums The albums to find the path and date for.
+     */
+    private void findAlbumDetails(final Set<String> dirtyAlbums) {
+        for (final String album : dirtyAlbums) {
+            final AlbumDetails details = mAlbumDetails.get(album);
+
+            if (details != null) {
+                details.mPath = null;
+                details.mDate = 0;
+            }
+        }
+
+        for (final Map.Entry<String, DirectoryEntry> entry : mDirectories.entrySet()) {
+            for (final TrackEntry track : entry.getValue().mTracks) {
+                final String thisAlbum = albumCode(track);
+
+                if (dirtyAlbums.contains(thisAlbum)) {
+                    final AlbumDetails details = mAlbumDetails.get(thisAlbum);
+
+                    if (details.mPath == null) {
+                        details.mPath = entry.getKey();
+                    }
+                    if (details.mDate == 0) {
+                        details.mDate = track.mDate;
+                    }
+                }
+            }
+        }
     }
 
     public Set<String> getAlbumArtists(final String album, final String artist) {
         final Set<String> aartists = new HashSet<>();
-        for (final List<String> ai : mAlbumSet) {
-            if (ai.get(0).equals(album) &&
-                    ai.get(1).equals(artist)) {
+        for (final List<String> ai : getAlbumSetIndex().getAlbumInfo(album)) {
+            if (ai.get(1).equals(artist)) {
                 aartists.add(ai.get(2));
             }
         }
@@ -141,33 +634,42 @@ public class AlbumCache {
 
     public AlbumDetails getAlbumDetails(final String artist, final String album,
             final boolean isAlbumArtist) {
-        return mAlbumDetails.get(albumCode(artist, album, isAlbumArtist));
+        return mAlbumDetailsSnapshot.get(albumCode(artist, album, isAlbumArtist));
     }
 
-    public Set<List<String>> getAlbumSet() {
-        return mAlbumSet;
+    public synchronized Set<List<String>> getAlbumSet() {
+        if (mAlbumSetSnapshot == null) {
+            mAlbumSetSnapshot = Collections.unmodifiableSet(mIndex.getAlbumSet());
+        }
+        return mAlbumSetSnapshot;
     }
 
-    public Set<String> getAlbums(final String artist, final boolean albumArtist) {
-        final Set<String> albums = new HashSet<>();
-        for (final List<String> ai : mAlbumSet) {
-            if (albumArtist && ai.get(2).equals(artist) ||
-                    !albumArtist && ai.get(1).equals(artist)) {
-                albums.add(ai.get(0));
-            }
+    /**
+     * Gets the album set indexes, building them from the album set if needed.
+     *
+     * @return The album set indexes.
+     */
+    protected synchronized AlbumSetIndex getAlbumSetIndex() {
+        if (mAlbumSetIndex == null) {
+            makeAlbumSetIndex();
         }
-        return albums;
+        return mAlbumSetIndex;
+    }
+
+    public Set<String> getAlbums(final String artist, final boolean albumArtist) {
+        final AlbumSetIndex index = getAlbumSetIndex();
+        final Set<String> albums = (albumArtist ?
+                index.mAlbumsByAlbumArtist : index.mAlbumsByArtist).get(artist);
+        return albums == null ? new HashSet<String>() : new HashSet<>(albums);
     }
 
     public List<String> getArtistsByAlbum(final String album, final boolean albumArtist) {
         final Set<String> artists = new HashSet<>();
-        for (final List<String> ai : mAlbumSet) {
-            if (ai.get(0).equals(album)) {
-                if (albumArtist) {
-                    artists.add(ai.get(2));
-                } else {
-                    artists.add(ai.get(1));
-                }
+        for (final List<String> ai : getAlbumSetIndex().getAlbumInfo(album)) {
+            if (albumArtist) {
+                artists.add(ai.get(2));
+            } else {
+                artists.add(ai.get(1));
             }
         }
         final List<String> result;
@@ -183,19 +685,113 @@ public class AlbumCache {
     public String getDirByArtistAlbum(final String artist, final String album,
             final boolean isAlbumArtist) {
         final String albumCode = albumCode(artist, album, isAlbumArtist);
-        final String result = mAlbumDetails.get(albumCode).mPath;
+        final String result = getAlbumDetails(artist, album, isAlbumArtist).mPath;
         Log.d(TAG, "key " + albumCode + " - " + result);
         return result;
     }
 
+    protected File getFile() {
+        return new File(mFilesDir, getFilename() + ".dirs");
+    }
+
     protected String getFilename() {
         return mServer + '_' + mPort;
     }
 
-    public Set<List<String>> getUniqueAlbumSet() {
+    protected File getIndexFile() {
+        return new File(mFilesDir, getFilename() + ".idx");
+    }
+
+    /**
+     * Gets the search index of the library. The search index saved with the album index is read
+     * if the directories are not loaded, it is only built from the directories otherwise.
+     *
+     * @return The search index, null if the cache is disabled or not up to date with the media
+     * server, for the search to be sent to it instead.
+     */
+    public synchronized LibrarySearchIndex getSearchIndex() {
+        LibrarySearchIndex searchIndex = null;
+
+        if (mEnabled && isUpToDate()) {
+            if (mSearchIndex == null && mDirectories == null) {
+                mSearchIndex = readSearchIndex();
+            }
+
+            if (mSearchIndex == null && hasDirectories()) {
+                mSearchIndex = new LibrarySearchIndex(mDirectories);
+                Log.d(TAG, "Search index built, " + mSearchIndex);
+            }
+            searchIndex = mSearchIndex;
+        }
+
+        return searchIndex;
+    }
+
+    protected File getSearchIndexFile() {
+        return new File(mFilesDir, getFilename() + ".search");
+    }
+
+    /**
+     * Gets the track table of the library. The track table saved with the album index is read
+     * if the directories are not loaded, it is only built from the directories otherwise.
+     *
+     * @return The track table, null if the cache is disabled or not up to date with the media
+     * server, for the query to be sent to it instead.
+     */
+    public synchronized TrackTable getTrackTable() {
+        TrackTable trackTable = null;
+
+        if (mEnabled && isUpToDate()) {
+            if (mTrackTable == null && mDirectories == null) {
+                mTrackTable = readTrackTable();
+            }
+
+            if (mTrackTable == null && hasDirectories()) {
+                mTrackTable = buildTrackTable();
+                Log.d(TAG, "Track table built, " + mTrackTable);
+            }
+            trackTable = mTrackTable;
+        }
+
+        return trackTable;
+    }
+
+    public synchronized Set<List<String>> getUniqueAlbumSet() {
+        if (mUniqueAlbumSet == null) {
+            makeUniqueAlbumSet();
+        }
         return mUniqueAlbumSet;
     }
 
+    protected File getTrackTableFile() {
+        return new File(mFilesDir, getFilename() + ".tracks");
+    }
+
+    /**
+     * Checks whether the directories are at hand and up to date with the media server. The
+     * directories are loaded from the journal if only the album index was mapped so far.
+     *
+     * @return True if the directories can be read, false otherwise.
+     */
+    private boolean hasDirectories() {
+        boolean hasDirectories = false;
+
+        if (mEnabled && isUpToDate()) {
+            if (mDirectories == null && !loadDirectories()) {
+                /**
+                 * The journal is missing or of an older version, map the album index again and
+                 * leave the next refresh to list the directories.
+                 */
+                load();
+                mLastUpdate = null;
+            } else {
+                hasDirectories = true;
+            }
+        }
+
+        return hasDirectories;
+    }
+
     protected synchronized boolean isUpToDate() {
         final Date mpdlast = mMPD.getStatistics().getDbUpdate();
         Log.d(TAG, "lastupdate " + mLastUpdate + " mpd date " + mpdlast);
@@ -203,41 +799,97 @@ public class AlbumCache {
     }
 
     protected synchronized boolean load() {
-        final File file = new File(mFilesDir, getFilename() + (GZIP ? ".gz" : ""));
+        final File legacyFile = new File(mFilesDir, getFilename() + (GZIP ? ".gz" : ""));
+        if (legacyFile.exists()) {
+            Log.d(TAG, "Deleting legacy cache " + legacyFile);
+            legacyFile.delete();
+        }
+
+        boolean loadedOk = false;
+        clear();
+        try {
+            mIndex = AlbumIndex.open(getIndexFile());
+        } catch (final IOException e) {
+            Log.e(TAG, "Failed to map the album index.", e);
+        }
+
+        if (mIndex != null) {
+            /** The directories are only needed to refresh, leave them to the first refresh. */
+            mLastUpdate = mIndex.getLastUpdate();
+            mAlbumDetails = null;
+            mAlbumDetailsSnapshot = new AlbumDetailsSnapshot(null, mIndex);
+            mAlbumSet = null;
+            mAlbumSetSnapshot = null;
+            mAlbumSetIndex = null;
+            mUniqueAlbumSet = null;
+            mDirectories = null;
+            loadedOk = true;
+            Log.d(TAG, "Mapped album index, Date: " + mLastUpdate);
+        } else if (loadDirectories()) {
+            Log.d(TAG, cacheInfo());
+            if (saveIndex()) {
+                releaseDirectories();
+            }
+            loadedOk = true;
+        } else {
+            Log.d(TAG, "Error on load");
+        }
+        return loadedOk;
+    }
+
+    /**
+     * Loads the directories from the journal and builds the album indexes from them.
+     *
+     * @return True if the journal was loaded, false otherwise.
+     */
+    protected synchronized boolean loadDirectories() {
+        final File file = getFile();
         if (!file.exists()) {
             return false;
         }
         Log.d(TAG, "Loading " + file);
-        final ObjectInputStream restore;
         boolean loadedOk = false;
+        clear();
         try {
-            if (GZIP) {
-                restore = new ObjectInputStream(new GZIPInputStream
-                        (new FileInputStream(file)));
-            } else {
-                restore = new ObjectInputStream(new FileInputStream(file));
+            final CountingInputStream counter = new CountingInputStream(
+                    new BufferedInputStream(new FileInputStream(file)));
+            final DataInputStream in = new DataInputStream(counter);
+
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("Unknown cache file format.");
+                }
+
+                mJournalLength = counter.getCount();
+                readRecords(in, counter);
+            } finally {
+                in.close();
+            }
+
+            for (final Map.Entry<String, DirectoryEntry> entry : mDirectories.entrySet()) {
+                for (final TrackEntry track : entry.getValue().mTracks) {
+                    addTrack(entry.getKey(), track);
+                }
             }
-            mLastUpdate = (Date) restore.readObject();
-            mAlbumDetails = (Map<String, AlbumDetails>) restore.readObject();
-            mAlbumSet = (Set<List<String>>) restore.readObject();
-            restore.close();
+            publishAlbums();
             makeUniqueAlbumSet();
+            makeAlbumSetIndex();
             loadedOk = true;
-        } catch (final FileNotFoundException ignored) {
-        } catch (final Exception e) {
+        } catch (final IOException e) {
             Log.e(TAG, "Exception.", e);
-        }
-        if (loadedOk) {
-            Log.d(TAG, cacheInfo());
-        } else {
-            Log.d(TAG, "Error on load");
+            clear();
         }
         return loadedOk;
     }
 
+    protected void makeAlbumSetIndex() {
+        mAlbumSetIndex = new AlbumSetIndex(getAlbumSet());
+    }
+
     protected void makeUniqueAlbumSet() {
-        mUniqueAlbumSet = new HashSet<>(mAlbumSet.size());
-        for (final List<String> ai : mAlbumSet) {
+        final Set<List<String>> albumSet = getAlbumSet();
+        mUniqueAlbumSet = new HashSet<>(albumSet.size());
+        for (final List<String> ai : albumSet) {
             final String album = ai.get(2);
             if (album != null && album.isEmpty()) { // no albumartist
                 mUniqueAlbumSet.add(Arrays.asList(ai.get(0), ai.get(1), ""));
@@ -247,6 +899,190 @@ public class AlbumCache {
         }
     }
 
+    /**
+     * Opens the journal for appending, writing the header to a new journal. A record cut short
+     * by an interrupted write is dropped first, the records appended after it would be misread.
+     *
+     * @throws IOException Thrown if the journal could not be opened.
+     */
+    private void openJournal() throws IOException {
+        final File file = getFile();
+        final boolean isNew = !file.exists() || file.length() == 0L;
+        final FileOutputStream out = new FileOutputStream(file, true);
+
+        if (!isNew && out.getChannel().size() > mJournalLength) {
+            Log.w(TAG, "Dropping the incomplete end of " + file);
+            try {
+                out.getChannel().truncate(mJournalLength);
+            } catch (final IOException e) {
+                out.close();
+                throw e;
+            }
+        }
+
+        mJournal = new DataOutputStream(new BufferedOutputStream(out));
+        if (isNew) {
+            mJournal.writeInt(MAGIC);
+            mJournal.writeInt(VERSION);
+            mJournalRecords = 0;
+        }
+    }
+
+    /**
+     * Replaces the album set and details handed to readers with copies of the current ones,
+     * as they are changed in place by a refresh while readers may be going through them.
+     */
+    private void publishAlbums() {
+        final Map<String, AlbumDetails> albumDetails = new HashMap<>(mAlbumDetails.size());
+
+        for (final Map.Entry<String, AlbumDetails> entry : mAlbumDetails.entrySet()) {
+            albumDetails.put(entry.getKey(), new AlbumDetails(entry.getValue()));
+        }
+
+        mAlbumDetailsSnapshot =
+                new AlbumDetailsSnapshot(Collections.unmodifiableMap(albumDetails), null);
+        mAlbumSetSnapshot = Collections.unmodifiableSet(new HashSet<>(mAlbumSet));
+    }
+
+    /**
+     * Reads the journal records, a record cut short by an interrupted write ends the journal.
+     * The length of the journal up to the last complete record is kept, for the journal to be
+     * cut back to it before records are appended.
+     *
+     * @param in      The journal, positioned after the header.
+     * @param counter The stream counting the bytes read from the journal.
+     * @throws IOException Thrown upon error reading the journal.
+     */
+    private void readRecords(final DataInput in, final CountingInputStream counter)
+            throws IOException {
+        boolean isEnd = false;
+
+        while (!isEnd) {
+            try {
+                final byte type = in.readByte();
+
+                if (type == RECORD_DIRECTORY) {
+                    final String path = in.readUTF();
+                    final DirectoryEntry entry = new DirectoryEntry();
+
+                    entry.mLastModified = in.readUTF();
+                    final int prunedCount = in.readInt();
+                    entry.mPrunedSubdirectories = new HashMap<>(prunedCount);
+                    for (int i = 0; i < prunedCount; i++) {
+                        entry.mPrunedSubdirectories.put(in.readUTF(), in.readUTF());
+                    }
+                    final int subdirectoryCount = in.readInt();
+                    entry.mSubdirectories = new ArrayList<>(subdirectoryCount);
+                    for (int i = 0; i < subdirectoryCount; i++) {
+                        entry.mSubdirectories.add(in.readUTF());
+                    }
+
+                    final int trackCount = in.readInt();
+                    entry.mTracks = new ArrayList<>(trackCount);
+                    for (int i = 0; i < trackCount; i++) {
+                        final TrackEntry track = new TrackEntry();
+
+                        track.mFilename = in.readUTF();
+                        track.mLastModified = in.readUTF();
+                        track.mAlbum = TagPool.intern(in.readUTF());
+                        track.mArtist = TagPool.intern(in.readUTF());
+                        track.mAlbumArtist = TagPool.intern(in.readUTF());
+                        final int genreCount = in.readInt();
+                        track.mGenres = genreCount == 0 ? NO_GENRES : new String[genreCount];
+                        for (int j = 0; j < genreCount; j++) {
+                            track.mGenres[j] = TagPool.intern(in.readUTF());
+                        }
+                        track.mTitle = in.readUTF();
+                        track.mTime = in.readLong();
+                        track.mDate = in.readLong();
+                        track.mTrack = in.readInt();
+                        track.mDisc = in.readInt();
+                        entry.mTracks.add(track);
+                    }
+                    mDirectories.put(path, entry);
+                } else if (type == RECORD_REMOVE) {
+                    mDirectories.remove(in.readUTF());
+                } else if (type == RECORD_UPDATE) {
+                    mLastUpdate = new Date(in.readLong());
+                } else {
+                    throw new IOException("Unknown cache record type: " + type);
+                }
+                mJournalLength = counter.getCount();
+                mJournalRecords++;
+            } catch (final EOFException ignored) {
+                isEnd = true;
+            }
+        }
+    }
+
+    /**
+     * Reads the search index saved with the album index, if it was saved for the same update.
+     *
+     * @return The search index, null if none was saved for this update or it could not be read.
+     */
+    private LibrarySearchIndex readSearchIndex() {
+        final File file = getSearchIndexFile();
+        LibrarySearchIndex searchIndex = null;
+
+        if (mLastUpdate != null && file.exists()) {
+            try {
+                final DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(new FileInputStream(file)));
+
+                try {
+                    if (in.readInt() != SEARCH_INDEX_MAGIC || in.readInt() != VERSION) {
+                        throw new IOException("Unknown search index file format.");
+                    }
+
+                    if (in.readLong() == mLastUpdate.getTime()) {
+                        searchIndex = LibrarySearchIndex.read(in);
+                        Log.d(TAG, "Search index read, " + searchIndex);
+                    }
+                } finally {
+                    in.close();
+                }
+            } catch (final IOException e) {
+                Log.e(TAG, "Failed to read the search index.", e);
+            }
+        }
+
+        return searchIndex;
+    }
+
+    /**
+     * Reads the track table saved with the album index, if it was saved for the same update.
+     *
+     * @return The track table, null if none was saved for this update or it could not be read.
+     */
+    private TrackTable readTrackTable() {
+        final File file = getTrackTableFile();
+        TrackTable trackTable = null;
+
+        if (mLastUpdate != null && file.exists()) {
+            try {
+                final DataInputStream in = new DataInputStream(
+                        new BufferedInputStream(new FileInputStream(file)));
+
+                try {
+                    if (in.readInt() != TRACK_TABLE_MAGIC || in.readInt() != VERSION) {
+                        throw new IOException("Unknown track table file format.");
+                    }
+
+                    if (in.readLong() == mLastUpdate.getTime()) {
+                        trackTable = TrackTable.read(in);
+                        Log.d(TAG, "Track table read, " + trackTable);
+                    }
+                } finally {
+                    in.close();
+                }
+            } catch (final IOException e) {
+                Log.e(TAG, "Failed to read the track table.", e);
+            }
+        }
+
+        return trackTable;
+    }
+
     /*
      * reloads info from MPD if it is not up to date
      */
@@ -270,115 +1106,239 @@ public class AlbumCache {
             return true;
         }
         Log.d(TAG, "Cache is NOT up to date. fetching ...");
-        mLastUpdate = Calendar.getInstance().getTime();
 
         Tools.notifyUser(R.string.updatingLocalAlbumCacheNote);
 
-        final Date oldUpdate = mLastUpdate;
-        mAlbumDetails = new HashMap<>();
-        mAlbumSet = new HashSet<>();
-
-        final List<Music> allmusic;
+        final Date newUpdate = Calendar.getInstance().getTime();
+        boolean success = false;
         try {
-            allmusic = mMPD.listAllInfo();
-            Log.d(TAG, "allmusic " + allmusic.size());
+            if (force) {
+                clear();
+                deleteFile();
+            } else if (mDirectories == null && !loadDirectories()) {
+                deleteFile();
+            }
+            openJournal();
+            mSearchIndex = null;
+            mTrackTable = null;
+            try {
+                final int changed = sync(!force && !mDirectories.isEmpty());
+                Log.d(TAG, "Directories listed: " + changed);
+
+                mLastUpdate = newUpdate;
+                mJournal.writeByte(RECORD_UPDATE);
+                mJournal.writeLong(mLastUpdate.getTime());
+                mJournalRecords++;
+            } finally {
+                mJournal.close();
+                mJournal = null;
+            }
+            mJournalLength = getFile().length();
+            publishAlbums();
+            makeUniqueAlbumSet();
+            makeAlbumSetIndex();
+            Log.d(TAG, cacheInfo());
+            compact();
+            if (saveIndex()) {
+                releaseDirectories();
+            }
+            success = true;
         } catch (final IOException | MPDException e) {
+            /**
+             * The directories may hold changes the journal missed, they are loaded from the
+             * journal again by the next refresh.
+             */
+            mDirectories = null;
             mEnabled = false;
-            mLastUpdate = null;
             updateConnection();
-            Log.d(TAG, "disabled AlbumCache", e);
-            Tools.notifyUser(
-                    "Error with the 'listallinfo' command. Probably you have to adjust your server's 'max_output_buffer_size'"
-            );
-            return false;
+            Log.e(TAG, "Error updating Album Cache, disabled AlbumCache.", e);
+            Tools.notifyUser("Error updating Album Cache");
         }
+        return success;
+    }
 
-        try {
-            for (final Music music : allmusic) {
-                final String albumArtist = music.getAlbumArtist();
-                final String artist = music.getArtist();
-                String album = music.getAlbum();
-                if (album == null) {
-                    album = "";
-                }
-                final List<String> albumInfo = Arrays.asList
-                        (album, artist == null ? "" : artist,
-                                albumArtist == null ? "" : albumArtist);
-                mAlbumSet.add(albumInfo);
-
-                final boolean isAlbumArtist = albumArtist != null && !albumArtist.isEmpty();
-                final String thisAlbum =
-                        albumCode(isAlbumArtist ? albumArtist : artist, album, isAlbumArtist);
-                final AlbumDetails details;
-                if (mAlbumDetails.containsKey(thisAlbum)) {
-                    details = mAlbumDetails.get(thisAlbum);
-                } else {
-                    details = new AlbumDetails();
-                    mAlbumDetails.put(thisAlbum, details);
-                }
-                if (details.mPath == null) {
-                    details.mPath = music.getPath();
-                }
-                // if (details.times == null)
-                // details.times = new ArrayList<Long>();
-                // details.times.add((Long)m.getTime());
-                details.mNumTracks += 1;
-                details.mTotalTime += music.getTime();
-                if (details.mDate == 0) {
-                    details.mDate = music.getDate();
-                }
+    /**
+     * Releases the directories and the album indexes built from them, once the album index
+     * and the track table are saved. Queries are served by the snapshots and the saved indexes
+     * until the next refresh loads the directories from the journal again.
+     */
+    private void releaseDirectories() {
+        mAlbumDetails = null;
+        mAlbumSet = null;
+        mAlbumTrackCounts = new HashMap<>();
+        mDirectories = null;
+    }
+
+    /**
+     * Removes a directory, its subdirectories and their tracks from the cache.
+     *
+     * @param path        The path of the directory to remove.
+     * @param dirtyAlbums Collects the albums whose path or date must be found again.
+     */
+    private void removeDirectory(final String path, final Set<String> dirtyAlbums)
+            throws IOException {
+        final DirectoryEntry entry = mDirectories.remove(path);
+
+        if (entry != null) {
+            for (final TrackEntry track : entry.mTracks) {
+                removeTrack(path, track, dirtyAlbums);
             }
-            Log.d(TAG, "albumDetails: " + mAlbumDetails.size());
-            Log.d(TAG, "albumSet: " + mAlbumSet.size());
-            makeUniqueAlbumSet();
-            Log.d(TAG, "uniqueAlbumSet: " + mUniqueAlbumSet.size());
-            if (!save()) {
-                mLastUpdate = oldUpdate;
-                return false;
+
+            for (final String subdirectory : entry.mSubdirectories) {
+                removeDirectory(subdirectory, dirtyAlbums);
+            }
+
+            mJournal.writeByte(RECORD_REMOVE);
+            mJournal.writeUTF(path);
+            mJournalRecords++;
+        }
+    }
+
+    /**
+     * Removes a track from the album indexes.
+     *
+     * @param path        The path of the directory of the track.
+     * @param track       The track to remove.
+     * @param dirtyAlbums Collects the albums whose path or date must be found again.
+     */
+    private void removeTrack(final String path, final TrackEntry track,
+            final Set<String> dirtyAlbums) {
+        final List<String> albumInfo =
+                Arrays.asList(track.mAlbum, track.mArtist, track.mAlbumArtist);
+        final Integer count = mAlbumTrackCounts.get(albumInfo);
+
+        if (count != null) {
+            if (count.intValue() <= 1) {
+                mAlbumTrackCounts.remove(albumInfo);
+                mAlbumSet.remove(albumInfo);
+            } else {
+                mAlbumTrackCounts.put(albumInfo, Integer.valueOf(count.intValue() - 1));
+            }
+        }
+
+        final String thisAlbum = albumCode(track);
+        final AlbumDetails details = mAlbumDetails.get(thisAlbum);
+        if (details != null) {
+            details.mNumTracks -= 1;
+            details.mTotalTime -= track.mTime;
+
+            if (details.mNumTracks <= 0) {
+                mAlbumDetails.remove(thisAlbum);
+                dirtyAlbums.remove(thisAlbum);
+            } else if (path.equals(details.mPath) || track.mDate == details.mDate) {
+                dirtyAlbums.add(thisAlbum);
             }
-        } catch (final Exception e) {
-            Tools.notifyUser("Error updating Album Cache");
-            mLastUpdate = oldUpdate;
-            Log.e(TAG, "Error updating Album Cache.", e);
-            return false;
         }
-        return true;
     }
 
     protected synchronized boolean save() {
-        final File file = new File(mFilesDir, getFilename() + (GZIP ? ".gz" : ""));
-        Log.d(TAG, "Saving to " + file);
-        final File backupfile = new File(file.getAbsolutePath() + ".bak");
-        if (file.exists()) {
-            if (backupfile.exists()) {
-                backupfile.delete();
+        if (mDirectories != null) {
+            mJournalRecords = Integer.MAX_VALUE;
+            compact();
+        }
+        return saveIndex();
+    }
+
+    /**
+     * Writes the album index, for the next load to map, the search index and the track table.
+     *
+     * @return True if the album index, the search index and the track table were written, false
+     * otherwise.
+     */
+    protected synchronized boolean saveIndex() {
+        boolean saved = false;
+
+        if (mAlbumDetails != null) {
+            try {
+                AlbumIndex.write(getIndexFile(), mLastUpdate, getAlbumSet(), mAlbumDetails);
+                saved = mDirectories == null || saveSearchIndex() && saveTrackTable();
+            } catch (final IOException e) {
+                Log.e(TAG, "Failed to save the album index.", e);
+                getIndexFile().delete();
             }
-            file.renameTo(backupfile);
         }
-        final ObjectOutputStream save;
-        boolean error = false;
+
+        return saved;
+    }
+
+    /**
+     * Writes the search index, built from the directories if needed, for the next load to read
+     * rather than loading the directories.
+     *
+     * @return True if the search index was written, false otherwise.
+     */
+    private boolean saveSearchIndex() {
+        final File file = getSearchIndexFile();
+        final File tempFile = new File(file.getAbsolutePath() + ".tmp");
+        boolean saved = false;
+
+        if (mSearchIndex == null) {
+            mSearchIndex = new LibrarySearchIndex(mDirectories);
+        }
+
         try {
-            if (GZIP) {
-                save = new ObjectOutputStream(new GZIPOutputStream
-                        (new FileOutputStream(file)));
-            } else {
-                save = new ObjectOutputStream(new BufferedOutputStream
-                        (new FileOutputStream(file)));
-            }
-            save.writeObject(mLastUpdate);
-            save.writeObject(mAlbumDetails);
-            save.writeObject(mAlbumSet);
-            save.close();
-            Log.d(TAG, "saved to " + file);
-        } catch (final Exception e) {
-            error = true;
-            Log.e(TAG, "Failed to save.", e);
+            final DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile)));
+
+            try {
+                out.writeInt(SEARCH_INDEX_MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(mLastUpdate == null ? -1L : mLastUpdate.getTime());
+                mSearchIndex.write(out);
+            } finally {
+                out.close();
+            }
+            saved = tempFile.renameTo(file);
+        } catch (final IOException e) {
+            Log.e(TAG, "Failed to save the search index.", e);
+        }
+
+        if (!saved) {
+            tempFile.delete();
+            file.delete();
+        }
+
+        return saved;
+    }
+
+    /**
+     * Writes the track table, built from the directories if needed, for the next load to read
+     * rather than loading the directories.
+     *
+     * @return True if the track table was written, false otherwise.
+     */
+    private boolean saveTrackTable() {
+        final File file = getTrackTableFile();
+        final File tempFile = new File(file.getAbsolutePath() + ".tmp");
+        boolean saved = false;
+
+        if (mTrackTable == null) {
+            mTrackTable = buildTrackTable();
         }
-        if (error) {
+
+        try {
+            final DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile)));
+
+            try {
+                out.writeInt(TRACK_TABLE_MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(mLastUpdate == null ? -1L : mLastUpdate.getTime());
+                mTrackTable.write(out);
+            } finally {
+                out.close();
+            }
+            saved = tempFile.renameTo(file);
+        } catch (final IOException e) {
+            Log.e(TAG, "Failed to save the track table.", e);
+        }
+
+        if (!saved) {
+            tempFile.delete();
             file.delete();
-            backupfile.renameTo(file);
         }
-        return !error;
+
+        return saved;
     }
 
     protected void setMPD(final CachedMPD mpd) {
@@ -392,6 +1352,88 @@ public class AlbumCache {
         updateConnection();
     }
 
+    /**
+     * Brings the directories up to date with the media server. Directories are walked from the
+     * root, pipelining the listings. A directory is listed with its tags ({@code lsinfo}) if it
+     * is new or its Last-Modified time changed, otherwise, only its entries are listed
+     * ({@code listfiles}) to find modified tracks and subdirectories to walk into.
+     *
+     * @param incremental False to list every directory with its tags.
+     * @return The number of directories listed with their tags.
+     * @throws IOException  Thrown upon a communication error with the server.
+     * @throws MPDException Thrown if an error occurs as a result of command execution.
+     */
+    private int sync(final boolean incremental) throws IOException, MPDException {
+        final Queue<PendingDirectory> pending = new ArrayDeque<>();
+        final Set<String> dirtyAlbums = new HashSet<>();
+        final boolean hasListFiles = mMPD.isCommandAvailable(MPDCommand.MPD_CMD_LISTFILES);
+        int listed = 0;
+
+        pending.add(new PendingDirectory("", "", !incremental));
+        while (!pending.isEmpty()) {
+            final List<PendingDirectory> batch = new ArrayList<>(BATCH_SIZE);
+            final List<MPDCommand> commands = new ArrayList<>(BATCH_SIZE);
+
+            while (batch.size() < BATCH_SIZE && !pending.isEmpty()) {
+                final PendingDirectory directory = pending.poll();
+
+                if (!directory.mIsChanged && !hasListFiles) {
+                    directory.mIsChanged = true;
+                }
+
+                batch.add(directory);
+                commands.add(new MPDCommand(directory.mIsChanged ?
+                        MPDCommand.MPD_CMD_LSDIR : MPDCommand.MPD_CMD_LISTFILES,
+                        directory.mPath));
+            }
+
+            final List<ResponseFuture> responses = mMPD.sendPipelined(commands);
+            for (int i = 0; i < batch.size(); i++) {
+                final PendingDirectory directory = batch.get(i);
+                final List<String> response;
+
+                try {
+                    response = responses.get(i).getResponse();
+                } catch (final MPDException e) {
+                    if (directory.mIsChanged) {
+                        /** The directory went away since its parent was listed. */
+                        removeDirectory(directory.mPath, dirtyAlbums);
+                    } else {
+                        Log.w(TAG, "Failed to list files of " + directory.mPath, e);
+                        directory.mIsChanged = true;
+                        pending.add(directory);
+                    }
+                    continue;
+                }
+
+                if (directory.mIsChanged) {
+                    final Listing listing = parseInfo(response);
+
+                    applyListing(directory.mPath, directory.mLastModified, listing,
+                            directory.mFiles, dirtyAlbums);
+                    walk(pending, listing, incremental);
+                    listed++;
+                } else {
+                    final Listing listing = parseFiles(directory.mPath, response);
+                    final DirectoryEntry cached = mDirectories.get(directory.mPath);
+
+                    if (cached.isModified(listing)) {
+                        directory.mFiles = listing;
+                        directory.mIsChanged = true;
+                        pending.add(directory);
+                    } else {
+                        listing.mSubdirectories.keySet()
+                                .removeAll(cached.mPrunedSubdirectories.keySet());
+                        walk(pending, listing, incremental);
+                    }
+                }
+            }
+        }
+
+        findAlbumDetails(dirtyAlbums);
+        return listed;
+    }
+
     protected synchronized boolean updateConnection() {
         // get server/port from mpd
         if (!mEnabled) {
@@ -419,6 +1461,68 @@ public class AlbumCache {
         return true;
     }
 
+    /**
+     * Queues the subdirectories of a listing to be walked.
+     *
+     * @param pending     The directories to walk.
+     * @param listing     The listing of the parent directory.
+     * @param incremental False to list every directory with its tags.
+     */
+    private void walk(final Collection<PendingDirectory> pending, final Listing listing,
+            final boolean incremental) {
+        for (final Map.Entry<String, String> subdirectory :
+                listing.mSubdirectories.entrySet()) {
+            final DirectoryEntry cached = mDirectories.get(subdirectory.getKey());
+            final boolean isChanged = !incremental || cached == null ||
+                    !cached.mLastModified.equals(subdirectory.getValue());
+
+            pending.add(new PendingDirectory(subdirectory.getKey(), subdirectory.getValue(),
+                    isChanged));
+        }
+    }
+
+    /**
+     * Writes a directory record.
+     *
+     * @param out   The output to write to.
+     * @param path  The path of the directory.
+     * @param entry The directory to write.
+     * @throws IOException Thrown upon error writing the record.
+     */
+    private static void writeDirectory(final DataOutput out, final String path,
+            final DirectoryEntry entry) throws IOException {
+        out.writeByte(RECORD_DIRECTORY);
+        out.writeUTF(path);
+        out.writeUTF(entry.mLastModified);
+        out.writeInt(entry.mPrunedSubdirectories.size());
+        for (final Map.Entry<String, String> subdirectory :
+                entry.mPrunedSubdirectories.entrySet()) {
+            out.writeUTF(subdirectory.getKey());
+            out.writeUTF(subdirectory.getValue());
+        }
+        out.writeInt(entry.mSubdirectories.size());
+        for (final String subdirectory : entry.mSubdirectories) {
+            out.writeUTF(subdirectory);
+        }
+        out.writeInt(entry.mTracks.size());
+        for (final TrackEntry track : entry.mTracks) {
+            out.writeUTF(track.mFilename);
+            out.writeUTF(track.mLastModified);
+            out.writeUTF(track.mAlbum);
+            out.writeUTF(track.mArtist);
+            out.writeUTF(track.mAlbumArtist);
+            out.writeInt(track.mGenres.length);
+            for (final String genre : track.mGenres) {
+                out.writeUTF(genre);
+            }
+            out.writeUTF(track.mTitle);
+            out.writeLong(track.mTime);
+            out.writeLong(track.mDate);
+            out.writeInt(track.mTrack);
+            out.writeInt(track.mDisc);
+        }
+    }
+
     static class AlbumDetails implements Serializable {
 
         private static final long serialVersionUID = 2465675380232237273L;
@@ -432,6 +1536,19 @@ public class AlbumCache {
 
         long mTotalTime = 0;
 
+        AlbumDetails() {
+            super();
+        }
+
+        AlbumDetails(final AlbumDetails details) {
+            super();
+
+            mDate = details.mDate;
+            mNumTracks = details.mNumTracks;
+            mPath = details.mPath;
+            mTotalTime = details.mTotalTime;
+        }
+
         private void readObject(final DataInput in)
                 throws IOException, ClassNotFoundException {
             mPath = in.readUTF();
@@ -450,4 +1567,258 @@ public class AlbumCache {
         }
     }
 
+    /**
+     * The album details handed to readers, either a copy of the album details or the album
+     * index they are read from, so readers see both as one reference.
+     */
+    static class AlbumDetailsSnapshot {
+
+        /** The copy of the album details, null if read from the album index. */
+        private final Map<String, AlbumDetails> mAlbumDetails;
+
+        private final AlbumIndex mIndex;
+
+        AlbumDetailsSnapshot(final Map<String, AlbumDetails> albumDetails,
+                final AlbumIndex index) {
+            super();
+
+            mAlbumDetails = albumDetails;
+            mIndex = index;
+        }
+
+        /**
+         * Gets the album details of an album.
+         *
+         * @param albumCode The album code, as returned by {@link AlbumCache#albumCode}.
+         * @return The album details, or null if the album is not known.
+         */
+        AlbumDetails get(final String albumCode) {
+            final AlbumDetails result;
+
+            if (mAlbumDetails == null) {
+                result = mIndex.getAlbumDetails(albumCode);
+            } else {
+                result = mAlbumDetails.get(albumCode);
+            }
+
+            return result;
+        }
+    }
+
+    /** Inverted indexes of the album set, to look up albums without walking the album set. */
+    static class AlbumSetIndex {
+
+        // album -> entries of the album set for the album
+        final Map<String, List<List<String>>> mAlbumInfoByAlbum;
+
+        // albumartist -> albums
+        final Map<String, Set<String>> mAlbumsByAlbumArtist;
+
+        // artist -> albums
+        final Map<String, Set<String>> mAlbumsByArtist;
+
+        AlbumSetIndex(final Collection<List<String>> albumSet) {
+            super();
+
+            mAlbumInfoByAlbum = new HashMap<>(albumSet.size());
+            mAlbumsByAlbumArtist = new HashMap<>();
+            mAlbumsByArtist = new HashMap<>();
+
+            for (final List<String> ai : albumSet) {
+                List<List<String>> albumInfo = mAlbumInfoByAlbum.get(ai.get(0));
+                if (albumInfo == null) {
+                    albumInfo = new ArrayList<>(1);
+                    mAlbumInfoByAlbum.put(ai.get(0), albumInfo);
+                }
+                albumInfo.add(ai);
+
+                addAlbum(mAlbumsByArtist, ai.get(1), ai.get(0));
+                addAlbum(mAlbumsByAlbumArtist, ai.get(2), ai.get(0));
+            }
+        }
+
+        private static void addAlbum(final Map<String, Set<String>> index, final String artist,
+                final String album) {
+            Set<String> albums = index.get(artist);
+            if (albums == null) {
+                albums = new HashSet<>();
+                index.put(artist, albums);
+            }
+            albums.add(album);
+        }
+
+        /**
+         * Gets the entries of the album set for an album.
+         *
+         * @param album The album name.
+         * @return The entries of the album set for the album, empty if none.
+         */
+        List<List<String>> getAlbumInfo(final String album) {
+            final List<List<String>> albumInfo = mAlbumInfoByAlbum.get(album);
+            return albumInfo == null ? Collections.<List<String>>emptyList() : albumInfo;
+        }
+    }
+
+    /** An input stream counting the bytes read through it. */
+    static class CountingInputStream extends FilterInputStream {
+
+        private long mCount;
+
+        CountingInputStream(final InputStream in) {
+            super(in);
+        }
+
+        /**
+         * Retrieves the number of bytes read, or skipped, so far.
+         *
+         * @return The number of bytes read.
+         */
+        long getCount() {
+            return mCount;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int result = super.read();
+
+            if (result != -1) {
+                mCount++;
+            }
+
+            return result;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length)
+                throws IOException {
+            final int result = super.read(buffer, offset, length);
+
+            if (result != -1) {
+                mCount += (long) result;
+            }
+
+            return result;
+        }
+
+        @Override
+        public long skip(final long byteCount) throws IOException {
+            final long result = super.skip(byteCount);
+
+            mCount += result;
+            return result;
+        }
+    }
+
+    /** A media server directory, as last listed. */
+    static class DirectoryEntry {
+
+        String mLastModified = "";
+
+        /**
+         * The subdirectories left out of the database, as they hold no songs, by path, with
+         * their Last-Modified time as last listed.
+         */
+        Map<String, String> mPrunedSubdirectories;
+
+        List<String> mSubdirectories;
+
+        List<TrackEntry> mTracks;
+
+        /**
+         * Checks a {@code listfiles} listing of this directory for changes. A pruned
+         * subdirectory is only new again once its Last-Modified time changed.
+         *
+         * @param listing The current entries of this directory.
+         * @return True if a subdirectory was added or removed, or a track was modified or
+         * removed since this directory was last listed.
+         */
+        boolean isModified(final Listing listing) {
+            final Set<String> subdirectories = new HashSet<>(mSubdirectories);
+            final Iterator<Map.Entry<String, String>> iterator =
+                    listing.mSubdirectories.entrySet().iterator();
+            boolean isModified = !listing.mSubdirectories.keySet().containsAll(subdirectories);
+
+            while (!isModified && iterator.hasNext()) {
+                final Map.Entry<String, String> subdirectory = iterator.next();
+                final String path = subdirectory.getKey();
+
+                isModified = !subdirectories.contains(path) &&
+                        !subdirectory.getValue().equals(mPrunedSubdirectories.get(path));
+            }
+
+            if (!isModified) {
+                final Map<String, String> files = new HashMap<>(listing.mTracks.size());
+
+                for (final TrackEntry file : listing.mTracks) {
+                    files.put(file.mFilename, file.mLastModified);
+                }
+
+                for (final TrackEntry track : mTracks) {
+                    if (!track.mLastModified.equals(files.get(track.mFilename))) {
+                        isModified = true;
+                        break;
+                    }
+                }
+            }
+
+            return isModified;
+        }
+    }
+
+    /** The entries of a directory listing. */
+    static class Listing {
+
+        // subdirectory path -> Last-Modified
+        final Map<String, String> mSubdirectories = new HashMap<>();
+
+        final List<TrackEntry> mTracks = new ArrayList<>();
+    }
+
+    /** A directory waiting to be listed. */
+    static class PendingDirectory {
+
+        final String mLastModified;
+
+        final String mPath;
+
+        /** The {@code listfiles} listing which found the directory modified, if any. */
+        Listing mFiles;
+
+        boolean mIsChanged;
+
+        PendingDirectory(final String path, final String lastModified,
+                final boolean isChanged) {
+            super();
+
+            mPath = path;
+            mLastModified = lastModified;
+            mIsChanged = isChanged;
+        }
+    }
+
+    /** The album information of a track, as cached. */
+    static class TrackEntry {
+
+        String mAlbum = "";
+
+        String mAlbumArtist = "";
+
+        String mArtist = "";
+
+        long mDate = 0;
+
+        int mDisc = 0;
+
+        String mFilename = "";
+
+        String[] mGenres = NO_GENRES;
+
+        String mLastModified = "";
+
+        long mTime = 0;
+
+        String mTitle = "";
+
+        int mTrack = 0;
+    }
 }
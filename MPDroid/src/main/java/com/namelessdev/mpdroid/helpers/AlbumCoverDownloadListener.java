@@ -20,7 +20,6 @@ import com.namelessdev.mpdroid.MPDApplication;
 import com.namelessdev.mpdroid.R;
 import com.namelessdev.mpdroid.cover.CoverBitmapDrawable;
 
-import android.graphics.Bitmap;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.support.annotation.DrawableRes;
@@ -126,10 +125,8 @@ public class AlbumCoverDownloadListener implements CoverDownloadListener {
         }
 
         coverDrawable.setCallback(null);
-        final Bitmap coverBitmap = ((BitmapDrawable) coverDrawable).getBitmap();
-        if (coverBitmap != null) {
-            coverBitmap.recycle();
-        }
+        // The cover is not drawn anymore, it can be decoded into again
+        CoverBitmapPool.getInstance().put(((BitmapDrawable) coverDrawable).getBitmap());
     }
 
     private boolean isMatchingCover(final CoverInfo coverInfo) {
@@ -0,0 +1,343 @@
+/*
+ * Copyright (C) 2010-2014 The MPDroid Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.namelessdev.mpdroid.helpers;
+
+import org.a0z.mpd.item.TagPool;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A read only, memory mapped snapshot of the album indexes of the {@link AlbumCache}. Opening an
+ * index only maps the file, albums are read from the mapping as they are queried.
+ *
+ * <p>The file holds, in order:</p>
+ * <ul>
+ * <li>A header: magic, version, last update, and the string, album and details counts.</li>
+ * <li>The string table offsets, one more than there are strings. The strings are unique and
+ * sorted, so a string id orders like its string.</li>
+ * <li>The album records: the string ids of the album, artist and album artist.</li>
+ * <li>The album details records, sorted by the string id of their album code: the album code,
+ * the path (-1 if none), date, number of tracks and total time.</li>
+ * <li>The string table, UTF-8 encoded.</li>
+ * </ul>
+ */
+final class AlbumIndex {
+
+    private static final int ALBUM_SIZE = 12;
+
+    private static final int DETAILS_SIZE = 32;
+
+    private static final int HEADER_SIZE = 28;
+
+    private static final int MAGIC = 0x4D504449;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int VERSION = 1;
+
+    private final int mAlbumCount;
+
+    private final int mAlbumsOffset;
+
+    private final ByteBuffer mBuffer;
+
+    private final int mDetailsCount;
+
+    private final int mDetailsOffset;
+
+    private final Date mLastUpdate;
+
+    private final int mStringCount;
+
+    private final int mStringsOffset;
+
+    private AlbumIndex(final ByteBuffer buffer) throws IOException {
+        super();
+
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC ||
+                buffer.getInt(4) != VERSION) {
+            throw new IOException("Unknown album index format.");
+        }
+
+        final long lastUpdate = buffer.getLong(8);
+
+        mBuffer = buffer;
+        mLastUpdate = lastUpdate == -1L ? null : new Date(lastUpdate);
+        mStringCount = buffer.getInt(16);
+        mAlbumCount = buffer.getInt(20);
+        mDetailsCount = buffer.getInt(24);
+        mAlbumsOffset = HEADER_SIZE + (mStringCount + 1) * 4;
+        mDetailsOffset = mAlbumsOffset + mAlbumCount * ALBUM_SIZE;
+        mStringsOffset = mDetailsOffset + mDetailsCount * DETAILS_SIZE;
+
+        if (mStringCount < 0 || mAlbumCount < 0 || mDetailsCount < 0 ||
+                mStringsOffset > buffer.capacity() ||
+                mStringsOffset + buffer.getInt(HEADER_SIZE + mStringCount * 4) >
+                        buffer.capacity()) {
+            throw new IOException("Truncated album index.");
+        }
+    }
+
+    /**
+     * Maps an album index file.
+     *
+     * @param file The album index file.
+     * @return The album index, or null if the file does not exist.
+     * @throws IOException Thrown if the file could not be mapped or is not an album index.
+     */
+    static AlbumIndex open(final File file) throws IOException {
+        AlbumIndex index = null;
+
+        if (file.exists()) {
+            final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+
+            try {
+                final FileChannel channel = randomAccessFile.getChannel();
+
+                /** The mapping stays valid after the file is closed. */
+                index = new AlbumIndex(
+                        channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size()));
+            } finally {
+                randomAccessFile.close();
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Writes an album index file, replacing the previous one once complete.
+     *
+     * @param file         The album index file.
+     * @param lastUpdate   The time the album indexes were last updated.
+     * @param albumSet     The album, artist and album artist of each album.
+     * @param albumDetails The album details by album code.
+     * @throws IOException Thrown upon error writing the file.
+     */
+    static void write(final File file, final Date lastUpdate, final Set<List<String>> albumSet,
+            final Map<String, AlbumCache.AlbumDetails> albumDetails) throws IOException {
+        final Set<String> sortedStrings = new TreeSet<>();
+
+        for (final List<String> albumInfo : albumSet) {
+            sortedStrings.addAll(albumInfo);
+        }
+
+        for (final Map.Entry<String, AlbumCache.AlbumDetails> entry : albumDetails.entrySet()) {
+            sortedStrings.add(entry.getKey());
+            if (entry.getValue().mPath != null) {
+                sortedStrings.add(entry.getValue().mPath);
+            }
+        }
+
+        final List<byte[]> strings = new ArrayList<>(sortedStrings.size());
+        final Map<String, Integer> stringIds = new HashMap<>(sortedStrings.size());
+        for (final String string : sortedStrings) {
+            stringIds.put(string, Integer.valueOf(strings.size()));
+            strings.add(string.getBytes(UTF_8));
+        }
+
+        final int[] codeIds = new int[albumDetails.size()];
+        final Map<Integer, AlbumCache.AlbumDetails> detailsById =
+                new HashMap<>(albumDetails.size());
+        int detailsIndex = 0;
+        for (final Map.Entry<String, AlbumCache.AlbumDetails> entry : albumDetails.entrySet()) {
+            final Integer id = stringIds.get(entry.getKey());
+
+            codeIds[detailsIndex] = id.intValue();
+            detailsById.put(id, entry.getValue());
+            detailsIndex++;
+        }
+        Arrays.sort(codeIds);
+
+        final File tempFile = new File(file.getAbsolutePath() + ".tmp");
+        final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(lastUpdate == null ? -1L : lastUpdate.getTime());
+            out.writeInt(strings.size());
+            out.writeInt(albumSet.size());
+            out.writeInt(codeIds.length);
+
+            int offset = 0;
+            for (final byte[] string : strings) {
+                out.writeInt(offset);
+                offset += string.length;
+            }
+            out.writeInt(offset);
+
+            for (final List<String> albumInfo : albumSet) {
+                out.writeInt(stringIds.get(albumInfo.get(0)).intValue());
+                out.writeInt(stringIds.get(albumInfo.get(1)).intValue());
+                out.writeInt(stringIds.get(albumInfo.get(2)).intValue());
+            }
+
+            for (final int codeId : codeIds) {
+                final AlbumCache.AlbumDetails details = detailsById.get(Integer.valueOf(codeId));
+
+                out.writeInt(codeId);
+                out.writeInt(details.mPath == null ?
+                        -1 : stringIds.get(details.mPath).intValue());
+                out.writeLong(details.mDate);
+                out.writeLong(details.mNumTracks);
+                out.writeLong(details.mTotalTime);
+            }
+
+            for (final byte[] string : strings) {
+                out.write(string);
+            }
+        } finally {
+            out.close();
+        }
+
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Failed to replace " + file);
+        }
+    }
+
+    /**
+     * Finds the string id of a string by binary search of the string table.
+     *
+     * @param string The string to find.
+     * @return The string id, or -1 if the string is not in the string table.
+     */
+    private int findString(final String string) {
+        int low = 0;
+        int high = mStringCount - 1;
+        int result = -1;
+
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int comparison = getString(middle).compareTo(string);
+
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                result = middle;
+                break;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads the album details of an album from the mapping.
+     *
+     * @param albumCode The album code, as returned by {@link AlbumCache#albumCode}.
+     * @return The album details, or null if the album is not in the index.
+     */
+    AlbumCache.AlbumDetails getAlbumDetails(final String albumCode) {
+        final int codeId = findString(albumCode);
+        AlbumCache.AlbumDetails details = null;
+        int low = 0;
+        int high = mDetailsCount - 1;
+
+        while (codeId != -1 && low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int position = mDetailsOffset + middle * DETAILS_SIZE;
+            final int middleId = mBuffer.getInt(position);
+
+            if (middleId < codeId) {
+                low = middle + 1;
+            } else if (middleId > codeId) {
+                high = middle - 1;
+            } else {
+                final int pathId = mBuffer.getInt(position + 4);
+
+                details = new AlbumCache.AlbumDetails();
+                details.mPath = pathId == -1 ? null : getString(pathId);
+                details.mDate = mBuffer.getLong(position + 8);
+                details.mNumTracks = mBuffer.getLong(position + 16);
+                details.mTotalTime = mBuffer.getLong(position + 24);
+                break;
+            }
+        }
+
+        return details;
+    }
+
+    /**
+     * Reads the album set from the mapping. Each string is decoded once and shared between the
+     * albums it belongs to, and with the items holding the same tag value.
+     *
+     * @return The album, artist and album artist of each album.
+     */
+    Set<List<String>> getAlbumSet() {
+        final Set<List<String>> albumSet = new HashSet<>(mAlbumCount);
+        final String[] strings = new String[mStringCount];
+
+        for (int i = 0; i < mAlbumCount; i++) {
+            final int position = mAlbumsOffset + i * ALBUM_SIZE;
+            final String[] albumInfo = new String[3];
+
+            for (int j = 0; j < albumInfo.length; j++) {
+                final int id = mBuffer.getInt(position + j * 4);
+
+                if (strings[id] == null) {
+                    strings[id] = TagPool.intern(getString(id));
+                }
+                albumInfo[j] = strings[id];
+            }
+            albumSet.add(Arrays.asList(albumInfo));
+        }
+
+        return albumSet;
+    }
+
+    Date getLastUpdate() {
+        return mLastUpdate;
+    }
+
+    /**
+     * Decodes a string of the string table.
+     *
+     * @param id The string id.
+     * @return The string.
+     */
+    private String getString(final int id) {
+        final int offsetPosition = HEADER_SIZE + id * 4;
+        final int start = mBuffer.getInt(offsetPosition);
+        final byte[] bytes = new byte[mBuffer.getInt(offsetPosition + 4) - start];
+        final ByteBuffer string = mBuffer.duplicate();
+
+        string.position(mStringsOffset + start);
+        string.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -17,14 +17,17 @@
 package com.namelessdev.mpdroid.helpers;
 
 import org.a0z.mpd.MPD;
+import org.a0z.mpd.TrackTable;
 import org.a0z.mpd.exception.MPDException;
 import org.a0z.mpd.item.Album;
 import org.a0z.mpd.item.Artist;
+import org.a0z.mpd.item.Genre;
 
 import android.util.Log;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -71,6 +74,58 @@ public class CachedMPD extends MPD {
         return artistName;
     }
 
+    /**
+     * Selects the rows of an artist or album artist in a track table.
+     *
+     * @param trackTable     The track table.
+     * @param artist         The artist name, null for all the rows.
+     * @param useAlbumArtist Whether to select by album artist rather than artist.
+     * @return The rows of the artist, null for all the rows.
+     */
+    private static BitSet getArtistRows(final TrackTable trackTable, final String artist,
+            final boolean useAlbumArtist) {
+        final BitSet rows;
+
+        if (artist == null) {
+            rows = null;
+        } else if (useAlbumArtist) {
+            rows = trackTable.filter(null, TrackTable.ALBUM_ARTIST, artist);
+        } else {
+            rows = trackTable.filter(null, TrackTable.ARTIST, artist);
+        }
+
+        return rows;
+    }
+
+    /**
+     * Lists the distinct values of a tag column in the rows of a genre, sorted.
+     *
+     * @param trackTable      The track table.
+     * @param tag             The tag column, such as {@link TrackTable#ARTIST}.
+     * @param genre           The genre name, null for all the rows.
+     * @param sortInsensitive Whether to sort insensitively.
+     * @return The values of the genre.
+     */
+    private static List<String> listByGenre(final TrackTable trackTable, final int tag,
+            final String genre, final boolean sortInsensitive) {
+        final BitSet rows;
+        final List<String> values;
+
+        if (genre == null) {
+            rows = null;
+        } else {
+            rows = trackTable.filter(null, TrackTable.GENRE, genre);
+        }
+
+        values = trackTable.groupBy(tag, rows);
+        /** The dictionary order is already the natural one. */
+        if (sortInsensitive) {
+            Collections.sort(values, String.CASE_INSENSITIVE_ORDER);
+        }
+
+        return values;
+    }
+
     /*
      * add path info to all albums
      */
@@ -110,6 +165,37 @@ public class CachedMPD extends MPD {
         }
     }
 
+    @Override
+    public int getAlbumCount(final Artist artist, final boolean useAlbumArtistTag)
+            throws IOException, MPDException {
+        return getAlbumCount(artist.getName(), useAlbumArtistTag);
+    }
+
+    /**
+     * Counts the albums of an artist, from the track table rather than a list of the albums.
+     *
+     * @param artist            The artist name.
+     * @param useAlbumArtistTag Whether to count by album artist rather than artist.
+     * @return The number of albums of the artist.
+     * @throws IOException  Thrown upon a communication error with the server.
+     * @throws MPDException Thrown if an error occurs as a result of command execution.
+     */
+    @Override
+    public int getAlbumCount(final String artist, final boolean useAlbumArtistTag)
+            throws IOException, MPDException {
+        final TrackTable trackTable = getTrackTable();
+        final int albumCount;
+
+        if (trackTable == null) {
+            albumCount = super.getAlbumCount(artist, useAlbumArtistTag);
+        } else {
+            albumCount = trackTable.countDistinct(TrackTable.ALBUM,
+                    getArtistRows(trackTable, artist, useAlbumArtistTag));
+        }
+
+        return albumCount;
+    }
+
     /**
      * Add detail information to all albums.
      *
@@ -187,6 +273,76 @@ public class CachedMPD extends MPD {
         return allAlbums;
     }
 
+    /**
+     * Gets the search index of the library, to search without asking the media server.
+     *
+     * @return The search index, null if the cache is disabled or not up to date.
+     */
+    public LibrarySearchIndex getSearchIndex() {
+        final LibrarySearchIndex searchIndex;
+
+        if (mIsEnabled) {
+            searchIndex = mCache.getSearchIndex();
+        } else {
+            searchIndex = null;
+        }
+
+        return searchIndex;
+    }
+
+    /**
+     * Gets the track table of the library, once the cache is up to date.
+     *
+     * @return The track table, null if the cache is disabled or could not be brought up to date,
+     * for the query to be sent to the media server instead.
+     */
+    private TrackTable getTrackTable() {
+        final TrackTable trackTable;
+
+        if (isCached()) {
+            trackTable = mCache.getTrackTable();
+        } else {
+            trackTable = null;
+        }
+
+        return trackTable;
+    }
+
+    /**
+     * Checks whether an album has tracks of a genre.
+     *
+     * @param album The album, by its artist or album artist if it has one.
+     * @param genre The genre.
+     * @return True if a track of the album is of the genre, false otherwise.
+     * @throws IOException  Thrown upon a communication error with the server.
+     * @throws MPDException Thrown if an error occurs as a result of command execution.
+     */
+    @Override
+    public boolean isAlbumInGenre(final Album album, final Genre genre)
+            throws IOException, MPDException {
+        final TrackTable trackTable = getTrackTable();
+        final boolean isAlbumInGenre;
+
+        if (trackTable == null) {
+            isAlbumInGenre = super.isAlbumInGenre(album, genre);
+        } else {
+            final Artist artist = album.getArtist();
+            final BitSet artistRows;
+            final BitSet rows;
+
+            if (artist == null) {
+                artistRows = null;
+            } else {
+                artistRows = getArtistRows(trackTable, artist.getName(), album.hasAlbumArtist());
+            }
+            rows = trackTable.filter(artistRows, TrackTable.ALBUM, album.getName());
+
+            isAlbumInGenre = trackTable.contains(rows, TrackTable.GENRE, genre.getName());
+        }
+
+        return isAlbumInGenre;
+    }
+
     /**
      * Check whether the AlbumCache is enabled and ready for use.
      *
@@ -196,6 +352,31 @@ public class CachedMPD extends MPD {
         return mIsEnabled && mCache.refresh();
     }
 
+    /**
+     * Lists the album artists of a genre.
+     *
+     * @param genre           The genre.
+     * @param sortInsensitive Whether to sort insensitively.
+     * @return The album artist names of the genre.
+     * @throws IOException  Thrown upon a communication error with the server.
+     * @throws MPDException Thrown if an error occurs as a result of command execution.
+     */
+    @Override
+    public List<String> listAlbumArtists(final Genre genre, final boolean sortInsensitive)
+            throws IOException, MPDException {
+        final TrackTable trackTable = getTrackTable();
+        final List<String> albumArtists;
+
+        if (trackTable == null) {
+            albumArtists = super.listAlbumArtists(genre, sortInsensitive);
+        } else {
+            albumArtists = listByGenre(trackTable, TrackTable.ALBUM_ARTIST, genre.getName(),
+                    sortInsensitive);
+        }
+
+        return albumArtists;
+    }
+
     /**
      * Gets a list of all album artists in the database.
      *
@@ -241,7 +422,14 @@ public class CachedMPD extends MPD {
         final List<String> albums;
 
         if (isCached()) {
-            albums = new ArrayList(mCache.getAlbums(artist, useAlbumArtist));
+            final TrackTable trackTable = mCache.getTrackTable();
+
+            if (trackTable == null) {
+                albums = new ArrayList<>(mCache.getAlbums(artist, useAlbumArtist));
+            } else {
+                albums = trackTable.groupBy(TrackTable.ALBUM,
+                        getArtistRows(trackTable, artist, useAlbumArtist));
+            }
         } else {
             albums = super.listAlbums(artist, useAlbumArtist);
         }
@@ -276,6 +464,30 @@ public class CachedMPD extends MPD {
         return artists;
     }
 
+    /**
+     * Lists the artists of a genre.
+     *
+     * @param genre           The genre name.
+     * @param sortInsensitive Whether to sort insensitively.
+     * @return The artist names of the genre.
+     * @throws IOException  Thrown upon a communication error with the server.
+     * @throws MPDException Thrown if an error occurs as a result of command execution.
+     */
+    @Override
+    public List<String> listArtists(final String genre, final boolean sortInsensitive)
+            throws IOException, MPDException {
+        final TrackTable trackTable = getTrackTable();
+        final List<String> artists;
+
+        if (trackTable == null) {
+            artists = super.listArtists(genre, sortInsensitive);
+        } else {
+            artists = listByGenre(trackTable, TrackTable.ARTIST, genre, sortInsensitive);
+        }
+
+        return artists;
+    }
+
     /**
      * Set whether to use the cache.
      *
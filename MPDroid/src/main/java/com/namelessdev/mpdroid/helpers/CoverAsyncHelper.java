@@ -50,6 +50,9 @@ public class CoverAsyncHelper extends Handler implements CoverDownloadListener {
 
     private final MPDApplication mApp = MPDApplication.getInstance();
 
+    /** The request in progress, null once answered or cancelled. */
+    private CoverInfo mCoverInfo = null;
+
     static {
         COVER_NOT_FOUND_MESSAGE = new Message();
         COVER_NOT_FOUND_MESSAGE.what = EVENT_COVER_NOT_FOUND;
@@ -84,6 +87,17 @@ public class CoverAsyncHelper extends Handler implements CoverDownloadListener {
         mCoverDownloadListeners.add(listener);
     }
 
+    /**
+     * Cancels the request in progress, once the cover is not wanted anymore, as its view was
+     * bound to another album.
+     */
+    public void cancel() {
+        if (mCoverInfo != null) {
+            CoverManager.getInstance().cancelCoverRequest(mCoverInfo);
+            mCoverInfo = null;
+        }
+    }
+
     public void downloadCover(final AlbumInfo albumInfo) {
         downloadCover(albumInfo, false);
     }
@@ -97,6 +111,7 @@ public class CoverAsyncHelper extends Handler implements CoverDownloadListener {
         tagListenerCovers(albumInfo);
 
         if (albumInfo.isValid()) {
+            mCoverInfo = info;
             CoverManager.getInstance().addCoverRequest(info);
         } else {
             COVER_NOT_FOUND_MESSAGE.obj = info;
@@ -119,6 +134,7 @@ public class CoverAsyncHelper extends Handler implements CoverDownloadListener {
                     break;
                 }
 
+                onAnswer(coverInfo);
                 for (final CoverDownloadListener listener : mCoverDownloadListeners) {
                     listener.onCoverDownloaded(coverInfo);
                 }
@@ -128,6 +144,7 @@ public class CoverAsyncHelper extends Handler implements CoverDownloadListener {
                 }
                 break;
             case EVENT_COVER_NOT_FOUND:
+                onAnswer((CoverInfo) msg.obj);
                 for (final CoverDownloadListener listener : mCoverDownloadListeners) {
                     listener.onCoverNotFound((CoverInfo) msg.obj);
                 }
@@ -142,6 +159,18 @@ public class CoverAsyncHelper extends Handler implements CoverDownloadListener {
         }
     }
 
+    /**
+     * Forgets the request in progress once answered; the placeholder is shown through an answer
+     * without request.
+     *
+     * @param coverInfo The answered request, may be null.
+     */
+    private void onAnswer(final CoverInfo coverInfo) {
+        if (coverInfo != null && coverInfo.equals(mCoverInfo)) {
+            mCoverInfo = null;
+        }
+    }
+
     @Override
     public void onCoverDownloadStarted(final CoverInfo cover) {
         obtainMessage(EVENT_COVER_DOWNLOAD_STARTED, cover).sendToTarget();
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2010-2014 The MPDroid Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.namelessdev.mpdroid.helpers;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Build;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The cover bitmaps the views are done with, kept to be decoded or copied into again rather than
+ * left to the garbage collector, which spares an allocation per cover while scrolling.
+ *
+ * <p>The bitmaps are kept by byte count. Before KitKat a bitmap can only be reused at its exact
+ * size and configuration, from KitKat on it is reconfigured to the size asked for, as long as it
+ * is large enough and not much larger.</p>
+ */
+final class CoverBitmapPool {
+
+    /** The share of the heap given to the pooled bitmaps. */
+    private static final int HEAP_DIVISOR = 32;
+
+    private static final CoverBitmapPool INSTANCE = new CoverBitmapPool();
+
+    /** A pooled bitmap more than this many times larger than asked for is not reused. */
+    private static final int MAX_WASTE_FACTOR = 4;
+
+    /** The pooled bitmaps by byte count. */
+    private final TreeMap<Integer, ArrayDeque<Bitmap>> mBitmaps = new TreeMap<>();
+
+    private final int mMaxSize;
+
+    /** The total byte count of the pooled bitmaps. */
+    private int mSize;
+
+    private CoverBitmapPool() {
+        super();
+
+        mMaxSize = (int) (Runtime.getRuntime().maxMemory() / (long) HEAP_DIVISOR);
+    }
+
+    private static int getByteCount(final Bitmap bitmap) {
+        final int byteCount;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            byteCount = bitmap.getAllocationByteCount();
+        } else {
+            byteCount = bitmap.getRowBytes() * bitmap.getHeight();
+        }
+
+        return byteCount;
+    }
+
+    private static int getByteCount(final int width, final int height,
+            final Bitmap.Config config) {
+        final int pixelSize;
+
+        if (config == Bitmap.Config.ARGB_8888) {
+            pixelSize = 4;
+        } else {
+            pixelSize = 2;
+        }
+
+        return width * height * pixelSize;
+    }
+
+    static CoverBitmapPool getInstance() {
+        return INSTANCE;
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static void reconfigure(final Bitmap bitmap, final int width, final int height,
+            final Bitmap.Config config) {
+        if (bitmap.getWidth() != width || bitmap.getHeight() != height
+                || bitmap.getConfig() != config) {
+            bitmap.reconfigure(width, height, config);
+        }
+    }
+
+    /**
+     * Copies a bitmap, into a pooled bitmap if one fits.
+     *
+     * @param bitmap The bitmap to copy.
+     * @return A mutable copy of the bitmap, null if the copy could not be allocated.
+     */
+    Bitmap copy(final Bitmap bitmap) {
+        final Bitmap copy = get(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig());
+        final Bitmap result;
+
+        if (copy == null) {
+            result = bitmap.copy(bitmap.getConfig(), true);
+        } else {
+            if (bitmap.hasAlpha()) {
+                copy.eraseColor(0);
+            }
+            new Canvas(copy).drawBitmap(bitmap, 0.0f, 0.0f, null);
+            result = copy;
+        }
+
+        return result;
+    }
+
+    /**
+     * Takes a bitmap out of the pool.
+     *
+     * @param width  The width of the bitmap.
+     * @param height The height of the bitmap.
+     * @param config The configuration of the bitmap.
+     * @return A mutable bitmap of the given size and configuration, with undefined content, or
+     * null if none is pooled.
+     */
+    synchronized Bitmap get(final int width, final int height, final Bitmap.Config config) {
+        final int byteCount = getByteCount(width, height, config);
+        Bitmap bitmap = null;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            final Map.Entry<Integer, ArrayDeque<Bitmap>> entry = mBitmaps.ceilingEntry(byteCount);
+
+            if (entry != null && entry.getKey() <= byteCount * MAX_WASTE_FACTOR) {
+                final Iterator<Bitmap> iterator = entry.getValue().iterator();
+
+                bitmap = iterator.next();
+                remove(entry.getKey(), iterator);
+                reconfigure(bitmap, width, height, config);
+            }
+        } else {
+            final ArrayDeque<Bitmap> bitmaps = mBitmaps.get(byteCount);
+
+            if (bitmaps != null) {
+                final Iterator<Bitmap> iterator = bitmaps.iterator();
+
+                while (bitmap == null && iterator.hasNext()) {
+                    final Bitmap pooled = iterator.next();
+
+                    if (pooled.getWidth() == width && pooled.getHeight() == height
+                            && pooled.getConfig() == config) {
+                        bitmap = pooled;
+                        remove(byteCount, iterator);
+                    }
+                }
+            }
+        }
+
+        return bitmap;
+    }
+
+    /**
+     * Gives a bitmap back to the pool, once it is not drawn anymore. The largest bitmaps are
+     * dropped first once the pool is full.
+     *
+     * @param bitmap The bitmap, immutable or recycled bitmaps are ignored.
+     */
+    synchronized void put(final Bitmap bitmap) {
+        if (bitmap != null && bitmap.isMutable() && !bitmap.isRecycled()) {
+            final int byteCount = getByteCount(bitmap);
+            ArrayDeque<Bitmap> bitmaps = mBitmaps.get(byteCount);
+
+            if (bitmaps == null) {
+                bitmaps = new ArrayDeque<>();
+                mBitmaps.put(byteCount, bitmaps);
+            }
+            bitmaps.addFirst(bitmap);
+            mSize += byteCount;
+
+            while (mSize > mMaxSize) {
+                final Map.Entry<Integer, ArrayDeque<Bitmap>> largest = mBitmaps.lastEntry();
+                final Iterator<Bitmap> iterator = largest.getValue().descendingIterator();
+
+                iterator.next();
+                remove(largest.getKey(), iterator);
+            }
+        }
+    }
+
+    /**
+     * Removes the bitmap last returned by an iterator from the pool.
+     *
+     * @param byteCount The byte count the bitmap is pooled with.
+     * @param iterator  The iterator over the bitmaps of that byte count.
+     */
+    private void remove(final int byteCount, final Iterator<Bitmap> iterator) {
+        iterator.remove();
+        mSize -= byteCount;
+        if (mBitmaps.get(byteCount).isEmpty()) {
+            mBitmaps.remove(byteCount);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2010-2014 The MPDroid Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.namelessdev.mpdroid.helpers;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Decodes the covers of the {@link CoverManager} straight at the size they are requested at,
+ * into the bitmaps of the {@link CoverBitmapPool} when one fits. The sample size is worked out
+ * once from the cover bounds, and a cover decoded below its full size is decoded without alpha
+ * if it is a JPEG, which halves its memory.
+ */
+final class CoverDecoder {
+
+    private static final String JPEG_MIME_TYPE = "image/jpeg";
+
+    private CoverDecoder() {
+        super();
+    }
+
+    /**
+     * Decodes a cover at a given size.
+     *
+     * @param coverBytes The compressed cover.
+     * @param bounds     The cover bounds, from {@link #decodeBounds(byte[])}.
+     * @param maxSize    The size to decode the cover at, {@link CoverInfo#MAX_SIZE} for its full
+     *                   size.
+     * @return The mutable cover, null if it could not be decoded.
+     */
+    static Bitmap decode(final byte[] coverBytes, final BitmapFactory.Options bounds,
+            final int maxSize) {
+        final BitmapFactory.Options options = getDecodeOptions(bounds, maxSize);
+        Bitmap bitmap;
+
+        try {
+            bitmap = BitmapFactory.decodeByteArray(coverBytes, 0, coverBytes.length, options);
+        } catch (final IllegalArgumentException ignored) {
+            /** The pooled bitmap did not fit after all. */
+            stopReuse(options);
+            bitmap = BitmapFactory.decodeByteArray(coverBytes, 0, coverBytes.length, options);
+        }
+
+        if (bitmap == null) {
+            stopReuse(options);
+        }
+
+        return bitmap;
+    }
+
+    /**
+     * Decodes a cover file at a given size, streaming it from its file descriptor.
+     *
+     * @param coverFile The path of the cover file.
+     * @param maxSize   The size to decode the cover at, {@link CoverInfo#MAX_SIZE} for its full
+     *                  size.
+     * @return The mutable cover, null if it could not be decoded.
+     * @throws IOException Thrown upon read failure.
+     */
+    static Bitmap decode(final String coverFile, final int maxSize) throws IOException {
+        final FileInputStream stream = new FileInputStream(coverFile);
+        Bitmap bitmap;
+
+        try {
+            final FileDescriptor fileDescriptor = stream.getFD();
+            final BitmapFactory.Options bounds = new BitmapFactory.Options();
+
+            bounds.inJustDecodeBounds = true;
+            BitmapFactory.decodeFileDescriptor(fileDescriptor, null, bounds);
+
+            final BitmapFactory.Options options = getDecodeOptions(bounds, maxSize);
+            stream.getChannel().position(0L);
+            try {
+                bitmap = BitmapFactory.decodeFileDescriptor(fileDescriptor, null, options);
+            } catch (final IllegalArgumentException ignored) {
+                /** The pooled bitmap did not fit after all. */
+                stopReuse(options);
+                stream.getChannel().position(0L);
+                bitmap = BitmapFactory.decodeFileDescriptor(fileDescriptor, null, options);
+            }
+
+            if (bitmap == null) {
+                stopReuse(options);
+            }
+        } finally {
+            stream.close();
+        }
+
+        return bitmap;
+    }
+
+    /**
+     * Decodes the bounds of a cover, to decode it at one or more sizes.
+     *
+     * @param coverBytes The compressed cover.
+     * @return The options holding the cover bounds and type.
+     */
+    static BitmapFactory.Options decodeBounds(final byte[] coverBytes) {
+        final BitmapFactory.Options bounds = new BitmapFactory.Options();
+
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(coverBytes, 0, coverBytes.length, bounds);
+
+        return bounds;
+    }
+
+    /**
+     * Gets the options to decode a cover at a given size, with a pooled bitmap to decode into if
+     * one fits.
+     *
+     * @param bounds  The cover bounds.
+     * @param maxSize The size to decode the cover at.
+     * @return The decoding options.
+     */
+    private static BitmapFactory.Options getDecodeOptions(final BitmapFactory.Options bounds,
+            final int maxSize) {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+
+        options.inSampleSize = getSampleSize(bounds, maxSize);
+        options.inMutable = true;
+        if (maxSize != CoverInfo.MAX_SIZE && JPEG_MIME_TYPE.equals(bounds.outMimeType)) {
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+        } else {
+            options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        }
+
+        /** Before KitKat, a bitmap can only be decoded into without sampling. */
+        if (bounds.outWidth > 0 && bounds.outHeight > 0 && (options.inSampleSize == 1
+                || Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT)) {
+            final int sampleSize = options.inSampleSize;
+
+            options.inBitmap = CoverBitmapPool.getInstance().get(
+                    (bounds.outWidth + sampleSize - 1) / sampleSize,
+                    (bounds.outHeight + sampleSize - 1) / sampleSize, options.inPreferredConfig);
+        }
+
+        return options;
+    }
+
+    /**
+     * Gets the largest power of two sample size which decodes a cover no smaller than a given
+     * size.
+     *
+     * @param bounds  The cover bounds.
+     * @param maxSize The size to decode the cover at, {@link CoverInfo#MAX_SIZE} for its full
+     *                size.
+     * @return The sample size.
+     */
+    static int getSampleSize(final BitmapFactory.Options bounds, final int maxSize) {
+        final int largestSide = Math.max(bounds.outWidth, bounds.outHeight);
+        int sampleSize = 1;
+
+        if (maxSize != CoverInfo.MAX_SIZE) {
+            while (largestSide / (sampleSize * 2) >= maxSize) {
+                sampleSize *= 2;
+            }
+        }
+
+        return sampleSize;
+    }
+
+    /**
+     * Gives the pooled bitmap of a failed decoding back to the pool.
+     *
+     * @param options The decoding options.
+     */
+    private static void stopReuse(final BitmapFactory.Options options) {
+        if (options.inBitmap != null) {
+            CoverBitmapPool.getInstance().put(options.inBitmap);
+            options.inBitmap = null;
+        }
+    }
+}
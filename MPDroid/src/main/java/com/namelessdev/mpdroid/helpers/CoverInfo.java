@@ -32,8 +32,14 @@ public class CoverInfo extends AlbumInfo {
 
     private byte[] mCoverBytes = new byte[0];
 
+    /** The path of a cover found in the disk cache, decoded from the file without reading it. */
+    private String mCoverFile;
+
     private ICoverRetriever mCoverRetriever;
 
+    /** Set once no listener wants the cover anymore, cleared if a new listener joins. */
+    private volatile boolean mIsCancelled;
+
     private CoverDownloadListener mListener;
 
     private boolean mPriority;
@@ -52,6 +58,7 @@ public class CoverInfo extends AlbumInfo {
         mState = coverInfo.mState;
         mBitmap = coverInfo.mBitmap;
         mCoverBytes = coverInfo.mCoverBytes;
+        mCoverFile = coverInfo.mCoverFile;
         mPriority = coverInfo.mPriority;
         mCoverMaxSize = coverInfo.mCoverMaxSize;
         mCachedCoverMaxSize = coverInfo.mCachedCoverMaxSize;
@@ -72,6 +79,10 @@ public class CoverInfo extends AlbumInfo {
         return mCoverBytes;
     }
 
+    public String getCoverFile() {
+        return mCoverFile;
+    }
+
     public int getCoverMaxSize() {
         return mCoverMaxSize;
     }
@@ -88,6 +99,10 @@ public class CoverInfo extends AlbumInfo {
         return mState;
     }
 
+    public boolean isCancelled() {
+        return mIsCancelled;
+    }
+
     public boolean isPriority() {
         return mPriority;
     }
@@ -100,6 +115,10 @@ public class CoverInfo extends AlbumInfo {
         mBitmap = bitmap;
     }
 
+    public void setCancelled(final boolean isCancelled) {
+        mIsCancelled = isCancelled;
+    }
+
     public void setCachedCoverMaxSize(final int cachedCoverMaxSize) {
         mCachedCoverMaxSize = cachedCoverMaxSize;
     }
@@ -108,6 +127,10 @@ public class CoverInfo extends AlbumInfo {
         mCoverBytes = coverBytes;
     }
 
+    public void setCoverFile(final String coverFile) {
+        mCoverFile = coverFile;
+    }
+
     public void setCoverMaxSize(final int coverMaxSize) {
         mCoverMaxSize = coverMaxSize;
     }
@@ -150,6 +173,7 @@ public class CoverInfo extends AlbumInfo {
     }
 
     public enum STATE {
-        NEW, CACHE_COVER_FETCH, WEB_COVER_FETCH, CREATE_BITMAP, COVER_FOUND, COVER_NOT_FOUND
+        NEW, CACHE_COVER_FETCH, WEB_COVER_FETCH, CREATE_BITMAP, COVER_FOUND, COVER_NOT_FOUND,
+        CANCEL
     }
 }
@@ -25,10 +25,10 @@ import com.namelessdev.mpdroid.cover.ICoverRetriever;
 import com.namelessdev.mpdroid.cover.ItunesCover;
 import com.namelessdev.mpdroid.cover.LastFMCover;
 import com.namelessdev.mpdroid.cover.LocalCover;
+import com.namelessdev.mpdroid.cover.MPDCover;
 import com.namelessdev.mpdroid.cover.MusicBrainzCover;
 import com.namelessdev.mpdroid.cover.SpotifyCover;
 import com.namelessdev.mpdroid.tools.MultiMap;
-import com.namelessdev.mpdroid.tools.Tools;
 
 import android.content.Context;
 import android.content.SharedPreferences;
@@ -45,7 +45,6 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.HttpURLConnection;
@@ -53,20 +52,22 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.text.Normalizer;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.regex.Pattern;
 
 import static android.text.TextUtils.isEmpty;
@@ -88,6 +89,8 @@ public final class CoverManager {
 
     public static final String PREFERENCE_ONLY_WIFI = "enableCoverOnlyOnWifi";
 
+    public static final String PREFERENCE_PARALLEL_FETCH = "enableParallelCoverFetch";
+
     private static final Pattern BLOCK_IN_COMBINING_DIACRITICAL_MARKS =
             Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
 
@@ -97,10 +100,21 @@ public final class CoverManager {
             "disc", "cd", "disque"
     };
 
+    /** The time after which a parallel cover fetch gives up on the retrievers left. */
+    private static final long FETCH_DEADLINE = TimeUnit.SECONDS.toMillis(10L);
+
     private static final String FOLDER_SUFFIX = "/covers/";
 
     private static final int MAX_REQUESTS = 20;
 
+    private static final String NOT_FOUND_COVERS_FILE_NAME = "not-found-covers.bin";
+
+    /** The number of threads looking up covers for parallel cover fetches. */
+    private static final int RETRIEVER_THREADS = 12;
+
+    /** The time after which a parallel cover fetch gives up on a retriever. */
+    private static final long RETRIEVER_TIMEOUT = TimeUnit.SECONDS.toMillis(6L);
+
     private static final String TAG = "CoverManager";
 
     private static final Pattern TEXT_PATTERN = Pattern.compile("[^\\w .-]+");
@@ -119,8 +133,8 @@ public final class CoverManager {
 
     private final ThreadPoolExecutor mCoverFetchExecutor = getCoverFetchExecutor();
 
-    private final MultiMap<CoverInfo, CoverDownloadListener> mHelpersByCoverInfo
-            = new MultiMap<>();
+    /** The listeners of the running requests, by album key. */
+    private final MultiMap<String, CoverDownloadListener> mListenersByAlbumKey = new MultiMap<>();
 
     private final ExecutorService mPriorityCoverFetchExecutor = Executors.newFixedThreadPool(1);
 
@@ -128,8 +142,17 @@ public final class CoverManager {
 
     private final BlockingDeque<CoverInfo> mRequests = new LinkedBlockingDeque<>();
 
-    private final List<CoverInfo> mRunningRequests = Collections
-            .synchronizedList(new ArrayList<CoverInfo>());
+    private final ExecutorService mRetrieverExecutor =
+            Executors.newFixedThreadPool(RETRIEVER_THREADS);
+
+    private final ConcurrentHashMap<String, RetrieverStatistics> mRetrieverStatistics =
+            new ConcurrentHashMap<>();
+
+    /** The running requests by album key, a request for a running album joins its request. */
+    private final ConcurrentHashMap<String, CoverInfo> mRunningRequests =
+            new ConcurrentHashMap<>();
+
+    private final CoverMemoryCache mMemoryCache = new CoverMemoryCache();
 
     private boolean mActive = true;
 
@@ -137,7 +160,9 @@ public final class CoverManager {
 
     private Map<String, String> mCoverUrlMap = null;
 
-    private Set<String> mNotFoundAlbumKeys;
+    private NotFoundCovers mNotFoundCovers = null;
+
+    private volatile boolean mIsParallelFetch = true;
 
     private MultiMap<String, String> mWrongCoverUrlMap = null;
 
@@ -283,7 +308,8 @@ public final class CoverManager {
         return buffer;
     }
 
-    private static byte[] getCoverBytes(final String[] coverUrls, final CoverInfo coverInfo) {
+    private static byte[] getCoverBytes(final String[] coverUrls, final CoverInfo coverInfo,
+            final ICoverRetriever coverRetriever) {
 
         byte[] coverBytes = null;
 
@@ -295,12 +321,12 @@ public final class CoverManager {
                             + ", " + coverInfo.getCachedCoverMaxSize() + ") for "
                             + coverInfo.getAlbum() + " from " + url);
                 }
-                if (coverInfo.getState() == CACHE_COVER_FETCH) {
-
-                    coverBytes = readBytes(new URL("file://" + url).openStream());
-
-                } else if (coverInfo.getState() == WEB_COVER_FETCH) {
-                    coverBytes = download(url);
+                if (coverInfo.getState() == WEB_COVER_FETCH) {
+                    if (coverRetriever instanceof MPDCover) {
+                        coverBytes = ((MPDCover) coverRetriever).getCoverBytes(url);
+                    } else {
+                        coverBytes = download(url);
+                    }
                 }
                 if (coverBytes != null) {
                     if (DEBUG) {
@@ -321,11 +347,7 @@ public final class CoverManager {
                 new LinkedBlockingQueue<Runnable>());
     }
 
-    public static String getCoverFileName(final AlbumInfo albumInfo) {
-        return albumInfo.getKey() + ".jpg";
-    }
-
-    static String getCoverFolder() {
+    public static String getCoverFolder() {
         final File cacheDir = sApp.getExternalCacheDir();
         if (cacheDir == null) {
             return null;
@@ -416,6 +438,32 @@ public final class CoverManager {
         return wrongCovers;
     }
 
+    private static NotFoundCovers loadNotFoundCovers() {
+        NotFoundCovers notFoundCovers = null;
+        ObjectInputStream objectInputStream = null;
+
+        try {
+            final File file = new File(getCoverFolder(), NOT_FOUND_COVERS_FILE_NAME);
+            objectInputStream = new ObjectInputStream(new FileInputStream(file));
+            notFoundCovers = (NotFoundCovers) objectInputStream.readObject();
+            notFoundCovers.prune();
+        } catch (final Exception e) {
+            Log.e(TAG, "Cannot load the not found covers.", e);
+            notFoundCovers = new NotFoundCovers();
+        } finally {
+            if (objectInputStream != null) {
+                try {
+                    objectInputStream.close();
+                } catch (final IOException e) {
+                    Log.e(TAG, "Cannot close the not found covers file.", e);
+
+                }
+            }
+        }
+
+        return notFoundCovers;
+    }
+
     private static MultiMap<String, String> loadWrongCovers() {
         MultiMap<String, String> wrongCovers = null;
         ObjectInputStream objectInputStream = null;
@@ -441,31 +489,6 @@ public final class CoverManager {
         return wrongCovers;
     }
 
-    static byte[] readBytes(final InputStream inputStream) throws IOException {
-        try {
-            // this dynamically extends to take the bytes you read
-            final ByteArrayOutputStream byteBuffer = new ByteArrayOutputStream();
-
-            // this is storage overwritten on each iteration with bytes
-            final int bufferSize = 1024;
-            final byte[] buffer = new byte[bufferSize];
-
-            // we need to know how may bytes were read to write them to the
-            // byteBuffer
-            int len;
-            while ((len = inputStream.read(buffer)) != -1) {
-                byteBuffer.write(buffer, 0, len);
-            }
-
-            // and then we can return your byte array.
-            return byteBuffer.toByteArray();
-        } finally {
-            if (inputStream != null) {
-                inputStream.close();
-            }
-        }
-    }
-
     // Remove disc references from albums (like CD1, disc02 ...)
     static String removeDiscReference(final String album) {
         String cleanedAlbum = album.toLowerCase();
@@ -542,7 +565,41 @@ public final class CoverManager {
             Log.d(TAG, "Looking for cover with artist=" + coverInfo.getArtist() + ", album="
                     + coverInfo.getAlbum());
         }
-        mRequests.add(coverInfo);
+
+        /** A cover decoded at this size is served right away, without queuing the request. */
+        final Bitmap bitmap;
+        if (coverInfo.isValid() && coverInfo.getListener() != null) {
+            bitmap = mMemoryCache.getBitmap(coverInfo);
+        } else {
+            bitmap = null;
+        }
+
+        if (bitmap == null) {
+            mRequests.add(coverInfo);
+        } else {
+            if (DEBUG) {
+                Log.d(TAG, "Cover found in memory for " + coverInfo.getAlbum());
+            }
+            coverInfo.setBitmap(new Bitmap[]{
+                    bitmap
+            });
+            coverInfo.setState(CoverInfo.STATE.COVER_FOUND);
+            coverInfo.getListener().onCoverDownloaded(coverInfo);
+        }
+    }
+
+    /**
+     * Withdraws the listener of a cover request, as its view went on to another album or out
+     * of sight. The request itself is cancelled once it has no listener left: a web lookup not
+     * started yet is dropped, and a cover read from the cache is not decoded.
+     *
+     * @param coverInfo The cover request, as given to {@link #addCoverRequest(CoverInfo)}.
+     */
+    public void cancelCoverRequest(final CoverInfo coverInfo) {
+        final CoverInfo cancellation = new CoverInfo(coverInfo);
+
+        cancellation.setState(CoverInfo.STATE.CANCEL);
+        mRequests.add(cancellation);
     }
 
     public void clear() {
@@ -550,6 +607,7 @@ public final class CoverManager {
         if (cachedCover != null) {
             cachedCover.clear();
         }
+        mMemoryCache.clear();
         initializeCoverData();
     }
 
@@ -559,9 +617,10 @@ public final class CoverManager {
         if (cachedCover != null) {
             cachedCover.delete(albumInfo);
         }
+        mMemoryCache.remove(albumInfo);
         mCoverUrlMap.remove(albumInfo);
         mWrongCoverUrlMap.remove(albumInfo.getKey());
-        mNotFoundAlbumKeys.remove(albumInfo.getKey());
+        mNotFoundCovers.remove(albumInfo.getKey());
     }
 
     @Override
@@ -580,14 +639,45 @@ public final class CoverManager {
         return null;
     }
 
-    private CoverInfo getExistingRequest(final CoverInfo coverInfo) {
-        return mRunningRequests.get(mRunningRequests.indexOf(coverInfo));
+    /**
+     * Gets the lookup statistics of a retriever, creating them if required.
+     *
+     * @param coverRetriever The cover retriever.
+     * @return The lookup statistics of the retriever.
+     */
+    private RetrieverStatistics getRetrieverStatistics(final ICoverRetriever coverRetriever) {
+        final String name = coverRetriever.getName();
+        RetrieverStatistics statistics = mRetrieverStatistics.get(name);
+
+        if (statistics == null) {
+            final RetrieverStatistics created =
+                    new RetrieverStatistics(name, RETRIEVER_TIMEOUT / 2L);
+
+            statistics = mRetrieverStatistics.putIfAbsent(name, created);
+            if (statistics == null) {
+                statistics = created;
+            }
+        }
+
+        return statistics;
     }
 
     private void initializeCoverData() {
         mWrongCoverUrlMap = loadWrongCovers();
         mCoverUrlMap = loadCovers();
-        mNotFoundAlbumKeys = new HashSet<>();
+        mNotFoundCovers = loadNotFoundCovers();
+    }
+
+    /**
+     * Checks if a retriever is not to be asked for a cover, as it did not have it last time.
+     *
+     * @param albumInfo      The album.
+     * @param coverRetriever The retriever.
+     * @return True if the retriever is backing off from this album, false otherwise.
+     */
+    private boolean isBackingOff(final AlbumInfo albumInfo, final ICoverRetriever coverRetriever) {
+        return !coverRetriever.isCoverLocal()
+                && mNotFoundCovers.isBackingOff(albumInfo.getKey(), coverRetriever.getName());
     }
 
     // The gracenote URLs change at every request. We match for this provider on
@@ -617,14 +707,42 @@ public final class CoverManager {
         return true;
     }
 
+    /**
+     * Checks if none of the remote retrievers is to be asked for a cover, as none of them had
+     * it last time.
+     *
+     * @param albumInfo The album.
+     * @return True if every remote retriever is backing off from this album, false otherwise.
+     */
+    private boolean isNotFound(final AlbumInfo albumInfo) {
+        boolean hasRemoteRetriever = false;
+        boolean isNotFound = true;
+
+        for (final ICoverRetriever coverRetriever : mCoverRetrievers) {
+            if (coverRetriever != null && !coverRetriever.isCoverLocal()) {
+                hasRemoteRetriever = true;
+                if (!isBackingOff(albumInfo, coverRetriever)) {
+                    isNotFound = false;
+                    break;
+                }
+            }
+        }
+
+        return hasRemoteRetriever && isNotFound;
+    }
+
     private void logQueues() {
         if (DEBUG) {
             Log.d(TAG, "requests queue size : " + mRequests.size());
             Log.d(TAG, "running request queue size : " + mRunningRequests.size());
-            for (final CoverInfo coverInfo : mRunningRequests) {
+            for (final CoverInfo coverInfo : mRunningRequests.values()) {
                 Log.d(TAG, "Running request : " + coverInfo);
             }
-            Log.d(TAG, "helpersByCoverInfo map size : " + mHelpersByCoverInfo.size());
+            Log.d(TAG, "listenersByAlbumKey map size : " + mListenersByAlbumKey.size());
+            Log.d(TAG, "not found covers size : " + mNotFoundCovers.size());
+            for (final RetrieverStatistics statistics : mRetrieverStatistics.values()) {
+                Log.d(TAG, "Retriever " + statistics);
+            }
         }
     }
 
@@ -658,6 +776,7 @@ public final class CoverManager {
                 mCoverUrlMap.remove(albumInfo.getKey());
                 cacheCoverRetriever.delete(albumInfo);
             }
+            mMemoryCache.remove(albumInfo);
         } else {
             Log.w(TAG, "Cannot blacklist the cover for album : " + albumInfo
                     + " because no cover URL has been recorded for it");
@@ -667,9 +786,9 @@ public final class CoverManager {
 
     private void notifyListeners(CoverInfo coverInfo) {
 
-        if (mHelpersByCoverInfo.containsKey(coverInfo)) {
-            final Iterator<CoverDownloadListener> listenerIterator = mHelpersByCoverInfo
-                    .get(coverInfo)
+        if (mListenersByAlbumKey.containsKey(coverInfo.getKey())) {
+            final Iterator<CoverDownloadListener> listenerIterator = mListenersByAlbumKey
+                    .get(coverInfo.getKey())
                     .iterator();
             while (listenerIterator.hasNext()) {
                 final CoverDownloadListener listener = listenerIterator.next();
@@ -685,21 +804,14 @@ public final class CoverManager {
                         // bitmaps between views because of the recycling)
                         if (listenerIterator.hasNext()) {
                             coverInfo = new CoverInfo(coverInfo);
-                            final Bitmap copyBitmap = coverInfo.getBitmap()[0].copy(
-                                    coverInfo.getBitmap()[0].getConfig(),
-                                    coverInfo.getBitmap()[0].isMutable());
+                            final Bitmap copyBitmap =
+                                    CoverBitmapPool.getInstance().copy(coverInfo.getBitmap()[0]);
                             coverInfo.setBitmap(new Bitmap[]{
                                     copyBitmap
                             });
                         }
                         break;
                     case COVER_NOT_FOUND:
-                        // Re-try the cover art download
-                        // if the request has been given up or if the path is
-                        // missing (like in artist view)
-                        if (!coverInfo.isRequestGivenUp() && !isEmpty(coverInfo.getPath())) {
-                            mNotFoundAlbumKeys.add(coverInfo.getKey());
-                        }
                         removeRequest(coverInfo);
                         if (DEBUG) {
                             Log.d(TAG, "Cover not found for " + coverInfo.getAlbum());
@@ -716,9 +828,42 @@ public final class CoverManager {
         }
     }
 
+    /**
+     * Removes the listener of a cancellation from its album request, cancelling the request if
+     * no listener is left. The request is dropped right away if its web lookup is still queued,
+     * otherwise once it comes back, unless a new listener joins it in the meantime.
+     *
+     * @param cancellation The cancellation, in the {@code CANCEL} state.
+     */
+    private void removeListener(final CoverInfo cancellation) {
+        final List<CoverDownloadListener> listeners =
+                mListenersByAlbumKey.get(cancellation.getKey());
+        final CoverInfo runningRequest = mRunningRequests.get(cancellation.getKey());
+
+        if (listeners != null) {
+            listeners.remove(cancellation.getListener());
+        }
+
+        if (runningRequest != null && (listeners == null || listeners.isEmpty())) {
+            runningRequest.setCancelled(true);
+
+            for (final Runnable queued : mCoverFetchExecutor.getQueue()) {
+                if (queued instanceof FetchCoverTask
+                        && ((FetchCoverTask) queued).mCoverInfo == runningRequest
+                        && mCoverFetchExecutor.remove(queued)) {
+                    if (DEBUG) {
+                        Log.d(TAG, "Dropped the queued lookup for " + runningRequest.getAlbum());
+                    }
+                    removeRequest(runningRequest);
+                    break;
+                }
+            }
+        }
+    }
+
     private void removeRequest(final CoverInfo coverInfo) {
-        mRunningRequests.remove(coverInfo);
-        mHelpersByCoverInfo.remove(coverInfo);
+        mRunningRequests.remove(coverInfo.getKey());
+        mListenersByAlbumKey.remove(coverInfo.getKey());
         logQueues();
     }
 
@@ -726,6 +871,10 @@ public final class CoverManager {
         saveCovers(COVERS_FILE_NAME, mCoverUrlMap);
     }
 
+    private void saveNotFoundCovers() {
+        saveCovers(NOT_FOUND_COVERS_FILE_NAME, mNotFoundCovers);
+    }
+
     private void saveWrongCovers() {
         saveCovers(WRONG_COVERS_FILE_NAME, mWrongCoverUrlMap);
     }
@@ -746,6 +895,9 @@ public final class CoverManager {
                 case LOCAL:
                     mCoverRetrievers[i] = new LocalCover();
                     break;
+                case MPD:
+                    mCoverRetrievers[i] = new MPDCover();
+                    break;
                 case GRACENOTE:
                     if (GracenoteCover.isClientIdAvailable()) {
                         mCoverRetrievers[i] = new GracenoteCover();
@@ -774,10 +926,12 @@ public final class CoverManager {
         final SharedPreferences settings = PreferenceManager.getDefaultSharedPreferences(sApp);
         final List<CoverRetrievers> enabledRetrievers = new ArrayList<>();
         // There is a cover provider order, respect it.
-        // Cache -> MPD Server -> LastFM
+        // Cache -> MPD -> HTTP Server -> LastFM
         if (settings.getBoolean(PREFERENCE_CACHE, true)) {
             enabledRetrievers.add(CoverRetrievers.CACHE);
         }
+        // The media server is already connected to, this is not a web lookup.
+        enabledRetrievers.add(CoverRetrievers.MPD);
         if (!(settings.getBoolean(PREFERENCE_ONLY_WIFI, false)) | (isWifi())) {
             if (settings.getBoolean(PREFERENCE_LOCALSERVER, false)) {
                 enabledRetrievers.add(CoverRetrievers.LOCAL);
@@ -793,6 +947,7 @@ public final class CoverManager {
             }
         }
         setCoverRetrievers(enabledRetrievers);
+        mIsParallelFetch = settings.getBoolean(PREFERENCE_PARALLEL_FETCH, true);
     }
 
     private void stopExecutors() {
@@ -804,6 +959,7 @@ public final class CoverManager {
             mCreateBitmapExecutor.shutdown();
             mCoverFetchExecutor.shutdown();
             mCacheCoverFetchExecutor.shutdown();
+            mRetrieverExecutor.shutdownNow();
         } catch (final Exception ex) {
             Log.e(TAG, "Failed to shutdown cover executors.", ex);
         }
@@ -814,6 +970,7 @@ public final class CoverManager {
         CACHE,
         LASTFM,
         LOCAL,
+        MPD,
         GRACENOTE,
         DEEZER,
         MUSICBRAINZ,
@@ -840,81 +997,67 @@ public final class CoverManager {
                 Log.d(TAG, "Making cover bitmap for " + mCoverInfo.getAlbum());
             }
 
-            if (mCoverInfo.getCoverRetriever().isCoverLocal()) {
+            if (mCoverInfo.getCoverFile() != null) {
                 int maxSize = mCoverInfo.getCoverMaxSize();
                 if (mCoverInfo.getCachedCoverMaxSize() != CoverInfo.MAX_SIZE) {
                     maxSize = mCoverInfo.getCachedCoverMaxSize();
                 }
-                if (maxSize == CoverInfo.MAX_SIZE) {
-                    bitmaps = new Bitmap[]{
-                            BitmapFactory.decodeByteArray(mCoverInfo.getCoverBytes(), 0,
-                                    mCoverInfo.getCoverBytes().length)
-                    };
-                    mCoverInfo.setBitmap(bitmaps);
-                } else {
-                    bitmaps = new Bitmap[]{
-                            Tools.decodeSampledBitmapFromBytes(mCoverInfo.getCoverBytes(), maxSize,
-                                    maxSize, false)
-                    };
-                    mCoverInfo.setBitmap(bitmaps);
+
+                Bitmap bitmap = null;
+                try {
+                    bitmap = CoverDecoder.decode(mCoverInfo.getCoverFile(), maxSize);
+                } catch (final IOException e) {
+                    Log.e(TAG, "Failed to read the cached cover.", e);
                 }
+                bitmaps = new Bitmap[]{
+                        bitmap
+                };
+                mCoverInfo.setBitmap(bitmaps);
+                mCoverInfo.setCoverFile(null);
             } else {
-                final BitmapFactory.Options o = new BitmapFactory.Options();
-                o.inJustDecodeBounds = true;
-                BitmapFactory.decodeByteArray(mCoverInfo.getCoverBytes(), 0,
-                        mCoverInfo.getCoverBytes().length, o);
-
-                int scale = 1;
-                if (mCoverInfo.getCoverMaxSize() != CoverInfo.MAX_SIZE
-                        || o.outHeight > mCoverInfo.getCoverMaxSize()
-                        || o.outWidth > mCoverInfo.getCoverMaxSize()) {
-                    scale = (int) Math.pow(2.0,
-                            (double) (int) Math.round(Math.log(
-                                    (double) mCoverInfo.getCoverMaxSize() /
-                                            (double) Math.max(o.outHeight, o.outWidth)) / Math
-                                    .log(0.5)));
+                final byte[] coverBytes = mCoverInfo.getCoverBytes();
+                final BitmapFactory.Options bounds = CoverDecoder.decodeBounds(coverBytes);
+                final int maxSize = mCoverInfo.getCoverMaxSize();
+                final boolean isSampled = CoverDecoder.getSampleSize(bounds, maxSize) != 1;
+                final CachedCover cacheRetriever = getCacheRetriever();
+                final boolean isSaved = cacheRetriever != null
+                        && !mCoverInfo.getCoverRetriever().equals(cacheRetriever);
+
+                /** The full size cover is only decoded to be saved, or if it is the one asked. */
+                final Bitmap fullBitmap;
+                if (isSaved || !isSampled) {
+                    fullBitmap = CoverDecoder.decode(coverBytes, bounds, CoverInfo.MAX_SIZE);
+                } else {
+                    fullBitmap = null;
                 }
 
-                o.inSampleSize = 1;
-                o.inJustDecodeBounds = false;
-                final Bitmap fullBmp = BitmapFactory.decodeByteArray(mCoverInfo.getCoverBytes(), 0,
-                        mCoverInfo.getCoverBytes().length, o);
-                final Bitmap bmp;
-                if (scale == 1) {
-                    // This can cause some problem (a bitmap being freed will
-                    // free both references)
-                    // But the only use is to save it in the cache so it's okay.
-                    bmp = fullBmp;
+                final Bitmap bitmap;
+                if (isSampled) {
+                    bitmap = CoverDecoder.decode(coverBytes, bounds, maxSize);
                 } else {
-                    o.inSampleSize = scale;
-                    o.inJustDecodeBounds = false;
-                    bmp = BitmapFactory.decodeByteArray(mCoverInfo.getCoverBytes(), 0,
-                            mCoverInfo.getCoverBytes().length, o);
+                    bitmap = fullBitmap;
                 }
+
                 bitmaps = new Bitmap[]{
-                        bmp, fullBmp
+                        bitmap
                 };
                 mCoverInfo.setBitmap(bitmaps);
                 mCoverInfo.setCoverBytes(null);
 
-                final ICoverRetriever cacheRetriever;
-                cacheRetriever = getCacheRetriever();
-                if (cacheRetriever != null && !mCoverInfo.getCoverRetriever()
-                        .equals(cacheRetriever)) {
+                if (isSaved && fullBitmap != null) {
                     if (DEBUG) {
                         Log.i(TAG, "Saving cover art to cache");
                     }
-                    // Save the fullsize bitmap
-                    getCacheRetriever().save(mCoverInfo, fullBmp);
+                    cacheRetriever.save(mCoverInfo, fullBitmap);
 
-                    // Release the cover immediately if not used
-                    if (!bitmaps[0].equals(bitmaps[1])) {
-                        bitmaps[1].recycle();
-                        bitmaps[1] = null;
+                    // Hand the full size cover over to be decoded into again if not used
+                    if (fullBitmap != bitmap) {
+                        CoverBitmapPool.getInstance().put(fullBitmap);
                     }
                 }
             }
 
+            mMemoryCache.putBitmap(mCoverInfo, bitmaps[0]);
             mRequests.addLast(mCoverInfo);
         }
 
@@ -931,119 +1074,184 @@ public final class CoverManager {
             mCoverInfo = coverInfo;
         }
 
-        @Override
-        public void run() {
-            String[] coverUrls;
-            boolean remote;
-            boolean local;
-            boolean canStart = true;
-            byte[] coverBytes;
+        /**
+         * Queries the remote retrievers concurrently, each given up on after
+         * {@code RETRIEVER_TIMEOUT}, and all after {@code FETCH_DEADLINE}. The first cover found
+         * in order of preference is taken, demoted retrievers being preferred last, and the
+         * remaining lookups are cancelled.
+         */
+        private void fetchInParallel() {
+            final List<ICoverRetriever> coverRetrievers = getRemainingRetrievers();
+            final List<RetrieverTask> tasks = new ArrayList<>(coverRetrievers.size());
+            final List<Future<byte[]>> lookups = new ArrayList<>(coverRetrievers.size());
+            final long start = System.currentTimeMillis();
+            final long deadline = start + FETCH_DEADLINE;
+            RetrieverTask found = null;
+
+            /** Stable sort, the demoted retrievers keep their relative order. */
+            for (final ICoverRetriever coverRetriever : coverRetrievers) {
+                if (!getRetrieverStatistics(coverRetriever).isDemoted()) {
+                    tasks.add(new RetrieverTask(mCoverInfo, coverRetriever, true));
+                }
+            }
+            for (final ICoverRetriever coverRetriever : coverRetrievers) {
+                if (getRetrieverStatistics(coverRetriever).isDemoted()) {
+                    tasks.add(new RetrieverTask(mCoverInfo, coverRetriever, true));
+                }
+            }
 
-            if (mCoverInfo.getState() != WEB_COVER_FETCH
-                    || mCoverFetchExecutor.getQueue().size() < MAX_REQUESTS) {
+            for (final RetrieverTask task : tasks) {
+                lookups.add(mRetrieverExecutor.submit(task));
+            }
 
-                // If the coverretriever is defined in the coverInfo
-                // that means that a previous cover fetch failed with this
-                // retriever
-                // We just start after this retriever to try a cover.
-                if (mCoverInfo.getCoverRetriever() != null) {
-                    canStart = false;
+            for (int i = 0; found == null && i < tasks.size(); i++) {
+                final RetrieverTask task = tasks.get(i);
+                final long timeout = Math.min(start + RETRIEVER_TIMEOUT, deadline)
+                        - System.currentTimeMillis();
+                byte[] coverBytes = null;
+
+                try {
+                    coverBytes = lookups.get(i).get(Math.max(timeout, 0L), TimeUnit.MILLISECONDS);
+                } catch (final TimeoutException ignored) {
+                    lookups.get(i).cancel(true);
+                    getRetrieverStatistics(task.mCoverRetriever).onTimeout();
+                    if (DEBUG) {
+                        Log.d(TAG, "Gave up on " + task.mCoverRetriever.getName() + " for "
+                                + mCoverInfo.getAlbum());
+                    }
+                } catch (final ExecutionException e) {
+                    Log.e(TAG, "Fetch cover failure.", e.getCause());
+                } catch (final InterruptedException ignored) {
+                    break;
                 }
 
-                for (final ICoverRetriever coverRetriever : mCoverRetrievers) {
-                    try {
+                if (coverBytes != null) {
+                    found = task;
+                    mCoverInfo.setCoverRetriever(task.mCoverRetriever);
+                    mCoverUrlMap.put(mCoverInfo.getKey(), task.mCoverUrl);
+                    mCoverInfo.setCoverBytes(coverBytes);
+                }
+            }
 
-                        if (coverRetriever == null) {
-                            continue;
-                        }
+            for (final Future<byte[]> lookup : lookups) {
+                lookup.cancel(true);
+            }
+        }
 
-                        if (canStart) {
+        /**
+         * Queries the retrievers for the current state of the request one after another, in
+         * order of preference, until a cover is found.
+         */
+        private void fetchInSequence() {
+            boolean remote;
+            boolean local;
+            boolean canStart = true;
+            byte[] coverBytes;
 
-                            remote = mCoverInfo.getState() == WEB_COVER_FETCH
-                                    && !coverRetriever.isCoverLocal();
-                            local = mCoverInfo.getState() == CACHE_COVER_FETCH
-                                    && coverRetriever.isCoverLocal();
-                            if (remote || local) {
-                                if (DEBUG) {
-                                    Log.d(TAG, "Looking for cover "
-                                            + mCoverInfo.getArtist() + ", " + mCoverInfo.getAlbum()
-                                            + " with " + coverRetriever.getName());
-                                }
-                                mCoverInfo.setCoverRetriever(coverRetriever);
-                                coverUrls = coverRetriever.getCoverUrl(mCoverInfo);
-
-                                // Normalize (remove special characters ...) the
-                                // artist and album names if no result has been
-                                // found.
-                                if (!(coverUrls != null && coverUrls.length > 0)
-                                        && remote
-                                        && !(coverRetriever.getName()
-                                        .equals(LocalCover.RETRIEVER_NAME))) {
-                                    final AlbumInfo normalizedAlbumInfo = getNormalizedAlbumInfo(
-                                            mCoverInfo);
-                                    if (!normalizedAlbumInfo.equals(mCoverInfo)) {
-                                        if (DEBUG) {
-                                            Log.d(TAG,
-                                                    "Retry to fetch cover with normalized names for "
-                                                            + normalizedAlbumInfo);
-                                        }
-                                        coverUrls = coverRetriever.getCoverUrl(normalizedAlbumInfo);
-                                    }
-                                }
+            // If the coverretriever is defined in the coverInfo
+            // that means that a previous cover fetch failed with this
+            // retriever
+            // We just start after this retriever to try a cover.
+            if (mCoverInfo.getCoverRetriever() != null) {
+                canStart = false;
+            }
 
-                                if (coverUrls != null && coverUrls.length > 0) {
-                                    final List<String> wrongUrlsForCover =
-                                            mWrongCoverUrlMap.get(mCoverInfo.getKey());
-
-                                    if (wrongUrlsForCover == null
-                                            || !isBlacklistedCoverUrl(coverUrls[0],
-                                            mCoverInfo.getKey())) {
-
-                                        if (DEBUG) {
-                                            Log.d(TAG, "Cover found for  " + mCoverInfo.getAlbum()
-                                                    + " with " + coverRetriever.getName()
-                                                    + " : " + coverUrls[0]);
-                                        }
-                                        coverBytes = getCoverBytes(coverUrls, mCoverInfo);
-                                        if (coverBytes != null && coverBytes.length > 0) {
-                                            if (!coverRetriever.isCoverLocal()) {
-                                                mCoverUrlMap.put(mCoverInfo.getKey(), coverUrls[0]);
-                                            }
-                                            mCoverInfo.setCoverBytes(coverBytes);
-                                            mRequests.addLast(mCoverInfo);
-                                            return;
-                                        } else {
-                                            if (DEBUG) {
-                                                Log.d(TAG, "The cover URL for album "
-                                                        + mCoverInfo.getAlbum()
-                                                        + " did not work : "
-                                                        + coverRetriever.getName());
-                                            }
-                                        }
-
-                                    } else {
-                                        if (DEBUG) {
-                                            Log.d(TAG, "Blacklisted cover url found for "
-                                                    + mCoverInfo.getAlbum() + " : "
-                                                    + coverUrls[0]);
-                                        }
-                                    }
-                                }
+            for (final ICoverRetriever coverRetriever : mCoverRetrievers) {
+                try {
 
-                            }
-                        } else {
+                    if (coverRetriever == null) {
+                        continue;
+                    }
+
+                    if (canStart) {
+
+                        remote = mCoverInfo.getState() == WEB_COVER_FETCH
+                                && !coverRetriever.isCoverLocal();
+                        local = mCoverInfo.getState() == CACHE_COVER_FETCH
+                                && coverRetriever.isCoverLocal();
+                        if (remote && isBackingOff(mCoverInfo, coverRetriever)) {
                             if (DEBUG) {
                                 Log.d(TAG, "Bypassing the retriever " + coverRetriever.getName()
                                         + " for album " + mCoverInfo.getAlbum()
-                                        + ", already asked.");
+                                        + ", not found last time.");
                             }
-                            canStart = coverRetriever.equals(mCoverInfo.getCoverRetriever());
+                        } else if (local) {
+                            final String[] coverFiles = coverRetriever.getCoverUrl(mCoverInfo);
+
+                            mCoverInfo.setCoverRetriever(coverRetriever);
+                            if (coverFiles != null && coverFiles.length > 0) {
+                                /** The file is decoded from disk, not read into memory first. */
+                                mCoverInfo.setCoverFile(coverFiles[0]);
+                                return;
+                            }
+                        } else if (remote) {
+                            final RetrieverTask task =
+                                    new RetrieverTask(mCoverInfo, coverRetriever, remote);
+
+                            mCoverInfo.setCoverRetriever(coverRetriever);
+                            coverBytes = task.call();
+                            if (coverBytes != null) {
+                                if (!coverRetriever.isCoverLocal()) {
+                                    mCoverUrlMap.put(mCoverInfo.getKey(), task.mCoverUrl);
+                                }
+                                mCoverInfo.setCoverBytes(coverBytes);
+                                return;
+                            }
+                        }
+                    } else {
+                        if (DEBUG) {
+                            Log.d(TAG, "Bypassing the retriever " + coverRetriever.getName()
+                                    + " for album " + mCoverInfo.getAlbum()
+                                    + ", already asked.");
                         }
+                        canStart = coverRetriever.equals(mCoverInfo.getCoverRetriever());
+                    }
+
+                } catch (final Exception e) {
+                    Log.e(TAG, "Fetch cover failure.", e);
+                }
+
+            }
+        }
 
-                    } catch (final Exception e) {
-                        Log.e(TAG, "Fetch cover failure.", e);
+        /**
+         * Gets the remote retrievers not yet asked for this request, in order of preference.
+         *
+         * @return The remote retrievers to ask.
+         */
+        private List<ICoverRetriever> getRemainingRetrievers() {
+            final List<ICoverRetriever> coverRetrievers = new ArrayList<>(mCoverRetrievers.length);
+            boolean canStart = mCoverInfo.getCoverRetriever() == null;
+
+            for (final ICoverRetriever coverRetriever : mCoverRetrievers) {
+                if (coverRetriever != null) {
+                    if (canStart && !coverRetriever.isCoverLocal()) {
+                        if (!isBackingOff(mCoverInfo, coverRetriever)) {
+                            coverRetrievers.add(coverRetriever);
+                        }
+                    } else if (!canStart) {
+                        canStart = coverRetriever.equals(mCoverInfo.getCoverRetriever());
                     }
+                }
+            }
 
+            return coverRetrievers;
+        }
+
+        @Override
+        public void run() {
+            if (mCoverInfo.getState() == WEB_COVER_FETCH && mCoverInfo.isCancelled()) {
+                /**
+                 * Back to the state before the web lookup, so the request goes for it again if
+                 * a new listener joins before the request is dropped.
+                 */
+                mCoverInfo.setState(CACHE_COVER_FETCH);
+            } else if (mCoverInfo.getState() != WEB_COVER_FETCH
+                    || mCoverFetchExecutor.getQueue().size() < MAX_REQUESTS) {
+                if (mCoverInfo.getState() == WEB_COVER_FETCH && mIsParallelFetch) {
+                    fetchInParallel();
+                } else {
+                    fetchInSequence();
                 }
             } else {
                 mCoverInfo.setRequestGivenUp(true);
@@ -1071,23 +1279,39 @@ public final class CoverManager {
                         return;
                     }
 
+                    /**
+                     * A cancelled request is dropped when it comes back, unless it brings a
+                     * downloaded cover, which is still decoded and saved to the cache.
+                     */
+                    if (coverInfo.isCancelled() && (coverInfo.getState() != WEB_COVER_FETCH
+                            || coverInfo.getCoverBytes() == null
+                            || coverInfo.getCoverBytes().length == 0)) {
+                        if (DEBUG) {
+                            Log.d(TAG, "Dropped the cancelled request for "
+                                    + coverInfo.getAlbum());
+                        }
+                        removeRequest(coverInfo);
+                        continue;
+                    }
+
                     switch (coverInfo.getState()) {
                         case NEW:
                             // Do not create a new request if a similar one
                             // already exists
                             // Just register the new cover listener and update
                             // the request priority.
-                            mHelpersByCoverInfo.put(coverInfo, coverInfo.getListener());
-                            if (mRunningRequests.contains(coverInfo)) {
-                                final CoverInfo existingRequest = getExistingRequest(coverInfo);
+                            mListenersByAlbumKey.put(coverInfo.getKey(), coverInfo.getListener());
+                            final CoverInfo existingRequest =
+                                    mRunningRequests.get(coverInfo.getKey());
+                            if (existingRequest != null) {
+                                existingRequest.setCancelled(false);
                                 existingRequest.setPriority(existingRequest.isPriority()
                                         || coverInfo.isPriority());
                                 notifyListeners(existingRequest);
                                 break;
                             } else {
 
-                                if (!coverInfo.isValid()
-                                        || mNotFoundAlbumKeys.contains(coverInfo.getKey())) {
+                                if (!coverInfo.isValid() || isNotFound(coverInfo)) {
                                     if (DEBUG) {
                                         Log.d(TAG, "Incomplete cover request or already not found "
                                                 + "cover with artist=" + coverInfo.getArtist()
@@ -1096,7 +1320,7 @@ public final class CoverManager {
                                     coverInfo.setState(CoverInfo.STATE.COVER_NOT_FOUND);
                                     notifyListeners(coverInfo);
                                 } else {
-                                    mRunningRequests.add(coverInfo);
+                                    mRunningRequests.put(coverInfo.getKey(), coverInfo);
                                     coverInfo.setState(CACHE_COVER_FETCH);
                                     mCacheCoverFetchExecutor.submit(new FetchCoverTask(coverInfo));
                                 }
@@ -1104,15 +1328,14 @@ public final class CoverManager {
 
                             }
                         case CACHE_COVER_FETCH:
-                            if (coverInfo.getCoverBytes() == null
-                                    || coverInfo.getCoverBytes().length == 0) {
+                            if (coverInfo.getCoverFile() == null) {
                                 coverInfo.setState(WEB_COVER_FETCH);
                                 notifyListeners(coverInfo);
                                 if (coverInfo.isPriority()) {
                                     mPriorityCoverFetchExecutor
                                             .submit(new FetchCoverTask(coverInfo));
                                 } else {
-                                    mCoverFetchExecutor.submit(new FetchCoverTask(coverInfo));
+                                    mCoverFetchExecutor.execute(new FetchCoverTask(coverInfo));
                                 }
                                 break;
                             } else {
@@ -1145,12 +1368,15 @@ public final class CoverManager {
                                                     + coverInfo.getCoverRetriever()
                                                     + ", trying the next ones ...");
                                 }
-                                mCoverFetchExecutor.submit(new FetchCoverTask(coverInfo));
+                                mCoverFetchExecutor.execute(new FetchCoverTask(coverInfo));
                             } else {
                                 coverInfo.setState(CoverInfo.STATE.COVER_NOT_FOUND);
                                 notifyListeners(coverInfo);
                             }
                             break;
+                        case CANCEL:
+                            removeListener(coverInfo);
+                            break;
                         default:
                             Log.e(TAG, "Unknown request : " + coverInfo);
                             coverInfo.setState(CoverInfo.STATE.COVER_NOT_FOUND);
@@ -1161,6 +1387,7 @@ public final class CoverManager {
                     if (mRunningRequests.isEmpty()) {
                         saveCovers();
                         saveWrongCovers();
+                        saveNotFoundCovers();
                     }
 
                 } catch (final Exception e) {
@@ -1172,4 +1399,115 @@ public final class CoverManager {
 
         }
     }
+
+    /**
+     * Looks for the cover of a request with a single retriever, recording the hit rate and
+     * latency of the retriever.
+     */
+    private class RetrieverTask implements Callable<byte[]> {
+
+        private final CoverInfo mCoverInfo;
+
+        private final ICoverRetriever mCoverRetriever;
+
+        private final boolean mIsRemote;
+
+        /** The URL of the cover, once found. */
+        private String mCoverUrl;
+
+        private RetrieverTask(final CoverInfo coverInfo, final ICoverRetriever coverRetriever,
+                final boolean isRemote) {
+            super();
+
+            mCoverInfo = coverInfo;
+            mCoverRetriever = coverRetriever;
+            mIsRemote = isRemote;
+        }
+
+        /**
+         * Looks for the cover.
+         *
+         * @return The cover, or null if the retriever has none for this request.
+         * @throws Exception Thrown upon lookup failure.
+         */
+        @Override
+        public byte[] call() throws Exception {
+            final long start = System.currentTimeMillis();
+            byte[] coverBytes = null;
+            String[] coverUrls;
+
+            if (DEBUG) {
+                Log.d(TAG, "Looking for cover "
+                        + mCoverInfo.getArtist() + ", " + mCoverInfo.getAlbum()
+                        + " with " + mCoverRetriever.getName());
+            }
+            coverUrls = mCoverRetriever.getCoverUrl(mCoverInfo);
+
+            // Normalize (remove special characters ...) the
+            // artist and album names if no result has been
+            // found.
+            if (!(coverUrls != null && coverUrls.length > 0)
+                    && mIsRemote
+                    && !(mCoverRetriever.getName()
+                    .equals(LocalCover.RETRIEVER_NAME))
+                    && !(mCoverRetriever.getName()
+                    .equals(MPDCover.RETRIEVER_NAME))) {
+                final AlbumInfo normalizedAlbumInfo = getNormalizedAlbumInfo(mCoverInfo);
+                if (!normalizedAlbumInfo.equals(mCoverInfo)) {
+                    if (DEBUG) {
+                        Log.d(TAG, "Retry to fetch cover with normalized names for "
+                                + normalizedAlbumInfo);
+                    }
+                    coverUrls = mCoverRetriever.getCoverUrl(normalizedAlbumInfo);
+                }
+            }
+
+            if (coverUrls != null && coverUrls.length > 0) {
+                final List<String> wrongUrlsForCover = mWrongCoverUrlMap.get(mCoverInfo.getKey());
+
+                if (wrongUrlsForCover == null
+                        || !isBlacklistedCoverUrl(coverUrls[0], mCoverInfo.getKey())) {
+
+                    if (DEBUG) {
+                        Log.d(TAG, "Cover found for  " + mCoverInfo.getAlbum()
+                                + " with " + mCoverRetriever.getName() + " : " + coverUrls[0]);
+                    }
+                    coverBytes = getCoverBytes(coverUrls, mCoverInfo, mCoverRetriever);
+                    if (coverBytes != null && coverBytes.length > 0) {
+                        mCoverUrl = coverUrls[0];
+                    } else {
+                        coverBytes = null;
+                        if (DEBUG) {
+                            Log.d(TAG, "The cover URL for album " + mCoverInfo.getAlbum()
+                                    + " did not work : " + mCoverRetriever.getName());
+                        }
+                    }
+
+                } else {
+                    if (DEBUG) {
+                        Log.d(TAG, "Blacklisted cover url found for "
+                                + mCoverInfo.getAlbum() + " : " + coverUrls[0]);
+                    }
+                }
+            }
+
+            /** A lookup cancelled by a parallel fetch is recorded as a timeout, or not needed. */
+            if (mIsRemote && !Thread.currentThread().isInterrupted()) {
+                getRetrieverStatistics(mCoverRetriever)
+                        .onLookup(coverBytes != null, System.currentTimeMillis() - start);
+
+                /**
+                 * Without a path, as in the artist view, the retrievers looking next to the
+                 * music cannot find the cover, so the miss is not recorded.
+                 */
+                if (coverBytes != null) {
+                    mNotFoundCovers.remove(mCoverInfo.getKey());
+                } else if (!isEmpty(mCoverInfo.getPath())) {
+                    mNotFoundCovers.onMiss(mCoverInfo.getKey(), mCoverRetriever.getName());
+                }
+            }
+
+            return coverBytes;
+        }
+    }
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2010-2014 The MPDroid Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.namelessdev.mpdroid.helpers;
+
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+/**
+ * The in-memory cover cache of the {@link CoverManager}: the decoded bitmaps, keyed by album and
+ * requested size, bounded by their size in bytes. An album requested at another size is decoded
+ * again from its disk cache file.
+ *
+ * <p>Views give the bitmaps they are given back to the {@link CoverBitmapPool}, so the cache
+ * holds its own bitmaps and hands out copies, made into pooled bitmaps, which costs a copy of the
+ * pixels rather than a decode and an allocation. Evicted bitmaps are left to the garbage
+ * collector, as a copy may still be in progress.</p>
+ */
+final class CoverMemoryCache {
+
+    /** The share of the heap given to the decoded bitmaps. */
+    private static final int BITMAPS_HEAP_DIVISOR = 8;
+
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private final LruCache<String, Bitmap> mBitmaps;
+
+    CoverMemoryCache() {
+        super();
+
+        final long maxMemory = Runtime.getRuntime().maxMemory();
+
+        mBitmaps = new LruCache<String, Bitmap>((int) (maxMemory / (long) BITMAPS_HEAP_DIVISOR)) {
+            @Override
+            protected int sizeOf(final String key, final Bitmap value) {
+                return value.getRowBytes() * value.getHeight();
+            }
+        };
+    }
+
+    /**
+     * The cache key of a cover request; the sizes are part of the key as they decide how the
+     * cover is sampled.
+     *
+     * @param coverInfo The cover request.
+     * @return The cache key.
+     */
+    private static String getBitmapKey(final CoverInfo coverInfo) {
+        return coverInfo.getKey() + KEY_SEPARATOR + coverInfo.getCoverMaxSize() + KEY_SEPARATOR
+                + coverInfo.getCachedCoverMaxSize();
+    }
+
+    /**
+     * Empties the cache.
+     */
+    void clear() {
+        mBitmaps.evictAll();
+    }
+
+    /**
+     * Gets a copy of the decoded cover of a request.
+     *
+     * @param coverInfo The cover request.
+     * @return A copy of the cover the caller is free to recycle or pool, or null if the cover is
+     * not in the cache.
+     */
+    Bitmap getBitmap(final CoverInfo coverInfo) {
+        final Bitmap bitmap = mBitmaps.get(getBitmapKey(coverInfo));
+        Bitmap copy = null;
+
+        if (bitmap != null) {
+            copy = CoverBitmapPool.getInstance().copy(bitmap);
+        }
+
+        return copy;
+    }
+
+    /**
+     * Keeps a copy of the decoded cover of a request.
+     *
+     * @param coverInfo The cover request.
+     * @param bitmap    The decoded cover, which stays owned by the caller.
+     */
+    void putBitmap(final CoverInfo coverInfo, final Bitmap bitmap) {
+        if (bitmap != null && !bitmap.isRecycled()) {
+            final Bitmap copy = bitmap.copy(bitmap.getConfig(), false);
+
+            if (copy != null) {
+                mBitmaps.put(getBitmapKey(coverInfo), copy);
+            }
+        }
+    }
+
+    /**
+     * Removes the covers of an album, at all sizes.
+     *
+     * @param albumInfo The album.
+     */
+    void remove(final AlbumInfo albumInfo) {
+        final String prefix = albumInfo.getKey() + KEY_SEPARATOR;
+
+        for (final String key : mBitmaps.snapshot().keySet()) {
+            if (key.startsWith(prefix)) {
+                mBitmaps.remove(key);
+            }
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2010-2014 The MPDroid Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.namelessdev.mpdroid.helpers;
+
+import com.namelessdev.mpdroid.MPDApplication;
+import com.namelessdev.mpdroid.R;
+
+import org.a0z.mpd.item.Album;
+
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.util.SparseArray;
+import android.view.View;
+import android.widget.AbsListView;
+
+/**
+ * Prefetches the album covers of the screen ahead of an album list or grid, in the scroll
+ * direction, so the covers are in memory by the time their rows are shown. Nothing is prefetched
+ * during a fling, and the prefetches which fall more than a screen away from the visible rows
+ * are cancelled.
+ */
+public class CoverPrefetcher implements AbsListView.OnScrollListener {
+
+    private final boolean mIsEnabled;
+
+    /** The prefetch requests in progress, by list position. */
+    private final SparseArray<CoverAsyncHelper> mPrefetches = new SparseArray<>();
+
+    private int mFirstVisibleItem = -1;
+
+    private boolean mIsScrollingUp;
+
+    private int mScrollState = SCROLL_STATE_IDLE;
+
+    private int mVisibleItemCount;
+
+    public CoverPrefetcher() {
+        super();
+
+        final SharedPreferences settings =
+                PreferenceManager.getDefaultSharedPreferences(MPDApplication.getInstance());
+
+        mIsEnabled = settings.getBoolean(CoverManager.PREFERENCE_CACHE, true);
+    }
+
+    /**
+     * Gets the size the album covers of the list are requested at, which is the height of the
+     * visible covers.
+     *
+     * @param view The album list or grid.
+     * @return The cover size, 0 if no cover is laid out yet.
+     */
+    private static int getCoverSize(final AbsListView view) {
+        final View child = view.getChildAt(0);
+        final View cover;
+        int coverSize = 0;
+
+        if (child == null) {
+            cover = null;
+        } else {
+            cover = child.findViewById(R.id.albumCover);
+        }
+
+        if (cover != null && cover.getVisibility() == View.VISIBLE) {
+            coverSize = cover.getHeight();
+        }
+
+        return coverSize;
+    }
+
+    /**
+     * Cancels all the prefetches in progress, as the list items changed or the list is gone.
+     */
+    public void cancel() {
+        for (int i = 0; i < mPrefetches.size(); i++) {
+            mPrefetches.valueAt(i).cancel();
+        }
+        mPrefetches.clear();
+        mFirstVisibleItem = -1;
+    }
+
+    /**
+     * Cancels the prefetches out of a range of positions.
+     *
+     * @param first The first position to keep.
+     * @param last  The last position to keep.
+     */
+    private void cancel(final int first, final int last) {
+        for (int i = mPrefetches.size() - 1; i >= 0; i--) {
+            final int position = mPrefetches.keyAt(i);
+
+            if (position < first || position > last) {
+                mPrefetches.valueAt(i).cancel();
+                mPrefetches.removeAt(i);
+            }
+        }
+    }
+
+    @Override
+    public void onScroll(final AbsListView view, final int firstVisibleItem,
+            final int visibleItemCount, final int totalItemCount) {
+        if (firstVisibleItem != mFirstVisibleItem || visibleItemCount != mVisibleItemCount) {
+            if (mFirstVisibleItem >= 0 && firstVisibleItem != mFirstVisibleItem) {
+                mIsScrollingUp = firstVisibleItem < mFirstVisibleItem;
+            }
+            mFirstVisibleItem = firstVisibleItem;
+            mVisibleItemCount = visibleItemCount;
+
+            cancel(firstVisibleItem - visibleItemCount,
+                    firstVisibleItem + 2 * visibleItemCount - 1);
+            if (mScrollState != SCROLL_STATE_FLING) {
+                prefetch(view);
+            }
+        }
+    }
+
+    @Override
+    public void onScrollStateChanged(final AbsListView view, final int scrollState) {
+        mScrollState = scrollState;
+
+        if (scrollState == SCROLL_STATE_IDLE) {
+            prefetch(view);
+        }
+    }
+
+    /**
+     * Requests the covers of the screen ahead of the visible rows, in the scroll direction.
+     *
+     * @param view The album list or grid.
+     */
+    private void prefetch(final AbsListView view) {
+        final int coverSize;
+
+        if (mIsEnabled && mVisibleItemCount > 0) {
+            coverSize = getCoverSize(view);
+        } else {
+            coverSize = 0;
+        }
+
+        if (coverSize > 0) {
+            final int first;
+
+            if (mIsScrollingUp) {
+                first = Math.max(mFirstVisibleItem - mVisibleItemCount, 0);
+            } else {
+                first = mFirstVisibleItem + mVisibleItemCount;
+            }
+
+            final int last = Math.min(first + mVisibleItemCount, view.getCount()) - 1;
+            for (int position = first; position <= last; position++) {
+                final Object item = view.getItemAtPosition(position);
+
+                if (mPrefetches.get(position) == null && item instanceof Album) {
+                    final AlbumInfo albumInfo = new AlbumInfo((Album) item);
+
+                    if (albumInfo.isValid()) {
+                        final CoverAsyncHelper coverHelper = new CoverAsyncHelper();
+
+                        coverHelper.setCoverMaxSize(coverSize);
+                        coverHelper.addCoverDownloadListener(
+                                new PrefetchListener(position, coverHelper));
+                        mPrefetches.put(position, coverHelper);
+                        coverHelper.downloadCover(albumInfo);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets a prefetch once answered; the cover is kept by the {@link CoverManager} memory
+     * cache, so the bitmap given here goes to the {@link CoverBitmapPool}.
+     */
+    private final class PrefetchListener implements CoverDownloadListener {
+
+        private final CoverAsyncHelper mCoverHelper;
+
+        private final int mPosition;
+
+        private PrefetchListener(final int position, final CoverAsyncHelper coverHelper) {
+            super();
+
+            mPosition = position;
+            mCoverHelper = coverHelper;
+        }
+
+        @Override
+        public void onCoverDownloadStarted(final CoverInfo cover) {
+            // Nothing to do
+        }
+
+        @Override
+        public void onCoverDownloaded(final CoverInfo cover) {
+            if (cover.getBitmap() != null) {
+                CoverBitmapPool.getInstance().put(cover.getBitmap()[0]);
+            }
+            onPrefetched();
+        }
+
+        @Override
+        public void onCoverNotFound(final CoverInfo coverInfo) {
+            onPrefetched();
+        }
+
+        private void onPrefetched() {
+            if (mPrefetches.get(mPosition) == mCoverHelper) {
+                mPrefetches.remove(mPosition);
+            }
+        }
+
+        @Override
+        public void tagAlbumCover(final AlbumInfo albumInfo) {
+            // Nothing to do
+        }
+    }
+}
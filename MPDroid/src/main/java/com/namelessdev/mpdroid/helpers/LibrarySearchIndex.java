@@ -0,0 +1,597 @@
+/*
+ * Copyright (C) 2010-2014 The MPDroid Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.namelessdev.mpdroid.helpers;
+
+import com.namelessdev.mpdroid.helpers.AlbumCache.DirectoryEntry;
+import com.namelessdev.mpdroid.helpers.AlbumCache.TrackEntry;
+
+import org.a0z.mpd.item.Album;
+import org.a0z.mpd.item.Artist;
+import org.a0z.mpd.item.Music;
+
+import org.a0z.mpd.item.TagPool;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * An inverted index of the artists, albums and song titles of the {@link AlbumCache}
+ * directories, to search the library without asking the media server.
+ *
+ * <p>Names are split in words, folded to lower case without diacritics. Each kind of result has
+ * its words sorted, with the results each word is found in, so the words starting with a search
+ * term are a range found by binary search, as the user types. A result must have a word starting
+ * with every search term, and ranks higher for whole word matches and for matching its first
+ * word.</p>
+ *
+ * <p>The index can be written to a stream and read back, so it is not built from the directories
+ * again until they change, see {@link #write(DataOutput)} and {@link #read(DataInput)}.</p>
+ */
+public final class LibrarySearchIndex {
+
+    private static final Pattern BLOCK_IN_COMBINING_DIACRITICAL_MARKS =
+            Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+
+    /** The score of a term matching a whole word. */
+    private static final int SCORE_EXACT = 2;
+
+    /** The score added for a term matching the first word. */
+    private static final int SCORE_FIRST_WORD = 1;
+
+    /** The score of a term matching the start of a word. */
+    private static final int SCORE_PREFIX = 1;
+
+    private final TokenIndex mAlbumTokens;
+
+    private final List<Album> mAlbums;
+
+    private final TokenIndex mArtistTokens;
+
+    private final List<Artist> mArtists;
+
+    private final List<String> mSongPaths;
+
+    private final TokenIndex mSongTokens;
+
+    private final List<TrackEntry> mSongs;
+
+    /**
+     * Builds the index of directories. Artists and albums are unique by name, ignoring case, the
+     * album artist standing for the artist of the tracks which have one.
+     *
+     * @param directories The directories of the {@link AlbumCache}, by path.
+     */
+    LibrarySearchIndex(final Map<String, DirectoryEntry> directories) {
+        super();
+
+        final Map<String, Integer> albumIds = new HashMap<>();
+        final Map<String, Integer> artistIds = new HashMap<>();
+        final TokenIndexBuilder albumTokens = new TokenIndexBuilder();
+        final TokenIndexBuilder artistTokens = new TokenIndexBuilder();
+        final TokenIndexBuilder songTokens = new TokenIndexBuilder();
+
+        mAlbums = new ArrayList<>();
+        mArtists = new ArrayList<>();
+        mSongPaths = new ArrayList<>();
+        mSongs = new ArrayList<>();
+
+        for (final Map.Entry<String, DirectoryEntry> entry : directories.entrySet()) {
+            for (final TrackEntry track : entry.getValue().mTracks) {
+                final boolean isAlbumArtist = !track.mAlbumArtist.isEmpty();
+                final String artist = isAlbumArtist ? track.mAlbumArtist : track.mArtist;
+
+                if (!track.mTitle.isEmpty()) {
+                    songTokens.add(mSongs.size(), track.mTitle);
+                    mSongPaths.add(AlbumCache.childPath(entry.getKey(), track.mFilename));
+                    mSongs.add(track);
+                }
+
+                if (!artist.isEmpty() && !artistIds.containsKey(artist.toLowerCase())) {
+                    artistIds.put(artist.toLowerCase(), Integer.valueOf(mArtists.size()));
+                    artistTokens.add(mArtists.size(), artist);
+                    mArtists.add(new Artist(artist));
+                }
+
+                if (!track.mAlbum.isEmpty() && !albumIds.containsKey(track.mAlbum.toLowerCase())) {
+                    albumIds.put(track.mAlbum.toLowerCase(), Integer.valueOf(mAlbums.size()));
+                    albumTokens.add(mAlbums.size(), track.mAlbum);
+                    mAlbums.add(new Album(track.mAlbum, new Artist(artist), isAlbumArtist));
+                }
+            }
+        }
+
+        mAlbumTokens = albumTokens.build(mAlbums.size());
+        mArtistTokens = artistTokens.build(mArtists.size());
+        mSongTokens = songTokens.build(mSongs.size());
+    }
+
+    /**
+     * Reads an index as written by {@link #write(DataOutput)}.
+     *
+     * @param in The stream to read the index from.
+     * @throws IOException Thrown upon error reading the index, or if it is inconsistent.
+     */
+    private LibrarySearchIndex(final DataInput in) throws IOException {
+        super();
+
+        final int artistCount = readLength(in);
+        final int albumCount;
+        final int songCount;
+
+        mArtists = new ArrayList<>(artistCount);
+        for (int i = 0; i < artistCount; i++) {
+            mArtists.add(new Artist(TagPool.intern(in.readUTF())));
+        }
+
+        albumCount = readLength(in);
+        mAlbums = new ArrayList<>(albumCount);
+        for (int i = 0; i < albumCount; i++) {
+            final String album = TagPool.intern(in.readUTF());
+            final String artist = TagPool.intern(in.readUTF());
+
+            mAlbums.add(new Album(album, new Artist(artist), in.readBoolean()));
+        }
+
+        songCount = readLength(in);
+        mSongPaths = new ArrayList<>(songCount);
+        mSongs = new ArrayList<>(songCount);
+        for (int i = 0; i < songCount; i++) {
+            final TrackEntry track = new TrackEntry();
+
+            mSongPaths.add(in.readUTF());
+            track.mTitle = in.readUTF();
+            track.mArtist = TagPool.intern(in.readUTF());
+            track.mAlbum = TagPool.intern(in.readUTF());
+            track.mAlbumArtist = TagPool.intern(in.readUTF());
+            track.mDate = in.readLong();
+            track.mTime = in.readLong();
+            mSongs.add(track);
+        }
+
+        mAlbumTokens = TokenIndex.read(in, albumCount);
+        mArtistTokens = TokenIndex.read(in, artistCount);
+        mSongTokens = TokenIndex.read(in, songCount);
+    }
+
+    /**
+     * Folds a text for searching, to lower case and without diacritics.
+     *
+     * @param text The text to fold.
+     * @return The folded text.
+     */
+    private static String fold(final String text) {
+        boolean isAscii = true;
+        String folded = text;
+
+        for (int i = 0; isAscii && i < text.length(); i++) {
+            isAscii = text.charAt(i) < 0x80;
+        }
+
+        if (!isAscii) {
+            folded = Normalizer.normalize(folded, Normalizer.Form.NFD);
+            folded = BLOCK_IN_COMBINING_DIACRITICAL_MARKS.matcher(folded).replaceAll("");
+        }
+
+        return folded.toLowerCase();
+    }
+
+    /**
+     * Reads an index as written by {@link #write(DataOutput)}.
+     *
+     * @param in The stream to read the index from.
+     * @return The index read.
+     * @throws IOException Thrown upon error reading the index, or if it is inconsistent.
+     */
+    static LibrarySearchIndex read(final DataInput in) throws IOException {
+        return new LibrarySearchIndex(in);
+    }
+
+    /**
+     * Reads a length, checked not to be negative.
+     *
+     * @param in The stream to read from.
+     * @return The length read.
+     * @throws IOException Thrown upon error reading the length, or if it is negative.
+     */
+    private static int readLength(final DataInput in) throws IOException {
+        final int length = in.readInt();
+
+        if (length < 0) {
+            throw new IOException("Invalid search index length: " + length);
+        }
+
+        return length;
+    }
+
+    /**
+     * Orders results by descending score, ties in the order of a comparator.
+     *
+     * @param scores     The scores of the results.
+     * @param results    The results to order.
+     * @param comparator The order of results of the same score, null for their natural order.
+     * @param <T>        The type of the results.
+     * @return The ordered results.
+     */
+    private static <T> List<T> rank(final List<Integer> scores, final List<T> results,
+            final Comparator<? super T> comparator) {
+        final List<List<T>> buckets = new ArrayList<>();
+        final List<T> ranked = new ArrayList<>(results.size());
+
+        for (int i = 0; i < scores.size(); i++) {
+            final int score = scores.get(i).intValue();
+
+            while (buckets.size() <= score) {
+                buckets.add(new ArrayList<T>());
+            }
+            buckets.get(score).add(results.get(i));
+        }
+
+        for (int score = buckets.size() - 1; score >= 0; score--) {
+            final List<T> bucket = buckets.get(score);
+
+            Collections.sort(bucket, comparator);
+            ranked.addAll(bucket);
+        }
+
+        return ranked;
+    }
+
+    /**
+     * Searches for results of one kind.
+     *
+     * @param tokens     The token index of the results.
+     * @param items      The results, by document.
+     * @param query      The search query.
+     * @param comparator The order of results of the same score, null for their natural order.
+     * @param <T>        The type of the results.
+     * @return The results matching the query, ranked.
+     */
+    private static <T> List<T> search(final TokenIndex tokens, final List<T> items,
+            final String query, final Comparator<? super T> comparator) {
+        final int[] scores = tokens.getScores(tokenize(query));
+        final List<T> results = new ArrayList<>();
+        final List<Integer> resultScores = new ArrayList<>();
+
+        for (int document = 0; document < scores.length; document++) {
+            if (scores[document] > 0) {
+                results.add(items.get(document));
+                resultScores.add(Integer.valueOf(scores[document]));
+            }
+        }
+
+        return rank(resultScores, results, comparator);
+    }
+
+    /**
+     * Splits a text into folded words.
+     *
+     * @param text The text to split.
+     * @return The words, letters and digits only.
+     */
+    private static List<String> tokenize(final String text) {
+        final String folded = fold(text);
+        final List<String> tokens = new ArrayList<>();
+        int start = -1;
+
+        for (int i = 0; i <= folded.length(); i++) {
+            final boolean isWordCharacter =
+                    i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+
+            if (isWordCharacter && start == -1) {
+                start = i;
+            } else if (!isWordCharacter && start != -1) {
+                tokens.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+
+        return tokens;
+    }
+
+    /**
+     * Searches albums by name.
+     *
+     * @param query The search query, its words matching the start of words of the name.
+     * @return The matching albums, best match first.
+     */
+    public List<Album> searchAlbums(final String query) {
+        return search(mAlbumTokens, mAlbums, query, null);
+    }
+
+    /**
+     * Searches artists and album artists by name.
+     *
+     * @param query The search query, its words matching the start of words of the name.
+     * @return The matching artists, best match first.
+     */
+    public List<Artist> searchArtists(final String query) {
+        return search(mArtistTokens, mArtists, query, null);
+    }
+
+    /**
+     * Searches songs by title.
+     *
+     * @param query The search query, its words matching the start of words of the title.
+     * @return The matching songs, best match first.
+     */
+    public List<Music> searchSongs(final String query) {
+        final int[] scores = mSongTokens.getScores(tokenize(query));
+        final List<Integer> resultScores = new ArrayList<>();
+        final List<String> response = new ArrayList<>();
+
+        for (int document = 0; document < scores.length; document++) {
+            if (scores[document] <= 0) {
+                continue;
+            }
+
+            final TrackEntry track = mSongs.get(document);
+
+            resultScores.add(Integer.valueOf(scores[document]));
+            response.add("file: " + mSongPaths.get(document));
+            response.add("Title: " + track.mTitle);
+            if (!track.mArtist.isEmpty()) {
+                response.add("Artist: " + track.mArtist);
+            }
+            if (!track.mAlbum.isEmpty()) {
+                response.add("Album: " + track.mAlbum);
+            }
+            if (!track.mAlbumArtist.isEmpty()) {
+                response.add("AlbumArtist: " + track.mAlbumArtist);
+            }
+            if (track.mDate != 0L) {
+                response.add("Date: " + track.mDate);
+            }
+            response.add("Time: " + track.mTime);
+        }
+
+        return rank(resultScores, Music.getMusicFromList(response, false),
+                Music.COMPARE_WITHOUT_TRACK_NUMBER);
+    }
+
+    @Override
+    public String toString() {
+        return mArtists.size() + " artists, " +
+                mAlbums.size() + " albums, " +
+                mSongs.size() + " songs";
+    }
+
+    /**
+     * Writes this index, to be read back by {@link #read(DataInput)}.
+     *
+     * @param out The stream to write the index to.
+     * @throws IOException Thrown upon error writing the index.
+     */
+    void write(final DataOutput out) throws IOException {
+        out.writeInt(mArtists.size());
+        for (final Artist artist : mArtists) {
+            out.writeUTF(artist.getName());
+        }
+
+        out.writeInt(mAlbums.size());
+        for (final Album album : mAlbums) {
+            out.writeUTF(album.getName());
+            out.writeUTF(album.getArtist().getName());
+            out.writeBoolean(album.hasAlbumArtist());
+        }
+
+        out.writeInt(mSongs.size());
+        for (int i = 0; i < mSongs.size(); i++) {
+            final TrackEntry track = mSongs.get(i);
+
+            out.writeUTF(mSongPaths.get(i));
+            out.writeUTF(track.mTitle);
+            out.writeUTF(track.mArtist);
+            out.writeUTF(track.mAlbum);
+            out.writeUTF(track.mAlbumArtist);
+            out.writeLong(track.mDate);
+            out.writeLong(track.mTime);
+        }
+
+        mAlbumTokens.write(out);
+        mArtistTokens.write(out);
+        mSongTokens.write(out);
+    }
+
+    /** A growing list of postings, a document once with the first word flag of any posting. */
+    private static final class Postings {
+
+        private int mSize;
+
+        private int[] mValues = new int[2];
+
+        void add(final int posting) {
+            if (mSize > 0 && mValues[mSize - 1] >>> 1 == posting >>> 1) {
+                mValues[mSize - 1] |= posting;
+            } else {
+                if (mSize == mValues.length) {
+                    mValues = Arrays.copyOf(mValues, mSize * 2);
+                }
+                mValues[mSize] = posting;
+                mSize++;
+            }
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(mValues, mSize);
+        }
+    }
+
+    /** The words of one kind of result, sorted, with the documents each word is found in. */
+    private static final class TokenIndex {
+
+        private final int mDocumentCount;
+
+        /**
+         * The documents of each token, in ascending order. A document is shifted left by one,
+         * the lowest bit set if the token is the first word of the document.
+         */
+        private final int[][] mPostings;
+
+        private final String[] mTokens;
+
+        TokenIndex(final String[] tokens, final int[][] postings, final int documentCount) {
+            super();
+
+            mTokens = tokens;
+            mPostings = postings;
+            mDocumentCount = documentCount;
+        }
+
+        /**
+         * Scores the documents with a word starting with each term, each term by its best match
+         * in the document.
+         *
+         * @param terms The search terms, folded.
+         * @return The scores, by document, 0 for the documents not matching every term.
+         */
+        int[] getScores(final List<String> terms) {
+            final int[] matchedTerms = new int[mDocumentCount];
+            final int[] scores = new int[mDocumentCount];
+            final int[] termScores = new int[mDocumentCount];
+
+            for (int term = 0; term < terms.size(); term++) {
+                final String prefix = terms.get(term);
+                int token = Arrays.binarySearch(mTokens, prefix);
+
+                if (token < 0) {
+                    token = -token - 1;
+                }
+
+                for (; token < mTokens.length && mTokens[token].startsWith(prefix); token++) {
+                    final int score = mTokens[token].length() == prefix.length() ?
+                            SCORE_EXACT : SCORE_PREFIX;
+
+                    for (final int posting : mPostings[token]) {
+                        final int document = posting >>> 1;
+                        final int postingScore = score + (posting & 1) * SCORE_FIRST_WORD;
+
+                        if (matchedTerms[document] == term) {
+                            matchedTerms[document] = term + 1;
+                            termScores[document] = postingScore;
+                            scores[document] += postingScore;
+                        } else if (matchedTerms[document] == term + 1 &&
+                                postingScore > termScores[document]) {
+                            scores[document] += postingScore - termScores[document];
+                            termScores[document] = postingScore;
+                        }
+                    }
+                }
+            }
+
+            for (int document = 0; document < mDocumentCount; document++) {
+                if (matchedTerms[document] != terms.size()) {
+                    scores[document] = 0;
+                }
+            }
+
+            return scores;
+        }
+
+        /**
+         * Reads a token index as written by {@link #write(DataOutput)}.
+         *
+         * @param in            The stream to read the token index from.
+         * @param documentCount The number of documents the token index was built for.
+         * @return The token index read.
+         * @throws IOException Thrown upon error reading the token index, or if it refers to a
+         *                     document out of bounds.
+         */
+        static TokenIndex read(final DataInput in, final int documentCount) throws IOException {
+            final String[] tokens = new String[readLength(in)];
+            final int[][] postings = new int[tokens.length][];
+
+            for (int i = 0; i < tokens.length; i++) {
+                tokens[i] = in.readUTF();
+                postings[i] = new int[readLength(in)];
+
+                for (int j = 0; j < postings[i].length; j++) {
+                    postings[i][j] = in.readInt();
+                    if (postings[i][j] >>> 1 >= documentCount) {
+                        throw new IOException("Search index document out of bounds.");
+                    }
+                }
+            }
+
+            return new TokenIndex(tokens, postings, documentCount);
+        }
+
+        /**
+         * Writes this token index, to be read back by {@link #read(DataInput, int)}.
+         *
+         * @param out The stream to write the token index to.
+         * @throws IOException Thrown upon error writing the token index.
+         */
+        void write(final DataOutput out) throws IOException {
+            out.writeInt(mTokens.length);
+            for (int i = 0; i < mTokens.length; i++) {
+                out.writeUTF(mTokens[i]);
+                out.writeInt(mPostings[i].length);
+                for (final int posting : mPostings[i]) {
+                    out.writeInt(posting);
+                }
+            }
+        }
+    }
+
+    /** Collects the words of documents, added in ascending order, into a {@link TokenIndex}. */
+    private static final class TokenIndexBuilder {
+
+        private final Map<String, Postings> mPostings = new HashMap<>();
+
+        /**
+         * Adds the words of a document.
+         *
+         * @param document The document, not less than any added before.
+         * @param text     The text of the document.
+         */
+        void add(final int document, final String text) {
+            final List<String> tokens = tokenize(text);
+
+            for (int i = 0; i < tokens.size(); i++) {
+                Postings postings = mPostings.get(tokens.get(i));
+
+                if (postings == null) {
+                    postings = new Postings();
+                    mPostings.put(tokens.get(i), postings);
+                }
+                postings.add(document << 1 | (i == 0 ? 1 : 0));
+            }
+        }
+
+        TokenIndex build(final int documentCount) {
+            final String[] tokens = mPostings.keySet().toArray(new String[mPostings.size()]);
+            final int[][] postings = new int[tokens.length][];
+
+            Arrays.sort(tokens);
+            for (int i = 0; i < tokens.length; i++) {
+                postings[i] = mPostings.get(tokens[i]).toArray();
+            }
+
+            return new TokenIndex(tokens, postings, documentCount);
+        }
+    }
+}
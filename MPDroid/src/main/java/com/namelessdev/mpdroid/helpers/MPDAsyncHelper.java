@@ -22,7 +22,7 @@ import com.namelessdev.mpdroid.tools.SettingsHelper;
 import com.namelessdev.mpdroid.tools.WeakLinkedList;
 
 import org.a0z.mpd.MPD;
-import org.a0z.mpd.MPDStatus;
+import org.a0z.mpd.event.StatusChangeEvent;
 import org.a0z.mpd.event.StatusChangeListener;
 import org.a0z.mpd.event.TrackPositionListener;
 
@@ -47,27 +47,10 @@ public class MPDAsyncHelper implements Handler.Callback {
 
     static final int EVENT_CONNECT_SUCCEEDED = LOCAL_UID + 3;
 
-    static final int EVENT_CONNECTION_STATE = LOCAL_UID + 4;
-
-    static final int EVENT_PLAYLIST = LOCAL_UID + 5;
-
-    static final int EVENT_RANDOM = LOCAL_UID + 6;
-
-    static final int EVENT_REPEAT = LOCAL_UID + 7;
-
     static final int EVENT_SET_USE_CACHE = LOCAL_UID + 8;
 
-    static final int EVENT_STATE = LOCAL_UID + 9;
-
-    static final int EVENT_TRACK = LOCAL_UID + 10;
-
-    static final int EVENT_TRACK_POSITION = LOCAL_UID + 11;
-
-    static final int EVENT_UPDATE_STATE = LOCAL_UID + 12;
-
-    static final int EVENT_VOLUME = LOCAL_UID + 13;
-
-    static final int EVENT_STICKER_CHANGED = LOCAL_UID + 14;
+    /** The status changes waiting in the worker, taken with one message per burst. */
+    static final int EVENT_STATUS = LOCAL_UID + 15;
 
     private static final String TAG = "MPDAsyncHelper";
 
@@ -152,6 +135,35 @@ public class MPDAsyncHelper implements Handler.Callback {
         mWorkerHandler.sendEmptyMessage(MPDAsyncWorker.EVENT_DISCONNECT);
     }
 
+    /**
+     * Sends the status changes of one or more idle cycles to the listeners.
+     *
+     * @param event The status changes.
+     */
+    private void dispatch(final StatusChangeEvent event) {
+        for (final StatusChangeListener listener : mStatusChangeListeners) {
+            event.dispatch(listener);
+        }
+
+        for (final TrackPositionListener listener : mTrackPositionListeners) {
+            event.dispatch(listener);
+        }
+
+        if (event.hasChanged(StatusChangeEvent.CHANGED_CONNECTION)) {
+            // Also notify Connection Listener...
+            if (event.isConnected()) {
+                for (final ConnectionListener listener : mConnectionListeners) {
+                    listener.connectionSucceeded("");
+                }
+            }
+            if (event.isConnectionLost()) {
+                for (final ConnectionListener listener : mConnectionListeners) {
+                    listener.connectionFailed("Connection Lost");
+                }
+            }
+        }
+    }
+
     /**
      * Executes a Runnable Asynchronous. Meant to use for individual long during operations on
      * JMPDComm. Use this method only, when the code to execute is only used once in the project.
@@ -189,74 +201,19 @@ public class MPDAsyncHelper implements Handler.Callback {
         try {
             final Object[] args = (Object[]) msg.obj;
             switch (msg.what) {
-                case EVENT_CONNECTION_STATE:
-                    for (final StatusChangeListener listener : mStatusChangeListeners) {
-                        listener.connectionStateChanged((Boolean) args[0], (Boolean) args[1]);
-                    }
-                    // Also notify Connection Listener...
-                    if ((Boolean) args[0]) {
-                        for (final ConnectionListener listener : mConnectionListeners) {
-                            listener.connectionSucceeded("");
-                        }
-                    }
-                    if ((Boolean) args[1]) {
-                        for (final ConnectionListener listener : mConnectionListeners) {
-                            listener.connectionFailed("Connection Lost");
-                        }
-                    }
-                    break;
                 case MPDAsyncWorker.EVENT_CONNECTION_CONFIG:
                     mConnectionInfo = (ConnectionInfo) args[0];
                     for (final ConnectionInfoListener listener : mConnectionInfoListeners) {
                         listener.onConnectionConfigChange(mConnectionInfo);
                     }
                     break;
-                case EVENT_PLAYLIST:
-                    for (final StatusChangeListener listener : mStatusChangeListeners) {
-                        listener.playlistChanged((MPDStatus) args[0], (Integer) args[1]);
-                    }
-                    break;
-                case EVENT_RANDOM:
-                    for (final StatusChangeListener listener : mStatusChangeListeners) {
-                        listener.randomChanged((Boolean) args[0]);
-                    }
-                    break;
-                case EVENT_REPEAT:
-                    for (final StatusChangeListener listener : mStatusChangeListeners) {
-                        listener.repeatChanged((Boolean) args[0]);
-                    }
-                    break;
                 case EVENT_SET_USE_CACHE:
                     ((CachedMPD) oMPD).setUseCache((Boolean) args[0]);
                     break;
-                case EVENT_STATE:
-                    for (final StatusChangeListener listener : mStatusChangeListeners) {
-                        listener.stateChanged((MPDStatus) args[0], (int) args[1]);
-                    }
-                    break;
-                case EVENT_TRACK:
-                    for (final StatusChangeListener listener : mStatusChangeListeners) {
-                        listener.trackChanged((MPDStatus) args[0], (int) args[1]);
-                    }
-                    break;
-                case EVENT_UPDATE_STATE:
-                    for (final StatusChangeListener listener : mStatusChangeListeners) {
-                        listener.libraryStateChanged((Boolean) args[0], (Boolean) args[1]);
-                    }
-                    break;
-                case EVENT_VOLUME:
-                    for (final StatusChangeListener listener : mStatusChangeListeners) {
-                        listener.volumeChanged((MPDStatus) args[0], (Integer) args[1]);
-                    }
-                    break;
-                case EVENT_TRACK_POSITION:
-                    for (final TrackPositionListener listener : mTrackPositionListeners) {
-                        listener.trackPositionChanged((MPDStatus) args[0]);
-                    }
-                    break;
-                case EVENT_STICKER_CHANGED:
-                    for (final StatusChangeListener listener : mStatusChangeListeners) {
-                        listener.stickerChanged((MPDStatus) args[0]);
+                case EVENT_STATUS:
+                    for (final StatusChangeEvent event :
+                            oMPDAsyncWorker.takePendingStatusChanges()) {
+                        dispatch(event);
                     }
                     break;
                 case EVENT_CONNECT_FAILED:
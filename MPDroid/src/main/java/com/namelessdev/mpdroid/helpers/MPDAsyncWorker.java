@@ -22,10 +22,9 @@ import com.namelessdev.mpdroid.cover.GracenoteCover;
 import com.namelessdev.mpdroid.tools.Tools;
 
 import org.a0z.mpd.MPD;
-import org.a0z.mpd.MPDStatus;
 import org.a0z.mpd.MPDStatusMonitor;
-import org.a0z.mpd.event.StatusChangeListener;
-import org.a0z.mpd.event.TrackPositionListener;
+import org.a0z.mpd.event.StatusChangeEvent;
+import org.a0z.mpd.event.StatusChangeEventListener;
 import org.a0z.mpd.exception.MPDException;
 
 import android.content.SharedPreferences;
@@ -37,19 +36,27 @@ import android.text.format.DateUtils;
 import android.util.Log;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
 /**
  * Asynchronous worker thread-class for long during operations on JMPDComm.
  */
 public class MPDAsyncWorker implements Handler.Callback,
         SharedPreferences.OnSharedPreferenceChangeListener,
-        StatusChangeListener,
-        TrackPositionListener {
+        StatusChangeEventListener {
 
     static final String USE_LOCAL_ALBUM_CACHE_KEY = "useLocalAlbumCache";
 
     private static final int LOCAL_UID = 500;
 
+    /**
+     * The time the status changes wait for the changes which follow them, so a burst of idle
+     * cycles, as when a playlist is loaded, makes one update of the UI. The changes are merged
+     * as long as the UI thread has not taken them, even with no wait.
+     */
+    private static final long STATUS_COALESCING_WINDOW = 50L;
+
     static final int EVENT_CONNECT = LOCAL_UID + 1;
 
     static final int EVENT_CONNECTION_CONFIG = LOCAL_UID + 2;
@@ -80,6 +87,9 @@ public class MPDAsyncWorker implements Handler.Callback,
 
     private MPDStatusMonitor mStatusMonitor;
 
+    /** The status changes not taken by the UI thread yet, in order, guarded by this. */
+    private final Deque<StatusChangeEvent> mPendingStatusChanges = new ArrayDeque<>();
+
     private Handler mWorkerHandler;
 
     MPDAsyncWorker(final Handler helperHandler, final MPD mpd) {
@@ -104,12 +114,6 @@ public class MPDAsyncWorker implements Handler.Callback,
         }
     }
 
-    @Override
-    public void connectionStateChanged(final boolean connected, final boolean connectionLost) {
-        mHelperHandler.obtainMessage(MPDAsyncHelper.EVENT_CONNECTION_STATE,
-                Tools.toObjectArray(connected, connectionLost)).sendToTarget();
-    }
-
     /** Disconnects the {@code MPD} object from the media server. */
     private void disconnect() {
         try {
@@ -174,12 +178,6 @@ public class MPDAsyncWorker implements Handler.Callback,
         return isMonitorAlive;
     }
 
-    @Override
-    public void libraryStateChanged(final boolean updating, final boolean dbChanged) {
-        mHelperHandler.obtainMessage(MPDAsyncHelper.EVENT_UPDATE_STATE,
-                Tools.toObjectArray(updating, dbChanged)).sendToTarget();
-    }
-
     /**
      * Called when a shared preference is changed, added, or removed. This
      * may be called even if a preference is set to its existing value.
@@ -209,24 +207,6 @@ public class MPDAsyncWorker implements Handler.Callback,
         }
     }
 
-    @Override
-    public void playlistChanged(final MPDStatus mpdStatus, final int oldPlaylistVersion) {
-        mHelperHandler.obtainMessage(MPDAsyncHelper.EVENT_PLAYLIST,
-                Tools.toObjectArray(mpdStatus, oldPlaylistVersion)).sendToTarget();
-    }
-
-    @Override
-    public void randomChanged(final boolean random) {
-        mHelperHandler.obtainMessage(MPDAsyncHelper.EVENT_RANDOM, Tools.toObjectArray(random))
-                .sendToTarget();
-    }
-
-    @Override
-    public void repeatChanged(final boolean repeating) {
-        mHelperHandler.obtainMessage(MPDAsyncHelper.EVENT_REPEAT, Tools.toObjectArray(repeating))
-                .sendToTarget();
-    }
-
     /**
      * Sets the connection settings.
      *
@@ -249,11 +229,22 @@ public class MPDAsyncWorker implements Handler.Callback,
     private void startStatusMonitor() {
         mStatusMonitor =
                 new MPDStatusMonitor(mMPD, DateUtils.SECOND_IN_MILLIS / 2L, mIdleSubsystems);
-        mStatusMonitor.addStatusChangeListener(this);
-        mStatusMonitor.addTrackPositionListener(this);
+        mStatusMonitor.addStatusChangeEventListener(this);
         mStatusMonitor.start();
     }
 
+    /**
+     * Takes the status changes waiting for the UI thread.
+     *
+     * @return The status changes, in order, empty if they were taken already.
+     */
+    synchronized Deque<StatusChangeEvent> takePendingStatusChanges() {
+        final Deque<StatusChangeEvent> events = new ArrayDeque<>(mPendingStatusChanges);
+
+        mPendingStatusChanges.clear();
+        return events;
+    }
+
     /**
      * Initiates the worker thread {@code Handler} in an off UI thread {@code Looper}.
      *
@@ -268,18 +259,28 @@ public class MPDAsyncWorker implements Handler.Callback,
         return mWorkerHandler;
     }
 
+    /**
+     * Hands the status changes of an idle cycle over to the UI thread. The changes are merged
+     * with the last ones the UI thread has not taken yet rather than sent in another message,
+     * unless either is a connection change, which the listeners see one by one.
+     *
+     * @param event The changes of the idle cycle.
+     */
     @Override
-    public void stateChanged(final MPDStatus mpdStatus, final int oldState) {
-        mHelperHandler
-                .obtainMessage(MPDAsyncHelper.EVENT_STATE, Tools.toObjectArray(mpdStatus, oldState))
-                .sendToTarget();
-    }
-
-    @Override
-    public void stickerChanged(final MPDStatus mpdStatus) {
-        mHelperHandler
-                .obtainMessage(MPDAsyncHelper.EVENT_STICKER_CHANGED, Tools.toObjectArray(mpdStatus))
-                .sendToTarget();
+    public synchronized void statusChanged(final StatusChangeEvent event) {
+        final StatusChangeEvent last = mPendingStatusChanges.peekLast();
+
+        if (last == null) {
+            mPendingStatusChanges.add(event);
+            mHelperHandler.sendEmptyMessageDelayed(MPDAsyncHelper.EVENT_STATUS,
+                    STATUS_COALESCING_WINDOW);
+        } else if (last.hasChanged(StatusChangeEvent.CHANGED_CONNECTION)
+                || event.hasChanged(StatusChangeEvent.CHANGED_CONNECTION)) {
+            mPendingStatusChanges.add(event);
+        } else {
+            mPendingStatusChanges.pollLast();
+            mPendingStatusChanges.add(last.merge(event));
+        }
     }
 
     /** Stops the JMPDComm MPD Status Monitor */
@@ -289,23 +290,4 @@ public class MPDAsyncWorker implements Handler.Callback,
         }
     }
 
-    @Override
-    public void trackChanged(final MPDStatus mpdStatus, final int oldTrack) {
-        mHelperHandler
-                .obtainMessage(MPDAsyncHelper.EVENT_TRACK, Tools.toObjectArray(mpdStatus, oldTrack))
-                .sendToTarget();
-    }
-
-    @Override
-    public void trackPositionChanged(final MPDStatus status) {
-        mHelperHandler
-                .obtainMessage(MPDAsyncHelper.EVENT_TRACK_POSITION, Tools.toObjectArray(status))
-                .sendToTarget();
-    }
-
-    @Override
-    public void volumeChanged(final MPDStatus mpdStatus, final int oldVolume) {
-        mHelperHandler.obtainMessage(MPDAsyncHelper.EVENT_VOLUME,
-                Tools.toObjectArray(mpdStatus, oldVolume)).sendToTarget();
-    }
 }
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2010-2014 The MPDroid Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.namelessdev.mpdroid.helpers;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The albums a cover retriever has no cover for, saved along with the cover history so they are
+ * not looked up again at every start. A retriever is asked again once the retry time of the
+ * album has passed; each miss in a row doubles the time to the next retry.
+ */
+final class NotFoundCovers implements Serializable {
+
+    /** The time before a retriever is asked again after its first miss for an album. */
+    private static final long FIRST_RETRY_DELAY = TimeUnit.DAYS.toMillis(1L);
+
+    /** The longest time before a retriever is asked again for an album. */
+    private static final long MAX_RETRY_DELAY = TimeUnit.DAYS.toMillis(30L);
+
+    private static final long serialVersionUID = 1L;
+
+    /** The misses by album key, then by retriever name. */
+    private final Map<String, Map<String, Miss>> mMisses = new HashMap<>();
+
+    /**
+     * Checks if a retriever is not to be asked for the cover of an album yet.
+     *
+     * @param albumKey      The album key.
+     * @param retrieverName The retriever name.
+     * @return True if the retriever missed the album and its retry time has not passed yet.
+     */
+    synchronized boolean isBackingOff(final String albumKey, final String retrieverName) {
+        final Map<String, Miss> misses = mMisses.get(albumKey);
+        boolean isBackingOff = false;
+
+        if (misses != null) {
+            final Miss miss = misses.get(retrieverName);
+
+            isBackingOff = miss != null && System.currentTimeMillis() < miss.mRetryTime;
+        }
+
+        return isBackingOff;
+    }
+
+    /**
+     * Records a retriever having no cover for an album.
+     *
+     * @param albumKey      The album key.
+     * @param retrieverName The retriever name.
+     */
+    synchronized void onMiss(final String albumKey, final String retrieverName) {
+        Map<String, Miss> misses = mMisses.get(albumKey);
+
+        if (misses == null) {
+            misses = new HashMap<>();
+            mMisses.put(albumKey, misses);
+        }
+
+        Miss miss = misses.get(retrieverName);
+        if (miss == null) {
+            miss = new Miss();
+            misses.put(retrieverName, miss);
+        }
+
+        long delay = FIRST_RETRY_DELAY;
+        for (int i = 0; i < miss.mCount && delay < MAX_RETRY_DELAY; i++) {
+            delay *= 2L;
+        }
+
+        miss.mCount++;
+        miss.mRetryTime = System.currentTimeMillis() + Math.min(delay, MAX_RETRY_DELAY);
+    }
+
+    /**
+     * Forgets the misses which retry time passed long enough ago that they would not lengthen
+     * the next retry delay much, so the saved misses do not grow forever.
+     */
+    synchronized void prune() {
+        final long expiry = System.currentTimeMillis() - MAX_RETRY_DELAY;
+        final Iterator<Map<String, Miss>> albums = mMisses.values().iterator();
+
+        while (albums.hasNext()) {
+            final Map<String, Miss> misses = albums.next();
+            final Iterator<Miss> iterator = misses.values().iterator();
+
+            while (iterator.hasNext()) {
+                if (iterator.next().mRetryTime < expiry) {
+                    iterator.remove();
+                }
+            }
+
+            if (misses.isEmpty()) {
+                albums.remove();
+            }
+        }
+    }
+
+    /**
+     * Forgets the misses of an album, once its cover is found or cleared.
+     *
+     * @param albumKey The album key.
+     */
+    synchronized void remove(final String albumKey) {
+        mMisses.remove(albumKey);
+    }
+
+    synchronized int size() {
+        return mMisses.size();
+    }
+
+    /**
+     * Serializes the misses, the retriever threads keep adding misses while they are saved.
+     *
+     * @param out The stream to serialize to.
+     * @throws IOException Thrown upon write failure.
+     */
+    private synchronized void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+    }
+
+    private static final class Miss implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        /** The number of misses in a row. */
+        private int mCount;
+
+        /** The time, in milliseconds since the epoch, after which the retriever is asked again. */
+        private long mRetryTime;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2010-2014 The MPDroid Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.namelessdev.mpdroid.helpers;
+
+/**
+ * The hit rate and latency of a cover retriever. A retriever which rarely finds a cover, or is
+ * slow to answer, is demoted so the {@link CoverManager} prefers the others. The counts are
+ * halved once they grow large, so a demoted retriever which recovers is promoted again.
+ */
+final class RetrieverStatistics {
+
+    /** The number of lookups after which the counts are halved. */
+    private static final int DECAY_LOOKUPS = 200;
+
+    /** Below this percentage of lookups finding a cover, a retriever is demoted. */
+    private static final int MIN_HIT_PERCENT = 10;
+
+    /** The number of lookups required before a retriever can be demoted. */
+    private static final int MIN_LOOKUPS = 20;
+
+    private final String mName;
+
+    /** The average time, in milliseconds, above which a retriever is demoted. */
+    private final long mSlowLatency;
+
+    private int mHits;
+
+    private int mLookups;
+
+    private int mTimeouts;
+
+    /** The total time of the completed lookups, in milliseconds. */
+    private long mTotalTime;
+
+    RetrieverStatistics(final String name, final long slowLatency) {
+        super();
+
+        mName = name;
+        mSlowLatency = slowLatency;
+    }
+
+    /**
+     * Halves the counts once they grow large, so recent lookups weigh the most.
+     */
+    private void decay() {
+        if (mLookups >= DECAY_LOOKUPS) {
+            mHits /= 2;
+            mLookups /= 2;
+            mTimeouts /= 2;
+            mTotalTime /= 2L;
+        }
+    }
+
+    /**
+     * The average time of the completed lookups.
+     *
+     * @return The average time, in milliseconds, 0 if no lookup completed yet.
+     */
+    synchronized long getAverageLatency() {
+        final int completed = mLookups - mTimeouts;
+        final long averageLatency;
+
+        if (completed > 0) {
+            averageLatency = mTotalTime / (long) completed;
+        } else {
+            averageLatency = 0L;
+        }
+
+        return averageLatency;
+    }
+
+    synchronized int getHitPercent() {
+        final int hitPercent;
+
+        if (mLookups > 0) {
+            hitPercent = mHits * 100 / mLookups;
+        } else {
+            hitPercent = 0;
+        }
+
+        return hitPercent;
+    }
+
+    /**
+     * Checks if the retriever rarely finds a cover, or is slow to answer, or often times out.
+     *
+     * @return True if the retriever is to be preferred after the others, false otherwise.
+     */
+    synchronized boolean isDemoted() {
+        return mLookups >= MIN_LOOKUPS && (getHitPercent() < MIN_HIT_PERCENT ||
+                getAverageLatency() > mSlowLatency || mTimeouts * 2 > mLookups);
+    }
+
+    /**
+     * Records a completed lookup.
+     *
+     * @param isHit   True if the lookup found a cover, false otherwise.
+     * @param latency The time the lookup took, in milliseconds.
+     */
+    synchronized void onLookup(final boolean isHit, final long latency) {
+        mLookups++;
+        if (isHit) {
+            mHits++;
+        }
+        mTotalTime += latency;
+        decay();
+    }
+
+    /**
+     * Records a lookup which was given up on before it completed.
+     */
+    synchronized void onTimeout() {
+        mLookups++;
+        mTimeouts++;
+        decay();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return mName + ": " + mLookups + " lookups, " + getHitPercent() + "% hits, " +
+                mTimeouts + " timeouts, " + getAverageLatency() + "ms average" +
+                (isDemoted() ? ", demoted" : "");
+    }
+}
@@ -269,6 +269,20 @@ public class PlaylistEditActivity extends MPDroidActivities.MPDroidActivity
     }
 
     protected void update() {
+        /**
+         * Only a window of a very long play queue is kept, the songs of the window would be
+         * shown as the whole queue and moved by their positions in it.
+         */
+        if (mIsPlayQueue && mApp.oMPDAsyncHelper.oMPD.getPlaylist().isWindowed()) {
+            Tools.notifyUser(R.string.queueTooLongToEdit);
+            finish();
+        } else {
+            updateSongList();
+        }
+    }
+
+    /** Shows the songs of the play queue or of the stored playlist. */
+    private void updateSongList() {
         // TODO: Preserve position!!!
         try {
             final List<Music> musics;
@@ -19,6 +19,7 @@ package com.namelessdev.mpdroid.service;
 import com.namelessdev.mpdroid.helpers.MPDControl;
 
 import org.a0z.mpd.MPDStatus;
+import org.a0z.mpd.TrackPositionClock;
 import org.a0z.mpd.event.TrackPositionListener;
 
 import android.annotation.TargetApi;
@@ -26,8 +27,6 @@ import android.media.RemoteControlClient;
 import android.os.Build;
 import android.text.format.DateUtils;
 
-import java.util.Date;
-
 /**
  * A simple class to enable Android's RemoteControlClient
  * seek bar. (Requires Android 4.3 and higher).
@@ -41,16 +40,12 @@ public class RemoteControlSeekBarHandler implements
 
     private final RemoteControlClient mRemoteControlClient;
 
-    /**
-     * What was the elapsed time (in ms) when the last status refresh happened?
-     * Use this for guessing the elapsed time for the lock screen.
-     */
-    private long mLastKnownElapsed = 0L;
+    /** The track position clock, kept from the server player changes. */
+    private final TrackPositionClock mTrackPositionClock =
+            MPDroidService.MPD_ASYNC_HELPER.oMPD.getTrackPositionClock();
 
-    /**
-     * Last time the status was refreshed, used for track position.
-     */
-    private long mLastStatusRefresh = 0L;
+    /** Whether the track position was received since the start. */
+    private boolean mIsPositionKnown = false;
 
     private int mPlaybackState = -1;
 
@@ -65,18 +60,18 @@ public class RemoteControlSeekBarHandler implements
     }
 
     /**
-     * Android's callback that queries us for the elapsed time. Here, we are guessing the
-     * elapsed time using the last time we updated the elapsed time and its value at the time.
+     * Android's callback that queries us for the elapsed time. Here, we are reading the elapsed
+     * time from the track position clock, which follows it between the server player changes.
      *
-     * @return The guessed song position
+     * @return The song position
      */
     @Override
     public final long onGetPlaybackPosition() {
         /** If we don't know the position, return a negative value as per the API spec */
         long result = -1L;
 
-        if (mLastStatusRefresh > 0L) {
-            result = mLastKnownElapsed + new Date().getTime() - mLastStatusRefresh;
+        if (mIsPositionKnown) {
+            result = mTrackPositionClock.getElapsedTimeMillis();
         }
         return result;
     }
@@ -93,7 +88,8 @@ public class RemoteControlSeekBarHandler implements
 
     final void setPlaybackState(final int playbackState) {
         mPlaybackState = playbackState;
-        mRemoteControlClient.setPlaybackState(mPlaybackState, mLastKnownElapsed, 1.0f);
+        mRemoteControlClient.setPlaybackState(mPlaybackState,
+                mTrackPositionClock.getElapsedTimeMillis(), 1.0f);
     }
 
     final void start() {
@@ -115,19 +111,16 @@ public class RemoteControlSeekBarHandler implements
      */
     @Override
     public final void trackPositionChanged(final MPDStatus status) {
-        updateSeekTime(status.getElapsedTime());
+        updateSeekTime();
     }
 
     /**
-     * Only update the refresh date and elapsed time if it is the first start to
-     * make sure we have initial data, but updateStatus and trackChanged will take care
-     * of that afterwards.
-     *
-     * @param elapsedTime The current track audio elapsed time.
+     * Hands the track position over to the remote control client, which extrapolates it itself
+     * from then on, as long as it is playing. This is needed on seeks and state changes only.
      */
-    final void updateSeekTime(final long elapsedTime) {
-        mLastStatusRefresh = new Date().getTime();
-        mLastKnownElapsed = elapsedTime * DateUtils.SECOND_IN_MILLIS;
-        mRemoteControlClient.setPlaybackState(mPlaybackState, mLastKnownElapsed, 1.0f);
+    final void updateSeekTime() {
+        mIsPositionKnown = true;
+        mRemoteControlClient.setPlaybackState(mPlaybackState,
+                mTrackPositionClock.getElapsedTimeMillis(), 1.0f);
     }
 }
\ No newline at end of file
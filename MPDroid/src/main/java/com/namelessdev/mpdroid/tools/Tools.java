@@ -100,31 +100,6 @@ public final class Tools {
         return buffer.toString();
     }
 
-    public static Bitmap decodeSampledBitmapFromBytes(
-            final byte[] bytes, final int reqWidth, final int reqHeight,
-            final boolean resizePerfectly) {
-
-        // First decode with inJustDecodeBounds=true to check dimensions
-        final BitmapFactory.Options options = new BitmapFactory.Options();
-        options.inJustDecodeBounds = true;
-        BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
-
-        // Calculate inSampleSize
-        options.inSampleSize = calculateInSampleSize(options, reqWidth, reqHeight);
-
-        // Decode bitmap with inSampleSize set
-        options.inJustDecodeBounds = false;
-        final Bitmap bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
-        if (resizePerfectly) {
-            final Bitmap scaledBitmap = Bitmap
-                    .createScaledBitmap(bitmap, reqWidth, reqHeight, true);
-            bitmap.recycle();
-            return scaledBitmap;
-        } else {
-            return bitmap;
-        }
-    }
-
     public static Bitmap decodeSampledBitmapFromPath(
             final String path, final int reqWidth, final int reqHeight,
             final boolean resizePerfectlty) {
@@ -87,11 +87,18 @@ abstract class BaseDataBinder implements ArrayDataBinder {
         final AlbumCoverDownloadListener oldAcd
                 = (AlbumCoverDownloadListener) holder.mAlbumCover
                 .getTag(R.id.AlbumCoverDownloadListener);
+        final CoverAsyncHelper oldCoverHelper =
+                (CoverAsyncHelper) holder.mAlbumCover.getTag(R.id.CoverAsyncHelper);
 
         if (oldAcd != null) {
             oldAcd.detach();
         }
 
+        // The row went on to another album, its previous cover is not wanted anymore
+        if (oldCoverHelper != null) {
+            oldCoverHelper.cancel();
+        }
+
         holder.mAlbumCover.setTag(R.id.AlbumCoverDownloadListener, acd);
         holder.mAlbumCover.setTag(R.id.CoverAsyncHelper, coverHelper);
         coverHelper.addCoverDownloadListener(acd);